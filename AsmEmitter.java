@@ -0,0 +1,528 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+/**
+ * Writer of x86-64 assembly code (GNU assembler, AT&amp;T syntax, System V ABI) for the statements of a {@code myLang} script, the output
+ * stage of {@link Options#assembly} next to {@link IREmitter}.
+ * <p>The variables live in stack slots below the frame pointer, {@code -4*(id+1)(%rbp)} for the variable with symbol id {@code id}. Each
+ * expression is lowered to three-address code over temporary variables, whose operands are the integers, the stack slots of the variables
+ * and the temporary variables, and the temporary variables are allocated to the registers {@link #REGISTERS} by {@link LinearScan}, or to
+ * spill slots above the stack pointer. A division needs {@code %eax} and {@code %edx}, which are never allocated, and {@code %r11d} holds a
+ * constant divisor. {@code print} calls {@code printf}. The temporary variables never live across a statement, so nothing is kept in a
+ * register across the call.</p>
+ * <p>A {@code while} loop tests its condition behind its body. A {@code choose} function compares its first argument with 0 and jumps to
+ * the code of the chosen argument, which writes the temporary variable of the result.</p>
+ * @author Aral Dortogul
+ */
+public class AsmEmitter {
+	/**
+	 * the registers which the temporary variables are allocated to (caller-saved, and none is needed by a division or by a call)
+	 */
+	public static final String[] REGISTERS = {"%ecx", "%esi", "%edi", "%r8d", "%r9d", "%r10d"};
+	/**
+	 * the lowered instruction {@code destination = left operation right}, where the operation is a token type
+	 */
+	private static final int BINARY = 0;
+	/**
+	 * the lowered instruction {@code destination = left}
+	 */
+	private static final int MOVE = 1;
+	/**
+	 * the lowered instruction which compares {@code left} with 0 and jumps to the positive or the negative argument of a {@code choose} node
+	 * (the destination is the number of the {@code choose} node)
+	 */
+	private static final int TEST = 2;
+	/**
+	 * the lowered instruction which jumps to the end of a {@code choose} node (the destination is the number of the {@code choose} node)
+	 */
+	private static final int JUMP = 3;
+	/**
+	 * the lowered label of the positive argument, the negative argument or the end of a {@code choose} node (the destination is the number of
+	 * the {@code choose} node, the operation is 0, 1 or 2 in that order)
+	 */
+	private static final int LABEL = 4;
+	/**
+	 * the names of the labels of a {@code choose} node, by the operation of {@link #LABEL}
+	 */
+	private static final String[] CHOOSE_LABELS = {".Lchpos", ".Lchneg", ".Lchend"};
+	/**
+	 * {@code true} if the operations of integers are folded
+	 */
+	private final boolean fold;
+	/**
+	 * the code of the body of {@code main}
+	 */
+	private StringBuilder body = new StringBuilder();
+	/**
+	 * the number of {@code while} statements
+	 */
+	private int whileCount = 0;
+	/**
+	 * the number of {@code if} statements
+	 */
+	private int ifCount = 0;
+	/**
+	 * the number of {@code choose} nodes
+	 */
+	private int chooseCount = 0;
+	/**
+	 * the maximum number of spill slots of a statement
+	 */
+	private int spillSlots = 0;
+	/**
+	 * the register allocator of the temporary variables
+	 */
+	private LinearScan allocator = new LinearScan(REGISTERS.length);
+	/**
+	 * the kind of each lowered instruction of the expression: {@link #BINARY}, {@link #MOVE}, {@link #TEST}, {@link #JUMP} or {@link #LABEL}
+	 */
+	private int[] kinds = new int[16];
+	/**
+	 * the operation of each lowered instruction
+	 */
+	private int[] operations = new int[16];
+	/**
+	 * the destination of each lowered instruction
+	 */
+	private int[] destinations = new int[16];
+	/**
+	 * the kind of the left operand of each lowered instruction: {@code Token._integer}, {@code Token._variable} or {@code Token._tempvar}
+	 */
+	private int[] leftKinds = new int[16];
+	/**
+	 * the value of the left operand of each lowered instruction: the integer, the symbol id or the number of the temporary variable
+	 */
+	private int[] leftValues = new int[16];
+	/**
+	 * the kind of the right operand of each lowered instruction
+	 */
+	private int[] rightKinds = new int[16];
+	/**
+	 * the value of the right operand of each lowered instruction
+	 */
+	private int[] rightValues = new int[16];
+	/**
+	 * the number of lowered instructions
+	 */
+	private int instructionCount;
+	/**
+	 * the number of temporary variables of the expression
+	 */
+	private int tempCount;
+	/**
+	 * the index of the first definition of each temporary variable
+	 */
+	private int[] starts = new int[16];
+	/**
+	 * the index of the last use of each temporary variable
+	 */
+	private int[] ends = new int[16];
+	/**
+	 * the kinds of the operands on the operand stack of {@link #lower(Expression)}
+	 */
+	private int[] operandKinds = new int[16];
+	/**
+	 * the values of the operands on the operand stack of {@link #lower(Expression)}
+	 */
+	private int[] operandValues = new int[16];
+	/**
+	 * the number of operands on the operand stack
+	 */
+	private int operandCount;
+	/**
+	 * the {@code choose} node whose second, third or fourth argument starts at each node of the expression ({@code -1} if there is none)
+	 */
+	private int[] argumentChooses = new int[16];
+	/**
+	 * the position of that argument (1, 2 or 3)
+	 */
+	private int[] argumentPositions = new int[16];
+	/**
+	 * the number of each {@code choose} node of the expression
+	 */
+	private int[] chooseNumbers = new int[16];
+	/**
+	 * the temporary variable of the result of each {@code choose} node of the expression
+	 */
+	private int[] chooseResults = new int[16];
+	/**
+	 * Constructs an emitter.
+	 * @param fold {@code true} if the operations of integers are folded
+	 */
+	public AsmEmitter(boolean fold) {
+		this.fold = fold;
+	}
+	/**
+	 * Clears the code of the previous script.
+	 */
+	public void reset() {
+		body.setLength(0);
+		whileCount = ifCount = chooseCount = spillSlots = 0;
+	}
+	/**
+	 * Writes the code of a statement (and of the statements of its block).
+	 * @param statement the statement
+	 */
+	public void statement(Statement statement) {
+		switch (statement.kind) {
+		case 'a':
+			move(lower(statement.expression), variable(statement.target));
+			break;
+		case 'p':
+			String value = lower(statement.expression);
+			if (!value.equals("%esi"))
+				instruction("movl", value, "%esi");
+			instruction("leaq", ".Lformat(%rip)", "%rdi");
+			instruction("xorl", "%eax", "%eax");
+			instruction("call", "printf@PLT");
+			break;
+		case 'i':
+			int ifNumber = ifCount++;
+			test(lower(statement.expression));
+			instruction("je", ".Lifend" + ifNumber);
+			for (Statement inner : statement.body)
+				statement(inner);
+			body.append(".Lifend").append(ifNumber).append(":\n");
+			break;
+		case 'w':
+			int whileNumber = whileCount++;
+			instruction("jmp", ".Lwhcond" + whileNumber);
+			body.append(".Lwhbody").append(whileNumber).append(":\n");
+			for (Statement inner : statement.body)
+				statement(inner);
+			body.append(".Lwhcond").append(whileNumber).append(":\n");
+			test(lower(statement.expression));
+			instruction("jne", ".Lwhbody" + whileNumber);
+			break;
+		}
+	}
+	/**
+	 * Writes the assembly code of the script: the frame of {@code main}, the initialization of the variables to 0 and the body.
+	 * @param output the output of the assembly code
+	 * @param variableCount the number of variables of the script
+	 * @throws IOException when the output cannot be written
+	 */
+	public void finish(WritableByteChannel output, int variableCount) throws IOException {
+		StringBuilder code = new StringBuilder(body.length() + 16 * variableCount + 512);
+		header(code, 4L * variableCount + 4L * spillSlots);
+		for (int variable = 0; variable < variableCount; variable++)
+			code.append("\tmovl\t$0, ").append(variable(variable)).append('\n');
+		code.append(body);
+		footer(code, ".Lformat:\n\t.string\t\"%d\\n\"\n");
+		write(output, code);
+	}
+	/**
+	 * Writes the assembly code of the program which prints "Line X: syntax error".
+	 * @param output the output of the assembly code
+	 * @param lineCount the number of the line in which the syntax error is detected
+	 * @throws IOException when the output cannot be written
+	 */
+	public void finishSyntaxError(WritableByteChannel output, int lineCount) throws IOException {
+		StringBuilder code = new StringBuilder(512);
+		header(code, 0);
+		code.append("\tmovl\t$").append(lineCount).append(", %esi\n");
+		code.append("\tleaq\t.Lsyntax(%rip), %rdi\n");
+		code.append("\txorl\t%eax, %eax\n");
+		code.append("\tcall\tprintf@PLT\n");
+		footer(code, ".Lsyntax:\n\t.string\t\"Line %d: syntax error\\n\"\n");
+		write(output, code);
+	}
+	/**
+	 * Appends the beginning of {@code main}, which sets up its frame.
+	 * @param code the assembly code
+	 * @param frameSize the size of the variables and the spill slots in bytes
+	 */
+	private static void header(StringBuilder code, long frameSize) {
+		code.append("\t.file\t\"mylang2ir\"\n");
+		code.append("\t.text\n");
+		code.append("\t.globl\tmain\n");
+		code.append("\t.type\tmain, @function\n");
+		code.append("main:\n");
+		code.append("\tpushq\t%rbp\n");
+		code.append("\tmovq\t%rsp, %rbp\n");
+		if (frameSize > 0)
+			code.append("\tsubq\t$").append((frameSize + 15) & -16).append(", %rsp\n"); // The stack stays aligned to 16 bytes for the calls.
+	}
+	/**
+	 * Appends the end of {@code main}, which returns 0, and the read-only data.
+	 * @param code the assembly code
+	 * @param data the labels and the strings of the read-only data
+	 */
+	private static void footer(StringBuilder code, String data) {
+		code.append("\txorl\t%eax, %eax\n");
+		code.append("\tleave\n");
+		code.append("\tret\n");
+		code.append("\t.size\tmain, .-main\n");
+		code.append("\t.section\t.rodata\n");
+		code.append(data);
+		code.append("\t.section\t.note.GNU-stack,\"\",@progbits\n");
+	}
+	/**
+	 * Writes assembly code to a channel.
+	 * @param output the channel
+	 * @param code the assembly code
+	 * @throws IOException when the channel cannot be written
+	 */
+	private static void write(WritableByteChannel output, StringBuilder code) throws IOException {
+		ByteBuffer bytes = ByteBuffer.wrap(code.toString().getBytes(StandardCharsets.ISO_8859_1));
+		while (bytes.hasRemaining())
+			output.write(bytes);
+	}
+	/**
+	 * Lowers an expression to three-address code, allocates its temporary variables and writes its code.
+	 * @param expression the expression
+	 * @return the operand which holds the value of the expression
+	 */
+	private String lower(Expression expression) {
+		int length = expression.length;
+		if (argumentChooses.length < length) {
+			argumentChooses = new int[2 * length];
+			argumentPositions = new int[2 * length];
+			chooseNumbers = new int[2 * length];
+			chooseResults = new int[2 * length];
+			operandKinds = new int[2 * length];
+			operandValues = new int[2 * length];
+		}
+		Arrays.fill(argumentChooses, 0, length, -1);
+		for (int node = 0; node < length; node++)
+			if (expression.type[node] == Token._choose)
+				for (int argument = 1; argument < 4; argument++) {
+					int first = expression.start[expression.operand(node, argument)];
+					argumentChooses[first] = node;
+					argumentPositions[first] = argument;
+				}
+		instructionCount = tempCount = operandCount = 0;
+		for (int node = 0; node < length; node++) {
+			int choose = argumentChooses[node];
+			if (choose != -1) {
+				operandCount--;
+				switch (argumentPositions[node]) {
+				case 1: // The first argument is complete.
+					chooseNumbers[choose] = chooseCount++;
+					chooseResults[choose] = tempCount++;
+					add(TEST, 0, chooseNumbers[choose], operandKinds[operandCount], operandValues[operandCount], 0, 0);
+					break;
+				default: // The second or the third argument is complete.
+					add(MOVE, 0, chooseResults[choose], operandKinds[operandCount], operandValues[operandCount], 0, 0);
+					add(JUMP, 0, chooseNumbers[choose], 0, 0, 0, 0);
+					add(LABEL, argumentPositions[node] - 2, chooseNumbers[choose], 0, 0, 0, 0);
+				}
+			}
+			int type = expression.type[node];
+			switch (type) {
+			case Token._integer:
+			case Token._variable:
+				push(type, expression.value[node]);
+				break;
+			case Token._choose:
+				operandCount--;
+				add(MOVE, 0, chooseResults[node], operandKinds[operandCount], operandValues[operandCount], 0, 0);
+				add(LABEL, 2, chooseNumbers[node], 0, 0, 0, 0);
+				push(Token._tempvar, chooseResults[node]);
+				break;
+			default:
+				operandCount -= 2;
+				int leftKind = operandKinds[operandCount], leftValue = operandValues[operandCount];
+				int rightKind = operandKinds[operandCount + 1], rightValue = operandValues[operandCount + 1];
+				if (fold && leftKind == Token._integer && rightKind == Token._integer && (type != Token._div || rightValue != 0))
+					push(Token._integer, Expression.evaluate(type, leftValue, rightValue));
+				else {
+					add(BINARY, type, tempCount, leftKind, leftValue, rightKind, rightValue);
+					push(Token._tempvar, tempCount++);
+				}
+			}
+		}
+		allocate();
+		for (int i = 0; i < instructionCount; i++) {
+			String left = operand(leftKinds[i], leftValues[i]);
+			switch (kinds[i]) {
+			case BINARY: binary(operations[i], temp(destinations[i]), left, operand(rightKinds[i], rightValues[i])); break;
+			case MOVE: move(left, temp(destinations[i])); break;
+			case TEST:
+				test(left);
+				instruction("jg", CHOOSE_LABELS[0] + destinations[i]);
+				instruction("jl", CHOOSE_LABELS[1] + destinations[i]);
+				break;
+			case JUMP: instruction("jmp", CHOOSE_LABELS[2] + destinations[i]); break;
+			default: body.append(CHOOSE_LABELS[operations[i]]).append(destinations[i]).append(":\n");
+			}
+		}
+		return operand(operandKinds[0], operandValues[0]);
+	}
+	/**
+	 * Pushes an operand on the operand stack of {@link #lower(Expression)}.
+	 * @param kind {@code Token._integer}, {@code Token._variable} or {@code Token._tempvar}
+	 * @param value the integer, the symbol id or the number of the temporary variable
+	 */
+	private void push(int kind, int value) {
+		operandKinds[operandCount] = kind;
+		operandValues[operandCount++] = value;
+	}
+	/**
+	 * Appends a lowered instruction.
+	 * @param kind the kind of the instruction
+	 * @param operation the operation of the instruction
+	 * @param destination the destination of the instruction
+	 * @param leftKind the kind of the left operand
+	 * @param leftValue the value of the left operand
+	 * @param rightKind the kind of the right operand
+	 * @param rightValue the value of the right operand
+	 */
+	private void add(int kind, int operation, int destination, int leftKind, int leftValue, int rightKind, int rightValue) {
+		if (instructionCount == kinds.length) {
+			int capacity = 2 * instructionCount;
+			kinds = Arrays.copyOf(kinds, capacity);
+			operations = Arrays.copyOf(operations, capacity);
+			destinations = Arrays.copyOf(destinations, capacity);
+			leftKinds = Arrays.copyOf(leftKinds, capacity);
+			leftValues = Arrays.copyOf(leftValues, capacity);
+			rightKinds = Arrays.copyOf(rightKinds, capacity);
+			rightValues = Arrays.copyOf(rightValues, capacity);
+		}
+		kinds[instructionCount] = kind;
+		operations[instructionCount] = operation;
+		destinations[instructionCount] = destination;
+		leftKinds[instructionCount] = leftKind;
+		leftValues[instructionCount] = leftValue;
+		rightKinds[instructionCount] = rightKind;
+		rightValues[instructionCount++] = rightValue;
+	}
+	/**
+	 * Computes the live intervals of the temporary variables of the lowered instructions and allocates them.
+	 */
+	private void allocate() {
+		if (starts.length < tempCount) {
+			starts = new int[2 * tempCount];
+			ends = new int[2 * tempCount];
+		}
+		Arrays.fill(starts, 0, tempCount, -1);
+		for (int i = 0; i < instructionCount; i++) {
+			if (leftKinds[i] == Token._tempvar && kinds[i] <= TEST)
+				ends[leftValues[i]] = i;
+			if (rightKinds[i] == Token._tempvar && kinds[i] == BINARY)
+				ends[rightValues[i]] = i;
+			if (kinds[i] <= MOVE && starts[destinations[i]] == -1)
+				starts[destinations[i]] = ends[destinations[i]] = i;
+		}
+		if (operandKinds[0] == Token._tempvar) // The result is used behind the instructions.
+			ends[operandValues[0]] = instructionCount;
+		allocator.allocate(starts, ends, tempCount);
+		spillSlots = Math.max(spillSlots, allocator.spillCount);
+	}
+	/**
+	 * Writes a binary operation.
+	 * @param type {@code Token._add}, {@code Token._sub}, {@code Token._mult} or {@code Token._div}
+	 * @param destination the operand of the result
+	 * @param left the left operand
+	 * @param right the right operand
+	 */
+	private void binary(int type, String destination, String left, String right) {
+		if (type == Token._div) {
+			instruction("movl", left, "%eax");
+			instruction("cltd");
+			if (right.startsWith("$")) { // idiv has no immediate operand.
+				instruction("movl", right, "%r11d");
+				right = "%r11d";
+			}
+			instruction("idivl", right);
+			instruction("movl", "%eax", destination);
+			return;
+		}
+		String operation = type == Token._add ? "addl" : type == Token._sub ? "subl" : "imull";
+		boolean register = !isMemory(destination); // The destination is never the register of an operand.
+		if (type == Token._mult && right.startsWith("$") && !left.startsWith("$")) {
+			if (register)
+				instruction("imull", right, left, destination);
+			else {
+				instruction("imull", right, left, "%eax");
+				instruction("movl", "%eax", destination);
+			}
+		} else if (register) {
+			instruction("movl", left, destination);
+			instruction(operation, right, destination);
+		} else {
+			instruction("movl", left, "%eax");
+			instruction(operation, right, "%eax");
+			instruction("movl", "%eax", destination);
+		}
+	}
+	/**
+	 * Writes a move between two operands.
+	 * @param source the source operand
+	 * @param destination the destination operand
+	 */
+	private void move(String source, String destination) {
+		if (source.equals(destination))
+			return;
+		if (isMemory(source) && isMemory(destination)) {
+			instruction("movl", source, "%eax");
+			source = "%eax";
+		}
+		instruction("movl", source, destination);
+	}
+	/**
+	 * Writes the comparison of an operand with 0.
+	 * @param operand the operand
+	 */
+	private void test(String operand) {
+		if (operand.startsWith("$")) {
+			instruction("movl", operand, "%eax");
+			operand = "%eax";
+		}
+		if (isMemory(operand))
+			instruction("cmpl", "$0", operand);
+		else
+			instruction("testl", operand, operand);
+	}
+	/**
+	 * Returns the assembly operand of an operand of a lowered instruction.
+	 * @param kind {@code Token._integer}, {@code Token._variable} or {@code Token._tempvar}
+	 * @param value the integer, the symbol id or the number of the temporary variable
+	 * @return the assembly operand
+	 */
+	private String operand(int kind, int value) {
+		switch (kind) {
+		case Token._integer: return "$" + value;
+		case Token._variable: return variable(value);
+		default: return temp(value);
+		}
+	}
+	/**
+	 * Returns the stack slot of a variable.
+	 * @param variable the symbol id of the variable
+	 * @return the assembly operand
+	 */
+	private static String variable(int variable) {
+		return "-" + 4L * (variable + 1) + "(%rbp)";
+	}
+	/**
+	 * Returns the register or the spill slot of a temporary variable.
+	 * @param temp the number of the temporary variable
+	 * @return the assembly operand
+	 */
+	private String temp(int temp) {
+		int location = allocator.locations[temp];
+		return location >= 0 ? REGISTERS[location] : 4L * (-1 - location) + "(%rsp)";
+	}
+	/**
+	 * Checks if an assembly operand is in memory.
+	 * @param operand the assembly operand
+	 * @return {@code true} if the operand is a stack slot
+	 */
+	private static boolean isMemory(String operand) {
+		return operand.endsWith(")");
+	}
+	/**
+	 * Appends an instruction to the body.
+	 * @param mnemonic the mnemonic of the instruction
+	 * @param operands the operands of the instruction
+	 */
+	private void instruction(String mnemonic, String... operands) {
+		body.append('\t').append(mnemonic);
+		for (int i = 0; i < operands.length; i++)
+			body.append(i == 0 ? "\t" : ", ").append(operands[i]);
+		body.append('\n');
+	}
+}
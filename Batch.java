@@ -0,0 +1,233 @@
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+/**
+ * Batch driver which translates many .my files into .ll files in parallel.
+ * <p>The inputs can be .my files, directories (every .my file under them is translated) or glob patterns such as {@code scripts/**.my}.
+ * The files are spread over a work-stealing {@link ForkJoinPool} which uses all of the available cores, and each .ll file is written next to its .my file,
+ * exactly as a single-file run of {@link Main} would write it.</p>
+ * @author Aral Dortogul
+ */
+public class Batch {
+	/**
+	 * the number of files a task translates itself instead of splitting them further
+	 */
+	private static final int THRESHOLD = 4;
+	/**
+	 * the translator of each worker thread
+	 */
+	private final ThreadLocal<Main> translator;
+	/**
+	 * the .my files to be translated
+	 */
+	private final List<Path> files;
+	/**
+	 * the extension of the output files (see {@link Options#extension()})
+	 */
+	private final String extension;
+	/**
+	 * the number of files translated without errors
+	 */
+	private final AtomicInteger translated = new AtomicInteger();
+	/**
+	 * the files which have syntax errors, with the line numbers of the errors
+	 */
+	private final ConcurrentLinkedQueue<String> syntaxErrors = new ConcurrentLinkedQueue<String>();
+	/**
+	 * the files which could not be read or written, with the reasons
+	 */
+	private final ConcurrentLinkedQueue<String> ioErrors = new ConcurrentLinkedQueue<String>();
+	/**
+	 * the files whose translation failed with an unexpected exception, with the exceptions
+	 */
+	private final ConcurrentLinkedQueue<String> failures = new ConcurrentLinkedQueue<String>();
+	/**
+	 * Translates every .my file denoted by the command line arguments and prints a summary.
+	 * <p>A directory or the directory prefix of a glob pattern which cannot be traversed is reported as an I/O error, and the other arguments are
+	 * still translated.</p>
+	 * @param args the options (see {@link Options}) followed by .my files, directories or glob patterns
+	 */
+	public static void main(String[] args) {
+		Options options = new Options();
+		int first;
+		try {
+			first = options.parse(args);
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			return;
+		}
+		List<Path> files = new ArrayList<Path>();
+		List<String> errors = new ArrayList<String>();
+		for (int i = first; i < args.length; i++)
+			collect(args[i], files, errors);
+		Batch batch = new Batch(files, options);
+		batch.ioErrors.addAll(errors);
+		long start = System.nanoTime();
+		batch.run(ForkJoinPool.commonPool());
+		batch.printSummary(System.nanoTime() - start);
+	}
+	/**
+	 * Constructs a batch of the given .my files.
+	 * @param files the .my files to be translated
+	 * @param options the options of the translators
+	 */
+	public Batch(List<Path> files, Options options) {
+		this.files = files;
+		this.extension = options.extension();
+		this.translator = ThreadLocal.withInitial(() -> new Main(options));
+	}
+	/**
+	 * Checks if the given argument is a glob pattern rather than a path.
+	 * @param arg the command line argument
+	 * @return {@code true} if the argument contains a glob metacharacter
+	 */
+	static boolean isPattern(String arg) {
+		for (int i = 0; i < arg.length(); i++)
+			switch (arg.charAt(i)) {
+			case '*': case '?': case '[': case '{': return true;
+			}
+		return false;
+	}
+	/**
+	 * Adds the .my files denoted by the given argument to the list.
+	 * <p>A glob pattern is matched against the files under its longest directory prefix which has no metacharacters.</p>
+	 * @param arg a .my file, a directory or a glob pattern
+	 * @param files the list which the files are added to
+	 * @param errors the list which the directories that cannot be traversed are added to, with the reasons
+	 */
+	static void collect(String arg, List<Path> files, List<String> errors) {
+		if (isPattern(arg)) {
+			int metacharacter = 0;
+			while (!isPattern(arg.substring(metacharacter, metacharacter + 1)))
+				metacharacter++;
+			int split = Math.max(arg.lastIndexOf('/', metacharacter), arg.lastIndexOf('\\', metacharacter)) + 1; // The end of the directory prefix
+			Path root = Paths.get(split == 0 ? "." : arg.substring(0, split));
+			String pattern = split == 0 ? root.resolve(arg).toString() : arg;
+			walk(root, FileSystems.getDefault().getPathMatcher("glob:" + pattern), files, errors);
+		} else {
+			Path path = Paths.get(arg);
+			if (Files.isDirectory(path))
+				walk(path, FileSystems.getDefault().getPathMatcher("glob:**.my"), files, errors);
+			else
+				files.add(path);
+		}
+	}
+	/**
+	 * Adds the regular files under the given directory that match the given matcher to the list. The directories and files which cannot be
+	 * read (including a missing root) are skipped and added to the errors.
+	 * @param root the directory to be traversed
+	 * @param matcher the matcher of the files
+	 * @param files the list which the files are added to
+	 * @param errors the list which the paths that cannot be read are added to, with the reasons
+	 */
+	private static void walk(Path root, PathMatcher matcher, List<Path> files, List<String> errors) {
+		try {
+			Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+				@Override
+				public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+					if (attributes.isRegularFile() && matcher.matches(file)) files.add(file);
+					return FileVisitResult.CONTINUE;
+				}
+				@Override
+				public FileVisitResult visitFileFailed(Path file, IOException e) {
+					errors.add(file + ": " + e);
+					return FileVisitResult.CONTINUE;
+				}
+			});
+		} catch (IOException e) {
+			errors.add(root + ": " + e);
+		}
+	}
+	/**
+	 * Translates all of the files of the batch in the given pool and waits until they are done.
+	 * @param pool the pool which runs the translations
+	 */
+	public void run(ForkJoinPool pool) {
+		pool.invoke(new Task(0, files.size()));
+	}
+	/**
+	 * Translates a single .my file into the .ll (or .s) file next to it and records the result. An unexpected exception is recorded as a
+	 * failure of the file, and the worker continues with a new translator.
+	 * @param file the .my file
+	 */
+	private void translate(Path file) {
+		String name = file.toString();
+		int dot = name.lastIndexOf('.');
+		Path output_file = Paths.get((dot > name.lastIndexOf(file.getFileSystem().getSeparator()) ? name.substring(0, dot) : name).concat(extension));
+		Main main = translator.get();
+		try {
+			if (main.compile(file, output_file))
+				translated.incrementAndGet();
+			else
+				syntaxErrors.add(file + ": line " + main.getLineCount() + ": syntax error");
+		} catch (IOException e) {
+			ioErrors.add(file + ": " + e);
+		} catch (RuntimeException e) {
+			failures.add(file + ": " + e);
+			translator.remove(); // The translator may be left in the middle of the file.
+		}
+	}
+	/**
+	 * Prints the number of translated files, the throughput and the errors.
+	 * @param elapsed the elapsed time of the batch in nanoseconds
+	 */
+	public void printSummary(long elapsed) {
+		for (String error : syntaxErrors)
+			System.err.println(error);
+		for (String error : ioErrors)
+			System.err.println(error);
+		for (String failure : failures)
+			System.err.println(failure);
+		double seconds = elapsed / 1e9;
+		System.out.printf("%d files in %.3f s (%.1f files/s): %d translated, %d syntax errors, %d I/O errors, %d failures%n",
+				files.size(), seconds, seconds > 0 ? files.size() / seconds : 0.0, translated.get(), syntaxErrors.size(), ioErrors.size(), failures.size());
+	}
+	/**
+	 * A task which translates a range of the batch's files, splitting it in halves so that idle workers can steal them.
+	 */
+	private class Task extends RecursiveAction {
+		/**
+		 * Serial version UID for this task
+		 */
+		private static final long serialVersionUID = 1L;
+		/**
+		 * the first file of the range (inclusive)
+		 */
+		private final int lower;
+		/**
+		 * the last file of the range (exclusive)
+		 */
+		private final int upper;
+		/**
+		 * Constructs a task for the files in the given range.
+		 * @param lower the first file of the range (inclusive)
+		 * @param upper the last file of the range (exclusive)
+		 */
+		Task(int lower, int upper) {
+			this.lower = lower;
+			this.upper = upper;
+		}
+		@Override
+		protected void compute() {
+			if (upper - lower <= THRESHOLD) {
+				for (int i = lower; i < upper; i++)
+					translate(files.get(i));
+			} else {
+				int middle = (lower + upper) >>> 1;
+				invokeAll(new Task(lower, middle), new Task(middle, upper));
+			}
+		}
+	}
+}
@@ -0,0 +1,567 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+/**
+ * Reader of the bitcode of {@link BitcodeWriter}, which decodes it into legacy typed-pointer LLVM-IR code in the format of {@link Main}.
+ * <p>The reader supports the unabbreviated records and the blocks which {@link BitcodeWriter} writes. It is the check of the writer: the
+ * LLVM-IR code of a script and the decoded bitcode of that code consist of the same lines, apart from the comments and the blank lines.</p>
+ * @author Aral Dortogul
+ */
+public class BitcodeReader {
+	/**
+	 * the bytes of the bitcode
+	 */
+	private final byte[] bytes;
+	/**
+	 * the position in the bitcode in bits
+	 */
+	private long position;
+	/**
+	 * the names of the types
+	 */
+	private ArrayList<String> typeNames = new ArrayList<String>();
+	/**
+	 * the records of the types
+	 */
+	private ArrayList<long[]> typeRecords = new ArrayList<long[]>();
+	/**
+	 * the text of each value (its name with {@code %} or {@code @}, or the constant), by value id
+	 */
+	private ArrayList<String> values = new ArrayList<String>();
+	/**
+	 * the type of each value, by value id
+	 */
+	private ArrayList<Integer> valueTypes = new ArrayList<Integer>();
+	/**
+	 * the names of the values of the current function, by value id
+	 */
+	private HashMap<Integer, String> names = new HashMap<Integer, String>();
+	/**
+	 * the types of the forward references of the current instruction, by value id
+	 */
+	private HashMap<Integer, Integer> forwardTypes = new HashMap<Integer, Integer>();
+	/**
+	 * the decoded LLVM-IR code
+	 */
+	private StringBuilder ir = new StringBuilder();
+	/**
+	 * A block of the bitcode: its records and its nested blocks, in the order of the bitcode.
+	 */
+	private static class Block {
+		/**
+		 * the id of the block
+		 */
+		final int id;
+		/**
+		 * the records of the block, each with its code first
+		 */
+		final ArrayList<long[]> records = new ArrayList<long[]>();
+		/**
+		 * the nested blocks
+		 */
+		final ArrayList<Block> blocks = new ArrayList<Block>();
+		/**
+		 * Constructs an empty block.
+		 * @param id the id of the block
+		 */
+		Block(int id) {
+			this.id = id;
+		}
+		/**
+		 * Returns the first nested block with the given id.
+		 * @param id the id
+		 * @return the block, {@code null} if there is none
+		 */
+		Block block(int id) {
+			for (Block block : blocks)
+				if (block.id == id)
+					return block;
+			return null;
+		}
+	}
+	/**
+	 * Prints the LLVM-IR code of a bitcode file.
+	 * @param args the path of the .bc file
+	 * @throws IOException when the file cannot be read
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length != 1) {
+			System.err.println("usage: java BitcodeReader FILE.bc");
+			return;
+		}
+		System.out.print(disassemble(Files.readAllBytes(Paths.get(args[0]))));
+	}
+	/**
+	 * Decodes bitcode into LLVM-IR code.
+	 * @param bitcode the bitcode
+	 * @return the LLVM-IR code
+	 * @throws IllegalArgumentException when the bitcode is malformed or not supported
+	 */
+	public static String disassemble(byte[] bitcode) {
+		return new BitcodeReader(bitcode).module();
+	}
+	/**
+	 * Constructs a reader of bitcode.
+	 * @param bytes the bitcode
+	 */
+	private BitcodeReader(byte[] bytes) {
+		this.bytes = bytes;
+	}
+	/**
+	 * Decodes the module of the bitcode.
+	 * @return the LLVM-IR code
+	 */
+	private String module() {
+		if (bytes.length < 4 || read(8) != 'B' || read(8) != 'C' || read(4) != 0x0 || read(4) != 0xC || read(4) != 0xE || read(4) != 0xD)
+			throw malformed("no bitcode magic");
+		if (read(2) != 1)
+			throw malformed("no module block");
+		Block module = block();
+		if (module.id != BitcodeWriter.MODULE_BLOCK)
+			throw malformed("no module block");
+		Block types = module.block(BitcodeWriter.TYPE_BLOCK);
+		if (types != null)
+			for (long[] record : types.records)
+				type(record);
+		ArrayList<long[]> globals = new ArrayList<long[]>(), functions = new ArrayList<long[]>();
+		for (long[] record : module.records) {
+			if (record[0] == BitcodeWriter.MODULE_GLOBALVAR) {
+				globals.add(record);
+				value(null, pointer((int) record[1]));
+			} else if (record[0] == BitcodeWriter.MODULE_FUNCTION) {
+				functions.add(record);
+				value(null, pointer((int) record[1]));
+			} else if (record[0] != BitcodeWriter.MODULE_VERSION || record[1] != 1)
+				throw malformed("unsupported module record " + record[0]);
+		}
+		Block constants = module.block(BitcodeWriter.CONSTANTS_BLOCK);
+		if (constants != null)
+			constants(constants);
+		Block symbols = module.block(BitcodeWriter.VALUE_SYMTAB_BLOCK);
+		if (symbols != null)
+			for (long[] record : symbols.records)
+				values.set((int) record[1], "@" + name(record, 2));
+		ir.append("; ModuleID = 'mylang2ir'\n");
+		for (int i = 0; i < functions.size(); i++)
+			if (functions.get(i)[3] != 0)
+				ir.append("declare ").append(signature(globals.size() + i)).append('\n');
+		for (int i = 0; i < globals.size(); i++) {
+			long[] global = globals.get(i);
+			ir.append(values.get(i)).append(" = ").append((global[2] & 1) != 0 ? "constant " : "global ").append(typeNames.get((int) global[1]));
+			ir.append(' ').append(values.get((int) global[3] - 1)).append('\n');
+		}
+		int body = 0;
+		for (int i = 0; i < functions.size(); i++)
+			if (functions.get(i)[3] == 0) {
+				for (; body < module.blocks.size() && module.blocks.get(body).id != BitcodeWriter.FUNCTION_BLOCK; body++)
+					;
+				if (body == module.blocks.size())
+					throw malformed("missing function body");
+				ir.append("\ndefine ").append(signature(globals.size() + i)).append(" {\n");
+				function(module.blocks.get(body++));
+				ir.append("}\n");
+			}
+		return ir.toString();
+	}
+	/**
+	 * Returns the return type, the name and the parameter types of a function, as they are written in its declaration or definition.
+	 * @param function the value id of the function
+	 * @return the signature
+	 */
+	private String signature(int function) {
+		long[] type = typeRecords.get((int) typeRecords.get(valueTypes.get(function))[1]);
+		StringBuilder signature = new StringBuilder(typeNames.get((int) type[2])).append(' ').append(values.get(function)).append('(');
+		for (int i = 3; i < type.length; i++)
+			signature.append(i > 3 ? ", " : "").append(typeNames.get((int) type[i]));
+		return signature.append(type[1] != 0 ? (type.length > 3 ? ", ...)" : "...)") : ")").toString();
+	}
+	/**
+	 * Adds a type of the type table.
+	 * @param record the type record
+	 */
+	private void type(long[] record) {
+		switch ((int) record[0]) {
+		case BitcodeWriter.TYPE_NUMENTRY:
+			return;
+		case BitcodeWriter.TYPE_VOID:
+			typeNames.add("void");
+			break;
+		case BitcodeWriter.TYPE_LABEL:
+			typeNames.add("label");
+			break;
+		case BitcodeWriter.TYPE_INTEGER:
+			typeNames.add("i" + record[1]);
+			break;
+		case BitcodeWriter.TYPE_POINTER:
+			typeNames.add(typeNames.get((int) record[1]) + "*");
+			break;
+		case BitcodeWriter.TYPE_ARRAY:
+			typeNames.add("[" + record[1] + " x " + typeNames.get((int) record[2]) + "]");
+			break;
+		case BitcodeWriter.TYPE_FUNCTION:
+			StringBuilder name = new StringBuilder(typeNames.get((int) record[2])).append(" (");
+			for (int i = 3; i < record.length; i++)
+				name.append(i > 3 ? ", " : "").append(typeNames.get((int) record[i]));
+			typeNames.add(name.append(record[1] != 0 ? (record.length > 3 ? ", ...)" : "...)") : ")").toString());
+			break;
+		default:
+			throw malformed("unsupported type record " + record[0]);
+		}
+		typeRecords.add(record);
+	}
+	/**
+	 * Returns the id of the pointer type to a type.
+	 * @param element the type of the pointed values
+	 * @return the id of the pointer type
+	 */
+	private int pointer(int element) {
+		int type = typeNames.indexOf(typeNames.get(element) + "*");
+		if (type == -1)
+			throw malformed("missing pointer type of " + typeNames.get(element));
+		return type;
+	}
+	/**
+	 * Adds the next value.
+	 * @param text the text of the value, {@code null} until it is named
+	 * @param type the type of the value
+	 */
+	private void value(String text, int type) {
+		values.add(text);
+		valueTypes.add(type);
+	}
+	/**
+	 * Adds the values of a constants block.
+	 * @param block the constants block
+	 */
+	private void constants(Block block) {
+		int type = -1;
+		for (long[] record : block.records)
+			switch ((int) record[0]) {
+			case BitcodeWriter.CONSTANT_SETTYPE:
+				type = (int) record[1];
+				break;
+			case BitcodeWriter.CONSTANT_INTEGER:
+				long value = (record[1] & 1) == 0 ? record[1] >>> 1 : -(record[1] >>> 1);
+				value(typeNames.get(type).equals("i1") ? (value != 0 ? "true" : "false") : Long.toString(value), type);
+				break;
+			case BitcodeWriter.CONSTANT_CSTRING:
+				StringBuilder string = new StringBuilder("c\"");
+				for (int i = 1; i <= record.length; i++) {
+					int c = i < record.length ? (int) record[i] : 0;
+					if (c >= 0x20 && c < 0x7F && c != '"' && c != '\\')
+						string.append((char) c);
+					else
+						string.append('\\').append(Character.toUpperCase(Character.forDigit(c >> 4, 16))).append(Character.toUpperCase(Character.forDigit(c & 15, 16)));
+				}
+				value(string.append('"').toString(), type);
+				break;
+			case BitcodeWriter.CONSTANT_GEP:
+				StringBuilder expression = new StringBuilder("getelementptr (");
+				int element = (int) record[2];
+				for (int i = 2; i + 1 < record.length; i += 2) {
+					expression.append(i > 2 ? ", " : "").append(typeNames.get((int) record[i])).append(' ').append(values.get((int) record[i + 1]));
+					if (i > 2)
+						element = (int) typeRecords.get(element)[typeRecords.get(element)[0] == BitcodeWriter.TYPE_POINTER ? 1 : 2];
+				}
+				value(expression.append(')').toString(), pointer(element));
+				if (typeRecords.get((int) record[2])[0] != BitcodeWriter.TYPE_POINTER || typeRecords.get((int) record[2])[1] != record[1])
+					throw malformed("unsupported getelementptr source type");
+				break;
+			default:
+				throw malformed("unsupported constant record " + record[0]);
+			}
+	}
+	/**
+	 * Decodes the body of a function.
+	 * @param block the function block
+	 */
+	private void function(Block block) {
+		int moduleValues = values.size();
+		Block constants = block.block(BitcodeWriter.CONSTANTS_BLOCK);
+		if (constants != null)
+			constants(constants);
+		names.clear();
+		String[] labels = new String[1];
+		for (long[] record : block.records)
+			if (record[0] == BitcodeWriter.FUNCTION_BLOCKS)
+				labels = new String[(int) record[1]];
+		Block symbols = block.block(BitcodeWriter.VALUE_SYMTAB_BLOCK);
+		if (symbols != null)
+			for (long[] record : symbols.records)
+				if (record[0] == BitcodeWriter.SYMTAB_ENTRY)
+					names.put((int) record[1], "%" + name(record, 2));
+				else
+					labels[(int) record[1]] = name(record, 2);
+		int blockIndex = 0;
+		boolean blockStart = true;
+		for (long[] record : block.records) {
+			if (record[0] == BitcodeWriter.FUNCTION_BLOCKS)
+				continue;
+			if (blockStart && labels[blockIndex] != null)
+				ir.append(labels[blockIndex]).append(":\n");
+			blockStart = false;
+			int id = values.size();
+			String result = names.get(id);
+			int resultType = instruction(record, id, result, labels);
+			if (resultType != -1)
+				value(result, resultType);
+			if (record[0] == BitcodeWriter.INSTRUCTION_BR || record[0] == BitcodeWriter.INSTRUCTION_RET) {
+				blockIndex++;
+				blockStart = true;
+			}
+		}
+		values.subList(moduleValues, values.size()).clear();
+		valueTypes.subList(moduleValues, valueTypes.size()).clear();
+	}
+	/**
+	 * Decodes an instruction.
+	 * @param record the instruction record
+	 * @param id the value id of the instruction
+	 * @param result the name of the value of the instruction, {@code null} if it is unnamed
+	 * @param labels the names of the basic blocks
+	 * @return the type of the value of the instruction, -1 if it has none
+	 */
+	private int instruction(long[] record, int id, String result, String[] labels) {
+		StringBuilder line = new StringBuilder();
+		forwardTypes.clear();
+		int[] next = {1};
+		int type = -1;
+		switch ((int) record[0]) {
+		case BitcodeWriter.INSTRUCTION_BINARY: {
+			int left = operand(record, next, id, true);
+			int right = operand(record, next, id, false);
+			type = operandType(record, left, id);
+			line.append(BitcodeWriter.BINARY_OPERATIONS[(int) record[next[0]]]).append(' ').append(typeNames.get(type)).append(' ');
+			line.append(text(left, record)).append(", ").append(text(right, record));
+			break;
+		}
+		case BitcodeWriter.INSTRUCTION_CMP: {
+			int left = operand(record, next, id, true);
+			int right = operand(record, next, id, false);
+			line.append("icmp ").append(BitcodeWriter.PREDICATES[(int) record[next[0]] - BitcodeWriter.FIRST_PREDICATE]).append(' ');
+			line.append(typeNames.get(operandType(record, left, id))).append(' ').append(text(left, record)).append(", ").append(text(right, record));
+			type = typeNames.indexOf("i1");
+			break;
+		}
+		case BitcodeWriter.INSTRUCTION_CAST: {
+			int value = operand(record, next, id, true);
+			type = (int) record[next[0]];
+			line.append(BitcodeWriter.CASTS[(int) record[next[0] + 1]]).append(' ').append(typeNames.get(operandType(record, value, id))).append(' ');
+			line.append(text(value, record)).append(" to ").append(typeNames.get(type));
+			break;
+		}
+		case BitcodeWriter.INSTRUCTION_SELECT: {
+			int taken = operand(record, next, id, true);
+			int other = operand(record, next, id, false);
+			int condition = operand(record, next, id, true);
+			type = operandType(record, taken, id);
+			line.append("select ").append(typeNames.get(operandType(record, condition, id))).append(' ').append(text(condition, record));
+			line.append(", ").append(typeNames.get(type)).append(' ').append(text(taken, record));
+			line.append(", ").append(typeNames.get(type)).append(' ').append(text(other, record));
+			break;
+		}
+		case BitcodeWriter.INSTRUCTION_RET:
+			if (record.length == 1)
+				line.append("ret void");
+			else {
+				int value = operand(record, next, id, true);
+				line.append("ret ").append(typeNames.get(operandType(record, value, id))).append(' ').append(text(value, record));
+			}
+			break;
+		case BitcodeWriter.INSTRUCTION_BR:
+			if (record.length == 2)
+				line.append("br label %").append(labels[(int) record[1]]);
+			else {
+				int condition = (int) (id - record[3]);
+				line.append("br i1 ").append(text(condition, record)).append(", label %").append(labels[(int) record[1]]);
+				line.append(", label %").append(labels[(int) record[2]]);
+			}
+			break;
+		case BitcodeWriter.INSTRUCTION_PHI:
+			type = (int) record[1];
+			line.append("phi ").append(typeNames.get(type)).append(' ');
+			for (int i = 2; i + 1 < record.length; i += 2) {
+				long relative = (record[i] & 1) == 0 ? record[i] >>> 1 : -(record[i] >>> 1);
+				line.append(i > 2 ? ", [ " : "[ ").append(text((int) (id - relative), record)).append(", %").append(labels[(int) record[i + 1]]).append(" ]");
+			}
+			break;
+		case BitcodeWriter.INSTRUCTION_ALLOCA:
+			if ((record[4] & BitcodeWriter.ALLOCA_EXPLICIT_TYPE) == 0 || !values.get((int) record[3]).equals("1"))
+				throw malformed("unsupported alloca");
+			line.append("alloca ").append(typeNames.get((int) record[1]));
+			type = pointer((int) record[1]);
+			break;
+		case BitcodeWriter.INSTRUCTION_LOAD: {
+			int pointer = operand(record, next, id, true);
+			type = (int) record[next[0]];
+			line.append("load ").append(typeNames.get(operandType(record, pointer, id))).append(' ').append(text(pointer, record));
+			break;
+		}
+		case BitcodeWriter.INSTRUCTION_STORE: {
+			int pointer = operand(record, next, id, true);
+			int pointerType = operandType(record, pointer, id);
+			int value = operand(record, next, id, true);
+			line.append("store ").append(typeNames.get(operandType(record, value, id))).append(' ').append(text(value, record));
+			line.append(", ").append(typeNames.get(pointerType)).append(' ').append(text(pointer, record));
+			break;
+		}
+		case BitcodeWriter.INSTRUCTION_CALL: {
+			if ((record[2] & BitcodeWriter.CALL_EXPLICIT_TYPE) == 0)
+				throw malformed("unsupported call");
+			long[] function = typeRecords.get((int) record[3]);
+			next[0] = 4;
+			int callee = operand(record, next, id, true);
+			line.append("call ").append(typeNames.get(operandType(record, callee, id))).append(' ').append(text(callee, record)).append('(');
+			for (int argument = 0; next[0] < record.length; argument++) {
+				int value;
+				String argumentType;
+				if (argument < function.length - 3) {
+					value = (int) (id - record[next[0]++]);
+					argumentType = typeNames.get((int) function[argument + 3]);
+				} else {
+					value = operand(record, next, id, true);
+					argumentType = typeNames.get(operandType(record, value, id));
+				}
+				line.append(argument > 0 ? ", " : "").append(argumentType).append(' ').append(text(value, record));
+			}
+			line.append(" )");
+			type = typeNames.get((int) function[2]).equals("void") ? -1 : (int) function[2];
+			break;
+		}
+		default:
+			throw malformed("unsupported instruction record " + record[0]);
+		}
+		ir.append('\t');
+		if (type != -1 && result != null)
+			ir.append(result).append(" = ");
+		ir.append(line).append('\n');
+		return type;
+	}
+	/**
+	 * Reads a relative value id of an instruction record, and skips the type behind it if it is a forward reference with a type.
+	 * @param record the instruction record
+	 * @param next the index of the operand, which is advanced
+	 * @param id the value id of the instruction
+	 * @param typed {@code true} if a forward reference is followed by its type
+	 * @return the value id
+	 */
+	private int operand(long[] record, int[] next, int id, boolean typed) {
+		int value = (int) (id - record[next[0]++]);
+		if (typed && value >= id)
+			forwardTypes.put(value, (int) record[next[0]++]);
+		return value;
+	}
+	/**
+	 * Returns the type of an operand.
+	 * @param record the instruction record
+	 * @param value the value id of the operand
+	 * @param id the value id of the instruction
+	 * @return the type
+	 */
+	private int operandType(long[] record, int value, int id) {
+		if (value < id)
+			return valueTypes.get(value);
+		Integer type = forwardTypes.get(value);
+		if (type == null)
+			throw malformed("untyped forward reference in record " + record[0]);
+		return type;
+	}
+	/**
+	 * Returns the text of an operand.
+	 * @param value the value id of the operand
+	 * @param record the instruction record
+	 * @return the text
+	 */
+	private String text(int value, long[] record) {
+		String text = value < values.size() ? values.get(value) : names.get(value);
+		if (text == null)
+			throw malformed("unnamed operand " + value + " in record " + record[0]);
+		return text;
+	}
+	/**
+	 * Returns the name in the characters of a symbol table record.
+	 * @param record the record
+	 * @param first the index of the first character
+	 * @return the name
+	 */
+	private static String name(long[] record, int first) {
+		StringBuilder name = new StringBuilder();
+		for (int i = first; i < record.length; i++)
+			name.append((char) record[i]);
+		return name.toString();
+	}
+	/**
+	 * Reads a block behind its ENTER_SUBBLOCK abbreviation id.
+	 * @return the block
+	 */
+	private Block block() {
+		Block block = new Block((int) vbr(8));
+		int width = (int) vbr(4);
+		align();
+		long end = position + 32 + 32 * read(32);
+		for (;;) {
+			int abbreviation = (int) read(width);
+			if (abbreviation == 0) { // END_BLOCK
+				align();
+				if (position != end)
+					throw malformed("wrong block length");
+				return block;
+			} else if (abbreviation == 1)
+				block.blocks.add(block());
+			else if (abbreviation == 3) {
+				long code = vbr(6);
+				int count = (int) vbr(6);
+				long[] record = new long[count + 1];
+				record[0] = code;
+				for (int i = 1; i <= count; i++)
+					record[i] = vbr(6);
+				block.records.add(record);
+			} else
+				throw malformed("unsupported abbreviation id " + abbreviation);
+		}
+	}
+	/**
+	 * Reads a number in variable bit rate encoding.
+	 * @param width the width of a chunk
+	 * @return the number
+	 */
+	private long vbr(int width) {
+		long value = 0, chunk;
+		int shift = 0;
+		do {
+			chunk = read(width);
+			value |= (chunk & ((1L << (width - 1)) - 1)) << shift;
+			shift += width - 1;
+		} while ((chunk & (1L << (width - 1))) != 0 && shift < 64);
+		return value;
+	}
+	/**
+	 * Reads bits, the least significant bit first.
+	 * @param width the number of bits (at most 32)
+	 * @return the bits
+	 */
+	private long read(int width) {
+		if (position + width > 8L * bytes.length)
+			throw malformed("unexpected end");
+		long value = 0;
+		for (int i = 0; i < width; i++, position++)
+			value |= (long) ((bytes[(int) (position >>> 3)] >>> (position & 7)) & 1) << i;
+		return value;
+	}
+	/**
+	 * Skips the bits up to a multiple of 32 bits.
+	 */
+	private void align() {
+		position = (position + 31) & ~31L;
+	}
+	/**
+	 * Creates the exception of malformed or unsupported bitcode.
+	 * @param message the description of the problem
+	 * @return the exception
+	 */
+	private IllegalArgumentException malformed(String message) {
+		return new IllegalArgumentException("bitcode: " + message + " at bit " + position);
+	}
+}
@@ -0,0 +1,1227 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+/**
+ * Writer of LLVM bitcode for the LLVM-IR code of the translator, the output stage of {@link Options#bitcode} next to the textual LLVM-IR code.
+ * <p>The writer encodes the legacy typed-pointer LLVM-IR code which {@link Main} writes: the global string constants, the declarations of
+ * external functions and the definitions with {@code alloca}, {@code load}, {@code store}, the binary operations, {@code icmp}, {@code br},
+ * {@code call}, {@code ret}, {@code phi}, {@code select} and the integer casts, and {@code getelementptr} constant expressions. Other
+ * LLVM-IR code is rejected with an {@link IllegalArgumentException}.</p>
+ * <p>The bitcode has module version 1: the operands of the instructions are relative value ids and the names are in value symbol tables. All of
+ * the records are unabbreviated. Each function is read twice: the first pass collects its types, constants, values and basic blocks, so that
+ * the type table and the constants are written in front of the instructions, and the second pass writes the instructions.
+ * {@link BitcodeReader} decodes the bitcode into LLVM-IR code again, which {@link #main(String[])} compares with the text.</p>
+ * @author Aral Dortogul
+ */
+public class BitcodeWriter {
+	/**
+	 * the 4-bit fields of the magic number behind 'B', in the order of the bitcode ('C' is written as 0x3, 0x4)
+	 */
+	private static final int[] MAGIC = {0x3, 0x4, 0x0, 0xC, 0xE, 0xD};
+	/**
+	 * the first 8 bytes of a module of this writer, as LLVM encodes them: the magic number {@code 42 43 C0 DE}, then ENTER_SUBBLOCK (abbreviation id 1
+	 * in 2 bits) of the module block (id 8 in vbr8) with 3-bit abbreviation ids (vbr4), aligned to 32 bits ({@code 21 0C 00 00})
+	 */
+	public static final byte[] HEADER = {0x42, 0x43, (byte) 0xC0, (byte) 0xDE, 0x21, 0x0C, 0x00, 0x00};
+	/**
+	 * the id of the module block
+	 */
+	public static final int MODULE_BLOCK = 8;
+	/**
+	 * the id of a constants block
+	 */
+	public static final int CONSTANTS_BLOCK = 11;
+	/**
+	 * the id of a function block
+	 */
+	public static final int FUNCTION_BLOCK = 12;
+	/**
+	 * the id of a value symbol table block
+	 */
+	public static final int VALUE_SYMTAB_BLOCK = 14;
+	/**
+	 * the id of the type table block
+	 */
+	public static final int TYPE_BLOCK = 17;
+	/**
+	 * the module record of the bitcode version: [version]
+	 */
+	public static final int MODULE_VERSION = 1;
+	/**
+	 * the module record of a global variable: [type, constant | explicit type, initializer id + 1, linkage, alignment, section]
+	 */
+	public static final int MODULE_GLOBALVAR = 7;
+	/**
+	 * the module record of a function: [function type, calling convention, declaration, linkage, attributes, alignment, section, visibility]
+	 */
+	public static final int MODULE_FUNCTION = 8;
+	/**
+	 * the type record of the number of types: [count]
+	 */
+	public static final int TYPE_NUMENTRY = 1;
+	/**
+	 * the type record of {@code void}
+	 */
+	public static final int TYPE_VOID = 2;
+	/**
+	 * the type record of {@code label}
+	 */
+	public static final int TYPE_LABEL = 5;
+	/**
+	 * the type record of an integer type: [width]
+	 */
+	public static final int TYPE_INTEGER = 7;
+	/**
+	 * the type record of a typed pointer: [element type, address space]
+	 */
+	public static final int TYPE_POINTER = 8;
+	/**
+	 * the type record of an array type: [length, element type]
+	 */
+	public static final int TYPE_ARRAY = 11;
+	/**
+	 * the type record of a function type: [variadic, return type, parameter types...]
+	 */
+	public static final int TYPE_FUNCTION = 21;
+	/**
+	 * the constant record which sets the type of the following constants: [type]
+	 */
+	public static final int CONSTANT_SETTYPE = 1;
+	/**
+	 * the constant record of an integer: [signed value]
+	 */
+	public static final int CONSTANT_INTEGER = 4;
+	/**
+	 * the constant record of a string with an implicit terminating 0: [characters...]
+	 */
+	public static final int CONSTANT_CSTRING = 9;
+	/**
+	 * the constant record of a {@code getelementptr} expression: [source element type, (type, value id)...]
+	 */
+	public static final int CONSTANT_GEP = 12;
+	/**
+	 * the symbol table record of a named value: [value id, characters...]
+	 */
+	public static final int SYMTAB_ENTRY = 1;
+	/**
+	 * the symbol table record of a named basic block: [block index, characters...]
+	 */
+	public static final int SYMTAB_BLOCK = 2;
+	/**
+	 * the function record of the number of basic blocks: [count]
+	 */
+	public static final int FUNCTION_BLOCKS = 1;
+	/**
+	 * the instruction record of a binary operation: [left, right, opcode]
+	 */
+	public static final int INSTRUCTION_BINARY = 2;
+	/**
+	 * the instruction record of a cast: [operand, type, opcode]
+	 */
+	public static final int INSTRUCTION_CAST = 3;
+	/**
+	 * the instruction record of {@code ret}: [value] or []
+	 */
+	public static final int INSTRUCTION_RET = 10;
+	/**
+	 * the instruction record of {@code br}: [target] or [true target, false target, condition]
+	 */
+	public static final int INSTRUCTION_BR = 11;
+	/**
+	 * the instruction record of {@code phi}: [type, (signed value, block)...]
+	 */
+	public static final int INSTRUCTION_PHI = 16;
+	/**
+	 * the instruction record of {@code alloca}: [type, size type, size id, alignment | explicit type]
+	 */
+	public static final int INSTRUCTION_ALLOCA = 19;
+	/**
+	 * the instruction record of {@code load}: [pointer, type, alignment, volatile]
+	 */
+	public static final int INSTRUCTION_LOAD = 20;
+	/**
+	 * the instruction record of {@code icmp}: [left, right, predicate]
+	 */
+	public static final int INSTRUCTION_CMP = 28;
+	/**
+	 * the instruction record of {@code select}: [true value, false value, condition]
+	 */
+	public static final int INSTRUCTION_SELECT = 29;
+	/**
+	 * the instruction record of {@code call}: [attributes, calling convention | explicit type, function type, callee, arguments...]
+	 */
+	public static final int INSTRUCTION_CALL = 34;
+	/**
+	 * the instruction record of {@code store}: [pointer, value, alignment, volatile]
+	 */
+	public static final int INSTRUCTION_STORE = 44;
+	/**
+	 * the flag of the explicit type in the alignment of an {@code alloca} record
+	 */
+	public static final int ALLOCA_EXPLICIT_TYPE = 1 << 6;
+	/**
+	 * the flag of the explicit function type in the calling convention of a {@code call} record
+	 */
+	public static final int CALL_EXPLICIT_TYPE = 1 << 15;
+	/**
+	 * the binary operations, by their opcodes in the bitcode
+	 */
+	public static final String[] BINARY_OPERATIONS = {"add", "sub", "mul", "udiv", "sdiv", "urem", "srem", "shl", "lshr", "ashr", "and", "or", "xor"};
+	/**
+	 * the casts, by their opcodes in the bitcode
+	 */
+	public static final String[] CASTS = {"trunc", "zext", "sext"};
+	/**
+	 * the {@code icmp} predicates, by their codes in the bitcode minus {@link #FIRST_PREDICATE}
+	 */
+	public static final String[] PREDICATES = {"eq", "ne", "ugt", "uge", "ult", "ule", "sgt", "sge", "slt", "sle"};
+	/**
+	 * the code of the {@code eq} predicate
+	 */
+	public static final int FIRST_PREDICATE = 32;
+	/**
+	 * the names of the types
+	 */
+	private ArrayList<String> typeNames = new ArrayList<String>();
+	/**
+	 * the records of the types (the code followed by the operands)
+	 */
+	private ArrayList<long[]> typeRecords = new ArrayList<long[]>();
+	/**
+	 * the id of each type, by its name
+	 */
+	private HashMap<String, Integer> typeIds = new HashMap<String, Integer>();
+	/**
+	 * the names of the global variables
+	 */
+	private ArrayList<String> globals = new ArrayList<String>();
+	/**
+	 * the type of each global variable
+	 */
+	private ArrayList<Integer> globalTypes = new ArrayList<Integer>();
+	/**
+	 * {@code true} for each global constant
+	 */
+	private ArrayList<Boolean> globalConstants = new ArrayList<Boolean>();
+	/**
+	 * the bytes of the string of each global variable, without the terminating 0
+	 */
+	private ArrayList<byte[]> globalStrings = new ArrayList<byte[]>();
+	/**
+	 * the functions of the module
+	 */
+	private ArrayList<Function> functions = new ArrayList<Function>();
+	/**
+	 * the value id of each global variable and function, by its name
+	 */
+	private HashMap<String, Integer> globalIds = new HashMap<String, Integer>();
+	/**
+	 * the line being read
+	 */
+	private String text;
+	/**
+	 * the position in {@link #text}
+	 */
+	private int position;
+	/**
+	 * the function being read
+	 */
+	private Function function;
+	/**
+	 * {@code true} in the second pass over a function, which writes its instructions
+	 */
+	private boolean writing;
+	/**
+	 * the value id of the instruction being written
+	 */
+	private int instructionId;
+	/**
+	 * the bytes of the bitcode
+	 */
+	private byte[] bytes = new byte[4096];
+	/**
+	 * the number of complete bytes of the bitcode
+	 */
+	private int length;
+	/**
+	 * the bits behind the complete bytes
+	 */
+	private long bits;
+	/**
+	 * the number of bits in {@link #bits}
+	 */
+	private int bitCount;
+	/**
+	 * the width of the abbreviation ids in the current block
+	 */
+	private int abbreviationWidth;
+	/**
+	 * the abbreviation widths of the enclosing blocks
+	 */
+	private int[] outerWidths = new int[8];
+	/**
+	 * the positions of the length words of the open blocks
+	 */
+	private int[] lengthPositions = new int[8];
+	/**
+	 * the number of open blocks
+	 */
+	private int depth;
+	/**
+	 * the operands of the record being written
+	 */
+	private long[] operands = new long[64];
+	/**
+	 * the number of operands of the record being written
+	 */
+	private int operandCount;
+	/**
+	 * A function of the module.
+	 */
+	private class Function {
+		/**
+		 * the name of the function
+		 */
+		String name;
+		/**
+		 * the function type of the function
+		 */
+		int type;
+		/**
+		 * the index of the first line of the body, -1 for a declaration
+		 */
+		int first = -1;
+		/**
+		 * the index of the line behind the body
+		 */
+		int end;
+		/**
+		 * the number of each value of the function, by its name (the value ids follow the constants)
+		 */
+		HashMap<String, Integer> values = new HashMap<String, Integer>();
+		/**
+		 * the type of each value of the function, by its name
+		 */
+		HashMap<String, Integer> valueTypes = new HashMap<String, Integer>();
+		/**
+		 * the number of instructions which produce a value
+		 */
+		int valueCount;
+		/**
+		 * the index of each basic block, by its name
+		 */
+		HashMap<String, Integer> blocks = new HashMap<String, Integer>();
+		/**
+		 * the name of each basic block ({@code null} for an unnamed entry block)
+		 */
+		ArrayList<String> blockNames = new ArrayList<String>();
+		/**
+		 * the index of each integer constant, by its type and its value
+		 */
+		HashMap<String, Integer> integers = new HashMap<String, Integer>();
+		/**
+		 * the type of each integer constant
+		 */
+		ArrayList<Integer> integerTypes = new ArrayList<Integer>();
+		/**
+		 * the value of each integer constant
+		 */
+		ArrayList<Long> integerValues = new ArrayList<Long>();
+		/**
+		 * the index of each {@code getelementptr} expression, by its text
+		 */
+		HashMap<String, Integer> expressions = new HashMap<String, Integer>();
+		/**
+		 * the result type of each {@code getelementptr} expression
+		 */
+		ArrayList<Integer> expressionTypes = new ArrayList<Integer>();
+		/**
+		 * the record of each {@code getelementptr} expression, whose index operands are indices of integer constants
+		 */
+		ArrayList<long[]> expressionRecords = new ArrayList<long[]>();
+		/**
+		 * the value id of the first constant of the function
+		 */
+		int firstConstant;
+	}
+	/**
+	 * Translates .my files and checks that the bitcode of their LLVM-IR code decodes into the same LLVM-IR code, with every set of options that
+	 * the bitcode supports, and exits with status 1 if it does not.
+	 * @param args the .my files, or nothing to check built-in scripts
+	 * @throws IOException when a file cannot be read
+	 */
+	public static void main(String[] args) throws IOException {
+		ArrayList<String> scripts = new ArrayList<String>();
+		for (String arg : args)
+			scripts.add(new String(java.nio.file.Files.readAllBytes(java.nio.file.Paths.get(arg)), java.nio.charset.StandardCharsets.UTF_8));
+		if (scripts.isEmpty()) {
+			scripts.add("x = 7\nwhile(x) {\nprint(choose(x-3, 100, x, 0-x))\nx = x - 1\n}\n");
+			scripts.add("n = 10\ns = 0\nwhile(n) {\ns = s + n * n / 3\nn = n - 1\n}\nif(s - 100) {\nprint(s * 8)\n}\nprint(s / 7)\n");
+			scripts.add("a = 2147483647\nb = 0-a-1\nprint(a + b)\nprint(choose(b, a, b / 2, a * 4))\nprint(0-2147483648)\n");
+			scripts.add("x = 1\ny = (2\n");
+			scripts.add("");
+		}
+		byte[] empty = new BitcodeWriter().encode(new Main().compile(""));
+		int words = (empty[8] & 0xFF) | (empty[9] & 0xFF) << 8 | (empty[10] & 0xFF) << 16 | (empty[11] & 0xFF) << 24;
+		if (!Arrays.equals(Arrays.copyOf(empty, HEADER.length), HEADER) || words != (empty.length - 12) / 4 || empty.length % 4 != 0
+				|| (empty[12] & 0xFF) != 0x0B || (empty[13] & 0xFF) != 0x82) { // VERSION: abbreviation id 3, code 1, 1 operand, version 1
+			System.out.println("bitcode: the header differs from the LLVM encoding: " + hex(Arrays.copyOf(empty, 16)));
+			System.exit(1);
+		}
+		String[][] optionSets = {{"-O0"}, {"-O1"}, {"-ssa", "-select"}, {"-strength", "-closed-form"}, {"-rotate", "-unroll=3", "-cse", "-licm", "-dse"}};
+		BitcodeWriter writer = new BitcodeWriter();
+		int checks = 0;
+		for (String[] optionSet : optionSets) {
+			Options options = new Options();
+			options.parse(optionSet);
+			Main translator = new Main(options);
+			for (String script : scripts) {
+				String ir = translator.compile(script);
+				String decoded = BitcodeReader.disassemble(writer.encode(ir));
+				if (!normalize(ir).equals(normalize(decoded))) {
+					System.out.println("bitcode: " + String.join(" ", optionSet) + ": the decoded bitcode differs from the LLVM-IR code\n" + ir + "\ndecoded:\n" + decoded);
+					System.exit(1);
+				}
+				checks++;
+			}
+		}
+		System.out.println("bitcode: " + checks + " modules decoded into their LLVM-IR code");
+	}
+	/**
+	 * Formats bytes in hexadecimal.
+	 * @param bytes the bytes
+	 * @return the bytes separated by spaces
+	 */
+	private static String hex(byte[] bytes) {
+		StringBuilder hex = new StringBuilder();
+		for (byte b : bytes)
+			hex.append(String.format("%02X ", b & 0xFF));
+		return hex.toString().trim();
+	}
+	/**
+	 * Removes the comments, the blank lines and the indentation of LLVM-IR code.
+	 * @param ir the LLVM-IR code
+	 * @return the instructions and the labels, one per line
+	 */
+	private static String normalize(String ir) {
+		StringBuilder normalized = new StringBuilder();
+		for (String line : ir.split("\n")) {
+			line = line.trim();
+			if (!line.isEmpty() && !line.startsWith(";"))
+				normalized.append(line).append('\n');
+		}
+		return normalized.toString();
+	}
+	/**
+	 * Encodes LLVM-IR code and writes the bitcode to a channel.
+	 * @param ir the LLVM-IR code
+	 * @param output the channel
+	 * @throws IOException when the channel cannot be written
+	 * @throws IllegalArgumentException when the LLVM-IR code is not supported
+	 */
+	public void write(CharSequence ir, WritableByteChannel output) throws IOException {
+		ByteBuffer buffer = ByteBuffer.wrap(encode(ir));
+		while (buffer.hasRemaining())
+			output.write(buffer);
+	}
+	/**
+	 * Encodes LLVM-IR code.
+	 * @param ir the LLVM-IR code
+	 * @return the bitcode
+	 * @throws IllegalArgumentException when the LLVM-IR code is not supported
+	 */
+	public byte[] encode(CharSequence ir) {
+		typeNames.clear();
+		typeRecords.clear();
+		typeIds.clear();
+		globals.clear();
+		globalTypes.clear();
+		globalConstants.clear();
+		globalStrings.clear();
+		functions.clear();
+		globalIds.clear();
+		String[] lines = ir.toString().split("\n");
+		writing = false;
+		readModule(lines);
+		for (Function defined : functions)
+			if (defined.first != -1) {
+				function = defined;
+				function.firstConstant = globals.size() + functions.size() + globals.size();
+				readBody(lines);
+			}
+		writing = true;
+		length = bitCount = depth = 0;
+		bits = 0;
+		abbreviationWidth = 2;
+		emit('B', 8);
+		for (int nibble : MAGIC)
+			emit(nibble, 4);
+		enterBlock(MODULE_BLOCK, 3);
+		record(MODULE_VERSION, 1);
+		enterBlock(TYPE_BLOCK, 4);
+		record(TYPE_NUMENTRY, typeRecords.size());
+		for (long[] type : typeRecords)
+			record((int) type[0], Arrays.copyOfRange(type, 1, type.length));
+		exitBlock();
+		for (int global = 0; global < globals.size(); global++) // The initializer is the module constant of the same index.
+			record(MODULE_GLOBALVAR, globalTypes.get(global), globalConstants.get(global) ? 3 : 2, globals.size() + functions.size() + global + 1, 0, 0, 0);
+		for (Function declared : functions)
+			record(MODULE_FUNCTION, declared.type, 0, declared.first == -1 ? 1 : 0, 0, 0, 0, 0, 0);
+		if (!globals.isEmpty()) {
+			enterBlock(CONSTANTS_BLOCK, 4);
+			for (int global = 0; global < globals.size(); global++) {
+				record(CONSTANT_SETTYPE, globalTypes.get(global));
+				for (byte b : globalStrings.get(global))
+					operand(b & 0xFF);
+				record(CONSTANT_CSTRING);
+			}
+			exitBlock();
+		}
+		enterBlock(VALUE_SYMTAB_BLOCK, 4);
+		for (int global = 0; global < globals.size(); global++)
+			symbol(SYMTAB_ENTRY, global, globals.get(global));
+		for (int i = 0; i < functions.size(); i++)
+			symbol(SYMTAB_ENTRY, globals.size() + i, functions.get(i).name);
+		exitBlock();
+		for (Function defined : functions)
+			if (defined.first != -1)
+				writeFunction(lines, defined);
+		exitBlock();
+		return Arrays.copyOf(bytes, length);
+	}
+	/**
+	 * Reads the global variables and the functions of the module.
+	 * @param lines the lines of the LLVM-IR code
+	 */
+	private void readModule(String[] lines) {
+		for (int i = 0; i < lines.length; i++) {
+			start(lines[i]);
+			if (text.isEmpty() || text.startsWith(";"))
+				continue;
+			if (skip("@")) {
+				String name = name();
+				expect(" = ");
+				boolean constant = skip("constant ");
+				if (!constant)
+					expect("global ");
+				int type = type();
+				expect(" c\"");
+				byte[] string = unescape();
+				if (string.length == 0 || string[string.length - 1] != 0 || !typeNames.get(type).equals("[" + string.length + " x i8]"))
+					throw unsupported();
+				pointer(type); // the type of the global value
+				globalIds.put(name, globals.size());
+				globals.add(name);
+				globalTypes.add(type);
+				globalConstants.add(constant);
+				globalStrings.add(Arrays.copyOf(string, string.length - 1));
+			} else {
+				boolean definition = skip("define ");
+				if (!definition)
+					expect("declare ");
+				Function declared = new Function();
+				int result = type();
+				expect(" @");
+				declared.name = name();
+				expect("(");
+				ArrayList<Integer> parameters = new ArrayList<Integer>();
+				boolean variadic = false;
+				while (!skip(")")) {
+					if (!parameters.isEmpty() || variadic)
+						expect(", ");
+					if (skip("..."))
+						variadic = true;
+					else
+						parameters.add(type());
+				}
+				declared.type = functionType(result, parameters, variadic);
+				pointer(declared.type); // the type of the function value
+				if (definition) {
+					expect(" {");
+					if (!parameters.isEmpty())
+						throw unsupported();
+					declared.first = i + 1;
+					while (++i < lines.length && !lines[i].trim().equals("}"))
+						;
+					declared.end = i;
+				}
+				functions.add(declared);
+			}
+			if (position != text.length())
+				throw unsupported();
+		}
+		for (int i = 0; i < functions.size(); i++)
+			globalIds.put(functions.get(i).name, globals.size() + i);
+	}
+	/**
+	 * Writes the function block of a function definition.
+	 * @param lines the lines of the LLVM-IR code
+	 * @param defined the function
+	 */
+	private void writeFunction(String[] lines, Function defined) {
+		function = defined;
+		enterBlock(FUNCTION_BLOCK, 4);
+		record(FUNCTION_BLOCKS, function.blockNames.size());
+		int integerCount = function.integerTypes.size();
+		if (integerCount + function.expressionRecords.size() > 0) {
+			enterBlock(CONSTANTS_BLOCK, 4);
+			int type = -1;
+			for (int i = 0; i < integerCount; i++) {
+				if (function.integerTypes.get(i) != type)
+					record(CONSTANT_SETTYPE, type = function.integerTypes.get(i));
+				long value = function.integerValues.get(i);
+				record(CONSTANT_INTEGER, value >= 0 ? value << 1 : (-value << 1) | 1);
+			}
+			for (int i = 0; i < function.expressionRecords.size(); i++) {
+				if (function.expressionTypes.get(i) != type)
+					record(CONSTANT_SETTYPE, type = function.expressionTypes.get(i));
+				long[] expression = function.expressionRecords.get(i);
+				for (int j = 0; j < expression.length; j++)
+					operand(j >= 4 && j % 2 == 0 ? function.firstConstant + expression[j] : expression[j]); // the index constants
+				record(CONSTANT_GEP);
+			}
+			exitBlock();
+		}
+		instructionId = function.firstConstant + integerCount + function.expressionRecords.size();
+		readBody(lines);
+		enterBlock(VALUE_SYMTAB_BLOCK, 4);
+		int firstValue = function.firstConstant + integerCount + function.expressionRecords.size();
+		for (String name : function.values.keySet())
+			symbol(SYMTAB_ENTRY, firstValue + function.values.get(name), name);
+		for (int block = 0; block < function.blockNames.size(); block++)
+			if (function.blockNames.get(block) != null)
+				symbol(SYMTAB_BLOCK, block, function.blockNames.get(block));
+		exitBlock();
+		exitBlock();
+	}
+	/**
+	 * Reads the instructions of {@link #function}: collects its values, constants and basic blocks in the first pass, and writes the records of
+	 * the instructions in the second pass.
+	 * @param lines the lines of the LLVM-IR code
+	 */
+	private void readBody(String[] lines) {
+		for (int i = function.first; i < function.end; i++) {
+			start(lines[i]);
+			if (text.isEmpty() || text.startsWith(";"))
+				continue;
+			if (text.endsWith(":")) {
+				String label = text.substring(0, text.length() - 1);
+				if (!writing) {
+					function.blocks.put(label, function.blockNames.size());
+					function.blockNames.add(label);
+				}
+				continue;
+			}
+			if (!writing && function.blockNames.isEmpty())
+				function.blockNames.add(null); // the unnamed entry block
+			instruction();
+			if (position != text.length())
+				throw unsupported();
+		}
+	}
+	/**
+	 * Reads an instruction, and writes its record in the second pass.
+	 */
+	private void instruction() {
+		String result = null;
+		if (skip("%")) {
+			result = name();
+			expect(" = ");
+		}
+		String operation = text.substring(position, Math.max(text.indexOf(' ', position), position));
+		position += operation.length() + 1;
+		int resultType = -1, i32 = integerType(32);
+		switch (operation) {
+		case "alloca": {
+			int type = type();
+			int size = integer(i32, 1);
+			record(INSTRUCTION_ALLOCA, type, i32, size, ALLOCA_EXPLICIT_TYPE);
+			resultType = pointer(type);
+			break;
+		}
+		case "load": {
+			int pointerType = type();
+			expect(" ");
+			int pointer = value(pointerType);
+			resultType = (int) typeRecords.get(pointerType)[1];
+			valueAndType(pointer, pointerType);
+			record(INSTRUCTION_LOAD, resultType, 0, 0);
+			break;
+		}
+		case "store": {
+			int type = type();
+			expect(" ");
+			int stored = value(type);
+			expect(", ");
+			int pointerType = type();
+			expect(" ");
+			int pointer = value(pointerType);
+			valueAndType(pointer, pointerType);
+			valueAndType(stored, type);
+			record(INSTRUCTION_STORE, 0, 0);
+			break;
+		}
+		case "icmp": {
+			int predicate = Arrays.asList(PREDICATES).indexOf(word());
+			if (predicate == -1)
+				throw unsupported();
+			expect(" ");
+			resultType = integerType(1);
+			binary(FIRST_PREDICATE + predicate, INSTRUCTION_CMP);
+			break;
+		}
+		case "br":
+			if (skip("label %"))
+				record(INSTRUCTION_BR, block());
+			else {
+				int type = type();
+				expect(" ");
+				int condition = value(type);
+				expect(", label %");
+				int taken = block();
+				expect(", label %");
+				int other = block();
+				record(INSTRUCTION_BR, taken, other, relative(condition));
+			}
+			break;
+		case "ret":
+			if (!skip("void")) {
+				int type = type();
+				expect(" ");
+				valueAndType(value(type), type);
+			}
+			record(INSTRUCTION_RET);
+			break;
+		case "call": {
+			int calleeType = type();
+			int[] signature = typeRecords.get(calleeType)[0] == TYPE_POINTER ? toInts(typeRecords.get((int) typeRecords.get(calleeType)[1])) : null;
+			if (signature == null || signature[0] != TYPE_FUNCTION)
+				throw unsupported();
+			int functionType = (int) typeRecords.get(calleeType)[1];
+			resultType = signature[2];
+			expect(" ");
+			int callee = value(calleeType);
+			expect("(");
+			operand(0);
+			operand(CALL_EXPLICIT_TYPE);
+			operand(functionType);
+			valueAndType(callee, calleeType);
+			for (int argument = 0; !skip(")"); argument++) {
+				if (argument > 0)
+					expect(", ");
+				int type = type();
+				expect(" ");
+				int value = value(type);
+				if (argument < signature.length - 3)
+					operand(relative(value));
+				else
+					valueAndType(value, type);
+				skip(" ");
+			}
+			record(INSTRUCTION_CALL);
+			break;
+		}
+		case "phi": {
+			resultType = type();
+			operand(resultType);
+			do {
+				expect(" [ ");
+				long value = instructionId - value(resultType);
+				expect(", %");
+				operand(value >= 0 ? value << 1 : (-value << 1) | 1);
+				operand(block());
+				expect(" ]");
+			} while (skip(","));
+			record(INSTRUCTION_PHI);
+			break;
+		}
+		case "select": {
+			int conditionType = type();
+			expect(" ");
+			int condition = value(conditionType);
+			expect(", ");
+			resultType = type();
+			expect(" ");
+			int taken = value(resultType);
+			expect(", ");
+			type();
+			expect(" ");
+			int other = value(resultType);
+			valueAndType(taken, resultType);
+			operand(relative(other));
+			valueAndType(condition, conditionType);
+			record(INSTRUCTION_SELECT);
+			break;
+		}
+		default:
+			int opcode = Arrays.asList(BINARY_OPERATIONS).indexOf(operation);
+			if (opcode != -1) {
+				resultType = binary(opcode, INSTRUCTION_BINARY);
+				break;
+			}
+			opcode = Arrays.asList(CASTS).indexOf(operation);
+			if (opcode == -1)
+				throw unsupported();
+			int type = type();
+			expect(" ");
+			int value = value(type);
+			expect(" to ");
+			resultType = type();
+			valueAndType(value, type);
+			record(INSTRUCTION_CAST, resultType, opcode);
+		}
+		if (resultType != -1 && typeRecords.get(resultType)[0] != TYPE_VOID) { // The instruction has a value, even without a name.
+			if (!writing) {
+				if (result != null) {
+					function.values.put(result, function.valueCount);
+					function.valueTypes.put(result, resultType);
+				}
+				function.valueCount++;
+			}
+			instructionId++;
+		}
+		operandCount = 0;
+	}
+	/**
+	 * Reads the operands of a binary operation or a comparison ({@code T a, b}) and writes its record.
+	 * @param opcode the opcode or the predicate
+	 * @param code the code of the record
+	 * @return the type of the operands
+	 */
+	private int binary(int opcode, int code) {
+		int type = type();
+		expect(" ");
+		int left = value(type);
+		expect(", ");
+		int right = value(type);
+		valueAndType(left, type);
+		operand(relative(right));
+		record(code, opcode);
+		return type;
+	}
+	/**
+	 * Reads a type, and adds it and its component types to the type table if they are new.
+	 * @return the id of the type
+	 */
+	private int type() {
+		int type;
+		if (skip("i"))
+			type = integerType((int) number());
+		else if (skip("[")) {
+			long count = number();
+			expect(" x ");
+			int element = type();
+			expect("]");
+			type = intern("[" + count + " x " + typeNames.get(element) + "]", TYPE_ARRAY, count, element);
+		} else if (skip("void"))
+			type = intern("void", TYPE_VOID);
+		else if (skip("label"))
+			type = intern("label", TYPE_LABEL);
+		else
+			throw unsupported();
+		for (;;) {
+			if (skip("*"))
+				type = pointer(type);
+			else if (text.startsWith(" (", position) && position + 2 < text.length() && "i[.)".indexOf(text.charAt(position + 2)) != -1) {
+				position += 2;
+				ArrayList<Integer> parameters = new ArrayList<Integer>();
+				boolean variadic = false;
+				while (!skip(")")) {
+					if (!parameters.isEmpty() || variadic)
+						expect(", ");
+					if (skip("..."))
+						variadic = true;
+					else
+						parameters.add(type());
+				}
+				type = functionType(type, parameters, variadic);
+			} else
+				return type;
+		}
+	}
+	/**
+	 * Returns the id of an integer type, which is added to the type table if it is new.
+	 * @param width the width of the type in bits
+	 * @return the id of the type
+	 */
+	private int integerType(int width) {
+		return intern("i" + width, TYPE_INTEGER, width);
+	}
+	/**
+	 * Returns the id of a pointer type, which is added to the type table if it is new.
+	 * @param element the type of the pointed values
+	 * @return the id of the type
+	 */
+	private int pointer(int element) {
+		return intern(typeNames.get(element) + "*", TYPE_POINTER, element, 0);
+	}
+	/**
+	 * Returns the id of a function type, which is added to the type table if it is new.
+	 * @param result the return type
+	 * @param parameters the types of the parameters
+	 * @param variadic {@code true} if the function takes more arguments than its parameters
+	 * @return the id of the type
+	 */
+	private int functionType(int result, ArrayList<Integer> parameters, boolean variadic) {
+		StringBuilder name = new StringBuilder(typeNames.get(result)).append(" (");
+		long[] record = new long[parameters.size() + 2];
+		record[0] = variadic ? 1 : 0;
+		record[1] = result;
+		for (int i = 0; i < parameters.size(); i++) {
+			name.append(i > 0 ? ", " : "").append(typeNames.get(parameters.get(i)));
+			record[i + 2] = parameters.get(i);
+		}
+		name.append(variadic ? (parameters.isEmpty() ? "..." : ", ...") : "").append(')');
+		return intern(name.toString(), TYPE_FUNCTION, record);
+	}
+	/**
+	 * Returns the id of a type, which is added to the type table if it is new.
+	 * @param name the name of the type
+	 * @param code the code of the type record
+	 * @param operands the operands of the type record
+	 * @return the id of the type
+	 */
+	private int intern(String name, int code, long... operands) {
+		Integer id = typeIds.get(name);
+		if (id != null)
+			return id;
+		if (writing)
+			throw unsupported(); // The type table is already written.
+		long[] record = new long[operands.length + 1];
+		record[0] = code;
+		System.arraycopy(operands, 0, record, 1, operands.length);
+		typeIds.put(name, typeNames.size());
+		typeNames.add(name);
+		typeRecords.add(record);
+		return typeNames.size() - 1;
+	}
+	/**
+	 * Reads a value of a known type: a local value, a global value, an integer or a {@code getelementptr} expression.
+	 * @param type the type of the value
+	 * @return the value id (only known in the second pass for local values)
+	 */
+	private int value(int type) {
+		if (skip("%")) {
+			String name = name();
+			if (!writing)
+				return -1;
+			Integer value = function.values.get(name);
+			if (value == null)
+				throw unsupported();
+			return function.firstConstant + function.integerTypes.size() + function.expressionRecords.size() + value;
+		}
+		if (skip("@")) {
+			Integer global = globalIds.get(name());
+			if (global == null)
+				throw unsupported();
+			return global;
+		}
+		if (skip("getelementptr (")) {
+			int start = position - "getelementptr (".length();
+			int pointerType = type();
+			long[] pointed = typeRecords.get(pointerType);
+			if (pointed[0] != TYPE_POINTER)
+				throw unsupported();
+			expect(" ");
+			int base = value(pointerType);
+			ArrayList<Long> record = new ArrayList<Long>(Arrays.asList(pointed[1], (long) pointerType, (long) base));
+			int element = pointerType;
+			while (skip(", ")) {
+				int indexType = type();
+				expect(" ");
+				record.add((long) indexType);
+				record.add((long) integerIndex(indexType, number()));
+				element = (int) typeRecords.get(element)[typeRecords.get(element)[0] == TYPE_POINTER ? 1 : 2];
+			}
+			expect(")");
+			String key = text.substring(start, position);
+			Integer index = function.expressions.get(key);
+			if (index == null) {
+				if (writing)
+					throw unsupported();
+				index = function.expressionRecords.size();
+				function.expressions.put(key, index);
+				function.expressionTypes.add(pointer(element));
+				long[] operands = new long[record.size()];
+				for (int i = 0; i < operands.length; i++)
+					operands[i] = record.get(i);
+				function.expressionRecords.add(operands);
+			}
+			return function.firstConstant + function.integerTypes.size() + index;
+		}
+		if (skip("true"))
+			return integer(type, 1);
+		if (skip("false"))
+			return integer(type, 0);
+		return integer(type, number());
+	}
+	/**
+	 * Returns the value id of an integer constant of the function, which is added in the first pass.
+	 * @param type the type of the constant
+	 * @param value the value of the constant
+	 * @return the value id
+	 */
+	private int integer(int type, long value) {
+		return function.firstConstant + integerIndex(type, value);
+	}
+	/**
+	 * Returns the index of an integer constant of the function, which is added in the first pass.
+	 * @param type the type of the constant
+	 * @param value the value of the constant
+	 * @return the index among the integer constants
+	 */
+	private int integerIndex(int type, long value) {
+		String key = type + ":" + value;
+		Integer index = function.integers.get(key);
+		if (index == null) {
+			if (writing)
+				throw unsupported();
+			index = function.integerTypes.size();
+			function.integers.put(key, index);
+			function.integerTypes.add(type);
+			function.integerValues.add(value);
+		}
+		return index;
+	}
+	/**
+	 * Reads the name of a basic block.
+	 * @return the index of the basic block (only known in the second pass)
+	 */
+	private int block() {
+		String name = name();
+		Integer block = function.blocks.get(name);
+		if (block == null && writing)
+			throw unsupported();
+		return block == null ? -1 : block;
+	}
+	/**
+	 * Adds the relative id of a value to the record, followed by its type if the value is defined behind the instruction.
+	 * @param value the value id
+	 * @param type the type of the value
+	 */
+	private void valueAndType(int value, int type) {
+		operand(relative(value));
+		if (value >= instructionId)
+			operand(type);
+	}
+	/**
+	 * Returns the id of a value relative to the instruction being written.
+	 * @param value the value id
+	 * @return the relative id, as an unsigned 32-bit number
+	 */
+	private long relative(int value) {
+		return (instructionId - value) & 0xFFFFFFFFL;
+	}
+	/**
+	 * Starts reading a line.
+	 * @param line the line
+	 */
+	private void start(String line) {
+		text = line.trim();
+		position = 0;
+	}
+	/**
+	 * Skips the given text if the line continues with it.
+	 * @param expected the text
+	 * @return {@code true} if the text is skipped
+	 */
+	private boolean skip(String expected) {
+		if (!text.startsWith(expected, position))
+			return false;
+		position += expected.length();
+		return true;
+	}
+	/**
+	 * Skips the given text, which the line has to continue with.
+	 * @param expected the text
+	 * @throws IllegalArgumentException when the line does not continue with the text
+	 */
+	private void expect(String expected) {
+		if (!skip(expected))
+			throw unsupported();
+	}
+	/**
+	 * Reads the name of a value or a basic block (behind its {@code %} or {@code @}).
+	 * @return the name
+	 */
+	private String name() {
+		int start = position;
+		while (position < text.length() && (Character.isLetterOrDigit(text.charAt(position)) || "._$-".indexOf(text.charAt(position)) != -1))
+			position++;
+		if (position == start)
+			throw unsupported();
+		return text.substring(start, position);
+	}
+	/**
+	 * Reads a word of lowercase letters.
+	 * @return the word
+	 */
+	private String word() {
+		int start = position;
+		while (position < text.length() && text.charAt(position) >= 'a' && text.charAt(position) <= 'z')
+			position++;
+		return text.substring(start, position);
+	}
+	/**
+	 * Reads a decimal integer.
+	 * @return the integer
+	 */
+	private long number() {
+		int start = position;
+		if (position < text.length() && text.charAt(position) == '-')
+			position++;
+		while (position < text.length() && Character.isDigit(text.charAt(position)))
+			position++;
+		try {
+			return Long.parseLong(text.substring(start, position));
+		} catch (NumberFormatException e) {
+			throw unsupported();
+		}
+	}
+	/**
+	 * Reads the characters of a string constant up to its closing quote.
+	 * @return the bytes of the string
+	 */
+	private byte[] unescape() {
+		byte[] string = new byte[text.length()];
+		int count = 0;
+		while (position < text.length() && text.charAt(position) != '"') {
+			char c = text.charAt(position++);
+			if (c == '\\') {
+				if (position + 2 > text.length())
+					throw unsupported();
+				c = (char) Integer.parseInt(text.substring(position, position + 2), 16);
+				position += 2;
+			}
+			string[count++] = (byte) c;
+		}
+		expect("\"");
+		return Arrays.copyOf(string, count);
+	}
+	/**
+	 * Creates the exception of a line which the writer does not support.
+	 * @return the exception
+	 */
+	private IllegalArgumentException unsupported() {
+		return new IllegalArgumentException("unsupported LLVM-IR code for bitcode: " + text);
+	}
+	/**
+	 * Converts the operands of a record to integers.
+	 * @param record the record
+	 * @return the operands
+	 */
+	private static int[] toInts(long[] record) {
+		int[] ints = new int[record.length];
+		for (int i = 0; i < record.length; i++)
+			ints[i] = (int) record[i];
+		return ints;
+	}
+	/**
+	 * Writes the symbol table record of a named value or basic block.
+	 * @param code {@link #SYMTAB_ENTRY} or {@link #SYMTAB_BLOCK}
+	 * @param id the value id or the index of the basic block
+	 * @param name the name
+	 */
+	private void symbol(int code, int id, String name) {
+		operand(id);
+		for (int i = 0; i < name.length(); i++)
+			operand(name.charAt(i));
+		record(code);
+	}
+	/**
+	 * Adds an operand to the record being written.
+	 * @param value the operand
+	 */
+	private void operand(long value) {
+		if (operandCount == operands.length)
+			operands = Arrays.copyOf(operands, 2 * operandCount);
+		operands[operandCount++] = value;
+	}
+	/**
+	 * Writes an unabbreviated record whose operands follow the operands added before (only discards the operands in the first pass over a
+	 * function).
+	 * @param code the code of the record
+	 * @param last the last operands of the record
+	 */
+	private void record(int code, long... last) {
+		if (!writing) {
+			operandCount = 0;
+			return;
+		}
+		for (long value : last)
+			operand(value);
+		emit(3, abbreviationWidth); // UNABBREV_RECORD
+		vbr(code, 6);
+		vbr(operandCount, 6);
+		for (int i = 0; i < operandCount; i++)
+			vbr(operands[i], 6);
+		operandCount = 0;
+	}
+	/**
+	 * Starts a block.
+	 * @param id the id of the block
+	 * @param width the width of the abbreviation ids in the block
+	 */
+	private void enterBlock(int id, int width) {
+		emit(1, abbreviationWidth); // ENTER_SUBBLOCK
+		vbr(id, 8);
+		vbr(width, 4);
+		align();
+		outerWidths[depth] = abbreviationWidth;
+		lengthPositions[depth++] = length;
+		emit(0, 32); // the length of the block in words, set by exitBlock
+		abbreviationWidth = width;
+	}
+	/**
+	 * Ends the innermost block and sets its length.
+	 */
+	private void exitBlock() {
+		emit(0, abbreviationWidth); // END_BLOCK
+		align();
+		int start = lengthPositions[--depth], words = (length - start) / 4 - 1;
+		for (int i = 0; i < 4; i++)
+			bytes[start + i] = (byte) (words >>> 8 * i);
+		abbreviationWidth = outerWidths[depth];
+	}
+	/**
+	 * Writes a number in variable bit rate encoding: chunks of {@code width - 1} bits, each with a continuation bit.
+	 * @param value the number, unsigned
+	 * @param width the width of a chunk
+	 */
+	private void vbr(long value, int width) {
+		long threshold = 1L << (width - 1);
+		while (Long.compareUnsigned(value, threshold) >= 0) {
+			emit((value & (threshold - 1)) | threshold, width);
+			value >>>= width - 1;
+		}
+		emit(value, width);
+	}
+	/**
+	 * Writes the low bits of a number, the least significant bit first.
+	 * @param value the number
+	 * @param width the number of bits (at most 32)
+	 */
+	private void emit(long value, int width) {
+		bits |= (value & ((1L << width) - 1)) << bitCount;
+		bitCount += width;
+		while (bitCount >= 8) {
+			if (length == bytes.length)
+				bytes = Arrays.copyOf(bytes, 2 * length);
+			bytes[length++] = (byte) bits;
+			bits >>>= 8;
+			bitCount -= 8;
+		}
+	}
+	/**
+	 * Fills the bitcode with 0 bits up to a multiple of 32 bits.
+	 */
+	private void align() {
+		if (bitCount > 0)
+			emit(0, 8 - bitCount);
+		while (length % 4 != 0)
+			emit(0, 8);
+	}
+}
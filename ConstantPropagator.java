@@ -0,0 +1,198 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+/**
+ * Whole-program constant propagation over the statements of a {@code myLang} script.
+ * <p>The propagator follows the statements in the order of the script and keeps the value of every variable which is known to hold a constant
+ * at the current point. Every variable starts with the constant 0, like the variables of the LLVM-IR code. The known constants are substituted
+ * into the expressions, which are then folded: constant operations are computed, identities such as {@code x*0} are simplified and
+ * {@code choose} calls whose first argument is known are replaced with the chosen argument.</p>
+ * <p>An {@code if} statement whose condition is known to be 0 is removed, and one whose condition is known to be nonzero is replaced with the
+ * statements of its body. After an {@code if} statement, a variable keeps its constant only if it holds the same constant whether the body is run
+ * or not. The constants at the condition of a {@code while} loop are those which hold both before the loop and after each iteration of the body,
+ * found by running the body over the known constants until nothing changes; a {@code while} loop whose condition is known to be 0 there is
+ * removed.</p>
+ * @author Aral Dortogul
+ */
+public class ConstantPropagator {
+	/**
+	 * the constant value of each variable, indexed by symbol id (valid when the variable is not in {@link #unknown})
+	 */
+	private int[] values = new int[64];
+	/**
+	 * the set of variables whose values are not known constants, indexed by symbol id
+	 */
+	private BitSet unknown = new BitSet();
+	/**
+	 * Forgets all of the known values, so that every variable holds the constant 0 again.
+	 */
+	public void reset() {
+		Arrays.fill(values, 0);
+		unknown.clear();
+	}
+	/**
+	 * Propagates the known constants into a statement of the script and updates them with the effect of the statement.
+	 * @param statement the statement, which is changed in place
+	 * @param result the list which the statements to be translated instead of the statement are added to (none if the statement is removed,
+	 * the body of the statement if it is an {@code if} statement with a nonzero condition)
+	 */
+	public void propagate(Statement statement, List<Statement> result) {
+		switch (statement.kind) {
+		case 'a':
+		case 'p':
+			statement.expression = simplify(statement.expression);
+			if (statement.kind == 'a')
+				assign(statement.target, statement.expression);
+			result.add(statement);
+			break;
+		case 'i':
+			statement.expression = simplify(statement.expression);
+			if (isConstant(statement.expression)) {
+				if (statement.expression.value[0] != 0)
+					for (Statement bodyStatement : statement.body)
+						propagate(bodyStatement, result);
+				break;
+			}
+			int[] entryValues = values.clone();
+			BitSet entryUnknown = (BitSet) unknown.clone();
+			ArrayList<Statement> body = new ArrayList<Statement>(statement.body.size());
+			for (Statement bodyStatement : statement.body)
+				propagate(bodyStatement, body);
+			statement.body.clear();
+			statement.body.addAll(body);
+			merge(entryValues, entryUnknown);
+			result.add(statement);
+			break;
+		case 'w':
+			while (true) { // Find the constants at the loop condition.
+				int[] headValues = values.clone();
+				BitSet headUnknown = (BitSet) unknown.clone();
+				if (isZero(simplify(statement.expression)))
+					break;
+				for (Statement bodyStatement : statement.body)
+					if (bodyStatement.kind == 'a')
+						assign(bodyStatement.target, simplify(bodyStatement.expression));
+				merge(headValues, headUnknown);
+				if (unknown.equals(headUnknown) && Arrays.equals(values, headValues))
+					break;
+			}
+			statement.expression = simplify(statement.expression);
+			if (isZero(statement.expression))
+				break;
+			int[] headValues = values.clone();
+			BitSet headUnknown = (BitSet) unknown.clone();
+			for (Statement bodyStatement : statement.body) {
+				bodyStatement.expression = simplify(bodyStatement.expression);
+				if (bodyStatement.kind == 'a')
+					assign(bodyStatement.target, bodyStatement.expression);
+			}
+			values = headValues; // The loop is left from its condition.
+			unknown = headUnknown;
+			result.add(statement);
+			break;
+		}
+	}
+	/**
+	 * Substitutes the known constants into an expression and folds it.
+	 * @param expression the expression
+	 * @return the folded expression
+	 */
+	private Expression simplify(Expression expression) {
+		Expression result = new Expression(expression.length);
+		for (int node = 0; node < expression.length; node++) {
+			int type = expression.type[node];
+			if (type == Token._integer)
+				result.addLeaf(Token._integer, expression.value[node]);
+			else if (type == Token._variable) {
+				int symbol = expression.value[node];
+				if (unknown.get(symbol))
+					result.addLeaf(Token._variable, symbol);
+				else
+					result.addLeaf(Token._integer, valueOf(symbol));
+			} else if (type == Token._choose) {
+				int fourth = result.root(), third = result.start[fourth] - 1, second = result.start[third] - 1, first = result.start[second] - 1;
+				if (result.type[first] == Token._integer) {
+					int condition = result.value[first];
+					result.collapse(first, condition == 0 ? second : condition > 0 ? third : fourth);
+				} else
+					result.addOperation(Token._choose, first, second, third, fourth);
+			} else {
+				int RHS = result.root(), LHS = result.start[RHS] - 1;
+				boolean constantLHS = result.type[LHS] == Token._integer, constantRHS = result.type[RHS] == Token._integer;
+				int left = result.value[LHS], right = result.value[RHS];
+				if (constantLHS && constantRHS && !(type == Token._div && right == 0)) {
+					result.length -= 2;
+					result.addLeaf(Token._integer, Expression.evaluate(type, left, right));
+					continue;
+				}
+				switch (Expression.identity(type, constantLHS, left, constantRHS, right, result.mayTrap(constantLHS ? RHS : LHS))) {
+				case 1: result.length--; break;
+				case 2: result.collapse(LHS, RHS); break;
+				case 3:
+					result.length = result.start[LHS];
+					result.addLeaf(Token._integer, 0);
+					break;
+				default: result.addOperation(type, LHS, RHS);
+				}
+			}
+		}
+		return result;
+	}
+	/**
+	 * Updates the value of a variable after an assignment.
+	 * @param symbol the symbol id of the variable
+	 * @param expression the folded expression assigned to the variable
+	 */
+	private void assign(int symbol, Expression expression) {
+		if (symbol >= values.length)
+			values = Arrays.copyOf(values, Math.max(2 * values.length, symbol + 1));
+		if (isConstant(expression)) {
+			values[symbol] = expression.value[0];
+			unknown.clear(symbol);
+		} else {
+			values[symbol] = 0; // The values of unknown variables are kept 0, so that equal states have equal arrays.
+			unknown.set(symbol);
+		}
+	}
+	/**
+	 * Keeps only the constants which also hold in the given state, for the point where two paths of the script meet.
+	 * @param otherValues the values of the other path
+	 * @param otherUnknown the variables whose values are unknown on the other path
+	 */
+	private void merge(int[] otherValues, BitSet otherUnknown) {
+		unknown.or(otherUnknown);
+		int length = Math.max(values.length, otherValues.length);
+		if (values.length < length)
+			values = Arrays.copyOf(values, length);
+		for (int symbol = 0; symbol < length; symbol++)
+			if (values[symbol] != (symbol < otherValues.length ? otherValues[symbol] : 0)) {
+				unknown.set(symbol);
+				values[symbol] = 0;
+			}
+	}
+	/**
+	 * Returns the known value of a variable.
+	 * @param symbol the symbol id of the variable
+	 * @return the value
+	 */
+	private int valueOf(int symbol) {
+		return symbol < values.length ? values[symbol] : 0;
+	}
+	/**
+	 * Checks if an expression is a single integer.
+	 * @param expression the expression
+	 * @return {@code true} if the expression is an integer
+	 */
+	private static boolean isConstant(Expression expression) {
+		return expression.length == 1 && expression.type[0] == Token._integer;
+	}
+	/**
+	 * Checks if an expression is the integer 0.
+	 * @param expression the expression
+	 * @return {@code true} if the expression is 0
+	 */
+	private static boolean isZero(Expression expression) {
+		return isConstant(expression) && expression.value[0] == 0;
+	}
+}
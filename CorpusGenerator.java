@@ -0,0 +1,202 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Random;
+/**
+ * Generator of synthetic {@code myLang} scripts of any size, the inputs of {@link PhaseBenchmark}.
+ * <p>The scripts are valid and deterministic for a seed: assignments and prints of random expressions, {@code if} statements and counting
+ * {@code while} loops. The shape of the scripts is tunable:</p>
+ * <ul>
+ * 	<li>{@code -seed=N}: the seed of the random numbers (default 1).</li>
+ * 	<li>{@code -lines=N}: the number of lines of a script (default 1000).</li>
+ * 	<li>{@code -length=N}: the number of operands of an expression (default 8).</li>
+ * 	<li>{@code -depth=N}: the maximum nesting depth of {@code choose} functions (default 2).</li>
+ * 	<li>{@code -loops=P}: the fraction of the statements which start a {@code while} loop (default 0.05, half as many start an {@code if}
+ * 	statement).</li>
+ * 	<li>{@code -count=N}: the number of scripts written to the directory (default 1).</li>
+ * </ul>
+ * <p>Every loop counts its own counter variable down from a positive integer and the divisors are positive integers, so the programs also
+ * terminate without runtime errors when they are executed.</p>
+ * @author Aral Dortogul
+ */
+public class CorpusGenerator {
+	/**
+	 * the number of lines of a script
+	 */
+	public int lines = 1000;
+	/**
+	 * the number of operands of an expression
+	 */
+	public int length = 8;
+	/**
+	 * the maximum nesting depth of {@code choose} functions
+	 */
+	public int depth = 2;
+	/**
+	 * the fraction of the statements which start a {@code while} loop
+	 */
+	public double loops = 0.05;
+	/**
+	 * the number of scripts written by {@link #main(String[])}
+	 */
+	public int count = 1;
+	/**
+	 * the seed of the random numbers
+	 */
+	public long seed = 1;
+	/**
+	 * the number of variables which the expressions use (the loop counters are separate)
+	 */
+	private static final int VARIABLES = 16;
+	/**
+	 * the maximum number of statements in the body of a loop or an {@code if} statement
+	 */
+	private static final int BODY = 8;
+	/**
+	 * the random numbers of the script being generated
+	 */
+	private Random random;
+	/**
+	 * Writes generated scripts into a directory ({@code bench0.my}, {@code bench1.my}, ...), or one script to the standard output.
+	 * @param args the options (see {@link CorpusGenerator}) followed by the directory, if any
+	 * @throws IOException when a script cannot be written
+	 */
+	public static void main(String[] args) throws IOException {
+		CorpusGenerator generator = new CorpusGenerator();
+		int first;
+		try {
+			first = generator.parse(args);
+			if (first < args.length - 1 || (first < args.length && args[first].startsWith("-")))
+				throw new IllegalArgumentException("usage: java CorpusGenerator [-seed=N] [-lines=N] [-length=N] [-depth=N] [-loops=P] [-count=N] [DIRECTORY]");
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			return;
+		}
+		if (first == args.length) {
+			System.out.print(generator.generate(generator.seed));
+			return;
+		}
+		Path directory = Files.createDirectories(Paths.get(args[first]));
+		for (int i = 0; i < generator.count; i++)
+			Files.write(directory.resolve("bench" + i + ".my"), generator.generate(generator.seed + i).getBytes(StandardCharsets.US_ASCII));
+	}
+	/**
+	 * Sets the options given at the beginning of the command line arguments.
+	 * @param args command line arguments
+	 * @return the index of the first argument which is not an option of the generator
+	 * @throws IllegalArgumentException when the value of an option is invalid
+	 */
+	public int parse(String[] args) {
+		int i = 0;
+		for (; i < args.length; i++) {
+			String arg = args[i], value = arg.substring(arg.indexOf('=') + 1);
+			try {
+				if (arg.startsWith("-seed="))
+					seed = Long.parseLong(value);
+				else if (arg.startsWith("-lines="))
+					lines = Integer.parseInt(value);
+				else if (arg.startsWith("-length="))
+					length = Integer.parseInt(value);
+				else if (arg.startsWith("-depth="))
+					depth = Integer.parseInt(value);
+				else if (arg.startsWith("-loops="))
+					loops = Double.parseDouble(value);
+				else if (arg.startsWith("-count="))
+					count = Integer.parseInt(value);
+				else
+					break;
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException("invalid value: " + arg);
+			}
+		}
+		if (lines < 1 || length < 1 || depth < 0 || !(loops >= 0 && loops <= 1) || count < 0)
+			throw new IllegalArgumentException("invalid generator options");
+		return i;
+	}
+	/**
+	 * Generates a script.
+	 * @param seed the seed of the random numbers
+	 * @return the script, with about {@link #lines} lines
+	 */
+	public String generate(long seed) {
+		random = new Random(seed);
+		StringBuilder script = new StringBuilder(lines * (8 * length + 8));
+		int counters = 0;
+		for (int line = 0; line < lines; ) {
+			double kind = random.nextDouble();
+			if (kind < loops && line + 4 <= lines) { // A counting loop: n = K, while(n) { ... n = n - 1 }
+				String counter = "n" + counters++;
+				int body = 1 + random.nextInt(Math.min(BODY, lines - line - 3));
+				script.append(counter).append(" = ").append(1 + random.nextInt(100)).append('\n');
+				script.append("while(").append(counter).append(") {\n");
+				for (int i = 0; i < body; i++)
+					statement(script);
+				script.append(counter).append(" = ").append(counter).append(" - 1\n}\n");
+				line += body + 4;
+			} else if (kind < 1.5 * loops && line + 3 <= lines) {
+				int body = 1 + random.nextInt(Math.min(BODY, lines - line - 2));
+				script.append("if(");
+				expression(script, length, depth);
+				script.append(") {\n");
+				for (int i = 0; i < body; i++)
+					statement(script);
+				script.append("}\n");
+				line += body + 2;
+			} else {
+				statement(script);
+				line++;
+			}
+		}
+		return script.toString();
+	}
+	/**
+	 * Generates an assignment (three out of four) or a print statement.
+	 * @param script the script which the statement is appended to
+	 */
+	private void statement(StringBuilder script) {
+		boolean print = random.nextInt(4) == 0;
+		if (print)
+			script.append("print(");
+		else
+			script.append('v').append(random.nextInt(VARIABLES)).append(" = ");
+		expression(script, length, depth);
+		script.append(print ? ")\n" : "\n");
+	}
+	/**
+	 * Generates an expression.
+	 * @param script the script which the expression is appended to
+	 * @param operands the number of operands of the expression
+	 * @param depth the maximum nesting depth of the {@code choose} functions in the expression
+	 */
+	private void expression(StringBuilder script, int operands, int depth) {
+		for (int i = 0; i < operands; i++) {
+			if (i > 0) {
+				int operation = random.nextInt(4);
+				script.append(" +-*/".charAt(operation + 1));
+				if (operation == 3) { // Only positive divisors, so that the programs do not divide by zero.
+					script.append(1 + random.nextInt(9));
+					continue;
+				}
+			}
+			int kind = random.nextInt(8);
+			if (kind == 0 && depth > 0) {
+				script.append("choose(");
+				for (int argument = 0; argument < 4; argument++) {
+					if (argument > 0)
+						script.append(", ");
+					expression(script, 1 + random.nextInt(Math.max(1, operands / 4)), depth - 1);
+				}
+				script.append(')');
+			} else if (kind == 1 && operands > 2) {
+				script.append('(');
+				expression(script, 2, depth);
+				script.append(')');
+			} else if (kind < 5)
+				script.append('v').append(random.nextInt(VARIABLES));
+			else
+				script.append(random.nextInt(1000));
+		}
+	}
+}
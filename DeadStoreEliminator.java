@@ -0,0 +1,119 @@
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+/**
+ * Dead store elimination over the statements of a whole {@code myLang} script, by a liveness analysis of the variables.
+ * <p>A variable is live at a point of the script if its value there may be read later, before it is assigned again. The statements are followed
+ * backwards from the end of the script, where no variable is live: an assignment to a variable which is not live after it is removed, and an
+ * {@code if} statement whose body becomes empty is removed too. The variables live at the condition of a {@code while} loop are those live
+ * after the loop, those read by the condition and those live at the beginning of the body, found by following the body until nothing changes.
+ * Expressions have no side effects (except a division by 0, whose result is undefined anyway), so the removed assignments cannot be observed, and
+ * a variable which is never read is not mentioned by the script any more, so it gets no {@code alloca} and no initialization.</p>
+ * <p>Afterwards, the statements are followed forwards to find the variables which may be read before they are assigned on some path of the
+ * script; only these need to be initialized with 0.</p>
+ * @author Aral Dortogul
+ */
+public class DeadStoreEliminator {
+	/**
+	 * the set of variables which may be read before they are assigned, indexed by symbol id
+	 */
+	private final BitSet readBeforeAssigned = new BitSet();
+	/**
+	 * Removes the assignments whose values are never read from the statements of a script, and finds the variables which have to be initialized.
+	 * @param statements the statements of the script, which are changed in place
+	 */
+	public void eliminate(List<Statement> statements) {
+		live(statements, new BitSet(), true);
+		readBeforeAssigned.clear();
+		findReads(statements, new BitSet());
+	}
+	/**
+	 * Checks if a variable may be read before it is assigned, so that it has to be initialized with 0.
+	 * @param symbol the symbol id of the variable
+	 * @return {@code true} if the variable may be read before it is assigned
+	 */
+	public boolean isReadBeforeAssigned(int symbol) {
+		return readBeforeAssigned.get(symbol);
+	}
+	/**
+	 * Follows a sequence of statements backwards, turning the variables live after it into those live before it.
+	 * @param statements the statements
+	 * @param live the variables live after the statements, which become those live before them
+	 * @param remove {@code true} if the dead assignments are removed from the statements
+	 */
+	private static void live(List<Statement> statements, BitSet live, boolean remove) {
+		ArrayList<Statement> kept = new ArrayList<Statement>(remove ? statements.size() : 0); // The kept statements in reverse order
+		for (int i = statements.size() - 1; i >= 0; i--) {
+			Statement statement = statements.get(i);
+			switch (statement.kind) {
+			case 'a':
+				if (!live.get(statement.target))
+					continue;
+				live.clear(statement.target);
+				read(statement.expression, live);
+				break;
+			case 'p':
+				read(statement.expression, live);
+				break;
+			case 'i':
+				BitSet bodyLive = (BitSet) live.clone();
+				live(statement.body, bodyLive, remove);
+				if (statement.body.isEmpty())
+					continue;
+				live.or(bodyLive); // The body may be skipped.
+				read(statement.expression, live);
+				break;
+			case 'w':
+				BitSet headLive = (BitSet) live.clone();
+				read(statement.expression, headLive);
+				while (true) {
+					bodyLive = (BitSet) headLive.clone();
+					live(statement.body, bodyLive, false);
+					bodyLive.or(headLive);
+					if (bodyLive.equals(headLive))
+						break;
+					headLive = bodyLive;
+				}
+				if (remove)
+					live(statement.body, (BitSet) headLive.clone(), true);
+				live.or(headLive);
+				break;
+			}
+			if (remove)
+				kept.add(statement);
+		}
+		if (remove && kept.size() < statements.size()) {
+			Collections.reverse(kept);
+			statements.clear();
+			statements.addAll(kept);
+		}
+	}
+	/**
+	 * Follows a sequence of statements forwards, recording the variables which are read before they are assigned.
+	 * @param statements the statements
+	 * @param assigned the variables which are assigned on every path to the statements, which is updated with the assignments of the statements
+	 */
+	private void findReads(List<Statement> statements, BitSet assigned) {
+		for (Statement statement : statements) {
+			Expression expression = statement.expression;
+			for (int node = 0; node < expression.length; node++)
+				if (expression.type[node] == Token._variable && !assigned.get(expression.value[node]))
+					readBeforeAssigned.set(expression.value[node]);
+			if (statement.kind == 'a')
+				assigned.set(statement.target);
+			else if (statement.kind == 'i' || statement.kind == 'w') // The body may be skipped, so its assignments do not count after it.
+				findReads(statement.body, (BitSet) assigned.clone());
+		}
+	}
+	/**
+	 * Adds the variables read by an expression to a set.
+	 * @param expression the expression
+	 * @param live the set of variables
+	 */
+	private static void read(Expression expression, BitSet live) {
+		for (int node = 0; node < expression.length; node++)
+			if (expression.type[node] == Token._variable)
+				live.set(expression.value[node]);
+	}
+}
@@ -0,0 +1,271 @@
+import java.util.Arrays;
+/**
+ * A compact abstract syntax tree of a {@code myLang} expression.
+ * <p>The nodes are stored in postfix order in primitive arrays, so the tree is built, stored and walked without recursion. Each node has a type
+ * ({@code Token._integer}, {@code Token._variable}, {@code Token._add}, {@code Token._sub}, {@code Token._mult}, {@code Token._div} or
+ * {@code Token._choose}) and a value (the integer, or the {@link SymbolTable} id of the variable). The translator may also replace a subtree
+ * with a {@code Token._tempvar} leaf, whose value is the number of the temporary variable which already holds the value of the subtree. The
+ * last node is the root.</p>
+ * <p>Every node also knows the first node of its subtree ({@link #start}), its parent and its position among the parent's operands, so the
+ * operands of a binary operation or of a {@code choose} node can be found in constant time: the last operand ends right before the node, and
+ * each operand ends right before the start of the next one.</p>
+ * @author Aral Dortogul
+ */
+public class Expression {
+	/**
+	 * the type of each node
+	 */
+	public int[] type;
+	/**
+	 * the value of each integer node, the symbol id of each variable node, or the number of each temporary variable node (0 for operations)
+	 */
+	public int[] value;
+	/**
+	 * the index of the first node of the subtree of each node
+	 */
+	public int[] start;
+	/**
+	 * the index of the parent of each node ({@code -1} for the root)
+	 */
+	public int[] parent;
+	/**
+	 * the position of each node among its parent's operands (0 for the left operand or the first argument)
+	 */
+	public int[] argument;
+	/**
+	 * the number of nodes
+	 */
+	public int length = 0;
+	/**
+	 * Constructs an empty expression with room for the given number of nodes.
+	 * @param capacity the initial capacity
+	 */
+	public Expression(int capacity) {
+		capacity = Math.max(capacity, 1);
+		type = new int[capacity];
+		value = new int[capacity];
+		start = new int[capacity];
+		parent = new int[capacity];
+		argument = new int[capacity];
+	}
+	/**
+	 * Appends an integer or a variable node.
+	 * @param nodeType {@code Token._integer}, {@code Token._variable} or {@code Token._tempvar}
+	 * @param nodeValue the integer, the symbol id or the number of the temporary variable
+	 * @return the index of the node
+	 */
+	public int addLeaf(int nodeType, int nodeValue) {
+		int node = add(nodeType, nodeValue);
+		start[node] = node;
+		return node;
+	}
+	/**
+	 * Appends an operation node whose operands are the given subtrees, which have to be the last subtrees appended.
+	 * @param nodeType {@code Token._add}, {@code Token._sub}, {@code Token._mult}, {@code Token._div} or {@code Token._choose}
+	 * @param operands the roots of the operands (two for binary operations, four for {@code choose}), in order
+	 * @return the index of the node
+	 */
+	public int addOperation(int nodeType, int... operands) {
+		int node = add(nodeType, 0);
+		start[node] = start[operands[0]];
+		for (int i = 0; i < operands.length; i++) {
+			parent[operands[i]] = node;
+			argument[operands[i]] = i;
+		}
+		return node;
+	}
+	/**
+	 * Computes a binary operation with the semantics of LLVM's {@code add}, {@code sub}, {@code mul} and {@code sdiv} on {@code i32}: the results
+	 * wrap around and the quotient is truncated toward 0. The divisor must not be 0.
+	 * @param operation {@code Token._add}, {@code Token._sub}, {@code Token._mult} or {@code Token._div}
+	 * @param left the left operand
+	 * @param right the right operand
+	 * @return the result
+	 */
+	public static int evaluate(int operation, int left, int right) {
+		switch (operation) {
+		case Token._add: return left + right;
+		case Token._sub: return left - right;
+		case Token._mult: return left * right;
+		default: return left / right;
+		}
+	}
+	/**
+	 * Returns the identity which simplifies a binary operation with a constant operand: {@code x+0}, {@code 0+x}, {@code x-0}, {@code x*1},
+	 * {@code 1*x} and {@code x/1} are the other operand; {@code x*0} and {@code 0*x} are 0, unless {@code x} may divide by 0. {@code 0/x} is not
+	 * simplified, since {@code x} may be 0.
+	 * @param operation {@code Token._add}, {@code Token._sub}, {@code Token._mult} or {@code Token._div}
+	 * @param constantLeft {@code true} if the left operand is an integer
+	 * @param left the left operand if it is an integer
+	 * @param constantRight {@code true} if the right operand is an integer
+	 * @param right the right operand if it is an integer
+	 * @param trapping {@code true} if the operand which is not an integer may divide by 0 (see {@link #mayTrap(int)}), so that it cannot be dropped
+	 * @return 1 if the result is the left operand, 2 if the result is the right operand, 3 if the result is 0, 0 if the operation cannot be simplified
+	 */
+	public static int identity(int operation, boolean constantLeft, int left, boolean constantRight, int right, boolean trapping) {
+		switch (operation) {
+		case Token._add:
+			if (constantRight && right == 0) return 1;
+			if (constantLeft && left == 0) return 2;
+			break;
+		case Token._sub:
+			if (constantRight && right == 0) return 1;
+			break;
+		case Token._mult:
+			if (((constantLeft && left == 0) || (constantRight && right == 0)) && !trapping) return 3;
+			if (constantRight && right == 1) return 1;
+			if (constantLeft && left == 1) return 2;
+			break;
+		case Token._div:
+			if (constantRight && right == 1) return 1;
+			break;
+		}
+		return 0;
+	}
+	/**
+	 * Checks if the subtree of a node contains a division whose divisor is not an integer other than 0, which stops the program when the divisor
+	 * is 0, so that the subtree has to be computed even if its value is not needed.
+	 * @param node the root of the subtree
+	 * @return {@code true} if the subtree may divide by 0
+	 */
+	public boolean mayTrap(int node) {
+		for (int i = start[node]; i <= node; i++)
+			if (type[i] == Token._div && (type[i - 1] != Token._integer || value[i - 1] == 0))
+				return true;
+		return false;
+	}
+	/**
+	 * Replaces the nodes from the given index to the end with the subtree of the given node, which moves to that index and becomes a root.
+	 * @param from the index of the first removed node
+	 * @param subtree the root of the kept subtree, which has to start at or after {@code from}
+	 */
+	public void collapse(int from, int subtree) {
+		int first = start[subtree], size = subtree - first + 1, shift = first - from;
+		if (shift != 0) {
+			System.arraycopy(type, first, type, from, size);
+			System.arraycopy(value, first, value, from, size);
+			System.arraycopy(start, first, start, from, size);
+			System.arraycopy(parent, first, parent, from, size);
+			System.arraycopy(argument, first, argument, from, size);
+			for (int node = from; node < from + size; node++) {
+				start[node] -= shift;
+				parent[node] -= shift;
+			}
+		}
+		length = from + size;
+		parent[length - 1] = -1;
+		argument[length - 1] = 0;
+	}
+	/**
+	 * Returns the root of the given operand of an operation node.
+	 * @param node the operation node
+	 * @param index the position of the operand (0 for the left operand or the first argument)
+	 * @return the root of the operand
+	 */
+	public int operand(int node, int index) {
+		int operand = node - 1;
+		for (int i = (type[node] == Token._choose ? 3 : 1); i > index; i--)
+			operand = start[operand] - 1;
+		return operand;
+	}
+	/**
+	 * Returns the root node.
+	 * @return the index of the root
+	 */
+	public int root() {
+		return length - 1;
+	}
+	/**
+	 * Finds the additions, subtractions and multiplications which can never overflow, from an interval of the values of every node: an
+	 * integer is exact, a variable can hold any value, a division by a constant narrows the interval of the dividend and a {@code choose}
+	 * function takes the union of the intervals of its results.
+	 * @return {@code true} for each add, sub and mul node whose result always fits in 32 bits
+	 */
+	public boolean[] noSignedWrap() {
+		long[] low = new long[length], high = new long[length];
+		boolean[] result = new boolean[length];
+		for (int node = 0; node < length; node++) {
+			int nodeType = type[node];
+			long lo = Integer.MIN_VALUE, hi = Integer.MAX_VALUE;
+			if (nodeType == Token._integer)
+				lo = hi = value[node];
+			else if (nodeType == Token._choose) {
+				lo = Long.MAX_VALUE;
+				hi = Long.MIN_VALUE;
+				for (int i = 1; i < 4; i++) {
+					int operand = operand(node, i);
+					lo = Math.min(lo, low[operand]);
+					hi = Math.max(hi, high[operand]);
+				}
+			} else if (nodeType != Token._variable && nodeType != Token._tempvar) {
+				int RHS = node - 1, LHS = start[RHS] - 1;
+				long a = low[LHS], b = high[LHS], c = low[RHS], d = high[RHS];
+				switch (nodeType) {
+				case Token._add: lo = a + c; hi = b + d; break;
+				case Token._sub: lo = a - d; hi = b - c; break;
+				case Token._mult:
+					lo = Math.min(Math.min(a * c, a * d), Math.min(b * c, b * d));
+					hi = Math.max(Math.max(a * c, a * d), Math.max(b * c, b * d));
+					break;
+				case Token._div:
+					if (c == d && c != 0 && !(c == -1 && a == Integer.MIN_VALUE)) { // The quotient is monotonic in the dividend.
+						lo = c > 0 ? a / c : b / c;
+						hi = c > 0 ? b / c : a / c;
+					} else { // The quotient is not larger than the dividend.
+						hi = Math.max(Math.abs(a), Math.abs(b));
+						lo = -hi;
+					}
+					break;
+				}
+				result[node] = nodeType != Token._div && lo >= Integer.MIN_VALUE && hi <= Integer.MAX_VALUE;
+				if (lo < Integer.MIN_VALUE || hi > Integer.MAX_VALUE) { // The result wraps around.
+					lo = Integer.MIN_VALUE;
+					hi = Integer.MAX_VALUE;
+				}
+			}
+			low[node] = lo;
+			high[node] = hi;
+		}
+		return result;
+	}
+	/**
+	 * Returns a copy of the subtree of a node.
+	 * @param node the root of the subtree
+	 * @return the new expression
+	 */
+	public Expression subtree(int node) {
+		int first = start[node];
+		Expression result = new Expression(node - first + 1);
+		for (int i = first; i <= node; i++) {
+			result.type[i - first] = type[i];
+			result.value[i - first] = value[i];
+			result.start[i - first] = start[i] - first;
+			result.parent[i - first] = parent[i] - first;
+			result.argument[i - first] = argument[i];
+		}
+		result.length = node - first + 1;
+		result.parent[result.length - 1] = -1;
+		result.argument[result.length - 1] = 0;
+		return result;
+	}
+	/**
+	 * Appends a node and makes it the root.
+	 * @param nodeType the type of the node
+	 * @param nodeValue the value of the node
+	 * @return the index of the node
+	 */
+	private int add(int nodeType, int nodeValue) {
+		if (length == type.length) {
+			type = Arrays.copyOf(type, 2 * length);
+			value = Arrays.copyOf(value, 2 * length);
+			start = Arrays.copyOf(start, 2 * length);
+			parent = Arrays.copyOf(parent, 2 * length);
+			argument = Arrays.copyOf(argument, 2 * length);
+		}
+		type[length] = nodeType;
+		value[length] = nodeValue;
+		parent[length] = -1;
+		argument[length] = 0;
+		return length++;
+	}
+}
@@ -0,0 +1,705 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+/**
+ * Writer of LLVM-IR code which encodes the statements as ASCII bytes straight into a reusable buffer.
+ * <p>The body of {@code @main} is streamed while the script is being parsed: whenever the buffer fills up it is flushed to a temporary segment
+ * (a temporary file, or memory if no temporary directory is given). Only the variable declarations and initializations, which have to come first,
+ * are held back, and they are spliced in front of the body when the code is finished.</p>
+ * @author Aral Dortogul
+ */
+public class IREmitter {
+	/**
+	 * the size of the body buffer in bytes
+	 */
+	private static final int BUFFER_SIZE = 1 << 16;
+	/**
+	 * the module header, which is followed by the variable declarations
+	 */
+	private static final byte[] HEADER = ascii("; ModuleID = 'mylang2ir'\ndeclare i32 @printf(i8*, ...)\n@print.str = constant [4 x i8] c\"%d\\0A\\00\"\n\ndefine i32 @main() {\n");
+	/**
+	 * the end of the {@code @main} function
+	 */
+	private static final byte[] FOOTER = ascii("\tret i32 0\n}\n");
+	/**
+	 * the module header in modern LLVM-IR (opaque pointers), with the target of the host and a private format string
+	 */
+	private static final byte[] MODERN_HEADER = ascii(modernHeader(""));
+	/**
+	 * the module header in modern LLVM-IR with the debug information of {@code @main}
+	 */
+	private static final byte[] DEBUG_HEADER = ascii(modernHeader(" !dbg !4"));
+	/**
+	 * the end of the {@code @main} function in modern LLVM-IR, with the attributes of {@code @main}
+	 */
+	private static final byte[] MODERN_FOOTER = ascii("\tret i32 0\n}\n\nattributes #0 = { nounwind norecurse }\n");
+	/**
+	 * the size of the output buffer of the buffered-output runtime in bytes
+	 */
+	public static final int OUTPUT_SIZE = 1 << 16;
+	/**
+	 * the maximum length of a printed line in bytes: a sign, 10 digits and a line feed
+	 */
+	public static final int LINE_SIZE = 12;
+	/**
+	 * the buffered-output runtime, which is appended to the module with {@link Options#buffered}; {@code {gep}}, {@code {load32}},
+	 * {@code {load8}}, {@code {ptr8}} and {@code {ptr32}} stand for the syntax of legacy or modern LLVM-IR
+	 * <ul>
+	 * 	<li>{@code @out.reserve(size)} flushes the buffer if fewer than {@code size} bytes are free.</li>
+	 * 	<li>{@code @out.put(value)} writes the decimal digits of a value and a line feed to the buffer, like {@code printf("%d\n")}: the digits
+	 * 	of the magnitude (as an unsigned integer, so that the magnitude of {@link Integer#MIN_VALUE} is right) are written backwards and
+	 * 	reversed in place. The buffer must have room for {@link #LINE_SIZE} bytes.</li>
+	 * 	<li>{@code @out.flush()} writes the buffer to the standard output with {@code write}, until every byte is written or an error
+	 * 	occurs, and empties it.</li>
+	 * </ul>
+	 */
+	private static final String RUNTIME = """
+
+			@out.buf = internal global [65536 x i8] zeroinitializer
+			@out.len = internal global i32 0
+
+			declare i64 @write(i32, {ptr8}, i64)
+
+			define internal void @out.reserve(i32 %size) nounwind {
+			entry:
+				%len = {load32}@out.len
+				%free = sub i32 65536, %len
+				%full = icmp ugt i32 %size, %free
+				br i1 %full, label %flush, label %done
+
+			flush:
+				call void @out.flush()
+				br label %done
+
+			done:
+				ret void
+			}
+
+			define internal void @out.put(i32 %value) nounwind {
+			entry:
+				%start = {load32}@out.len
+				%negative = icmp slt i32 %value, 0
+				%negation = sub i32 0, %value
+				%magnitude = select i1 %negative, i32 %negation, i32 %value
+				br i1 %negative, label %sign, label %digits
+
+			sign:
+				%minus = {gep}%start
+				store i8 45, {ptr8} %minus
+				%signed = add i32 %start, 1
+				br label %digits
+
+			digits:
+				%first = phi i32 [ %start, %entry ], [ %signed, %sign ]
+				br label %digit
+
+			digit:
+				%position = phi i32 [ %first, %digits ], [ %next, %digit ]
+				%rest = phi i32 [ %magnitude, %digits ], [ %quotient, %digit ]
+				%quotient = udiv i32 %rest, 10
+				%product = mul i32 %quotient, 10
+				%remainder = sub i32 %rest, %product
+				%code = add i32 %remainder, 48
+				%char = trunc i32 %code to i8
+				%pointer = {gep}%position
+				store i8 %char, {ptr8} %pointer
+				%next = add i32 %position, 1
+				%more = icmp ne i32 %quotient, 0
+				br i1 %more, label %digit, label %newline
+
+			newline:
+				%end = {gep}%next
+				store i8 10, {ptr8} %end
+				%length = add i32 %next, 1
+				store i32 %length, {ptr32} @out.len
+				%last = sub i32 %next, 1
+				br label %reverse
+
+			reverse:
+				%left = phi i32 [ %first, %newline ], [ %leftNext, %swap ]
+				%right = phi i32 [ %last, %newline ], [ %rightNext, %swap ]
+				%unordered = icmp slt i32 %left, %right
+				br i1 %unordered, label %swap, label %done
+
+			swap:
+				%leftPointer = {gep}%left
+				%rightPointer = {gep}%right
+				%leftChar = {load8}%leftPointer
+				%rightChar = {load8}%rightPointer
+				store i8 %rightChar, {ptr8} %leftPointer
+				store i8 %leftChar, {ptr8} %rightPointer
+				%leftNext = add i32 %left, 1
+				%rightNext = sub i32 %right, 1
+				br label %reverse
+
+			done:
+				ret void
+			}
+
+			define internal void @out.flush() nounwind {
+			entry:
+				%length = {load32}@out.len
+				br label %loop
+
+			loop:
+				%offset = phi i32 [ 0, %entry ], [ %advanced, %written ]
+				%remaining = sub i32 %length, %offset
+				%pending = icmp sgt i32 %remaining, 0
+				br i1 %pending, label %write, label %done
+
+			write:
+				%pointer = {gep}%offset
+				%size = zext i32 %remaining to i64
+				%result = call i64 @write(i32 1, {ptr8} %pointer, i64 %size)
+				%failed = icmp sle i64 %result, 0
+				br i1 %failed, label %done, label %written
+
+			written:
+				%count = trunc i64 %result to i32
+				%advanced = add i32 %offset, %count
+				br label %loop
+
+			done:
+				store i32 0, {ptr32} @out.len
+				ret void
+			}
+			""";
+	/**
+	 * the buffered-output runtime in legacy LLVM-IR
+	 */
+	private static final byte[] RUNTIME_LEGACY = ascii(RUNTIME.replace("{gep}", "getelementptr [65536 x i8]* @out.buf, i32 0, i32 ").replace("{load32}", "load i32* ")
+			.replace("{load8}", "load i8* ").replace("{ptr8}", "i8*").replace("{ptr32}", "i32*"));
+	/**
+	 * the buffered-output runtime in modern LLVM-IR
+	 */
+	private static final byte[] RUNTIME_MODERN = ascii(RUNTIME.replace("{gep}", "getelementptr [65536 x i8], ptr @out.buf, i32 0, i32 ").replace("{load32}", "load i32, ptr ")
+			.replace("{load8}", "load i8, ptr ").replace("{ptr8}", "ptr").replace("{ptr32}", "ptr"));
+	/**
+	 * the flush of the output buffer at the end of {@code @main}
+	 */
+	private static final byte[] FLUSH = ascii("\tcall void @out.flush()\n");
+	/**
+	 * the debug information of the module, which is followed by the {@code !DILocation} of each line from {@code !8} on; {@code {file}} and
+	 * {@code {directory}} stand for the path of the script
+	 */
+	private static final String DEBUG_INFO = """
+
+			!llvm.dbg.cu = !{!0}
+			!llvm.module.flags = !{!1, !2}
+
+			!0 = distinct !DICompileUnit(language: DW_LANG_C99, file: !3, producer: "mylang2ir", isOptimized: false, runtimeVersion: 0, emissionKind: FullDebug)
+			!1 = !{i32 7, !"Dwarf Version", i32 4}
+			!2 = !{i32 2, !"Debug Info Version", i32 3}
+			!3 = !DIFile(filename: "{file}", directory: "{directory}")
+			!4 = distinct !DISubprogram(name: "main", scope: !3, file: !3, line: 1, type: !5, scopeLine: 1, spFlags: DISPFlagDefinition, unit: !0)
+			!5 = !DISubroutineType(types: !6)
+			!6 = !{!7}
+			!7 = !DIBasicType(name: "int", size: 32, encoding: DW_ATE_signed)
+			""";
+	/**
+	 * the number of the metadata node of the location of the first line (line 0) of the script
+	 */
+	private static final int FIRST_LOCATION = 8;
+	/**
+	 * the digits of {@link Integer#MIN_VALUE}, which cannot be negated
+	 */
+	private static final byte[] MIN_VALUE_DIGITS = ascii("2147483648");
+	/**
+	 * a single line feed
+	 */
+	private static final byte[] NEWLINE = {'\n'};
+	/**
+	 * the buffer which the body statements are written to
+	 */
+	private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+	/**
+	 * the LLVM-IR variable declaration statements
+	 */
+	private ByteBuffer declarations = ByteBuffer.allocate(256);
+	/**
+	 * the LLVM-IR variable initialization statements (var = 0)
+	 */
+	private ByteBuffer initializations = ByteBuffer.allocate(256);
+	/**
+	 * the global variables and constants which are written behind {@code @main}: the profile counters and strings
+	 */
+	private ByteBuffer globals = ByteBuffer.allocate(0);
+	/**
+	 * the body statements which were flushed from the buffer to memory because there is no segment directory
+	 */
+	private ByteBuffer overflow = ByteBuffer.allocate(0);
+	/**
+	 * the temporary file which the body statements are flushed to, {@code null} until the buffer fills up for the first time
+	 */
+	private FileChannel segment;
+	/**
+	 * the directory of the temporary segment file, {@code null} if the body is kept in memory
+	 */
+	private Path segmentDirectory;
+	/**
+	 * {@code true} if modern LLVM-IR (opaque pointers) is written instead of legacy typed-pointer LLVM-IR
+	 */
+	private final boolean modern;
+	/**
+	 * {@code true} if the module prints through the buffered-output runtime instead of {@code printf}
+	 */
+	private final boolean buffered;
+	/**
+	 * the file name of the script in the debug information, {@code null} if no debug information is written
+	 */
+	private String debugFile;
+	/**
+	 * the directory of the script in the debug information
+	 */
+	private String debugDirectory;
+	/**
+	 * the number of the line of the script which the following instructions belong to, {@code -1} for none
+	 */
+	private int location = -1;
+	/**
+	 * the highest number of a line which an instruction belongs to, {@code -1} for none
+	 */
+	private int lastLocation = -1;
+	/**
+	 * {@code true} if nothing has been written to the current line of the body yet
+	 */
+	private boolean lineStart = true;
+	/**
+	 * {@code true} if the current line of the body is an instruction, which gets the debug location
+	 */
+	private boolean instruction = false;
+	/**
+	 * Constructs a writer of legacy typed-pointer LLVM-IR code.
+	 */
+	public IREmitter() {
+		this(false);
+	}
+	/**
+	 * Constructs a writer of LLVM-IR code which prints with {@code printf}.
+	 * @param modern {@code true} for modern LLVM-IR (opaque pointers), {@code false} for legacy typed-pointer LLVM-IR
+	 */
+	public IREmitter(boolean modern) {
+		this(modern, false);
+	}
+	/**
+	 * Constructs a writer of LLVM-IR code.
+	 * @param modern {@code true} for modern LLVM-IR (opaque pointers), {@code false} for legacy typed-pointer LLVM-IR
+	 * @param buffered {@code true} if the buffered-output runtime is appended to the module and the output buffer is flushed at the end of
+	 * {@code @main}
+	 */
+	public IREmitter(boolean modern, boolean buffered) {
+		this.modern = modern;
+		this.buffered = buffered;
+	}
+	/**
+	 * Returns the module header in modern LLVM-IR.
+	 * @param metadata the metadata attachments of {@code @main}
+	 * @return the header
+	 */
+	private static String modernHeader(String metadata) {
+		return "; ModuleID = 'mylang2ir'\n" + hostTarget() + "\n@print.str = private unnamed_addr constant [4 x i8] c\"%d\\0A\\00\"\n\n"
+				+ "declare i32 @printf(ptr, ...) nounwind\n\ndefine i32 @main() #0" + metadata + " {\n";
+	}
+	/**
+	 * Returns the {@code target datalayout} and {@code target triple} lines of the host, for the hosts whose data layouts are known.
+	 * @return the lines, empty if the host is not known (the module then has the default target of the LLVM tools)
+	 */
+	private static String hostTarget() {
+		String arch = System.getProperty("os.arch", ""), os = System.getProperty("os.name", "").toLowerCase();
+		char mangling = os.startsWith("mac") ? 'o' : os.startsWith("windows") ? 'w' : os.startsWith("linux") ? 'e' : 0;
+		String layout, triple;
+		if (mangling == 0)
+			return "";
+		if (arch.equals("amd64") || arch.equals("x86_64")) {
+			layout = "e-m:" + mangling + "-p270:32:32-p271:32:32-p272:64:64-i64:64-i128:128-f80:128-n8:16:32:64-S128";
+			triple = mangling == 'o' ? "x86_64-apple-macosx" : mangling == 'w' ? "x86_64-pc-windows-msvc" : "x86_64-pc-linux-gnu";
+		} else if (arch.equals("aarch64") && mangling != 'w') {
+			layout = mangling == 'o' ? "e-m:o-i64:64-i128:128-n32:64-S128" : "e-m:e-i8:8:32-i16:16:32-i64:64-i128:128-n32:64-S128";
+			triple = mangling == 'o' ? "arm64-apple-macosx" : "aarch64-unknown-linux-gnu";
+		} else
+			return "";
+		return "target datalayout = \"" + layout + "\"\ntarget triple = \"" + triple + "\"\n";
+	}
+	/**
+	 * Returns the type of the pointer operand of {@code store} instructions.
+	 * @return {@code "ptr"} in modern LLVM-IR, {@code "i32*"} in legacy LLVM-IR
+	 */
+	public String pointer() {
+		return modern ? "ptr" : "i32*";
+	}
+	/**
+	 * Returns the beginning of a {@code load} instruction, which is followed by the name of the variable.
+	 * @return the instruction up to {@code '%'}
+	 */
+	public String load() {
+		return modern ? "load i32, ptr %" : "load i32* %";
+	}
+	/**
+	 * Returns the beginning of a {@code printf} call which prints an integer, which is followed by the integer and {@code " )"}.
+	 * @return the call up to the printed integer
+	 */
+	public String printf() {
+		return modern ? "\tcall i32 (ptr, ...) @printf(ptr @print.str, i32 " : "\tcall i32 (i8*, ...)* @printf(i8* getelementptr ([4 x i8]* @print.str, i32 0, i32 0), i32 ";
+	}
+	/**
+	 * Appends the increment of a profile counter to the body.
+	 * @param counter the name of the counter, which is the name of its global variable without {@code @prof.}
+	 * @param temp the number of the first of the two temporary variables used by the increment
+	 * @throws IOException when the buffer cannot be flushed
+	 */
+	public void count(String counter, int temp) throws IOException {
+		append("\t%t").append(temp).append(modern ? " = load i64, ptr @prof." : " = load i64* @prof.").append(counter).line();
+		append("\t%t").append(temp + 1).append(" = add i64 %t").append(temp).append(", 1").line();
+		append("\tstore i64 %t").append(temp + 1).append(modern ? ", ptr @prof." : ", i64* @prof.").append(counter).line();
+	}
+	/**
+	 * Appends the code which writes the profile counters to a file at the end of {@code @main}, and defines the counters.
+	 * <p>The file starts with the line {@code # mylang2ir profile}, followed by a line for each counter: its name, the number of the source line
+	 * which it belongs to and its count, separated by spaces. Nothing is written if the file cannot be opened.</p>
+	 * @param counters the number of the source line of each counter, by the names of the counters in order
+	 * @param path the path of the profile file
+	 * @throws IOException when the buffer cannot be flushed
+	 */
+	public void appendProfile(Map<String, Integer> counters, String path) throws IOException {
+		location(Math.max(lastLocation, 0)); // The calls belong to the last line.
+		String pointer = modern ? "ptr" : "i8*";
+		append("\t%prof.file = call ").append(pointer).append(" @fopen(").append(string("prof.path", path.getBytes(StandardCharsets.UTF_8))).append(", ")
+			.append(string("prof.mode", ascii("w"))).append(")").line();
+		append("\t%prof.opened = icmp ne ").append(pointer).append(" %prof.file, null").line();
+		append("\tbr i1 %prof.opened, label %prof.dump, label %prof.end").line().line();
+		append("prof.dump:").line();
+		append(fprintf()).append(string("prof.header", ascii("# mylang2ir profile\n"))).append(")").line();
+		int number = 0;
+		for (Map.Entry<String, Integer> counter : counters.entrySet()) {
+			globals = put(put(put(globals, "@prof."), counter.getKey()), " = internal global i64 0\n");
+			append("\t%prof.").append(number).append(modern ? " = load i64, ptr @prof." : " = load i64* @prof.").append(counter.getKey()).line();
+			String format = counter.getKey() + " " + counter.getValue() + " %llu\n";
+			append(fprintf()).append(string("prof.format" + number, ascii(format))).append(", i64 %prof.").append(number++).append(")").line();
+		}
+		append("\tcall i32 @fclose(").append(pointer).append(" %prof.file)").line();
+		append("\tbr label %prof.end").line().line();
+		append("prof.end:").line();
+		globals = put(globals, modern ? "declare ptr @fopen(ptr, ptr) nounwind\ndeclare i32 @fprintf(ptr, ptr, ...) nounwind\ndeclare i32 @fclose(ptr) nounwind\n"
+				: "declare i8* @fopen(i8*, i8*)\ndeclare i32 @fprintf(i8*, i8*, ...)\ndeclare i32 @fclose(i8*)\n");
+	}
+	/**
+	 * Returns the beginning of an {@code fprintf} call to the profile file, which is followed by the format string.
+	 * @return the call up to the format string
+	 */
+	private String fprintf() {
+		return modern ? "\tcall i32 (ptr, ptr, ...) @fprintf(ptr %prof.file, " : "\tcall i32 (i8*, i8*, ...)* @fprintf(i8* %prof.file, ";
+	}
+	/**
+	 * Defines a global string constant, terminated by a 0 byte, and returns a pointer operand to its first character.
+	 * @param name the name of the constant without {@code @}
+	 * @param bytes the characters of the string
+	 * @return the typed operand which points to the string
+	 */
+	private String string(String name, byte[] bytes) {
+		StringBuilder constant = new StringBuilder("@").append(name).append(modern ? " = private unnamed_addr constant [" : " = private constant [");
+		constant.append(bytes.length + 1).append(" x i8] c\"").append(escape(bytes)).append("\\00\"\n");
+		globals = put(globals, constant.toString());
+		return modern ? "ptr @" + name : "i8* getelementptr ([" + (bytes.length + 1) + " x i8]* @" + name + ", i32 0, i32 0)";
+	}
+	/**
+	 * Escapes a string for a string constant or a metadata string.
+	 * @param text the string
+	 * @return the printable ASCII characters of the UTF-8 encoding of the string, with {@code \XX} for the other bytes, quotes and backslashes
+	 */
+	private static String escape(String text) {
+		return escape(text.getBytes(StandardCharsets.UTF_8));
+	}
+	/**
+	 * Escapes bytes for a string constant or a metadata string.
+	 * @param bytes the bytes
+	 * @return the printable ASCII characters, with {@code \XX} for the other bytes, quotes and backslashes
+	 */
+	private static String escape(byte[] bytes) {
+		StringBuilder escaped = new StringBuilder(bytes.length);
+		for (byte b : bytes) {
+			if (b >= ' ' && b <= '~' && b != '"' && b != '\\')
+				escaped.append((char) b);
+			else
+				escaped.append('\\').append(Character.toUpperCase(Character.forDigit((b >> 4) & 15, 16))).append(Character.toUpperCase(Character.forDigit(b & 15, 16)));
+		}
+		return escaped.toString();
+	}
+	/**
+	 * Encodes a string which only contains ASCII characters.
+	 * @param text the string
+	 * @return the ASCII bytes of the string
+	 */
+	private static byte[] ascii(String text) {
+		byte[] bytes = new byte[text.length()];
+		for (int i = 0; i < bytes.length; i++)
+			bytes[i] = (byte) text.charAt(i);
+		return bytes;
+	}
+	/**
+	 * Discards the code of the previous script so that a new one can be written.
+	 * @param segmentDirectory the directory which a temporary segment file is created in if the body does not fit in the buffer, {@code null} to keep the body in memory
+	 * @throws IOException when the previous temporary segment cannot be deleted
+	 */
+	public void reset(Path segmentDirectory) throws IOException {
+		buffer.clear();
+		declarations.clear();
+		initializations.clear();
+		overflow.clear();
+		globals.clear();
+		closeSegment();
+		this.segmentDirectory = segmentDirectory;
+		location = lastLocation = -1;
+		lineStart = true;
+		instruction = false;
+	}
+	/**
+	 * Makes the module carry debug information which maps the instructions to the lines of the script, or none. Debug information is only
+	 * written in modern LLVM-IR.
+	 * @param file the file name of the script, {@code null} for no debug information
+	 * @param directory the directory of the script
+	 */
+	public void debug(String file, String directory) {
+		debugFile = modern ? file : null;
+		debugDirectory = directory;
+	}
+	/**
+	 * Sets the line of the script which the following instructions belong to.
+	 * @param line the number of the line (starting with 0), {@code -1} for none
+	 */
+	public void location(int line) {
+		location = line;
+		lastLocation = Math.max(lastLocation, line);
+	}
+	/**
+	 * Appends the declaration ({@code alloca}) and the initialization ({@code store 0}) of a variable to the prologue.
+	 * @param name the name of the variable
+	 */
+	public void declare(String name) {
+		declare(name, true);
+	}
+	/**
+	 * Appends the declaration ({@code alloca}) of a variable to the prologue, and its initialization ({@code store 0}) if it is needed.
+	 * @param name the name of the variable
+	 * @param initialized {@code false} if the variable is always stored before it is loaded, so that it does not have to be initialized
+	 */
+	public void declare(String name, boolean initialized) {
+		declarations = put(put(put(declarations, "\t%"), name), " = alloca i32\n");
+		if (initialized)
+			initializations = put(put(put(put(put(initializations, "\tstore i32 0, "), pointer()), " %"), name), "\n");
+	}
+	/**
+	 * Appends a string to the body.
+	 * @param text the string, which only contains ASCII characters
+	 * @return this emitter
+	 * @throws IOException when the buffer cannot be flushed
+	 */
+	public IREmitter append(String text) throws IOException {
+		int length = text.length();
+		if (lineStart && length > 0) {
+			instruction = text.charAt(0) == '\t';
+			lineStart = false;
+		}
+		for (int i = 0; i < length; ) {
+			if (!buffer.hasRemaining()) flush();
+			int end = Math.min(length, i + buffer.remaining());
+			while (i < end)
+				buffer.put((byte) text.charAt(i++));
+		}
+		return this;
+	}
+	/**
+	 * Appends the decimal representation of an integer to the body.
+	 * @param value the integer
+	 * @return this emitter
+	 * @throws IOException when the buffer cannot be flushed
+	 */
+	public IREmitter append(int value) throws IOException {
+		if (buffer.remaining() < 11) flush(); // An int has at most 11 characters.
+		if (value < 0) {
+			buffer.put((byte) '-');
+			if (value == Integer.MIN_VALUE) {
+				buffer.put(MIN_VALUE_DIGITS);
+				return this;
+			}
+			value = -value;
+		}
+		int position = buffer.position(), digits = 1;
+		for (int rest = value; rest >= 10; rest /= 10)
+			digits++;
+		for (int i = position + digits - 1; i >= position; i--, value /= 10)
+			buffer.put(i, (byte) ('0' + value % 10));
+		buffer.position(position + digits);
+		return this;
+	}
+	/**
+	 * Ends the current line of the body.
+	 * @return this emitter
+	 * @throws IOException when the buffer cannot be flushed
+	 */
+	public IREmitter line() throws IOException {
+		if (instruction && debugFile != null && location >= 0) {
+			instruction = false;
+			append(", !dbg !").append(FIRST_LOCATION + location);
+		}
+		if (!buffer.hasRemaining()) flush();
+		buffer.put((byte) '\n');
+		lineStart = true;
+		instruction = false;
+		return this;
+	}
+	/**
+	 * Appends the body written to another emitter, which keeps its body in memory, and discards it from the other emitter.
+	 * @param other the other emitter, whose variables are declared in this emitter
+	 * @throws IOException when the buffer cannot be flushed
+	 */
+	public void appendBody(IREmitter other) throws IOException {
+		other.flush();
+		lastLocation = Math.max(lastLocation, other.lastLocation);
+		ByteBuffer bytes = other.overflow.flip();
+		while (bytes.hasRemaining()) {
+			if (!buffer.hasRemaining()) flush();
+			int length = Math.min(bytes.remaining(), buffer.remaining());
+			buffer.put(buffer.position(), bytes, bytes.position(), length);
+			buffer.position(buffer.position() + length);
+			bytes.position(bytes.position() + length);
+		}
+		other.reset(null);
+	}
+	/**
+	 * Writes the whole module to the given channel: the header, the prologue, the body and the end of {@code @main}.
+	 * @param output the channel which the module is written to
+	 * @throws IOException when the module cannot be written
+	 */
+	public void finish(WritableByteChannel output) throws IOException {
+		write(output, ByteBuffer.wrap(!modern ? HEADER : debugFile != null ? DEBUG_HEADER : MODERN_HEADER));
+		if (debugFile != null) // The calls at the end of @main belong to the last line, even of an empty script.
+			lastLocation = Math.max(lastLocation, 0);
+		if (declarations.position() > 0) {
+			write(output, declarations.flip());
+			write(output, ByteBuffer.wrap(NEWLINE));
+		}
+		if (initializations.position() > 0) {
+			write(output, initializations.flip());
+			write(output, ByteBuffer.wrap(NEWLINE));
+		}
+		if (segment != null) {
+			flush();
+			for (long position = 0, size = segment.size(); position < size; )
+				position += segment.transferTo(position, size - position, output);
+			closeSegment();
+		} else
+			write(output, overflow.flip());
+		write(output, buffer.flip());
+		if (buffered)
+			write(output, ByteBuffer.wrap(debugFile == null ? FLUSH : ascii("\tcall void @out.flush(), !dbg !" + (FIRST_LOCATION + lastLocation) + "\n")));
+		write(output, ByteBuffer.wrap(modern ? MODERN_FOOTER : FOOTER));
+		if (buffered)
+			write(output, ByteBuffer.wrap(modern ? RUNTIME_MODERN : RUNTIME_LEGACY));
+		if (globals.position() > 0) {
+			write(output, ByteBuffer.wrap(NEWLINE));
+			write(output, globals.flip());
+		}
+		if (debugFile != null) {
+			StringBuilder metadata = new StringBuilder(DEBUG_INFO.replace("{file}", escape(debugFile)).replace("{directory}", escape(debugDirectory)));
+			for (int line = 0; line <= lastLocation; line++)
+				metadata.append('!').append(FIRST_LOCATION + line).append(" = !DILocation(line: ").append(line + 1).append(", column: 1, scope: !4)\n");
+			write(output, ByteBuffer.wrap(ascii(metadata.toString())));
+		}
+	}
+	/**
+	 * Writes the syntax error program to the given channel, discarding the code written so far.
+	 * <p>The syntax error program displays "Line X: syntax error" when executed. X is the number of the line in which the syntax error is detected.</p>
+	 * @param output the channel which the module is written to
+	 * @param lineCount the number of the line in which the syntax error is detected
+	 * @throws IOException when the module cannot be written
+	 */
+	public void finishSyntaxError(WritableByteChannel output, int lineCount) throws IOException {
+		reset(null);
+		append("; ModuleID = 'mylang2ir'").line();
+		if (modern) {
+			append(hostTarget()).line();
+			append("@print.str = private unnamed_addr constant [23 x i8] c\"Line %d: syntax error\\0A\\00\"").line().line();
+			append("declare i32 @printf(ptr, ...) nounwind").line().line();
+			append("define i32 @main() #0 {").line();
+			append("\tcall i32 (ptr, ...) @printf(ptr @print.str, i32 ").append(lineCount).append(" )").line();
+		} else {
+			append("declare i32 @printf(i8*, ...)").line();
+			append("@print.str = constant [23 x i8] c\"Line %d: syntax error\\0A\\00\"").line();
+			line();
+			append("define i32 @main() {").line();
+			append("\tcall i32 (i8*, ...)* @printf(i8* getelementptr ([23 x i8]* @print.str, i32 0, i32 0), i32 ").append(lineCount).append(" )").line();
+		}
+		append("\tret i32 0").line();
+		append("}").line();
+		if (modern)
+			line().append("attributes #0 = { nounwind norecurse }").line();
+		write(output, buffer.flip());
+		buffer.clear();
+	}
+	/**
+	 * Flushes the body buffer to the temporary segment.
+	 * @throws IOException when the temporary segment cannot be written
+	 */
+	private void flush() throws IOException {
+		buffer.flip();
+		if (segment == null && segmentDirectory != null)
+			segment = FileChannel.open(Files.createTempFile(segmentDirectory, "mylang2ir", ".tmp"), StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE);
+		if (segment != null)
+			write(segment, buffer);
+		else {
+			if (overflow.remaining() < buffer.remaining())
+				overflow = grow(overflow, buffer.remaining());
+			overflow.put(buffer);
+		}
+		buffer.clear();
+	}
+	/**
+	 * Closes (and thereby deletes) the temporary segment if there is one.
+	 * @throws IOException when the temporary segment cannot be closed
+	 */
+	private void closeSegment() throws IOException {
+		if (segment != null) {
+			segment.close();
+			segment = null;
+		}
+	}
+	/**
+	 * Writes all of the remaining bytes of a buffer to a channel.
+	 * @param output the channel
+	 * @param bytes the buffer
+	 * @throws IOException when the channel cannot be written
+	 */
+	private static void write(WritableByteChannel output, ByteBuffer bytes) throws IOException {
+		while (bytes.hasRemaining())
+			output.write(bytes);
+	}
+	/**
+	 * Appends a string to a growable buffer.
+	 * @param target the buffer
+	 * @param text the string, which only contains ASCII characters
+	 * @return the buffer, or a larger copy of it if it was full
+	 */
+	private static ByteBuffer put(ByteBuffer target, String text) {
+		if (target.remaining() < text.length())
+			target = grow(target, text.length());
+		for (int i = 0; i < text.length(); i++)
+			target.put((byte) text.charAt(i));
+		return target;
+	}
+	/**
+	 * Copies a buffer into a new buffer which has room for at least the given number of additional bytes.
+	 * @param target the buffer
+	 * @param needed the number of additional bytes
+	 * @return the new buffer
+	 */
+	private static ByteBuffer grow(ByteBuffer target, int needed) {
+		ByteBuffer grown = ByteBuffer.allocate(Math.max(2 * target.capacity(), target.position() + needed));
+		return grown.put(target.flip());
+	}
+}
@@ -0,0 +1,497 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+/**
+ * Execution engine which runs {@code myLang} scripts directly, without LLVM.
+ * <p>A script is read by the front end of the translator ({@link Parser}, followed by {@link ConstantPropagator} unless {@code -O0} is given)
+ * and compiled once to a register bytecode. Every variable has a register, whose index is its symbol id, and the intermediate values of the
+ * expressions are kept in the registers behind the variables, one for each depth of the operand stack. An instruction is four integers: the
+ * opcode and up to three operands (registers, constants or jump targets). The dispatch loop runs over primitive arrays only and prints through
+ * a {@link LinePrinter}, so it does not allocate.</p>
+ * <p>The semantics are those of the LLVM-IR code of the translator: the variables start with 0, the operations wrap around on 32 bits, the
+ * quotient is truncated toward 0 and only the chosen argument of a {@code choose} function is computed. A division by 0, whose result is
+ * undefined in LLVM-IR, stops the script with an {@link ArithmeticException} which names the line of the division.</p>
+ * @author Aral Dortogul
+ */
+public class Interpreter {
+	/**
+	 * the opcode which loads a constant: {@code r[a] = b}
+	 */
+	private static final int CONST = 0;
+	/**
+	 * the opcode which copies a register: {@code r[a] = r[b]}
+	 */
+	private static final int MOVE = 1;
+	/**
+	 * the opcode of an addition: {@code r[a] = r[b] + r[c]}
+	 */
+	private static final int ADD = 2;
+	/**
+	 * the opcode of a subtraction: {@code r[a] = r[b] - r[c]}
+	 */
+	private static final int SUB = 3;
+	/**
+	 * the opcode of a multiplication: {@code r[a] = r[b] * r[c]}
+	 */
+	private static final int MUL = 4;
+	/**
+	 * the opcode of a division: {@code r[a] = r[b] / r[c]}
+	 */
+	private static final int DIV = 5;
+	/**
+	 * the opcode of an addition of a constant: {@code r[a] = r[b] + c}
+	 */
+	private static final int ADD_CONST = 6;
+	/**
+	 * the opcode of a subtraction of a constant: {@code r[a] = r[b] - c}
+	 */
+	private static final int SUB_CONST = 7;
+	/**
+	 * the opcode of a subtraction from a constant: {@code r[a] = c - r[b]}
+	 */
+	private static final int CONST_SUB = 8;
+	/**
+	 * the opcode of a multiplication by a constant: {@code r[a] = r[b] * c}
+	 */
+	private static final int MUL_CONST = 9;
+	/**
+	 * the opcode of a division by a constant: {@code r[a] = r[b] / c}
+	 */
+	private static final int DIV_CONST = 10;
+	/**
+	 * the opcode of a division of a constant: {@code r[a] = c / r[b]}
+	 */
+	private static final int CONST_DIV = 11;
+	/**
+	 * the opcode of an unconditional jump to {@code a}
+	 */
+	private static final int JUMP = 12;
+	/**
+	 * the opcode which jumps to {@code b} if {@code r[a]} is 0
+	 */
+	private static final int JUMP_ZERO = 13;
+	/**
+	 * the opcode which jumps to {@code b} if {@code r[a]} is not 0
+	 */
+	private static final int JUMP_NONZERO = 14;
+	/**
+	 * the opcode of a {@code choose} function, which continues with the next instruction if {@code r[a]} is 0, and jumps to {@code b} if it is
+	 * positive or to {@code c} if it is negative
+	 */
+	private static final int CHOOSE = 15;
+	/**
+	 * the opcode which prints {@code r[a]}
+	 */
+	private static final int PRINT = 16;
+	/**
+	 * the opcode which prints the constant {@code a}
+	 */
+	private static final int PRINT_CONST = 17;
+	/**
+	 * the opcode which ends the script
+	 */
+	private static final int HALT = 18;
+	/**
+	 * the size of an instruction in integers
+	 */
+	private static final int SIZE = 4;
+	/**
+	 * the options of the front end
+	 */
+	private final Options options;
+	/**
+	 * the symbol table of the script's variables
+	 */
+	private SymbolTable symbols = new SymbolTable();
+	/**
+	 * the parser of the script
+	 */
+	private Parser parser = new Parser(symbols);
+	/**
+	 * the constant propagator of the statements (used when {@link Options#propagate()} is set)
+	 */
+	private ConstantPropagator propagator = new ConstantPropagator();
+	/**
+	 * the bytecode of the script
+	 */
+	private int[] code = new int[256];
+	/**
+	 * the number of integers of the bytecode
+	 */
+	private int codeLength = 0;
+	/**
+	 * the number of the line of the script of each instruction, used to report a division by 0
+	 */
+	private int[] lines = new int[64];
+	/**
+	 * the registers: the variables followed by the intermediate values
+	 */
+	private int[] registers = new int[0];
+	/**
+	 * the number of registers used by the bytecode
+	 */
+	private int registerCount;
+	/**
+	 * the number of variables of the script, which is the index of the first register of the intermediate values
+	 */
+	private int variableCount;
+	/**
+	 * the number of the line of the statement being compiled
+	 */
+	private int currentLine;
+	/**
+	 * the position of the last instruction, if it computed the value on the top of the operand stack and no jump leads behind it (-1 otherwise)
+	 */
+	private int lastResult = -1;
+	/**
+	 * {@code true} for the operands on the operand stack of {@link #compile(Expression)} which are constants, {@code false} for registers
+	 */
+	private boolean[] operandConstants = new boolean[16];
+	/**
+	 * the values of the operands on the operand stack: the constant or the register
+	 */
+	private int[] operandValues = new int[16];
+	/**
+	 * the size of the operand stack
+	 */
+	private int operandCount = 0;
+	/**
+	 * the {@code choose} node whose second, third or fourth argument starts at each node of the expression being compiled ({@code -1} if there is none)
+	 */
+	private int[] argumentChooses = new int[16];
+	/**
+	 * the position of that argument (1, 2 or 3)
+	 */
+	private int[] argumentPositions = new int[16];
+	/**
+	 * the position of the {@code CHOOSE} instruction of each {@code choose} node
+	 */
+	private int[] chooseInstructions = new int[16];
+	/**
+	 * the register of the result of each {@code choose} node
+	 */
+	private int[] chooseResults = new int[16];
+	/**
+	 * the positions of the jumps to the end of each {@code choose} node behind its second and third arguments, indexed by {@code 2*node+argument-1}
+	 */
+	private int[] chooseJumps = new int[32];
+	/**
+	 * Runs a .my file and prints its output, or "Line X: syntax error" like the translated syntax error program.
+	 * @param args command line arguments: the options ({@code -O0} or {@code -O1}, see {@link Options}) followed by the .my file
+	 * @throws IOException when the file cannot be read or the output cannot be written
+	 */
+	public static void main(String[] args) throws IOException {
+		Options options = new Options();
+		int first;
+		try {
+			first = options.parse(args);
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			return;
+		}
+		if (args.length - first != 1) {
+			System.err.println("usage: java Interpreter [-O0|-O1] script.my");
+			return;
+		}
+		Interpreter interpreter = new Interpreter(options);
+		if (!interpreter.compile(SourceText.map(Paths.get(args[first])))) {
+			System.out.println("Line " + interpreter.getLineCount() + ": syntax error");
+			return;
+		}
+		try {
+			interpreter.run(System.out);
+		} catch (ArithmeticException e) {
+			System.err.println(e.getMessage());
+		}
+	}
+	/**
+	 * Constructs an interpreter with the default options.
+	 */
+	public Interpreter() {
+		this(new Options());
+	}
+	/**
+	 * Constructs an interpreter with the given options.
+	 * @param options the options of the front end
+	 */
+	public Interpreter(Options options) {
+		this.options = options;
+	}
+	/**
+	 * Returns the line count of the last compiled script.
+	 * @return the number of lines of the script, or the number of the line in which the syntax error is detected (starting with 0)
+	 */
+	public int getLineCount() {
+		return parser.getLineCount();
+	}
+	/**
+	 * Compiles a script to bytecode, which replaces the bytecode of the previous script.
+	 * @param input the lines of the script
+	 * @return {@code true} if the script is compiled, {@code false} if a syntax error is detected
+	 */
+	public boolean compile(SourceText input) {
+		symbols.clear();
+		parser.reset(input);
+		propagator.reset();
+		ArrayList<Statement> statements = new ArrayList<Statement>();
+		try {
+			for (Statement statement; (statement = parser.next()) != null; ) {
+				if (options.propagate())
+					propagator.propagate(statement, statements);
+				else
+					statements.add(statement);
+			}
+		} catch (SyntaxErrorException e) {
+			codeLength = 0;
+			return false;
+		}
+		variableCount = registerCount = symbols.size();
+		codeLength = 0;
+		lastResult = -1;
+		currentLine = parser.getLineCount();
+		compile(statements);
+		emit(HALT, 0, 0, 0);
+		if (registers.length < registerCount)
+			registers = new int[registerCount];
+		return true;
+	}
+	/**
+	 * Runs the compiled script from the beginning, with every variable set to 0.
+	 * @param output the stream which the printed lines are written to
+	 * @throws IOException when the output cannot be written
+	 * @throws ArithmeticException when the script divides by 0
+	 */
+	public void run(OutputStream output) throws IOException {
+		int[] code = this.code, r = registers;
+		Arrays.fill(r, 0, variableCount, 0);
+		LinePrinter printer = new LinePrinter(output);
+		int pc = 0;
+		try {
+			while (true) {
+				switch (code[pc]) {
+				case CONST: r[code[pc + 1]] = code[pc + 2]; pc += SIZE; break;
+				case MOVE: r[code[pc + 1]] = r[code[pc + 2]]; pc += SIZE; break;
+				case ADD: r[code[pc + 1]] = r[code[pc + 2]] + r[code[pc + 3]]; pc += SIZE; break;
+				case SUB: r[code[pc + 1]] = r[code[pc + 2]] - r[code[pc + 3]]; pc += SIZE; break;
+				case MUL: r[code[pc + 1]] = r[code[pc + 2]] * r[code[pc + 3]]; pc += SIZE; break;
+				case DIV: r[code[pc + 1]] = r[code[pc + 2]] / r[code[pc + 3]]; pc += SIZE; break;
+				case ADD_CONST: r[code[pc + 1]] = r[code[pc + 2]] + code[pc + 3]; pc += SIZE; break;
+				case SUB_CONST: r[code[pc + 1]] = r[code[pc + 2]] - code[pc + 3]; pc += SIZE; break;
+				case CONST_SUB: r[code[pc + 1]] = code[pc + 3] - r[code[pc + 2]]; pc += SIZE; break;
+				case MUL_CONST: r[code[pc + 1]] = r[code[pc + 2]] * code[pc + 3]; pc += SIZE; break;
+				case DIV_CONST: r[code[pc + 1]] = r[code[pc + 2]] / code[pc + 3]; pc += SIZE; break;
+				case CONST_DIV: r[code[pc + 1]] = code[pc + 3] / r[code[pc + 2]]; pc += SIZE; break;
+				case JUMP: pc = code[pc + 1]; break;
+				case JUMP_ZERO: pc = r[code[pc + 1]] == 0 ? code[pc + 2] : pc + SIZE; break;
+				case JUMP_NONZERO: pc = r[code[pc + 1]] != 0 ? code[pc + 2] : pc + SIZE; break;
+				case CHOOSE:
+					int value = r[code[pc + 1]];
+					pc = value == 0 ? pc + SIZE : value > 0 ? code[pc + 2] : code[pc + 3];
+					break;
+				case PRINT: printer.print(r[code[pc + 1]]); pc += SIZE; break;
+				case PRINT_CONST: printer.print(code[pc + 1]); pc += SIZE; break;
+				default: // HALT
+					printer.flush();
+					return;
+				}
+			}
+		} catch (ArithmeticException e) {
+			printer.flush();
+			throw new ArithmeticException("Line " + lines[pc / SIZE] + ": division by zero");
+		}
+	}
+	/**
+	 * Compiles a sequence of statements.
+	 * @param statements the statements
+	 */
+	private void compile(ArrayList<Statement> statements) {
+		for (Statement statement : statements) {
+			int outerLine = currentLine;
+			currentLine = statement.line;
+			switch (statement.kind) {
+			case 'a':
+				compile(statement.expression);
+				operandCount--;
+				if (!operandConstants[0] && operandValues[0] >= variableCount && lastResult == codeLength - SIZE && code[lastResult + 1] == operandValues[0])
+					code[lastResult + 1] = statement.target; // The last instruction computes the value straight into the variable.
+				else
+					move(statement.target, 0);
+				break;
+			case 'p':
+				compile(statement.expression);
+				operandCount--;
+				emit(operandConstants[0] ? PRINT_CONST : PRINT, operandValues[0], 0, 0);
+				break;
+			case 'i':
+				compile(statement.expression);
+				operandCount--;
+				int skip = emit(JUMP_ZERO, register(0), 0, 0);
+				compile(statement.body);
+				code[skip + 2] = codeLength;
+				break;
+			case 'w': // The condition is tested behind the body, so an iteration takes a single jump.
+				int entry = emit(JUMP, 0, 0, 0), body = codeLength;
+				compile(statement.body);
+				code[entry + 1] = codeLength;
+				compile(statement.expression);
+				operandCount--;
+				emit(JUMP_NONZERO, register(0), body, 0);
+				break;
+			}
+			lastResult = -1;
+			currentLine = outerLine;
+		}
+	}
+	/**
+	 * Compiles an expression, whose value is left on the operand stack.
+	 * <p>The expression is compiled in postfix order. At the node where the second, third or fourth argument of a {@code choose} node starts,
+	 * the previous argument is complete: the first argument is tested by a {@code CHOOSE} instruction, and the others are moved into the
+	 * register of the result, followed by a jump to the end of the {@code choose} node.</p>
+	 * @param expression the expression
+	 */
+	private void compile(Expression expression) {
+		int length = expression.length;
+		if (argumentChooses.length < length) {
+			argumentChooses = new int[2 * length];
+			argumentPositions = new int[2 * length];
+			chooseInstructions = new int[2 * length];
+			chooseResults = new int[2 * length];
+			chooseJumps = new int[4 * length];
+		}
+		Arrays.fill(argumentChooses, 0, length, -1);
+		for (int node = 0; node < length; node++)
+			if (expression.type[node] == Token._choose)
+				for (int argument = 1; argument < 4; argument++) {
+					int first = expression.start[expression.operand(node, argument)];
+					argumentChooses[first] = node;
+					argumentPositions[first] = argument;
+				}
+		for (int node = 0; node < length; node++) {
+			int choose = argumentChooses[node];
+			if (choose != -1) {
+				int argument = argumentPositions[node];
+				operandCount--;
+				if (argument == 1) {
+					chooseResults[choose] = variableCount + operandCount;
+					chooseInstructions[choose] = emit(CHOOSE, register(operandCount), 0, 0);
+				} else {
+					move(chooseResults[choose], operandCount);
+					chooseJumps[2 * choose + argument - 2] = emit(JUMP, 0, 0, 0);
+					code[chooseInstructions[choose] + argument] = codeLength; // The positive and the negative cases
+				}
+			}
+			switch (expression.type[node]) {
+			case Token._integer: push(true, expression.value[node]); break;
+			case Token._variable: push(false, expression.value[node]); break;
+			case Token._choose:
+				move(chooseResults[node], --operandCount);
+				code[chooseJumps[2 * node] + 1] = code[chooseJumps[2 * node + 1] + 1] = codeLength;
+				push(false, chooseResults[node]);
+				lastResult = -1;
+				break;
+			default: binary(expression.type[node]);
+			}
+		}
+	}
+	/**
+	 * Compiles a binary operation of the two operands on the top of the operand stack, which are replaced with the result.
+	 * @param operation {@code Token._add}, {@code Token._sub}, {@code Token._mult} or {@code Token._div}
+	 */
+	private void binary(int operation) {
+		operandCount -= 2;
+		int left = operandCount, right = operandCount + 1, result = variableCount + operandCount;
+		boolean constantLeft = operandConstants[left], constantRight = operandConstants[right];
+		int a = operandValues[left], b = operandValues[right];
+		if (constantLeft && constantRight && !(operation == Token._div && b == 0)) {
+			push(true, Expression.evaluate(operation, a, b));
+			return;
+		}
+		if (constantLeft && constantRight)
+			a = register(left);
+		else if (constantLeft) {
+			switch (operation) {
+			case Token._add: lastResult = emit(ADD_CONST, result, b, a); break;
+			case Token._sub: lastResult = emit(CONST_SUB, result, b, a); break;
+			case Token._mult: lastResult = emit(MUL_CONST, result, b, a); break;
+			default: lastResult = emit(CONST_DIV, result, b, a);
+			}
+			push(false, result);
+			return;
+		}
+		if (constantRight) {
+			switch (operation) {
+			case Token._add: lastResult = emit(ADD_CONST, result, a, b); break;
+			case Token._sub: lastResult = emit(SUB_CONST, result, a, b); break;
+			case Token._mult: lastResult = emit(MUL_CONST, result, a, b); break;
+			default: lastResult = emit(DIV_CONST, result, a, b);
+			}
+		} else {
+			switch (operation) {
+			case Token._add: lastResult = emit(ADD, result, a, b); break;
+			case Token._sub: lastResult = emit(SUB, result, a, b); break;
+			case Token._mult: lastResult = emit(MUL, result, a, b); break;
+			default: lastResult = emit(DIV, result, a, b);
+			}
+		}
+		push(false, result);
+	}
+	/**
+	 * Returns the register of an operand, loading a constant into the register of its depth first.
+	 * @param index the index of the operand on the operand stack
+	 * @return the register
+	 */
+	private int register(int index) {
+		if (!operandConstants[index])
+			return operandValues[index];
+		emit(CONST, variableCount + index, operandValues[index], 0);
+		return variableCount + index;
+	}
+	/**
+	 * Copies an operand into a register.
+	 * @param target the register
+	 * @param index the index of the operand on the operand stack
+	 */
+	private void move(int target, int index) {
+		if (operandConstants[index])
+			emit(CONST, target, operandValues[index], 0);
+		else if (operandValues[index] != target)
+			emit(MOVE, target, operandValues[index], 0);
+	}
+	/**
+	 * Pushes an operand on the operand stack.
+	 * @param constant {@code true} for a constant, {@code false} for a register
+	 * @param value the constant or the register
+	 */
+	private void push(boolean constant, int value) {
+		if (operandCount == operandValues.length) {
+			operandConstants = Arrays.copyOf(operandConstants, 2 * operandCount);
+			operandValues = Arrays.copyOf(operandValues, 2 * operandCount);
+		}
+		operandConstants[operandCount] = constant;
+		operandValues[operandCount++] = value;
+		registerCount = Math.max(registerCount, variableCount + operandCount);
+	}
+	/**
+	 * Appends an instruction to the bytecode.
+	 * @param opcode the opcode
+	 * @param a the first operand
+	 * @param b the second operand
+	 * @param c the third operand
+	 * @return the position of the instruction
+	 */
+	private int emit(int opcode, int a, int b, int c) {
+		if (codeLength + SIZE > code.length)
+			code = Arrays.copyOf(code, 2 * code.length);
+		if (codeLength / SIZE == lines.length)
+			lines = Arrays.copyOf(lines, 2 * lines.length);
+		lines[codeLength / SIZE] = currentLine;
+		code[codeLength] = opcode;
+		code[codeLength + 1] = a;
+		code[codeLength + 2] = b;
+		code[codeLength + 3] = c;
+		codeLength += SIZE;
+		return codeLength - SIZE;
+	}
+}
@@ -0,0 +1,1005 @@
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+/**
+ * Execution engine which compiles {@code myLang} scripts to JVM bytecode and runs them in-process, so that the JIT compilers of the JVM optimize
+ * the hot loops of a script.
+ * <p>A script is read by the front end of the translator ({@link Parser}, followed by {@link ConstantPropagator} unless {@code -O0} is given)
+ * and compiled to a class whose method {@code static void run(LinePrinter)} allocates the values of the variables in an {@code int[]}
+ * (indexed by symbol id) and calls the methods of the parts of the script one after another. A part is a run of top-level statements whose
+ * method has at most 8000 bytes of bytecode, the largest method which HotSpot compiles: the method loads the variables that it uses into local
+ * {@code int} variables, computes the expressions on the operand stack in postfix order, turns {@code while} and {@code if} statements into
+ * conditional jumps and a {@code choose} function into a comparison of its first argument with 0 and branches to its other arguments, and
+ * stores the variables that it assigns back into the array. A {@code while} or {@code if} statement whose block does not fit calls the block
+ * as a part of its own (and the rest of such a block is chained to another part), with the local variables stored before and loaded after the
+ * call. The class is loaded as a hidden class, and the classes of the most recently used scripts are cached by the content of the script.</p>
+ * <p>The class file has version 49, which does not need stack map frames, so the code is written in a single pass. A script which does not fit
+ * in the limits of a class file (too many constants, or an expression too large for the 16-bit offsets of its jumps) is run by the
+ * {@link Interpreter} instead.</p>
+ * <p>The semantics are those of the LLVM-IR code of the translator, like those of the {@link Interpreter}, and the lines are printed by a
+ * {@link LinePrinter}. A division by 0 stops the script with an {@link ArithmeticException} which names the line of the division.</p>
+ * @author Aral Dortogul
+ */
+public class JitCompiler {
+	/**
+	 * the JVM opcode {@code iconst_0} ({@code iconst_m1} to {@code iconst_5} follow each other around it)
+	 */
+	private static final int ICONST_0 = 0x03;
+	/**
+	 * the JVM opcode {@code bipush}
+	 */
+	private static final int BIPUSH = 0x10;
+	/**
+	 * the JVM opcode {@code sipush}
+	 */
+	private static final int SIPUSH = 0x11;
+	/**
+	 * the JVM opcode {@code ldc}
+	 */
+	private static final int LDC = 0x12;
+	/**
+	 * the JVM opcode {@code ldc_w}
+	 */
+	private static final int LDC_W = 0x13;
+	/**
+	 * the JVM opcode {@code iload}
+	 */
+	private static final int ILOAD = 0x15;
+	/**
+	 * the JVM opcode {@code iload_0} ({@code iload_1} to {@code iload_3} follow it)
+	 */
+	private static final int ILOAD_0 = 0x1a;
+	/**
+	 * the JVM opcode {@code aload_0}
+	 */
+	private static final int ALOAD_0 = 0x2a;
+	/**
+	 * the JVM opcode {@code aload_1}
+	 */
+	private static final int ALOAD_1 = 0x2b;
+	/**
+	 * the JVM opcode {@code iaload}
+	 */
+	private static final int IALOAD = 0x2e;
+	/**
+	 * the JVM opcode {@code istore}
+	 */
+	private static final int ISTORE = 0x36;
+	/**
+	 * the JVM opcode {@code istore_0} ({@code istore_1} to {@code istore_3} follow it)
+	 */
+	private static final int ISTORE_0 = 0x3b;
+	/**
+	 * the JVM opcode {@code astore_1}
+	 */
+	private static final int ASTORE_1 = 0x4c;
+	/**
+	 * the JVM opcode {@code iastore}
+	 */
+	private static final int IASTORE = 0x4f;
+	/**
+	 * the JVM opcode {@code pop}
+	 */
+	private static final int POP = 0x57;
+	/**
+	 * the JVM opcode {@code dup}
+	 */
+	private static final int DUP = 0x59;
+	/**
+	 * the JVM opcode {@code iadd}
+	 */
+	private static final int IADD = 0x60;
+	/**
+	 * the JVM opcode {@code isub}
+	 */
+	private static final int ISUB = 0x64;
+	/**
+	 * the JVM opcode {@code imul}
+	 */
+	private static final int IMUL = 0x68;
+	/**
+	 * the JVM opcode {@code idiv}
+	 */
+	private static final int IDIV = 0x6c;
+	/**
+	 * the JVM opcode {@code ifeq}
+	 */
+	private static final int IFEQ = 0x99;
+	/**
+	 * the JVM opcode {@code ifne}
+	 */
+	private static final int IFNE = 0x9a;
+	/**
+	 * the JVM opcode {@code ifle}
+	 */
+	private static final int IFLE = 0x9e;
+	/**
+	 * the JVM opcode {@code goto}
+	 */
+	private static final int GOTO = 0xa7;
+	/**
+	 * the JVM opcode {@code return}
+	 */
+	private static final int RETURN = 0xb1;
+	/**
+	 * the JVM opcode {@code invokevirtual}
+	 */
+	private static final int INVOKEVIRTUAL = 0xb6;
+	/**
+	 * the JVM opcode {@code invokestatic}
+	 */
+	private static final int INVOKESTATIC = 0xb8;
+	/**
+	 * the JVM opcode {@code newarray}
+	 */
+	private static final int NEWARRAY = 0xbc;
+	/**
+	 * the JVM opcode {@code athrow}
+	 */
+	private static final int ATHROW = 0xbf;
+	/**
+	 * the JVM opcode {@code wide}
+	 */
+	private static final int WIDE = 0xc4;
+	/**
+	 * the largest method of a part of a script: HotSpot does not compile methods with more than 8000 bytes of bytecode
+	 * ({@code -XX:+DontCompileHugeMethods}), so the statements of a script are split into parts of at most that size (only a single statement
+	 * without a block can be larger)
+	 */
+	private static final int MAX_CODE = 8000;
+	/**
+	 * the largest number of bytes which load a variable from the array into its local variable, or store it back ({@code aload_1}, the index,
+	 * {@code iaload} and {@code istore}, or {@code aload_1}, the index, {@code iload} and {@code iastore})
+	 */
+	private static final int ACCESS_SIZE = 9;
+	/**
+	 * the name of the generated class (the JVM adds a suffix to the name of a hidden class)
+	 */
+	private static final String CLASS_NAME = "MyLangScript";
+	/**
+	 * the type of the {@code run} method of the generated classes
+	 */
+	private static final MethodType RUN_TYPE = MethodType.methodType(void.class, LinePrinter.class);
+	/**
+	 * the descriptor of the methods of the parts of a script, which take the printer and the values of the variables
+	 */
+	private static final String PART_TYPE = "(LLinePrinter;[I)V";
+	/**
+	 * the maximum number of compiled scripts in {@link #CACHE}
+	 */
+	private static final int CACHE_SIZE = 64;
+	/**
+	 * the maximum number of characters of a script in {@link #CACHE} (longer scripts are compiled each time)
+	 */
+	private static final int CACHE_TEXT = 1 << 16;
+	/**
+	 * the {@code run} methods of the most recently used compiled scripts, by the optimization level and the content of the scripts: at most
+	 * {@link #CACHE_SIZE} scripts of at most {@link #CACHE_TEXT} characters, the least recently used one is evicted first (the hidden classes
+	 * are not bound to their class loader, so the class of an evicted script is unloaded once it is not used anymore)
+	 */
+	private static final Map<String, MethodHandle> CACHE = Collections.synchronizedMap(new LinkedHashMap<String, MethodHandle>(16, 0.75f, true) {
+		/**
+		 * Serial version UID for this map
+		 */
+		private static final long serialVersionUID = 1L;
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, MethodHandle> eldest) {
+			return size() > CACHE_SIZE;
+		}
+	});
+	/**
+	 * the options of the front end
+	 */
+	private final Options options;
+	/**
+	 * the symbol table of the script's variables
+	 */
+	private SymbolTable symbols = new SymbolTable();
+	/**
+	 * the parser of the script
+	 */
+	private Parser parser = new Parser(symbols);
+	/**
+	 * the constant propagator of the statements (used when {@link Options#propagate()} is set)
+	 */
+	private ConstantPropagator propagator = new ConstantPropagator();
+	/**
+	 * the {@code run} method of the compiled script, {@code null} if the script is run by {@link #interpreter}
+	 */
+	private MethodHandle script;
+	/**
+	 * the interpreter of the compiled script if it does not fit in a method, {@code null} otherwise
+	 */
+	private Interpreter interpreter;
+	/**
+	 * the line count of the last compiled script
+	 */
+	private int lineCount = 0;
+	/**
+	 * the methods of the generated class
+	 */
+	private ByteArrayOutputStream methods = new ByteArrayOutputStream();
+	/**
+	 * the writer of the methods of the generated class
+	 */
+	private DataOutputStream methodWriter = new DataOutputStream(methods);
+	/**
+	 * the number of methods of the generated class
+	 */
+	private int methodCount;
+	/**
+	 * the statements of each part whose method is called by another part, by the number of the part ({@code null} for the top-level parts)
+	 */
+	private ArrayList<List<Statement>> parts = new ArrayList<List<Statement>>();
+	/**
+	 * the numbers of the parts which are called by another part and not generated yet
+	 */
+	private ArrayDeque<Integer> pending = new ArrayDeque<Integer>();
+	/**
+	 * the local variable slot of each variable in the method being generated, by symbol id (0 if the method does not use the variable)
+	 */
+	private int[] slots = new int[64];
+	/**
+	 * the symbol ids of the variables used by the method being generated, in the order of their slots (starting with slot 2)
+	 */
+	private int[] variables = new int[64];
+	/**
+	 * the number of variables used by the method being generated
+	 */
+	private int variableCount;
+	/**
+	 * {@code true} for the variables assigned by the method being generated, by symbol id
+	 */
+	private boolean[] assigned = new boolean[64];
+	/**
+	 * the symbol ids of the variables assigned by the method being generated
+	 */
+	private int[] assignedVariables = new int[64];
+	/**
+	 * the number of variables assigned by the method being generated
+	 */
+	private int assignedCount;
+	/**
+	 * the bytecode of the method being generated
+	 */
+	private byte[] code = new byte[1024];
+	/**
+	 * the number of bytes of the bytecode
+	 */
+	private int codeLength;
+	/**
+	 * the depth of the operand stack at the end of the bytecode
+	 */
+	private int depth;
+	/**
+	 * the maximum depth of the operand stack
+	 */
+	private int maxDepth;
+	/**
+	 * the entries of the constant pool
+	 */
+	private ByteArrayOutputStream pool = new ByteArrayOutputStream();
+	/**
+	 * the writer of the entries of the constant pool
+	 */
+	private DataOutputStream poolWriter = new DataOutputStream(pool);
+	/**
+	 * the index of each entry of the constant pool, by its tag and its content
+	 */
+	private HashMap<String, Integer> poolIndices = new HashMap<String, Integer>();
+	/**
+	 * the number of entries of the constant pool
+	 */
+	private int poolCount;
+	/**
+	 * the number of the line of the statement being compiled
+	 */
+	private int currentLine;
+	/**
+	 * the {@code choose} node whose second, third or fourth argument starts at each node of the expression being compiled ({@code -1} if there is none)
+	 */
+	private int[] argumentChooses = new int[16];
+	/**
+	 * the position of that argument (1, 2 or 3)
+	 */
+	private int[] argumentPositions = new int[16];
+	/**
+	 * the position of the pending conditional branch of each {@code choose} node: to its third argument, then to its fourth argument
+	 */
+	private int[] chooseBranches = new int[16];
+	/**
+	 * the positions of the jumps to the end of each {@code choose} node behind its second and third arguments, indexed by {@code 2*node+argument-1}
+	 */
+	private int[] chooseJumps = new int[32];
+	/**
+	 * Runs a .my file and prints its output, or "Line X: syntax error" like the translated syntax error program.
+	 * @param args command line arguments: the options ({@code -O0} or {@code -O1}, see {@link Options}) followed by the .my file
+	 * @throws IOException when the file cannot be read or the output cannot be written
+	 */
+	public static void main(String[] args) throws IOException {
+		Options options = new Options();
+		int first;
+		try {
+			first = options.parse(args);
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			return;
+		}
+		if (args.length - first != 1) {
+			System.err.println("usage: java JitCompiler [-O0|-O1] script.my");
+			return;
+		}
+		JitCompiler compiler = new JitCompiler(options);
+		if (!compiler.compile(SourceText.map(Paths.get(args[first])))) {
+			System.out.println("Line " + compiler.getLineCount() + ": syntax error");
+			return;
+		}
+		try {
+			compiler.run(System.out);
+		} catch (ArithmeticException e) {
+			System.err.println(e.getMessage());
+		}
+	}
+	/**
+	 * Constructs a compiler with the default options.
+	 */
+	public JitCompiler() {
+		this(new Options());
+	}
+	/**
+	 * Constructs a compiler with the given options.
+	 * @param options the options of the front end
+	 */
+	public JitCompiler(Options options) {
+		this.options = options;
+	}
+	/**
+	 * Creates the exception of a division by 0, which is thrown by the generated code.
+	 * @param line the number of the line of the division
+	 * @return the exception
+	 */
+	public static ArithmeticException divisionByZero(int line) {
+		return new ArithmeticException("Line " + line + ": division by zero");
+	}
+	/**
+	 * Returns the line count of the last compiled script.
+	 * @return the number of lines of the script, or the number of the line in which the syntax error is detected (starting with 0)
+	 */
+	public int getLineCount() {
+		return lineCount;
+	}
+	/**
+	 * Compiles a script and loads it, or finds it in the cache of the compiled scripts.
+	 * @param input the lines of the script
+	 * @return {@code true} if the script is compiled, {@code false} if a syntax error is detected
+	 */
+	public boolean compile(SourceText input) {
+		StringBuilder key = new StringBuilder().append(options.optimization).append(':');
+		for (int line = 0; line < input.lineCount(); line++)
+			key.append(input.line(line)).append('\n');
+		interpreter = null;
+		script = CACHE.get(key.toString());
+		if (script != null) {
+			lineCount = input.lineCount();
+			return true;
+		}
+		symbols.clear();
+		parser.reset(input);
+		propagator.reset();
+		ArrayList<Statement> statements = new ArrayList<Statement>();
+		try {
+			for (Statement statement; (statement = parser.next()) != null; ) {
+				if (options.propagate())
+					propagator.propagate(statement, statements);
+				else
+					statements.add(statement);
+			}
+		} catch (SyntaxErrorException e) {
+			lineCount = parser.getLineCount();
+			return false;
+		}
+		lineCount = parser.getLineCount();
+		byte[] bytes = generate(statements);
+		if (bytes == null) { // The script does not fit in a method.
+			interpreter = new Interpreter(options);
+			return interpreter.compile(input);
+		}
+		try {
+			MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClass(bytes, true);
+			script = lookup.findStatic(lookup.lookupClass(), "run", RUN_TYPE);
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalStateException("invalid generated class", e);
+		}
+		if (key.length() <= CACHE_TEXT)
+			CACHE.putIfAbsent(key.toString(), script);
+		return true;
+	}
+	/**
+	 * Runs the compiled script.
+	 * @param output the stream which the printed lines are written to
+	 * @throws IOException when the output cannot be written
+	 * @throws ArithmeticException when the script divides by 0
+	 */
+	public void run(OutputStream output) throws IOException {
+		if (interpreter != null) {
+			interpreter.run(output);
+			return;
+		}
+		LinePrinter printer = new LinePrinter(output);
+		try {
+			script.invokeExact(printer);
+		} catch (ArithmeticException e) {
+			printer.flush();
+			throw e;
+		} catch (IOException | RuntimeException | Error e) {
+			throw e;
+		} catch (Throwable e) {
+			throw new IllegalStateException(e);
+		}
+		printer.flush();
+	}
+	/**
+	 * Generates the class file of a script.
+	 * @param statements the statements of the script
+	 * @return the class file, {@code null} if the script does not fit in the limits of a class file
+	 */
+	private byte[] generate(ArrayList<Statement> statements) {
+		int symbolCount = symbols.size();
+		if (slots.length < symbolCount) {
+			slots = new int[symbolCount];
+			assigned = new boolean[symbolCount];
+		}
+		pool.reset();
+		poolIndices.clear();
+		poolCount = 0;
+		methods.reset();
+		methodCount = 0;
+		parts.clear();
+		pending.clear();
+		currentLine = 0;
+		ArrayList<Integer> topLevel = new ArrayList<Integer>();
+		for (int next = 0; next < statements.size(); ) {
+			int part = parts.size();
+			parts.add(null);
+			topLevel.add(part);
+			int count = compilePart(part, statements.subList(next, statements.size()), false);
+			if (count < 0)
+				return null;
+			next += count;
+		}
+		while (!pending.isEmpty()) {
+			int part = pending.poll();
+			if (compilePart(part, parts.get(part), true) < 0)
+				return null;
+		}
+		codeLength = depth = maxDepth = 0; // run: allocates the variables and calls the top-level parts
+		constant(symbolCount);
+		op(NEWARRAY);
+		op(10); // T_INT
+		op(ASTORE_1);
+		depth--;
+		for (int part : topLevel) {
+			op(ALOAD_0);
+			op(ALOAD_1);
+			op(INVOKESTATIC);
+			u2(methodEntry(CLASS_NAME, "p" + part, PART_TYPE));
+		}
+		op(RETURN);
+		maxDepth = Math.max(maxDepth, 2);
+		if (codeLength > 0xFFFF)
+			return null;
+		writeMethod(0x0009, "run", RUN_TYPE.toMethodDescriptorString(), 2); // ACC_PUBLIC | ACC_STATIC
+		if (poolCount >= 0xFFFF - 8)
+			return null;
+		try {
+			int thisClass = classEntry(CLASS_NAME), superClass = classEntry("java/lang/Object");
+			ByteArrayOutputStream classFile = new ByteArrayOutputStream(methods.size() + pool.size() + 64);
+			DataOutputStream writer = new DataOutputStream(classFile);
+			writer.writeInt(0xCAFEBABE);
+			writer.writeShort(0); // minor version
+			writer.writeShort(49); // major version: Java 5, without stack map frames
+			writer.writeShort(poolCount + 1);
+			pool.writeTo(writer);
+			writer.writeShort(0x0030); // ACC_FINAL | ACC_SUPER
+			writer.writeShort(thisClass);
+			writer.writeShort(superClass);
+			writer.writeShort(0); // interfaces
+			writer.writeShort(0); // fields
+			writer.writeShort(methodCount);
+			methods.writeTo(writer);
+			writer.writeShort(0); // attributes of the class
+			return classFile.toByteArray();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e); // A ByteArrayOutputStream never fails.
+		}
+	}
+	/**
+	 * Generates the method of a part of a script, {@code static void pN(LinePrinter, int[])}, with the first statements which fit in
+	 * {@link #MAX_CODE} bytes: at least one statement, and a {@code while} or {@code if} statement whose block does not fit ends the part.
+	 * @param part the number of the part
+	 * @param statements the statements from the first statement of the part
+	 * @param chained {@code true} if the statements which do not fit are chained to another part, called at the end of the method
+	 * @return the number of statements of the part, -1 if the method does not fit in the limits of a class file
+	 */
+	private int compilePart(int part, List<Statement> statements, boolean chained) {
+		codeLength = depth = maxDepth = 0;
+		int count = 0;
+		while (count < statements.size()) {
+			Statement statement = statements.get(count);
+			int mark = codeLength, variableMark = variableCount, assignedMark = assignedCount;
+			compile(statement, false);
+			if (codeLength + ACCESS_SIZE * (variableCount + assignedCount) < MAX_CODE) {
+				count++;
+				continue;
+			}
+			if (count > 0 || statement.body != null) { // The statement moves to the next part, or its block to its own part.
+				codeLength = mark;
+				removeVariables(variableMark, assignedMark);
+			}
+			if (count == 0) {
+				if (statement.body != null) {
+					localVariables(statement.expression);
+					compile(statement, true);
+				}
+				count++;
+			}
+			break;
+		}
+		if (chained && count < statements.size()) {
+			call(defer(statements.subList(count, statements.size())), true);
+			count = statements.size();
+		} else {
+			for (int i = 0; i < assignedCount; i++)
+				storeVariable(assignedVariables[i]);
+			op(RETURN);
+		}
+		byte[] body = Arrays.copyOf(code, codeLength);
+		codeLength = 0;
+		for (int i = 0; i < variableCount; i++)
+			loadVariable(variables[i]);
+		int locals = variableCount + 2;
+		removeVariables(0, 0);
+		if (codeLength + body.length > 0x7FFF || locals > 0xFFFF) // The offsets of the jumps are 16-bit.
+			return -1;
+		for (byte value : body)
+			op(value);
+		writeMethod(0x000A, "p" + part, PART_TYPE, locals); // ACC_PRIVATE | ACC_STATIC
+		return count;
+	}
+	/**
+	 * Adds a part whose method is called by another part, which is generated after the current method.
+	 * @param statements the statements of the part
+	 * @return the number of the part
+	 */
+	private int defer(List<Statement> statements) {
+		parts.add(statements);
+		pending.add(parts.size() - 1);
+		return parts.size() - 1;
+	}
+	/**
+	 * Generates the call of the method of a part: the assigned variables are stored into the array before the call, and all of the variables
+	 * of the method are loaded from it after the call, unless the call ends the method.
+	 * @param part the number of the called part
+	 * @param last {@code true} if the method returns after the call
+	 */
+	private void call(int part, boolean last) {
+		for (int i = 0; i < assignedCount; i++)
+			storeVariable(assignedVariables[i]);
+		op(ALOAD_0);
+		op(ALOAD_1);
+		maxDepth = Math.max(maxDepth, depth + 2);
+		op(INVOKESTATIC);
+		u2(methodEntry(CLASS_NAME, "p" + part, PART_TYPE));
+		if (last)
+			op(RETURN);
+		else
+			for (int i = 0; i < variableCount; i++)
+				loadVariable(variables[i]);
+	}
+	/**
+	 * Appends a method to the generated class, with the bytecode which has been generated.
+	 * @param access the access flags of the method
+	 * @param name the name of the method
+	 * @param descriptor the descriptor of the method
+	 * @param locals the number of local variable slots of the method
+	 */
+	private void writeMethod(int access, String name, String descriptor, int locals) {
+		try {
+			methodWriter.writeShort(access);
+			methodWriter.writeShort(utf8Entry(name));
+			methodWriter.writeShort(utf8Entry(descriptor));
+			methodWriter.writeShort(1); // attributes of the method
+			methodWriter.writeShort(utf8Entry("Code"));
+			methodWriter.writeInt(12 + codeLength);
+			methodWriter.writeShort(maxDepth);
+			methodWriter.writeShort(locals);
+			methodWriter.writeInt(codeLength);
+			methodWriter.write(code, 0, codeLength);
+			methodWriter.writeShort(0); // exception table
+			methodWriter.writeShort(0); // attributes of the code
+		} catch (IOException e) {
+			throw new UncheckedIOException(e); // A ByteArrayOutputStream never fails.
+		}
+		methodCount++;
+	}
+	/**
+	 * Gives local variables to the variables of an expression in the method being generated, so that they are loaded after the calls which
+	 * are generated before the expression.
+	 * @param expression the expression
+	 */
+	private void localVariables(Expression expression) {
+		for (int node = 0; node < expression.length; node++)
+			if (expression.type[node] == Token._variable)
+				slot(expression.value[node]);
+	}
+	/**
+	 * Removes the variables used and assigned by the method being generated since the given numbers of variables.
+	 * @param variableMark the number of used variables which are kept
+	 * @param assignedMark the number of assigned variables which are kept
+	 */
+	private void removeVariables(int variableMark, int assignedMark) {
+		for (int i = variableMark; i < variableCount; i++)
+			slots[variables[i]] = 0;
+		for (int i = assignedMark; i < assignedCount; i++)
+			assigned[assignedVariables[i]] = false;
+		variableCount = variableMark;
+		assignedCount = assignedMark;
+	}
+	/**
+	 * Returns the local variable slot of a variable in the method being generated, which is given to the variable if it is new.
+	 * @param variable the symbol id of the variable
+	 * @return the slot
+	 */
+	private int slot(int variable) {
+		if (slots[variable] == 0) {
+			if (variableCount == variables.length)
+				variables = Arrays.copyOf(variables, 2 * variableCount);
+			variables[variableCount] = variable;
+			slots[variable] = 2 + variableCount++;
+		}
+		return slots[variable];
+	}
+	/**
+	 * Generates the bytecode which loads a variable from the array into its local variable.
+	 * @param variable the symbol id of the variable
+	 */
+	private void loadVariable(int variable) {
+		op(ALOAD_1);
+		push();
+		constant(variable);
+		op(IALOAD);
+		depth--;
+		local(ISTORE, ISTORE_0, slots[variable]);
+		depth--;
+	}
+	/**
+	 * Generates the bytecode which stores the local variable of a variable into the array.
+	 * @param variable the symbol id of the variable
+	 */
+	private void storeVariable(int variable) {
+		op(ALOAD_1);
+		push();
+		constant(variable);
+		local(ILOAD, ILOAD_0, slots[variable]);
+		push();
+		op(IASTORE);
+		depth -= 3;
+	}
+	/**
+	 * Generates the bytecode of a statement.
+	 * @param statement the statement
+	 * @param split {@code true} to call the block of a {@code while} or {@code if} statement as a part of its own
+	 */
+	private void compile(Statement statement, boolean split) {
+		int outerLine = currentLine;
+		currentLine = statement.line;
+		switch (statement.kind) {
+		case 'a':
+			compile(statement.expression);
+			store(statement.target);
+			break;
+		case 'p':
+			op(ALOAD_0);
+			push();
+			compile(statement.expression);
+			op(INVOKEVIRTUAL);
+			u2(methodEntry("LinePrinter", "print", "(I)V"));
+			depth -= 2;
+			break;
+		case 'i':
+			compile(statement.expression);
+			int skip = branch(IFEQ);
+			compile(statement.body, split);
+			target(skip);
+			break;
+		case 'w': // The condition is tested behind the body, so an iteration takes a single jump.
+			int entry = branch(GOTO), body = codeLength;
+			compile(statement.body, split);
+			target(entry);
+			compile(statement.expression);
+			int loop = branch(IFNE);
+			u2At(loop + 1, body - loop);
+			break;
+		}
+		currentLine = outerLine;
+	}
+	/**
+	 * Generates the bytecode of the block of a {@code while} or {@code if} statement.
+	 * @param block the statements of the block
+	 * @param split {@code true} to call the block as a part of its own
+	 */
+	private void compile(List<Statement> block, boolean split) {
+		if (split && !block.isEmpty())
+			call(defer(block), false);
+		else
+			for (Statement statement : block)
+				compile(statement, false);
+	}
+	/**
+	 * Generates the bytecode of an expression, which leaves its value on the operand stack.
+	 * <p>At the node where the second, third or fourth argument of a {@code choose} node starts, the previous argument is complete: the first
+	 * argument is duplicated and tested for 0, the second argument is followed by a jump to the end and the test of the first argument for a
+	 * negative value, and the third argument is followed by a jump to the end.</p>
+	 * @param expression the expression
+	 */
+	private void compile(Expression expression) {
+		int length = expression.length;
+		if (argumentChooses.length < length) {
+			argumentChooses = new int[2 * length];
+			argumentPositions = new int[2 * length];
+			chooseBranches = new int[2 * length];
+			chooseJumps = new int[4 * length];
+		}
+		Arrays.fill(argumentChooses, 0, length, -1);
+		for (int node = 0; node < length; node++)
+			if (expression.type[node] == Token._choose)
+				for (int argument = 1; argument < 4; argument++) {
+					int first = expression.start[expression.operand(node, argument)];
+					argumentChooses[first] = node;
+					argumentPositions[first] = argument;
+				}
+		for (int node = 0; node < length; node++) {
+			int choose = argumentChooses[node];
+			if (choose != -1) {
+				switch (argumentPositions[node]) {
+				case 1: // first argument == 0: the second argument
+					op(DUP);
+					push();
+					chooseBranches[choose] = branch(IFNE);
+					op(POP);
+					depth--;
+					break;
+				case 2: // first argument > 0: the third argument
+					chooseJumps[2 * choose] = branch(GOTO);
+					target(chooseBranches[choose]); // The first argument is on the stack instead of the second one.
+					chooseBranches[choose] = branch(IFLE);
+					break;
+				default: // first argument < 0: the fourth argument
+					chooseJumps[2 * choose + 1] = branch(GOTO);
+					target(chooseBranches[choose]);
+					depth--;
+				}
+			}
+			switch (expression.type[node]) {
+			case Token._integer: constant(expression.value[node]); break;
+			case Token._variable: load(expression.value[node]); break;
+			case Token._choose:
+				target(chooseJumps[2 * node]);
+				target(chooseJumps[2 * node + 1]);
+				break;
+			case Token._add: op(IADD); depth--; break;
+			case Token._sub: op(ISUB); depth--; break;
+			case Token._mult: op(IMUL); depth--; break;
+			default:
+				if (expression.type[node - 1] != Token._integer || expression.value[node - 1] == 0) { // The divisor may be 0.
+					op(DUP);
+					push();
+					int divisor = branch(IFNE);
+					constant(currentLine);
+					op(INVOKESTATIC);
+					u2(methodEntry("JitCompiler", "divisionByZero", "(I)Ljava/lang/ArithmeticException;"));
+					op(ATHROW);
+					depth--;
+					target(divisor);
+				}
+				op(IDIV);
+				depth--;
+			}
+		}
+	}
+	/**
+	 * Generates the bytecode which pushes a constant.
+	 * @param value the constant
+	 */
+	private void constant(int value) {
+		if (value >= -1 && value <= 5)
+			op(ICONST_0 + value);
+		else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+			op(BIPUSH);
+			op(value & 0xFF);
+		} else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+			op(SIPUSH);
+			u2(value);
+		} else {
+			int index = entry("I" + value, 3, value, 4);
+			if (index < 256) {
+				op(LDC);
+				op(index);
+			} else {
+				op(LDC_W);
+				u2(index);
+			}
+		}
+		push();
+	}
+	/**
+	 * Generates the bytecode which pushes a variable.
+	 * @param variable the symbol id of the variable
+	 */
+	private void load(int variable) {
+		local(ILOAD, ILOAD_0, slot(variable));
+		push();
+	}
+	/**
+	 * Generates the bytecode which pops a value into a variable.
+	 * @param variable the symbol id of the variable
+	 */
+	private void store(int variable) {
+		local(ISTORE, ISTORE_0, slot(variable));
+		if (!assigned[variable]) {
+			assigned[variable] = true;
+			if (assignedCount == assignedVariables.length)
+				assignedVariables = Arrays.copyOf(assignedVariables, 2 * assignedCount);
+			assignedVariables[assignedCount++] = variable;
+		}
+		depth--;
+	}
+	/**
+	 * Generates an instruction which accesses a local variable, in its shortest form.
+	 * @param opcode the opcode with an index operand
+	 * @param shortOpcode the opcode of slot 0 without operand
+	 * @param slot the slot of the local variable
+	 */
+	private void local(int opcode, int shortOpcode, int slot) {
+		if (slot <= 3)
+			op(shortOpcode + slot);
+		else if (slot <= 0xFF) {
+			op(opcode);
+			op(slot);
+		} else {
+			op(WIDE);
+			op(opcode);
+			u2(slot);
+		}
+	}
+	/**
+	 * Counts a value pushed on the operand stack.
+	 */
+	private void push() {
+		maxDepth = Math.max(maxDepth, ++depth);
+	}
+	/**
+	 * Generates a jump whose target is set later by {@link #target(int)}; a conditional jump pops its operand.
+	 * @param opcode the opcode of the jump
+	 * @return the position of the jump
+	 */
+	private int branch(int opcode) {
+		int position = codeLength;
+		op(opcode);
+		u2(0);
+		if (opcode != GOTO)
+			depth--;
+		return position;
+	}
+	/**
+	 * Sets the target of a jump to the end of the bytecode.
+	 * @param branch the position of the jump
+	 */
+	private void target(int branch) {
+		u2At(branch + 1, codeLength - branch);
+	}
+	/**
+	 * Appends a byte to the bytecode.
+	 * @param value the byte
+	 */
+	private void op(int value) {
+		if (codeLength == code.length)
+			code = Arrays.copyOf(code, 2 * code.length);
+		code[codeLength++] = (byte) value;
+	}
+	/**
+	 * Appends a 16-bit value to the bytecode.
+	 * @param value the value
+	 */
+	private void u2(int value) {
+		op(value >> 8);
+		op(value);
+	}
+	/**
+	 * Writes a 16-bit value into the bytecode (the offset of a jump is cut to 16 bits; methods with farther jumps are not loaded).
+	 * @param position the position of the value
+	 * @param value the value
+	 */
+	private void u2At(int position, int value) {
+		code[position] = (byte) (value >> 8);
+		code[position + 1] = (byte) value;
+	}
+	/**
+	 * Returns the constant pool index of a {@code CONSTANT_Utf8} entry, which is added if it is new.
+	 * @param text the string
+	 * @return the index
+	 */
+	private int utf8Entry(String text) {
+		Integer index = poolIndices.get("U" + text);
+		if (index != null)
+			return index;
+		try {
+			poolWriter.writeByte(1);
+			poolWriter.writeUTF(text);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e); // A ByteArrayOutputStream never fails.
+		}
+		poolIndices.put("U" + text, ++poolCount);
+		return poolCount;
+	}
+	/**
+	 * Returns the constant pool index of a {@code CONSTANT_Class} entry, which is added if it is new.
+	 * @param name the internal name of the class
+	 * @return the index
+	 */
+	private int classEntry(String name) {
+		return entry("C" + name, 7, utf8Entry(name), 2);
+	}
+	/**
+	 * Returns the constant pool index of a {@code CONSTANT_Methodref} entry, which is added if it is new.
+	 * @param owner the internal name of the class of the method
+	 * @param name the name of the method
+	 * @param descriptor the descriptor of the method
+	 * @return the index
+	 */
+	private int methodEntry(String owner, String name, String descriptor) {
+		Integer index = poolIndices.get("M" + owner + "." + name + descriptor);
+		if (index != null)
+			return index;
+		int nameAndType = entry("N" + name + descriptor, 12, (utf8Entry(name) << 16) | utf8Entry(descriptor), 4);
+		return entry("M" + owner + "." + name + descriptor, 10, (classEntry(owner) << 16) | nameAndType, 4);
+	}
+	/**
+	 * Returns the constant pool index of an entry whose content is a number, which is added if it is new.
+	 * @param key the tag and the content of the entry
+	 * @param tag the tag of the entry
+	 * @param content the content of the entry
+	 * @param size the size of the content in bytes (2 or 4)
+	 * @return the index
+	 */
+	private int entry(String key, int tag, int content, int size) {
+		Integer index = poolIndices.get(key);
+		if (index != null)
+			return index;
+		try {
+			poolWriter.writeByte(tag);
+			if (size == 2)
+				poolWriter.writeShort(content);
+			else
+				poolWriter.writeInt(content);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e); // A ByteArrayOutputStream never fails.
+		}
+		poolIndices.put(key, ++poolCount);
+		return poolCount;
+	}
+}
@@ -0,0 +1,140 @@
+import java.util.Arrays;
+/**
+ * An allocation-free lexer for {@code myLang} lines.
+ * <p>Unlike {@link Token#lex(CharSequence)}, this lexer does not create a {@link Token} per token: the tokens of a line are written into two
+ * primitive arrays, {@link #type} (the token types of {@link Token}) and {@link #symbolOrValue} (the {@link SymbolTable} id of a variable, or the
+ * value of an integer literal). The arrays are reused for every line. Integer literals wrap around like LLVM's {@code i32}.</p>
+ * <p>The following cases are regarded as syntax error:</p>
+ * <ol>
+ * 	<li>If the token's type is unknown.</li>
+ * 	<li>If a name has a character which is not an ASCII letter, an ASCII digit or {@code '_'}, since the names of the variables are written into
+ * 	the LLVM-IR code as they are.</li>
+ * </ol>
+ * @author Aral Dortogul
+ */
+public class Lexer {
+	/**
+	 * the type of each token of the last line
+	 */
+	public int[] type = new int[64];
+	/**
+	 * the symbol id of each variable token, or the value of each integer token of the last line (0 for other tokens)
+	 */
+	public int[] symbolOrValue = new int[64];
+	/**
+	 * the number of tokens of the last line
+	 */
+	public int count = 0;
+	/**
+	 * the symbol table which the identifiers are interned into
+	 */
+	public final SymbolTable symbols;
+	/**
+	 * Constructs a lexer which interns the identifiers into the given symbol table.
+	 * @param symbols the symbol table
+	 */
+	public Lexer(SymbolTable symbols) {
+		this.symbols = symbols;
+	}
+	/**
+	 * Tokenizes a whole line.
+	 * @param input the line
+	 * @throws SyntaxErrorException when a syntax error is detected
+	 */
+	public void lex(CharSequence input) throws SyntaxErrorException {
+		lex(input, 0, input.length());
+	}
+	/**
+	 * Tokenizes a range of characters. Anything after a {@code '#'} is considered to be a comment.
+	 * @param input the input
+	 * @param start the index of the first character
+	 * @param end the index after the last character
+	 * @throws SyntaxErrorException when a syntax error is detected
+	 */
+	public void lex(CharSequence input, int start, int end) throws SyntaxErrorException {
+		count = 0;
+		int i = start;
+		while (i < end) {
+			char c = input.charAt(i);
+			switch (c) {
+			case '(': add(Token._lpar, 0); i++; break;
+			case ')': add(Token._rpar, 0); i++; break;
+			case '{': add(Token._lcurl, 0); i++; break;
+			case '}': add(Token._rcurl, 0); i++; break;
+			case '+': add(Token._add, 0); i++; break;
+			case '-': add(Token._sub, 0); i++; break;
+			case '*': add(Token._mult, 0); i++; break;
+			case '/': add(Token._div, 0); i++; break;
+			case '=': add(Token._assgn, 0); i++; break;
+			case ',': add(Token._comma, 0); i++; break;
+			case '#': return; // Anything after a '#' is considered to be a comment.
+			default:
+				if (Character.isWhitespace(c)) i++;
+				else if (isNameCharacter(c) && !(c >= '0' && c <= '9')) {
+					int first = i++;
+					while (i != end && isNameCharacter(input.charAt(i)))
+						i++;
+					int keyword = keyword(input, first, i);
+					if (keyword != 0)
+						add(keyword, 0);
+					else
+						add(Token._variable, symbols.intern(input, first, i));
+				} else if (Character.isDigit(c)) {
+					int value = 0;
+					while (i != end && Character.isDigit(input.charAt(i)))
+						value = 10 * value + Character.digit(input.charAt(i++), 10);
+					add(Token._integer, value);
+				} else
+					throw new SyntaxErrorException(); // Unknown token
+			}
+		}
+	}
+	/**
+	 * Checks if a character can be part of the name of a variable.
+	 * @param c the character
+	 * @return {@code true} if the character is an ASCII letter, an ASCII digit or {@code '_'}
+	 */
+	private static boolean isNameCharacter(char c) {
+		return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+	}
+	/**
+	 * Appends a token to the arrays.
+	 * @param tokenType the type of the token
+	 * @param symbolOrValue the symbol id or the value of the token
+	 */
+	private void add(int tokenType, int symbolOrValue) {
+		if (count == type.length) {
+			type = Arrays.copyOf(type, 2 * count);
+			this.symbolOrValue = Arrays.copyOf(this.symbolOrValue, 2 * count);
+		}
+		type[count] = tokenType;
+		this.symbolOrValue[count++] = symbolOrValue;
+	}
+	/**
+	 * Returns the type of the keyword in the given range of the input.
+	 * @param input the input
+	 * @param start the index of the first character of the identifier
+	 * @param end the index after the last character of the identifier
+	 * @return {@code Token._if}, {@code Token._while}, {@code Token._choose}, {@code Token._print}, or 0 if the identifier is not a keyword
+	 */
+	private static int keyword(CharSequence input, int start, int end) {
+		switch (end - start) {
+		case 2: return matches(input, start, "if") ? Token._if : 0;
+		case 5: return matches(input, start, "while") ? Token._while : matches(input, start, "print") ? Token._print : 0;
+		case 6: return matches(input, start, "choose") ? Token._choose : 0;
+		}
+		return 0;
+	}
+	/**
+	 * Checks if the input continues with the given word at the given index.
+	 * @param input the input
+	 * @param start the index
+	 * @param word the word
+	 * @return {@code true} if the characters match
+	 */
+	private static boolean matches(CharSequence input, int start, String word) {
+		for (int i = 0; i < word.length(); i++)
+			if (input.charAt(start + i) != word.charAt(i)) return false;
+		return true;
+	}
+}
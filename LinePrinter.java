@@ -0,0 +1,64 @@
+import java.io.IOException;
+import java.io.OutputStream;
+/**
+ * Buffered writer of the lines printed by a {@code myLang} script which runs in-process, in the format of the LLVM-IR code ({@code "%d\n"}).
+ * <p>The digits are written straight into a byte buffer, so printing does not allocate.</p>
+ * @author Aral Dortogul
+ */
+public final class LinePrinter {
+	/**
+	 * the maximum length of a line in bytes: a sign, 10 digits and a line feed
+	 */
+	private static final int LINE_SIZE = 12;
+	/**
+	 * the stream which the buffer is written to
+	 */
+	private final OutputStream output;
+	/**
+	 * the buffer of the printed lines
+	 */
+	private final byte[] buffer = new byte[8192];
+	/**
+	 * the number of bytes in the buffer
+	 */
+	private int length = 0;
+	/**
+	 * Constructs a printer.
+	 * @param output the stream which the lines are written to
+	 */
+	public LinePrinter(OutputStream output) {
+		this.output = output;
+	}
+	/**
+	 * Prints an integer and a line feed.
+	 * @param value the integer
+	 * @throws IOException when the buffer is full and cannot be written
+	 */
+	public void print(int value) throws IOException {
+		if (length > buffer.length - LINE_SIZE) {
+			output.write(buffer, 0, length);
+			length = 0;
+		}
+		byte[] buffer = this.buffer;
+		if (value < 0)
+			buffer[length++] = '-';
+		else
+			value = -value; // The digits are computed from the negative value, since -Integer.MIN_VALUE does not fit.
+		int digits = 1;
+		for (int rest = value; rest <= -10; rest /= 10)
+			digits++;
+		for (int i = length + digits - 1; i >= length; i--, value /= 10)
+			buffer[i] = (byte) ('0' - value % 10);
+		length += digits;
+		buffer[length++] = '\n';
+	}
+	/**
+	 * Writes the buffered lines to the stream and flushes it.
+	 * @throws IOException when the stream cannot be written
+	 */
+	public void flush() throws IOException {
+		output.write(buffer, 0, length);
+		length = 0;
+		output.flush();
+	}
+}
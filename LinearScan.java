@@ -0,0 +1,98 @@
+import java.util.Arrays;
+/**
+ * Linear-scan register allocator of the temporary variables of a basic-block-free piece of code (Poletto and Sarkar).
+ * <p>Each temporary variable lives from its first definition to its last use (its live interval, in instruction indices). The intervals are
+ * visited in the order of their starts, and an interval gets a free register, or the register of the active interval which ends last if that
+ * interval ends after it (which is spilled instead), or else a spill slot. An interval is expired only after the instruction of its last use,
+ * so the result of an instruction never shares a register with one of its operands.</p>
+ * <p>The code may contain forward jumps only: then the interval between the first definition and the last use covers every path between
+ * them.</p>
+ * @author Aral Dortogul
+ */
+public class LinearScan {
+	/**
+	 * the number of registers
+	 */
+	public final int registerCount;
+	/**
+	 * the location of each temporary variable: the index of its register, or {@code -1-slot} for the spill slot {@code slot}
+	 */
+	public int[] locations = new int[16];
+	/**
+	 * the number of spill slots used
+	 */
+	public int spillCount;
+	/**
+	 * the temporary variables of the active intervals, sorted by the ends of their intervals
+	 */
+	private int[] active;
+	/**
+	 * the number of active intervals
+	 */
+	private int activeCount;
+	/**
+	 * the free registers
+	 */
+	private int[] free;
+	/**
+	 * the number of free registers
+	 */
+	private int freeCount;
+	/**
+	 * the start of each interval shifted left by 32 bits, plus its temporary variable, sorted
+	 */
+	private long[] order = new long[16];
+	/**
+	 * Constructs an allocator.
+	 * @param registerCount the number of registers
+	 */
+	public LinearScan(int registerCount) {
+		this.registerCount = registerCount;
+		active = new int[registerCount];
+		free = new int[registerCount];
+	}
+	/**
+	 * Allocates the temporary variables to the registers and the spill slots.
+	 * @param starts the index of the first definition of each temporary variable
+	 * @param ends the index of the last use of each temporary variable (at least its start)
+	 * @param count the number of temporary variables
+	 */
+	public void allocate(int[] starts, int[] ends, int count) {
+		if (locations.length < count) {
+			locations = new int[2 * count];
+			order = new long[2 * count];
+		}
+		for (int temp = 0; temp < count; temp++)
+			order[temp] = ((long) starts[temp] << 32) | temp;
+		Arrays.sort(order, 0, count);
+		activeCount = spillCount = 0;
+		freeCount = registerCount;
+		for (int register = 0; register < registerCount; register++)
+			free[register] = registerCount - 1 - register; // The first register is taken first.
+		for (int i = 0; i < count; i++) {
+			int temp = (int) order[i], start = starts[temp];
+			int expired = 0;
+			while (expired < activeCount && ends[active[expired]] < start)
+				free[freeCount++] = locations[active[expired++]];
+			activeCount -= expired;
+			System.arraycopy(active, expired, active, 0, activeCount);
+			if (freeCount > 0)
+				locations[temp] = free[--freeCount];
+			else {
+				int last = activeCount - 1;
+				if (last >= 0 && ends[active[last]] > ends[temp]) { // The interval which ends last gives its register away.
+					locations[temp] = locations[active[last]];
+					locations[active[last]] = -1 - spillCount++;
+					activeCount--;
+				} else {
+					locations[temp] = -1 - spillCount++;
+					continue;
+				}
+			}
+			int position = activeCount++;
+			for (; position > 0 && ends[active[position - 1]] > ends[temp]; position--)
+				active[position] = active[position - 1];
+			active[position] = temp;
+		}
+	}
+}
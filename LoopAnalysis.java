@@ -0,0 +1,188 @@
+import java.util.Arrays;
+import java.util.BitSet;
+/**
+ * Scalar-evolution analysis of a {@code while} loop, which finds out if the final values of the variables of the loop can be computed directly.
+ * <p>The body of the loop must consist of assignments only (a {@code print} statement makes the number of printed lines depend on the trip
+ * count), and each variable may be assigned once. Every assignment must be one of the following, where {@code e} is an expression over
+ * variables which are not assigned in the loop, without division except by a constant other than 0 and -1:</p>
+ * <ol>
+ * 	<li>an induction variable: {@code v = v + e}, {@code v = e + v} or {@code v = v - e}, which changes by a constant amount per iteration,</li>
+ * 	<li>an accumulator: {@code s = s + i}, {@code s = i + s} or {@code s = s - i}, where {@code i} is an induction variable,</li>
+ * 	<li>an invariant assignment: {@code v = e}.</li>
+ * </ol>
+ * <p>The condition must be {@code n}, {@code n + e}, {@code e + n}, {@code n - e} or {@code e - n}, where {@code n} is an induction variable
+ * which changes by a constant 1 or -1, so that the condition changes by 1 or -1 per iteration. Because the values wrap around, such a
+ * condition always reaches 0: the trip count is the value of the condition before the loop (or its negation), taken as an unsigned integer.</p>
+ * @author Aral Dortogul
+ */
+public class LoopAnalysis {
+	/**
+	 * the kind of an induction variable
+	 */
+	public static final int INDUCTION = 1;
+	/**
+	 * the kind of an accumulator of an induction variable
+	 */
+	public static final int ACCUMULATOR = 2;
+	/**
+	 * the kind of a variable assigned a loop-invariant expression
+	 */
+	public static final int INVARIANT = 3;
+	/**
+	 * the number of variables assigned in the loop
+	 */
+	public int count;
+	/**
+	 * the symbol id of each variable assigned in the loop, in the order of the assignments
+	 */
+	public int[] variables;
+	/**
+	 * the kind of each variable: {@link #INDUCTION}, {@link #ACCUMULATOR} or {@link #INVARIANT}
+	 */
+	public int[] kinds;
+	/**
+	 * the step of each induction variable or the assigned expression of each invariant assignment ({@code null} for accumulators)
+	 */
+	public Expression[] expressions;
+	/**
+	 * {@code true} for each induction variable whose step is subtracted and each accumulator whose induction variable is subtracted
+	 */
+	public boolean[] negated;
+	/**
+	 * the index of the induction variable of each accumulator (-1 for other variables)
+	 */
+	public int[] sources;
+	/**
+	 * the index of the induction variable of the condition
+	 */
+	public int conditionVariable;
+	/**
+	 * {@code true} if the condition decreases by 1 per iteration, so that the trip count is the value of the condition before the loop;
+	 * {@code false} if it increases by 1, so that the trip count is the negation of that value
+	 */
+	public boolean countsDown;
+	/**
+	 * the set of variables assigned in the loop
+	 */
+	private final BitSet assigned = new BitSet();
+	/**
+	 * Analyzes a while loop.
+	 * @param statement the while statement
+	 * @return {@code true} if the final values of the loop's variables can be computed directly
+	 */
+	public boolean analyze(Statement statement) {
+		int size = statement.body.size();
+		variables = new int[size];
+		kinds = new int[size];
+		expressions = new Expression[size];
+		negated = new boolean[size];
+		sources = new int[size];
+		Arrays.fill(sources, -1);
+		assigned.clear();
+		count = 0;
+		for (Statement bodyStatement : statement.body) {
+			if (bodyStatement.kind != 'a' || assigned.get(bodyStatement.target))
+				return false;
+			assigned.set(bodyStatement.target);
+			variables[count++] = bodyStatement.target;
+		}
+		for (int i = 0; i < count; i++) { // Induction variables and invariant assignments
+			Expression expression = statement.body.get(i).expression;
+			int root = expression.root(), type = expression.type[root];
+			if (isInvariant(expression, 0, root)) {
+				kinds[i] = INVARIANT;
+				expressions[i] = expression;
+			} else if (type == Token._add || type == Token._sub) {
+				int RHS = root - 1, LHS = expression.start[RHS] - 1;
+				if (isVariable(expression, LHS, variables[i]) && isInvariant(expression, expression.start[RHS], RHS)) {
+					kinds[i] = INDUCTION;
+					expressions[i] = expression.subtree(RHS);
+					negated[i] = type == Token._sub;
+				} else if (type == Token._add && isVariable(expression, RHS, variables[i]) && isInvariant(expression, 0, LHS)) {
+					kinds[i] = INDUCTION;
+					expressions[i] = expression.subtree(LHS);
+				}
+			}
+		}
+		for (int i = 0; i < count; i++) { // Accumulators
+			if (kinds[i] != 0)
+				continue;
+			Expression expression = statement.body.get(i).expression;
+			int root = expression.root(), type = expression.type[root];
+			if (expression.length != 3 || (type != Token._add && type != Token._sub))
+				return false;
+			int source;
+			if (isVariable(expression, 0, variables[i]))
+				source = induction(expression, 1);
+			else if (type == Token._add && isVariable(expression, 1, variables[i]))
+				source = induction(expression, 0);
+			else
+				return false;
+			if (source == -1)
+				return false;
+			kinds[i] = ACCUMULATOR;
+			sources[i] = source;
+			negated[i] = type == Token._sub;
+		}
+		Expression condition = statement.expression; // The condition
+		int root = condition.root(), type = condition.type[root], sign = 1;
+		if ((conditionVariable = induction(condition, root)) == -1) {
+			if (type != Token._add && type != Token._sub)
+				return false;
+			int RHS = root - 1, LHS = condition.start[RHS] - 1;
+			if ((conditionVariable = induction(condition, LHS)) != -1 && isInvariant(condition, condition.start[RHS], RHS))
+				sign = 1;
+			else if ((conditionVariable = induction(condition, RHS)) != -1 && isInvariant(condition, 0, LHS))
+				sign = type == Token._sub ? -1 : 1;
+			else
+				return false;
+		}
+		Expression step = expressions[conditionVariable];
+		if (step.length != 1 || step.type[0] != Token._integer || (step.value[0] != 1 && step.value[0] != -1))
+			return false;
+		countsDown = sign * (negated[conditionVariable] ? -step.value[0] : step.value[0]) == -1;
+		return true;
+	}
+	/**
+	 * Returns the index of the induction variable of a single-node subtree.
+	 * @param expression the expression
+	 * @param node the node
+	 * @return the index of the induction variable, -1 if the node is not an induction variable
+	 */
+	private int induction(Expression expression, int node) {
+		if (expression.type[node] != Token._variable || expression.start[node] != node)
+			return -1;
+		for (int i = 0; i < count; i++)
+			if (variables[i] == expression.value[node])
+				return kinds[i] == INDUCTION ? i : -1;
+		return -1;
+	}
+	/**
+	 * Checks if a node is the given variable.
+	 * @param expression the expression
+	 * @param node the node
+	 * @param symbol the symbol id of the variable
+	 * @return {@code true} if the node is the variable
+	 */
+	private static boolean isVariable(Expression expression, int node, int symbol) {
+		return expression.type[node] == Token._variable && expression.value[node] == symbol;
+	}
+	/**
+	 * Checks if a range of nodes is loop-invariant and can be computed in front of the loop: it has no variable assigned in the loop and no
+	 * division except by a constant other than 0 and -1.
+	 * @param expression the expression
+	 * @param first the first node of the range
+	 * @param last the last node of the range
+	 * @return {@code true} if the nodes are invariant
+	 */
+	private boolean isInvariant(Expression expression, int first, int last) {
+		for (int node = first; node <= last; node++) {
+			int type = expression.type[node];
+			if (type == Token._variable && assigned.get(expression.value[node]))
+				return false;
+			if (type == Token._div && (expression.type[node - 1] != Token._integer || expression.value[node - 1] == 0 || expression.value[node - 1] == -1))
+				return false;
+		}
+		return true;
+	}
+}
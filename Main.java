@@ -1,613 +1,1605 @@
+import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.PrintStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
-import java.util.HashSet;
-import java.util.Iterator;
-import java.util.LinkedList;
-import java.util.ListIterator;
-import java.util.Scanner;
-import java.util.Set;
-import java.util.Stack;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 /**
  * Translator of .my files ({@code myLang} files) into .ll files (LLVM-IR code).
  * @author Aral Dortogul
  */
 public class Main {
 	/**
-	 * the LLVM-IR body statements
+	 * the maximum number of operations in the second, third and fourth arguments of a {@code choose} function lowered to {@code select}
 	 */
-	private static LinkedList<String> IRstatements = new LinkedList<String>();
+	private static final int SELECT_COST = 8;
 	/**
-	 * the LLVM-IR variable declaration statements
+	 * the options of the translator
 	 */
-	private static LinkedList<String> IRvariabledeclaration = new LinkedList<String>();
+	private final Options options;
 	/**
-	 * the LLVM-IR variable initialization statements (var = 0)
+	 * the emitter of the LLVM-IR statements, which streams the body and holds back the variable declarations and initializations
 	 */
-	private static LinkedList<String> IRvariableinit = new LinkedList<String>();
+	private IREmitter IRstatements;
 	/**
-	 * the Scanner for the input file
+	 * the writer of the assembly code, {@code null} unless {@link Options#assembly} is set
 	 */
-	private static Scanner input_file;
+	private AsmEmitter assembly;
 	/**
-	 * .my file's line counter
+	 * the writer of the bitcode, {@code null} unless {@link Options#bitcode} is set
 	 */
-	private static int lineCount = 0;
+	private BitcodeWriter bitcode;
 	/**
-	 * the set of declared variables
+	 * the symbol table of the script's variables
 	 */
-	private static Set<String> declaredVariables = new HashSet<String>();
+	private SymbolTable symbols = new SymbolTable();
 	/**
-	 * boolean which is {@code true} when curly braces are open due to if/while statements, {@code false} otherwise. 
+	 * the parser of the input file
 	 */
-	private static boolean curlyBracesOpen = false;
+	private Parser parser = new Parser(symbols);
+	/**
+	 * the set of declared variables, indexed by symbol id
+	 */
+	private BitSet declaredVariables = new BitSet();
+	/**
+	 * the constant propagator of the statements (used when {@link Options#propagate()} is set)
+	 */
+	private ConstantPropagator propagator = new ConstantPropagator();
+	/**
+	 * the dead store eliminator of the script
+	 */
+	private DeadStoreEliminator eliminator = new DeadStoreEliminator();
+	/**
+	 * the statements to be translated for the last parsed statement, or for the whole script with {@link Options#dse}
+	 */
+	private ArrayList<Statement> statements = new ArrayList<Statement>();
+	/**
+	 * the number of symbols of the last script parsed by {@link #parse(CharSequence)}, without the temporary variables of its translation
+	 */
+	private int parsedSymbols;
 	/**
 	 * temporary variable counter
 	 */
-	private static int tempVarCount = 0;
+	private int tempVarCount = 0;
 	/**
 	 * while statement counter
 	 */
-	private static int whileCount = 0;
+	private int whileCount = 0;
 	/**
 	 * if statement counter
 	 */
-	private static int ifCount = 0;
+	private int ifCount = 0;
 	/**
 	 * choose function counter
 	 */
-	private static int chooseCount = 0;
+	private int chooseCount = 0;
+	/**
+	 * the kinds of the operands on the operand stack of {@link #createIR_Expression(Expression)}: {@code Token._integer}, {@code Token._variable} or {@code Token._tempvar}
+	 */
+	private int[] operandKinds = new int[16];
+	/**
+	 * the values of the operands on the operand stack: the integer, the symbol id of the variable or the number of the temporary variable
+	 */
+	private int[] operandValues = new int[16];
+	/**
+	 * the size of the operand stack
+	 */
+	private int operandCount = 0;
+	/**
+	 * the first {@code choose} node which starts at each node of the expression being translated ({@code -1} if there is none)
+	 */
+	private int[] chooseStarts = new int[16];
+	/**
+	 * the next {@code choose} node which starts at the same node as each {@code choose} node ({@code -1} if there is none)
+	 */
+	private int[] nextChooseStarts = new int[16];
+	/**
+	 * the number of each {@code choose} node of the expression being translated, which names its labels and variables
+	 */
+	private int[] chooseNumbers = new int[16];
+	/**
+	 * the kind and the value of the first argument of each {@code choose} node in SSA mode, indexed by node
+	 */
+	private int[] chooseConditionKinds = new int[16], chooseConditionValues = new int[16];
+	/**
+	 * the kinds and the values of the second, third and fourth arguments of each {@code choose} node in SSA mode, indexed by {@code 3*node+argument-1}
+	 */
+	private int[] chooseIncomingKinds = new int[48], chooseIncomingValues = new int[48];
+	/**
+	 * the blocks which the second, third and fourth arguments of each {@code choose} node end in, in SSA mode
+	 */
+	private String[] chooseIncomingBlocks = new String[48];
+	/**
+	 * the current value of each variable in SSA mode (an integer, or the number of a temporary variable), indexed by symbol id
+	 */
+	private int[] variableValues = new int[64];
+	/**
+	 * the set of variables whose current values are temporary variables in SSA mode, indexed by symbol id
+	 */
+	private BitSet variableTemporaries = new BitSet();
+	/**
+	 * the emitter which the body of a rotated loop is translated to in SSA mode, before it is appended behind the phi nodes of the loop
+	 */
+	private IREmitter loopStatements;
+	/**
+	 * the values available in the current basic block (used when {@link Options#cse} is set)
+	 */
+	private ValueTable values = new ValueTable();
+	/**
+	 * the label of the basic block which the LLVM-IR statements are currently written to
+	 */
+	private String currentBlock;
+	/**
+	 * the analysis of the while loops whose final values are computed directly
+	 */
+	private LoopAnalysis loopAnalysis = new LoopAnalysis();
+	/**
+	 * the plan of the sequence which replaces the current multiplication or division by a constant
+	 */
+	private StrengthReduction reduction = new StrengthReduction();
+	/**
+	 * the kinds of the printed values which are not written yet with {@link Options#buffered}: {@code Token._integer} or {@code Token._tempvar}
+	 */
+	private int[] printKinds = new int[16];
+	/**
+	 * the printed values which are not written yet: the integer or the number of the temporary variable
+	 */
+	private int[] printValues = new int[16];
+	/**
+	 * the number of the line of each print which is not written yet
+	 */
+	private int[] printLines = new int[16];
+	/**
+	 * the number of printed values which are not written yet
+	 */
+	private int printCount = 0;
+	/**
+	 * the number of the source line of each profile counter, by the names of the counters in the order of their first increments (used when
+	 * {@link Options#profile} is set)
+	 */
+	private LinkedHashMap<String, Integer> profileCounters = new LinkedHashMap<String, Integer>();
+	/**
+	 * the number of the line of the statement being translated ({@code -1} before the first statement)
+	 */
+	private int currentLine = -1;
 	/**
 	 * Translates .my file into .ll intermediate code.
-	 * @param args command line arguments
-	 * @throws FileNotFoundException when an attempt to open the input file denoted by a specified pathname has failed
+	 * <p>If more than one argument is given, or the argument is a directory or a glob pattern, the files are translated in parallel by {@link Batch}.</p>
+	 * @param args command line arguments: the options (see {@link Options}) followed by the .my files
+	 * @throws IOException when an attempt to open the input file or to write the output file has failed
 	 */
-	public static void main(String[] args) throws FileNotFoundException {
-		input_file = new Scanner(new File(args[0]));
-		String output_file_name = args[0].substring(0, args[0].lastIndexOf('.')).concat(".ll");
+	public static void main(String[] args) throws IOException {
+		Options options = new Options();
+		int first;
 		try {
-			while (input_file.hasNextLine()) {
-				String current_line = input_file.nextLine(); // Get the next input line
-				ArrayList<Token> tokens = Token.lex(current_line); // Tokenize the line, may throw SyntaxErrorException
-				ListIterator<Token> itr = tokens.listIterator();
-				
-				while(itr.hasNext()) { // Tokenize choose function if there is any.
-					Token current = itr.next();
-					if(current.type == Token._choose) {
-						itr.remove();
-						Choose choose = tokenizeChoose(itr);
-						itr.add(choose);
-					}
-				}				
-				ParseLine(tokens); // Parse general expression: A line can start with a variable, print, while, if.
-				lineCount++;
+			first = options.parse(args);
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			return;
+		}
+		if (args.length - first != 1 || Batch.isPattern(args[first]) || new File(args[first]).isDirectory()) { // Several files, directories or glob patterns
+			Batch.main(args);
+			return;
+		}
+		String output_file_name = args[first].substring(0, args[first].lastIndexOf('.')).concat(options.extension());
+		new Main(options).compile(Paths.get(args[first]), Paths.get(output_file_name));
+	}
+	/**
+	 * Constructs a translator with the default options.
+	 */
+	public Main() {
+		this(new Options());
+	}
+	/**
+	 * Constructs a translator with the given options.
+	 * @param options the options of the translator
+	 */
+	public Main(Options options) {
+		this.options = options;
+		IRstatements = new IREmitter(options.modern, options.buffered);
+		loopStatements = new IREmitter(options.modern, options.buffered);
+		if (options.assembly)
+			assembly = new AsmEmitter(options.fold());
+		if (options.bitcode)
+			bitcode = new BitcodeWriter();
+	}
+	/**
+	 * Translates a .my file into a .ll file (Creates the file if it does not exist.).
+	 * <p>The body of the LLVM-IR code is streamed to a temporary segment next to the output file while the script is parsed, and spliced behind the variable declarations at the end.</p>
+	 * @param input_file_name the path of the .my file
+	 * @param output_file_name the path of the .ll file
+	 * @return {@code true} if the script is translated, {@code false} if a syntax error is detected
+	 * @throws IOException when the input file cannot be read or the output file cannot be written
+	 */
+	public boolean compile(Path input_file_name, Path output_file_name) throws IOException {
+		Path directory = output_file_name.toAbsolutePath().getParent();
+		SourceText input = SourceText.map(input_file_name);
+		try (FileChannel output = FileChannel.open(output_file_name, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			return compile(input, output, directory, input_file_name);
+		}
+	}
+	/**
+	 * Translates a {@code myLang} script into LLVM-IR code.
+	 * <p>The translator keeps all of its state in the instance, so separate {@code Main} objects can be used concurrently on separate threads. A single object is not thread-safe, but it can be reused for any number of scripts one after another.</p>
+	 * @param input the {@code myLang} script
+	 * @param output the writer that the LLVM-IR code (or the syntax error program) is written to
+	 * @return {@code true} if the script is translated, {@code false} if a syntax error is detected
+	 * @throws IOException when the output cannot be written
+	 * @throws IllegalStateException when the translator writes bitcode ({@link Options#bitcode}), which is binary (see
+	 * {@link #compile(Reader, OutputStream)})
+	 */
+	public boolean compile(Reader input, Writer output) throws IOException {
+		checkText();
+		ByteArrayOutputStream ir_output = new ByteArrayOutputStream();
+		boolean translated = compile(SourceText.of(read(input)), Channels.newChannel(ir_output), null, null);
+		output.write(ir_output.toString(StandardCharsets.ISO_8859_1));
+		output.flush();
+		return translated;
+	}
+	/**
+	 * Translates a {@code myLang} script into LLVM-IR code, assembly code or bitcode, which is written as bytes.
+	 * @param input the {@code myLang} script
+	 * @param output the stream that the output (or the syntax error program) is written to
+	 * @return {@code true} if the script is translated, {@code false} if a syntax error is detected
+	 * @throws IOException when the output cannot be written
+	 */
+	public boolean compile(Reader input, OutputStream output) throws IOException {
+		boolean translated = compile(SourceText.of(read(input)), Channels.newChannel(output), null, null);
+		output.flush();
+		return translated;
+	}
+	/**
+	 * Translates a {@code myLang} script held in memory into LLVM-IR code.
+	 * @param script the {@code myLang} script
+	 * @return the LLVM-IR code, or the syntax error program if a syntax error is detected
+	 * @throws IllegalStateException when the translator writes bitcode ({@link Options#bitcode}), which is binary (see
+	 * {@link #compile(Reader, OutputStream)})
+	 */
+	public String compile(CharSequence script) {
+		checkText();
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		try {
+			compile(SourceText.of(script), Channels.newChannel(output), null, null);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e); // A ByteArrayOutputStream never fails.
+		}
+		return output.toString(StandardCharsets.ISO_8859_1);
+	}
+	/**
+	 * Checks that the output of the translator is text, so that it can be returned as characters.
+	 * @throws IllegalStateException when the translator writes bitcode
+	 */
+	private void checkText() {
+		if (bitcode != null)
+			throw new IllegalStateException("bitcode is binary: use compile(Reader, OutputStream)");
+	}
+	/**
+	 * Reads a whole script.
+	 * @param input the reader of the script
+	 * @return the characters of the script
+	 * @throws IOException when the script cannot be read
+	 */
+	private static StringBuilder read(Reader input) throws IOException {
+		StringBuilder script = new StringBuilder();
+		char[] chunk = new char[8192];
+		for (int read; (read = input.read(chunk)) != -1; )
+			script.append(chunk, 0, read);
+		return script;
+	}
+	/**
+	 * Translates a {@code myLang} script into LLVM-IR code which is written to a channel.
+	 * @param input the lines of the {@code myLang} script
+	 * @param output the channel that the LLVM-IR code (or the syntax error program) is written to
+	 * @param segmentDirectory the directory of the temporary segment of the body, {@code null} to keep the body in memory
+	 * @param source the path of the .my file for the debug information, {@code null} if the script is not read from a file
+	 * @return {@code true} if the script is translated, {@code false} if a syntax error is detected
+	 * @throws IOException when the output cannot be written
+	 */
+	private boolean compile(SourceText input, WritableByteChannel output, Path segmentDirectory, Path source) throws IOException {
+		reset(input, segmentDirectory);
+		debug(source);
+		try {
+			for (Statement statement; (statement = parser.next()) != null; ) { // Parse the script statement by statement, may throw SyntaxErrorException
+				if (!options.dse) // Dead store elimination needs the whole script, otherwise each statement is translated at once.
+					statements.clear();
+				if (options.propagate())
+					propagator.propagate(statement, statements);
+				else
+					statements.add(statement);
+				if (!options.dse)
+					for (Statement propagated : statements)
+						translate(propagated);
+			}
+			if (options.dse) {
+				eliminator.eliminate(statements);
+				for (Statement statement : statements)
+					translate(statement);
 			}
-			printIR(output_file_name); // Write the LLVM-IR code in the specified output file.
+			createIR_prints();
+			printIR(output); // Write the LLVM-IR code to the output.
 		} catch (SyntaxErrorException e) {
-			SyntaxError(output_file_name);
+			SyntaxError(output);
+			return false;
 		}
+		return true;
 	}
 	/**
-	 * Creates a single "Choose" token from a list of tokens.
-	 * <p>The following cases are regarded as syntax error:</p>
-	 * <ol>
-	 * 	<li><code>choose</code> is not followed by any token.</li>
-	 * 	<li><code>choose</code> is not followed by <code>'('</code></li>
-	 * 	<li>There are more than three commas inside <code>choose</code> function.</li>
-	 * 	<li>Any of <code>choose</code>'s arguments is empty.</li>
-	 * </ol>
-	 * @param itr the Iterator of the token list
-	 * @return the "Choose" token, null if there is a syntax error
+	 * Parses a {@code myLang} script held in memory into the statements which the translator translates, after the constant propagation and the
+	 * dead store elimination if they are enabled, so that the code generation can be run alone by {@link #translate(List)}.
+	 * @param script the {@code myLang} script
+	 * @return the statements of the script, whose symbol ids belong to this translator until the next script is parsed or translated
 	 * @throws SyntaxErrorException when a syntax error is detected
 	 */
-	private static Choose tokenizeChoose(ListIterator<Token> itr) throws SyntaxErrorException {
-		Choose result = new Choose(Token._choose);
-		if (itr.hasNext()) {
-			Token first = itr.next();
-			if (first.type != Token._lpar) throw new SyntaxErrorException(); // "choose" is not followed by '('
-			itr.remove();
-		} else throw new SyntaxErrorException(); // "choose" is followed by nothing.
-		int commaCount = 0, openLeftParentheses = 1;
-		
-		while(itr.hasNext()) {
-			Token next = itr.next();
-			itr.remove();
-			if (next.type == Token._comma) {
-				commaCount++;
-				if (commaCount > 3) throw new SyntaxErrorException(); // There are more than 3 commas inside choose.
-				continue;
-			}
-			if (next.type == Token._rpar) {
-				if (--openLeftParentheses == 0) break;
-			} else if (next.type == Token._lpar)
-				openLeftParentheses++;
-			if (next.type == Token._choose) {
-				Choose choose = tokenizeChoose(itr);
-				result.tokens_of_arg.get(commaCount).add(choose);
-			} else
-				result.tokens_of_arg.get(commaCount).add(next);
-		}
-		if (openLeftParentheses != 0 || result.tokens_of_arg.get(0).isEmpty() || result.tokens_of_arg.get(1).isEmpty() ||  result.tokens_of_arg.get(2).isEmpty() ||  result.tokens_of_arg.get(3).isEmpty())
-			throw new SyntaxErrorException();
-		return result;
+	public List<Statement> parse(CharSequence script) throws SyntaxErrorException {
+		try {
+			reset(SourceText.of(script), null);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e); // No segment is written to a file.
+		}
+		ArrayList<Statement> parsed = new ArrayList<Statement>();
+		for (Statement statement; (statement = parser.next()) != null; ) {
+			statements.clear();
+			if (options.propagate())
+				propagator.propagate(statement, statements);
+			else
+				statements.add(statement);
+			parsed.addAll(statements);
+		}
+		if (options.dse)
+			eliminator.eliminate(parsed);
+		parsedSymbols = symbols.size();
+		return parsed;
+	}
+	/**
+	 * Translates the statements of the last script parsed by {@link #parse(CharSequence)} into LLVM-IR code: the code generation alone. The
+	 * statements can be translated any number of times, and they are not changed (the invariant subexpressions which {@link Options#licm} hoists
+	 * out of while statements are put back).
+	 * @param parsed the statements returned by {@link #parse(CharSequence)}
+	 * @return the LLVM-IR code, or the assembly code with {@link Options#assembly}
+	 * @throws IllegalStateException when the translator writes bitcode ({@link Options#bitcode}), which is binary
+	 */
+	public String translate(List<Statement> parsed) {
+		checkText();
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		ArrayList<Expression> expressions = new ArrayList<Expression>();
+		if (options.licm)
+			expressions(parsed, expressions);
+		try {
+			resetTranslation(null);
+			symbols.truncate(parsedSymbols); // Drops the temporary variables of the previous translation.
+			debug(null);
+			for (Statement statement : parsed)
+				translate(statement);
+			createIR_prints();
+			printIR(Channels.newChannel(output));
+		} catch (IOException e) {
+			throw new UncheckedIOException(e); // A ByteArrayOutputStream never fails.
+		}
+		if (options.licm)
+			restore(parsed, expressions, 0);
+		return output.toString(StandardCharsets.ISO_8859_1);
+	}
+	/**
+	 * Collects the expressions of statements and of their blocks, in order.
+	 * @param block the statements
+	 * @param expressions the list which the expressions are added to
+	 */
+	private static void expressions(List<Statement> block, List<Expression> expressions) {
+		for (Statement statement : block) {
+			expressions.add(statement.expression);
+			if (statement.body != null)
+				expressions(statement.body, expressions);
+		}
+	}
+	/**
+	 * Puts back the expressions collected by {@link #expressions(List, List)} into the statements.
+	 * @param block the statements
+	 * @param expressions the collected expressions
+	 * @param next the index of the expression of the first statement
+	 * @return the index of the expression after the statements of the block
+	 */
+	private static int restore(List<Statement> block, List<Expression> expressions, int next) {
+		for (Statement statement : block) {
+			statement.expression = expressions.get(next++);
+			if (statement.body != null)
+				next = restore(statement.body, expressions, next);
+		}
+		return next;
+	}
+	/**
+	 * Starts the debug information of the LLVM-IR code, if {@link Options#debug} is set.
+	 * @param source the path of the .my file, {@code null} if the script is not read from a file
+	 */
+	private void debug(Path source) {
+		if (!options.debug)
+			return;
+		Path path = source == null ? null : source.toAbsolutePath();
+		String file = path == null ? "<stdin>" : path.getFileName().toString(), directory = path == null ? "" : String.valueOf(path.getParent());
+		IRstatements.debug(file, directory);
+		loopStatements.debug(file, directory);
+	}
+	/**
+	 * Returns the line count of the last translated script.
+	 * @return the number of lines of the script, or the number of the line in which the syntax error is detected (starting with 0)
+	 */
+	public int getLineCount() {
+		return parser.getLineCount();
+	}
+	/**
+	 * Clears the state left by the previous translation so that a new script can be translated.
+	 * @param input the lines of the new script
+	 * @param segmentDirectory the directory of the temporary segment of the body, {@code null} to keep the body in memory
+	 * @throws IOException when the previous temporary segment cannot be deleted
+	 */
+	private void reset(SourceText input, Path segmentDirectory) throws IOException {
+		symbols.clear();
+		parser.reset(input);
+		propagator.reset();
+		statements.clear();
+		resetTranslation(segmentDirectory);
+	}
+	/**
+	 * Clears the state of the code generation left by the previous translation, but keeps the symbols and the parsed statements.
+	 * @param segmentDirectory the directory of the temporary segment of the body, {@code null} to keep the body in memory
+	 * @throws IOException when the previous temporary segment cannot be deleted
+	 */
+	private void resetTranslation(Path segmentDirectory) throws IOException {
+		IRstatements.reset(segmentDirectory);
+		if (assembly != null)
+			assembly.reset();
+		declaredVariables.clear();
+		Arrays.fill(variableValues, 0);
+		variableTemporaries.clear();
+		values.clear();
+		currentBlock = null;
+		profileCounters.clear();
+		currentLine = -1;
+		if (options.ssa)
+			label("entry", -1, false);
+		operandCount = 0;
+		printCount = 0;
+		tempVarCount = 0;
+		whileCount = 0;
+		ifCount = 0;
+		chooseCount = 0;
 	}
 	/**
-	 * Writes the LLVM-IR statements into a file with the given name (Creates the file if it does not exist.).
-	 * @param output_file_name the output file's name (with .ll extension)
-	 * @throws FileNotFoundException when the file is not found
-	 */
-	private static void printIR(String output_file_name) throws FileNotFoundException {
-		PrintStream output = new PrintStream(new File(output_file_name));
-		output.println("; ModuleID = 'mylang2ir'");
-		output.println("declare i32 @printf(i8*, ...)");
-		output.println("@print.str = constant [4 x i8] c\"%d\\0A\\00\"");
-		output.println();
-		output.println("define i32 @main() {");
-
-		if (!IRvariabledeclaration.isEmpty()) {
-			for (String line : IRvariabledeclaration)
-				output.println(line);
-			output.println();
-		}
-
-		if (!IRvariableinit.isEmpty()) {
-			for (String line : IRvariableinit)
-				output.println(line);
-			output.println();
-		}
-
-		for (String line : IRstatements)
-			output.println(line);
-
-		output.println("\tret i32 0");
-		output.println("}");
-		output.close();
+	 * Writes the LLVM-IR code to the given output: the variable declarations and initializations followed by the streamed body statements (or
+	 * the assembly code with {@link Options#assembly}, or the bitcode of the LLVM-IR code with {@link Options#bitcode}).
+	 * @param output the output of the LLVM-IR code
+	 * @throws IOException when the output cannot be written
+	 */
+	private void printIR(WritableByteChannel output) throws IOException {
+		if (assembly != null) {
+			assembly.finish(output, symbols.size());
+			return;
+		}
+		if (options.profile != null)
+			IRstatements.appendProfile(profileCounters, options.profile);
+		if (bitcode != null) { // The module is encoded as a whole.
+			ByteArrayOutputStream ir = new ByteArrayOutputStream();
+			IRstatements.finish(Channels.newChannel(ir));
+			bitcode.write(ir.toString(StandardCharsets.ISO_8859_1), output);
+		} else
+			IRstatements.finish(output);
 	}
 	/**
 	 * Generates syntax error output.
 	 * 
-	 * <p>Syntax error output is the LLVM-IR code which displays "Line X: syntax error" when executed. X is the number of the line in which the syntax error is detected. Line numbers start with 0.</p>
-	 * @param output_file_name the name of the output file (with .ll extension)
-	 * @throws FileNotFoundException when an attempt to open the file denoted by a specified pathname has failed
-	 */
-	private static void SyntaxError(String output_file_name) throws FileNotFoundException {
-		PrintStream output = new PrintStream(new File(output_file_name));
-
-		output.println("; ModuleID = 'mylang2ir'");
-		output.println("declare i32 @printf(i8*, ...)");
-		output.println("@print.str = constant [23 x i8] c\"Line %d: syntax error\\0A\\00\"");
-		output.println();
-		output.println("define i32 @main() {");
-		output.println("\tcall i32 (i8*, ...)* @printf(i8* getelementptr ([23 x i8]* @print.str, i32 0, i32 0), i32 " + lineCount + " )");
-		output.println("\tret i32 0");
-		output.println("}");
-		output.close();
-	}
-	/**
-	 * Parses <code>myLang</code> lines token by token.
-	 * <p>A valid <code>myLang</code> line can be an assignment statement, print statement, while statement, if statement, or curly braces closing statement (which is only "}").</p>
-	 * <p>The following cases are regarded as syntax error:</p>
-	 * <ol>
-	 * 	<li>The function starts as if it is an assignment/if/while/print statement but detects a syntax error later.</li>
-	 * 	<li>If a statement other than the four possible statements is encountered.</li>
-	 * 	<li>If the statement starts with '}', but there are no open curly braces, or '}' is not the only token in the statement.</li>
-	 * </ol>
-	 * @param tokens the list of tokens of the line
-	 * @return
-	 * <ul>
-	 * 	<li>'a': assignment statement, </li>
-	 * 	<li>'p': print statement, </li>
-	 * 	<li>'w': while statement, </li><li>'i': if statement, </li>
-	 * 	<li>'e': empty statement, </li>
-	 * 	<li>'}': if/while closing line </li>
-	 * </ul>
-	 * @throws SyntaxErrorException when a syntax error is detected
+	 * <p>Syntax error output is the LLVM-IR code which displays "Line X: syntax error" when executed (or the assembly code of that program with {@link Options#assembly}, or its bitcode with {@link Options#bitcode}). X is the number of the line in which the syntax error is detected. Line numbers start with 0.</p>
+	 * @param output the output of the LLVM-IR code
+	 * @throws IOException when the output cannot be written
 	 */
-	private static char ParseLine(ArrayList<Token> tokens) throws SyntaxErrorException {
-		if(!tokens.isEmpty()) {
-			Token initial = tokens.get(0);
-			if (initial.type == Token._variable)		// Assignment line
-				return parseAssignment(tokens);
-
-			else if (initial.type == Token._if)			// If line
-				return parseIf(tokens);
-			
-			else if (initial.type == Token._while)		// While line
-				return parseWhile(tokens);
-
-			else if (initial.type == Token._print)		// Print line
-				return parsePrint(tokens);
-				
-			else if (initial.type == Token._rcurl) {	// While/If closing line
-				if (!curlyBracesOpen || tokens.size() > 1) throw new SyntaxErrorException(); // If there is no open curly braces or the closing curly braces line continues with other tokens.
-				return '}';
-
-			} else throw new SyntaxErrorException(); // Statements of other forms
-		} else		// Empty line
-			return 'e';
-	}
-	/**
-	 * Parses a <code>myLang</code> assignment statement of the form: <code>&lt;variable&gt; = &lt;expression&gt;</code>
-	 * <p>This method is called when the first token of a <code>myLang</code> statement is an identifier (variable name).</p>
-	 * <p>The following cases are regarded as syntax error:</p>
-	 * <ol>
-	 * 	<li>The second token is not an assignment operator.</li>
-	 * 	<li>The token count of the statement is less than three.</li>
-	 * 	<li>There is a syntax error in the expression itself. (See <code>parseIR_Expression(Iterator&lt;Token&gt;)</code> for more.)</li>
-	 * </ol>
-	 * @param tokens the tokens of the statement
-	 * @return 'a' for "assignment"
-	 * @throws SyntaxErrorException when a syntax error is detected
+	private void SyntaxError(WritableByteChannel output) throws IOException {
+		if (assembly != null)
+			assembly.finishSyntaxError(output, parser.getLineCount());
+		else if (bitcode != null) {
+			ByteArrayOutputStream ir = new ByteArrayOutputStream();
+			IRstatements.finishSyntaxError(Channels.newChannel(ir), parser.getLineCount());
+			bitcode.write(ir.toString(StandardCharsets.ISO_8859_1), output);
+		} else
+			IRstatements.finishSyntaxError(output, parser.getLineCount());
+	}
+	/**
+	 * Translates a statement of the script (and the statements of its block) into LLVM-IR statements, or into assembly code with
+	 * {@link Options#assembly}.
+	 * @param statement the statement
+	 * @throws IOException when the LLVM-IR statements cannot be written
 	 */
-	private static char parseAssignment(ArrayList<Token> tokens) throws SyntaxErrorException {
-		if (tokens.size() < 3 || tokens.get(1).type != Token._assgn) throw new SyntaxErrorException(); // If a variable name is not followed by '='
-		ArrayList<Token> expression = infixToPostFix(tokens, 0, 0, 1); // May throw syntax error
-		createIR_Expression(expression.iterator());
-		return 'a';
-	}
-	/**
-	 * Parses an if statement of the form: <code>if (&lt;expr&gt;) {</code>
-	 * <p>This method is called when the first token of a <code>myLang</code> statement is the {@code "if"} keyword.</p>
-	 * <p>The following cases are regarded as syntax error:</p>
-	 * <ol>
-	 * 	<li>The token count of the statement is less than 5, which is the minimum amount of tokens required for an {@code if} statement.</li>
-	 * 	<li>The second token is not {@code '('}.</li>
-	 * 	<li>The last token is not <code>'{'</code>.</li>
-	 * 	<li>The token before the last token is not {@code ')'}.</li>
-	 * 	<li>{@code if} condition expression has a syntax error.</li>
-	 * 	<li>A body statement in the {@code if} block has a syntax error.</li>
-	 * 	<li>The input file ends without closing the {@code if} block's braces.</li>
-	 * 	<li>This {@code if} statement is already in  an {@code if/while} statement.<br>
-	 * 		(No nested {@code if/while} statements are allowed.)</li>
-	 * </ol>
-	 * @param tokens the tokens of the statement
-	 * @return {@code 'i'} for {@code "if"}
-	 * @throws SyntaxErrorException when a syntax error is detected
+	private void translate(Statement statement) throws IOException {
+		if (assembly != null)
+			assembly.statement(statement);
+		else
+			createIR_statement(statement);
+	}
+	/**
+	 * Creates and stores LLVM-IR statements for a statement (and for the statements of its block).
+	 * @param statement the statement
+	 * @throws IOException when the LLVM-IR statements cannot be written
 	 */
-	private static char parseIf(ArrayList<Token> tokens) throws SyntaxErrorException {
-		if ((tokens.size() < 5) || (tokens.get(1).type != Token._lpar) || (tokens.get(tokens.size() - 2).type != Token._rpar) || (tokens.get(tokens.size() - 1).type != Token._lcurl) || curlyBracesOpen)
-			throw new SyntaxErrorException(); // If an if statement is not in the form of: "if ( <expr> ) {" OR if it is going to be a nested if
-		IRstatements.add("\tbr label %ifcond" + (++ifCount) + "\n");
-		IRstatements.add("ifcond" + ifCount + ":");
-		ArrayList<Token> if_condition = infixToPostFix(tokens, 2, 2, 0); // May throw syntax error
-		
-		createIR_condition_expression(if_condition.iterator(), 'i'); // Create and store the LLVM-IR statements for the if-condition.
-		
-		IRstatements.add("ifbody" + ifCount + ":"); // LLVM-IR: label of the if block's body
-		curlyBracesOpen = true;
-		while(input_file.hasNextLine()) { // Read lines until "}" line is encountered.
-			String currentBodyLine  = input_file.nextLine();
-			lineCount++;
-			ArrayList<Token> bodylinetokens = Token.lex(currentBodyLine);	// Tokenize the current line, may throw syntax error
-			
-			ListIterator<Token> body_itr = bodylinetokens.listIterator();
-			while(body_itr.hasNext()) {										// Create single "choose" tokens with tokenizeChoose().
-				Token current = body_itr.next();
-				if(current.type == Token._choose) {
-					body_itr.remove();
-					Choose choose = tokenizeChoose(body_itr); // May throw exception
-					body_itr.add(choose);
-				}
+	private void createIR_statement(Statement statement) throws IOException {
+		if (statement.kind == 'i' || statement.kind == 'w') // The waiting prints cannot be moved into the block.
+			createIR_prints();
+		int outerLine = currentLine;
+		currentLine = statement.line;
+		IRstatements.location(currentLine);
+		count("line" + statement.line);
+		switch (statement.kind) {
+		case 'a':
+			if (!options.ssa)
+				declare(statement.target);
+			createIR_Expression(statement.expression);
+			createIR_Assgn_Expression(statement.target);
+			break;
+		case 'p': createIR_print_statement(statement.expression); break;
+		case 'i': createIR_if(statement); break;
+		case 'w': createIR_while(statement); break;
+		}
+		currentLine = outerLine;
+		IRstatements.location(currentLine);
+	}
+	/**
+	 * Creates and stores LLVM-IR statements for the statements of the block of an if or while statement, and writes the prints which are still
+	 * waiting at the end of the block.
+	 * @param statement the if or while statement
+	 * @throws IOException when the LLVM-IR statements cannot be written
+	 */
+	private void createIR_body(Statement statement) throws IOException {
+		for (Statement bodyStatement : statement.body)
+			createIR_statement(bodyStatement);
+		createIR_prints();
+	}
+	/**
+	 * Creates and stores LLVM-IR statements for an if statement.
+	 * @param statement the if statement
+	 * @throws IOException when the LLVM-IR statements cannot be written
+	 */
+	private void createIR_if(Statement statement) throws IOException {
+		IRstatements.append("\tbr label %ifcond").append(++ifCount).line().line();
+		label("ifcond", ifCount);
+		createIR_condition_expression(statement.expression, 'i'); // Create and store the LLVM-IR statements for the if-condition.
+		String conditionBlock = currentBlock;
+		int[] assigned = assignedVariables(statement);
+		int[] entryKinds = new int[assigned.length], entryValues = new int[assigned.length];
+		for (int i = 0; i < assigned.length; i++) {
+			entryKinds[i] = variableKind(assigned[i]);
+			entryValues[i] = variableValue(assigned[i]);
+		}
+		label("ifbody", ifCount); // LLVM-IR: label of the if block's body
+		createIR_body(statement);
+		String bodyBlock = currentBlock;
+		IRstatements.append("\tbr label %ifend").append(ifCount).line().line();
+		label("ifend", ifCount, false);
+		for (int i = 0; i < assigned.length; i++) { // SSA: the value of a variable assigned in the body depends on the path
+			int symbol = assigned[i];
+			if (variableKind(symbol) == entryKinds[i] && variableValue(symbol) == entryValues[i])
+				continue;
+			int phi = ++tempVarCount;
+			IRstatements.append("\t%t").append(phi).append(" = phi i32 [ ");
+			appendValue(variableKind(symbol), variableValue(symbol));
+			IRstatements.append(", %").append(bodyBlock).append(" ], [ ");
+			appendValue(entryKinds[i], entryValues[i]);
+			IRstatements.append(", %").append(conditionBlock).append(" ]").line();
+			setVariable(symbol, Token._tempvar, phi);
+		}
+		count(currentBlock);
+	}
+	/**
+	 * Creates and stores LLVM-IR statements for a while statement.
+	 * @param statement the while statement
+	 * @throws IOException when the LLVM-IR statements cannot be written
+	 */
+	private void createIR_while(Statement statement) throws IOException {
+		if (options.closedForm && loopAnalysis.analyze(statement)) {
+			createIR_while_closed(statement);
+			return;
+		}
+		if (options.licm)
+			hoistInvariants(statement);
+		if (options.rotate) {
+			createIR_while_rotated(statement);
+			return;
+		}
+		if (options.ssa) {
+			createIR_while_ssa(statement);
+			return;
+		}
+		IRstatements.append("\tbr label %whcond").append(++whileCount).line().line(); // LLVM-IR: Label of the while-loop's condition
+		label("whcond", whileCount);
+		createIR_condition_expression(statement.expression, 'w');
+		label("whbody", whileCount); // LLVM-IR: Label of the while-loop's body
+		createIR_body(statement);
+		IRstatements.append("\tbr label %whcond").append(whileCount).line().line();
+		label("whend", whileCount);
+	}
+	/**
+	 * Creates and stores LLVM-IR statements for a while statement in SSA mode.
+	 * <p>Each variable assigned in the body gets a {@code phi} node at the loop condition, which merges its value before the loop with its value
+	 * after the body. The phi nodes are numbered before the body is translated, and the condition block is written after the body (LLVM-IR
+	 * allows forward references), so the values after the body are known when the phi nodes are written.</p>
+	 * @param statement the while statement
+	 * @throws IOException when the LLVM-IR statements cannot be written
+	 */
+	private void createIR_while_ssa(Statement statement) throws IOException {
+		String entryBlock = currentBlock;
+		IRstatements.append("\tbr label %whcond").append(++whileCount).line().line();
+		int[] assigned = assignedVariables(statement);
+		int[] entryKinds = new int[assigned.length], entryValues = new int[assigned.length], phis = new int[assigned.length];
+		for (int i = 0; i < assigned.length; i++) {
+			entryKinds[i] = variableKind(assigned[i]);
+			entryValues[i] = variableValue(assigned[i]);
+			phis[i] = ++tempVarCount;
+			setVariable(assigned[i], Token._tempvar, phis[i]);
+		}
+		label("whbody", whileCount);
+		createIR_body(statement);
+		String bodyBlock = currentBlock;
+		IRstatements.append("\tbr label %whcond").append(whileCount).line().line();
+		label("whcond", whileCount, false);
+		for (int i = 0; i < assigned.length; i++) {
+			IRstatements.append("\t%t").append(phis[i]).append(" = phi i32 [ ");
+			appendValue(entryKinds[i], entryValues[i]);
+			IRstatements.append(", %").append(entryBlock).append(" ], [ ");
+			appendValue(variableKind(assigned[i]), variableValue(assigned[i]));
+			IRstatements.append(", %").append(bodyBlock).append(" ]").line();
+			setVariable(assigned[i], Token._tempvar, phis[i]); // The loop is left from its condition.
+		}
+		count(currentBlock);
+		createIR_condition_expression(statement.expression, 'w');
+		label("whend", whileCount);
+	}
+	/**
+	 * Creates and stores LLVM-IR statements for a while statement rotated into a guarded do-while loop.
+	 * <p>The condition is tested once at {@code whcond} (the guard) and then at the end of the body, which branches back to {@code whbody}, so an
+	 * iteration takes a single branch. If the condition and the body have no {@code choose} function, the body is unrolled: it is repeated
+	 * {@link Options#unroll} times, with a test of the condition after each copy (the copies after the first are labeled
+	 * {@code whbodyN.1}, {@code whbodyN.2}, ...).</p>
+	 * <p>In SSA mode, each variable assigned in the body gets a {@code phi} node at {@code whbody}, which merges its value before the loop with
+	 * its value after the last copy, and one at {@code whend}, which merges its values at the guard and at the tests after the copies. The copies
+	 * are translated to a separate emitter first, so that the phi nodes at {@code whbody} can be written before them.</p>
+	 * @param statement the while statement
+	 * @throws IOException when the LLVM-IR statements cannot be written
+	 */
+	private void createIR_while_rotated(Statement statement) throws IOException {
+		int loop = ++whileCount, copies = isUnrollable(statement) ? options.unroll : 1;
+		IRstatements.append("\tbr label %whcond").append(loop).line().line();
+		label("whcond", loop);
+		int[] assigned = options.ssa ? assignedVariables(statement) : new int[0];
+		int[][] exitKinds = new int[copies + 1][assigned.length], exitValues = new int[copies + 1][assigned.length];
+		String[] exitBlocks = new String[copies + 1];
+		int cond = createIR_condition(statement.expression);
+		IRstatements.append("\tbr i1 %t").append(cond).append(", label %whbody").append(loop).append(", label %whend").append(loop).line().line();
+		exitBlocks[0] = currentBlock;
+		int[] phis = new int[assigned.length];
+		for (int i = 0; i < assigned.length; i++) {
+			exitKinds[0][i] = variableKind(assigned[i]);
+			exitValues[0][i] = variableValue(assigned[i]);
+			phis[i] = ++tempVarCount;
+			setVariable(assigned[i], Token._tempvar, phis[i]);
+		}
+		label("whbody", loop, !options.ssa);
+		IREmitter header = IRstatements;
+		if (options.ssa) { // Translate the copies separately, the phi nodes come first.
+			loopStatements.reset(null);
+			IRstatements = loopStatements;
+		}
+		for (int copy = 1; copy <= copies; copy++) {
+			createIR_body(statement);
+			cond = createIR_condition(statement.expression);
+			IRstatements.append("\tbr i1 %t").append(cond).append(", label %whbody").append(loop);
+			if (copy < copies)
+				IRstatements.append(".").append(copy);
+			IRstatements.append(", label %whend").append(loop).line().line();
+			exitBlocks[copy] = currentBlock;
+			for (int i = 0; i < assigned.length; i++) {
+				exitKinds[copy][i] = variableKind(assigned[i]);
+				exitValues[copy][i] = variableValue(assigned[i]);
 			}
-			if (ParseLine(bodylinetokens) == '}') { // Parse the next line in the if block, break if the line is "}", may throw syntax error
-				curlyBracesOpen = false;
-				IRstatements.add("\tbr label %ifend" + (ifCount) + "\n");
-				IRstatements.add("ifend" + (ifCount) + ":");
-				break;
+			if (copy < copies)
+				label("whbody" + loop + ".", copy);
+		}
+		if (options.ssa) {
+			IRstatements = header;
+			for (int i = 0; i < assigned.length; i++) {
+				IRstatements.append("\t%t").append(phis[i]).append(" = phi i32 [ ");
+				appendValue(exitKinds[0][i], exitValues[0][i]);
+				IRstatements.append(", %").append(exitBlocks[0]).append(" ], [ ");
+				appendValue(exitKinds[copies][i], exitValues[copies][i]);
+				IRstatements.append(", %").append(exitBlocks[copies]).append(" ]").line();
 			}
+			count("whbody" + loop);
+			IRstatements.appendBody(loopStatements);
 		}
-		if (curlyBracesOpen) throw new SyntaxErrorException(); // The .my file ended with an open "if"
-		return 'i';
-	}
-	/**
-	 * Parses a while statement of form: <code>while (&lt;expr&gt;) {</code>
-	 * <p>This method is called when the first token of a <code>myLang</code> statement is the {@code "while"} keyword.</p>
-	 * <p>The following cases are regarded as syntax error:</p>
-	 * <ol>
-	 * 	<li>The token count of the statement is less than 5, which is the minimum amount of tokens required for a {@code while} statement.</li>
-	 * 	<li>The second token is not {@code '('}.</li><li>The last token is not <code>'{'</code>.</li>
-	 * 	<li>The token before the last token is not {@code ')'}.</li>
-	 * 	<li>{@code while} condition expression has a syntax error.</li>
-	 * 	<li>A body statement in the {@code while} block has a syntax error.</li>
-	 * 	<li>The input file ends without closing the {@code while} block's braces.</li>
-	 * 	<li>This {@code while} statement is already in  an {@code if/while} statement.<br>
-	 * 		(No nested {@code if/while} statements are allowed.)</li>
-	 * </ol>
-	 * @param tokens the tokens of the statement
-	 * @return {@code 'w'} for {@code "while"}
-	 * @throws SyntaxErrorException when a syntax error is detected
+		label("whend", loop, false);
+		for (int i = 0; i < assigned.length; i++) { // SSA: the loop is left from the guard or from the test after any copy.
+			int phi = ++tempVarCount;
+			IRstatements.append("\t%t").append(phi).append(" = phi i32 ");
+			for (int copy = 0; copy <= copies; copy++) {
+				IRstatements.append(copy == 0 ? "[ " : ", [ ");
+				appendValue(exitKinds[copy][i], exitValues[copy][i]);
+				IRstatements.append(", %").append(exitBlocks[copy]).append(" ]");
+			}
+			IRstatements.line();
+			setVariable(assigned[i], Token._tempvar, phi);
+		}
+		count(currentBlock);
+	}
+	/**
+	 * Checks if a while statement can be unrolled: its condition and its body have no {@code choose} function, so the body is straight-line.
+	 * @param statement the while statement
+	 * @return {@code true} if the loop can be unrolled
 	 */
-	private static char parseWhile(ArrayList<Token> tokens) throws SyntaxErrorException {
-		if ((tokens.size() < 5) || (tokens.get(1).type != Token._lpar) || (tokens.get(tokens.size() - 2).type != Token._rpar) || (tokens.get(tokens.size() - 1).type != Token._lcurl) || curlyBracesOpen)
-			throw new SyntaxErrorException(); // If the while statement is not in the following form: "while ( <expr> ) {" OR if it is going to be a nested while
-
-		IRstatements.add("\tbr label %whcond" + (++whileCount) + "\n"); // LLVM-IR: Label of the while-loop's condition
-		IRstatements.add("whcond" + whileCount + ":");
-		ArrayList<Token> while_condition = infixToPostFix(tokens, 2, 2, 0); // Get the postfix notation of the expression, may throw SyntaxErrorException
-
-		createIR_condition_expression(while_condition.iterator(), 'w');
-
-		IRstatements.add("whbody" + whileCount + ":"); // LLVM-IR: Label of the while-loop's body
-		curlyBracesOpen = true;
-
-		while(input_file.hasNextLine()) { // Read until '}' line is encountered.
-			String currentBodyLine  = input_file.nextLine();
-			lineCount++;
-			ArrayList<Token> bodylinetokens = Token.lex(currentBodyLine);	// Tokenize the current line, may throw SyntaxErrorException
-			
-			ListIterator<Token> body_itr = bodylinetokens.listIterator();
-			while(body_itr.hasNext()) {										// Create single "choose" tokens with tokenizeChoose().
-				Token current = body_itr.next();
-				if(current.type == Token._choose) {
-					body_itr.remove();
-					Choose choose = tokenizeChoose(body_itr); // May throw exception
-					body_itr.add(choose);
-				}
+	private static boolean isUnrollable(Statement statement) {
+		if (hasChoose(statement.expression))
+			return false;
+		for (Statement bodyStatement : statement.body)
+			if (hasChoose(bodyStatement.expression))
+				return false;
+		return true;
+	}
+	/**
+	 * Checks if an expression has a {@code choose} function.
+	 * @param expression the expression
+	 * @return {@code true} if the expression has a choose node
+	 */
+	private static boolean hasChoose(Expression expression) {
+		for (int node = 0; node < expression.length; node++)
+			if (expression.type[node] == Token._choose)
+				return true;
+		return false;
+	}
+	/**
+	 * Creates and stores LLVM-IR statements which compute the final values of the variables of a while loop directly, without the loop.
+	 * <p>The loop has been analyzed by {@link #loopAnalysis}. Its trip count {@code T} is the value of the condition before the loop, or its
+	 * negation, as an unsigned integer. With the values {@code v0} before the loop, an induction variable with step {@code d} ends with
+	 * {@code v0 + T*d}, an invariant assignment {@code v = e} with {@code T != 0 ? e : v0}, and an accumulator of the induction variable {@code i}
+	 * with {@code s0 + T*i0 + d*T*(T-1)/2}, where {@code i0} is the value of {@code i} in the first iteration (after its own update if that comes
+	 * first in the body). All of the values wrap around like those of the loop; {@code T*(T-1)/2} is computed exactly in {@code i64}.</p>
+	 * @param statement the while statement
+	 * @throws IOException when the LLVM-IR statements cannot be written
+	 */
+	private void createIR_while_closed(Statement statement) throws IOException {
+		LoopAnalysis loop = loopAnalysis;
+		int count = loop.count, initial = operandCount, trip = initial + count, steps = trip + 1;
+		for (int i = 0; i < count; i++) { // The values before the loop
+			int symbol = loop.variables[i];
+			if (options.ssa)
+				pushOperand(variableKind(symbol), variableValue(symbol));
+			else {
+				declare(symbol);
+				pushOperand(Token._variable, symbol);
+				loadOperand();
+			}
+		}
+		createIR_Expression(statement.expression); // The trip count
+		loadOperand();
+		if (!loop.countsDown) {
+			pushOperand(Token._integer, 0);
+			pushOperand(operandKinds[trip], operandValues[trip]);
+			createIR_binary(Token._sub);
+			operandKinds[trip] = operandKinds[trip + 1];
+			operandValues[trip] = operandValues[trip + 1];
+			operandCount--;
+		}
+		for (int i = 0; i < count; i++) { // The steps of the induction variables
+			if (loop.kinds[i] != LoopAnalysis.INDUCTION) {
+				pushOperand(Token._integer, 0);
+				continue;
 			}
-			char lineType = ParseLine(bodylinetokens); // Parse the current line, may throw exception.
-			
-			if (lineType == '}') { // Break from the loop if "}" is encountered.
-				curlyBracesOpen = false;
-				IRstatements.add("\tbr label %whcond" + (whileCount) + "\n");
-				IRstatements.add("whend" + (whileCount) + ":");
+			if (loop.negated[i])
+				pushOperand(Token._integer, 0);
+			createIR_Expression(loop.expressions[i]);
+			loadOperand();
+			if (loop.negated[i])
+				createIR_binary(Token._sub);
+		}
+		int triangle = -1; // The index of T*(T-1)/2 on the operand stack
+		for (int i = 0; i < count && triangle == -1; i++)
+			if (loop.kinds[i] == LoopAnalysis.ACCUMULATOR)
+				triangle = createIR_triangle(trip);
+		int finals = operandCount;
+		for (int i = 0; i < count; i++) { // The final values
+			switch (loop.kinds[i]) {
+			case LoopAnalysis.INDUCTION:
+				pushOperand(operandKinds[initial + i], operandValues[initial + i]);
+				pushOperand(operandKinds[trip], operandValues[trip]);
+				pushOperand(operandKinds[steps + i], operandValues[steps + i]);
+				createIR_binary(Token._mult);
+				createIR_binary(Token._add);
+				break;
+			case LoopAnalysis.INVARIANT:
+				createIR_Expression(loop.expressions[i]);
+				loadOperand();
+				int value = operandCount - 1;
+				if (operandKinds[trip] == Token._integer) {
+					if (operandValues[trip] == 0) {
+						operandKinds[value] = operandKinds[initial + i];
+						operandValues[value] = operandValues[initial + i];
+					}
+					break;
+				}
+				int nonzero = ++tempVarCount;
+				IRstatements.append("\t%t").append(nonzero).append(" = icmp ne i32 ");
+				appendOperand(trip);
+				IRstatements.append(", 0").line();
+				int result = ++tempVarCount;
+				IRstatements.append("\t%t").append(result).append(" = select i1 %t").append(nonzero).append(", i32 ");
+				appendOperand(value);
+				IRstatements.append(", i32 ");
+				appendOperand(initial + i);
+				IRstatements.line();
+				operandKinds[value] = Token._tempvar;
+				operandValues[value] = result;
+				break;
+			case LoopAnalysis.ACCUMULATOR:
+				int source = loop.sources[i];
+				pushOperand(operandKinds[initial + i], operandValues[initial + i]);
+				pushOperand(operandKinds[trip], operandValues[trip]);
+				pushOperand(operandKinds[initial + source], operandValues[initial + source]);
+				if (source < i) { // The induction variable is updated before the accumulator.
+					pushOperand(operandKinds[steps + source], operandValues[steps + source]);
+					createIR_binary(Token._add);
+				}
+				createIR_binary(Token._mult);
+				pushOperand(operandKinds[steps + source], operandValues[steps + source]);
+				pushOperand(operandKinds[triangle], operandValues[triangle]);
+				createIR_binary(Token._mult);
+				createIR_binary(Token._add);
+				createIR_binary(loop.negated[i] ? Token._sub : Token._add);
 				break;
 			}
 		}
-		if (curlyBracesOpen) throw new SyntaxErrorException(); // The .my file ended with an open "if"
-		return 'w';
-	}
-	/**
-	 * Parses a print statement of form: <code>print (&lt;expr&gt;) {</code>
-	 * <p>This method is called when the first token of a <code>myLang</code> statement is the {@code "print"} keyword.</p>
-	 * <p>The following cases are regarded as syntax error:</p>
-	 * <ol>
-	 * 	<li>The token count of the statement is less than 4, which is the minimum amount of tokens required for a {@code print} statement.</li>
-	 * 	<li>The second token is not {@code '('}.</li>
-	 * 	<li>The last token is not {@code ')'}.</li>
-	 * 	<li>{@code print} expression has a syntax error.</li>
-	 * </ol>
-	 * @param tokens the tokens of the statement
-	 * @return {@code 'p'} for {@code "print"}
-	 * @throws SyntaxErrorException when a syntax error is detected
+		for (int i = 0; i < count; i++) {
+			pushOperand(operandKinds[finals + i], operandValues[finals + i]);
+			createIR_Assgn_Expression(loop.variables[i]);
+		}
+		operandCount = initial;
+	}
+	/**
+	 * Pushes {@code T*(T-1)/2} onto the operand stack, where the trip count {@code T} is taken as an unsigned integer. The product is computed in
+	 * {@code i64}, so that the halving is exact, and truncated to {@code i32}.
+	 * @param trip the index of the trip count on the operand stack
+	 * @return the index of the result on the operand stack
+	 * @throws IOException when the LLVM-IR statements cannot be written
+	 */
+	private int createIR_triangle(int trip) throws IOException {
+		if (operandKinds[trip] == Token._integer) {
+			long T = Integer.toUnsignedLong(operandValues[trip]);
+			pushOperand(Token._integer, (int) (T % 2 == 0 ? T / 2 * (T - 1) : (T - 1) / 2 * T));
+			return operandCount - 1;
+		}
+		int wide = ++tempVarCount, previous = ++tempVarCount, product = ++tempVarCount, half = ++tempVarCount, result = ++tempVarCount;
+		IRstatements.append("\t%t").append(wide).append(" = zext i32 ");
+		appendOperand(trip);
+		IRstatements.append(" to i64").line();
+		IRstatements.append("\t%t").append(previous).append(" = sub i64 %t").append(wide).append(", 1").line();
+		IRstatements.append("\t%t").append(product).append(" = mul i64 %t").append(wide).append(", %t").append(previous).line();
+		IRstatements.append("\t%t").append(half).append(" = lshr i64 %t").append(product).append(", 1").line();
+		IRstatements.append("\t%t").append(result).append(" = trunc i64 %t").append(half).append(" to i32").line();
+		pushOperand(Token._tempvar, result);
+		return operandCount - 1;
+	}
+	/**
+	 * Moves the loop-invariant computations of a while statement in front of the loop (loop-invariant code motion).
+	 * <p>A subexpression of the condition or of the body is invariant if its variables are not assigned in the body. Each maximal invariant
+	 * subexpression which has an operation (or a load, unless in SSA mode) is computed before the loop, and it is replaced in the statement with
+	 * the temporary variable holding its value. {@code choose} functions stay in the loop, and a division is moved only if its divisor is a
+	 * constant other than 0 and -1, so the computations moved in front of the loop can never fail even if the loop is never run.</p>
+	 * @param statement the while statement, which is changed in place
+	 * @throws IOException when the LLVM-IR statements cannot be written
+	 */
+	private void hoistInvariants(Statement statement) throws IOException {
+		BitSet assigned = new BitSet();
+		for (int symbol : assignedVariables(statement))
+			assigned.set(symbol);
+		statement.expression = hoistInvariants(statement.expression, assigned);
+		for (Statement bodyStatement : statement.body)
+			bodyStatement.expression = hoistInvariants(bodyStatement.expression, assigned);
+	}
+	/**
+	 * Computes the maximal invariant subexpressions of an expression in front of a loop, and replaces them with their values.
+	 * @param expression the expression
+	 * @param assigned the set of variables assigned in the loop
+	 * @return the expression whose invariant subexpressions are replaced with temporary variables or integers
+	 * @throws IOException when the LLVM-IR statements cannot be written
+	 */
+	private Expression hoistInvariants(Expression expression, BitSet assigned) throws IOException {
+		int length = expression.length;
+		boolean[] invariant = new boolean[length];
+		for (int node = 0; node < length; node++) {
+			int type = expression.type[node];
+			if (type == Token._integer || type == Token._tempvar)
+				invariant[node] = true;
+			else if (type == Token._variable)
+				invariant[node] = !assigned.get(expression.value[node]);
+			else if (type != Token._choose) {
+				int RHS = node - 1, LHS = expression.start[RHS] - 1;
+				invariant[node] = invariant[LHS] && invariant[RHS]
+						&& (type != Token._div || (expression.type[RHS] == Token._integer && expression.value[RHS] != 0 && expression.value[RHS] != -1));
+			}
+		}
+		int[] hoistedRoots = new int[length]; // the root of the hoisted subexpression starting at each node, -1 for none
+		Arrays.fill(hoistedRoots, -1);
+		boolean hoisting = false;
+		for (int node = 0; node < length; node++) {
+			int type = expression.type[node], parent = expression.parent[node];
+			if (invariant[node] && (parent == -1 || !invariant[parent])
+					&& (type == Token._add || type == Token._sub || type == Token._mult || type == Token._div || (type == Token._variable && !options.ssa))) {
+				hoistedRoots[expression.start[node]] = node;
+				hoisting = true;
+			}
+		}
+		if (!hoisting)
+			return expression;
+		Expression result = new Expression(length);
+		for (int node = 0; node < length; node++) {
+			int root = hoistedRoots[node];
+			if (root == -1) {
+				copy(expression, node, result);
+				continue;
+			}
+			Expression invariantExpression = new Expression(root - node + 1);
+			for (int copied = node; copied <= root; copied++)
+				copy(expression, copied, invariantExpression);
+			createIR_Expression(invariantExpression);
+			loadOperand();
+			operandCount--;
+			result.addLeaf(operandKinds[operandCount], operandValues[operandCount]);
+			node = root;
+		}
+		return result;
+	}
+	/**
+	 * Appends a copy of a node of an expression to another expression, whose last subtrees are the copies of the node's operands.
+	 * @param expression the expression
+	 * @param node the node
+	 * @param result the expression which the copy is appended to
+	 */
+	private static void copy(Expression expression, int node, Expression result) {
+		int type = expression.type[node];
+		if (type == Token._integer || type == Token._variable || type == Token._tempvar)
+			result.addLeaf(type, expression.value[node]);
+		else if (type == Token._choose) {
+			int fourth = result.root(), third = result.start[fourth] - 1, second = result.start[third] - 1, first = result.start[second] - 1;
+			result.addOperation(type, first, second, third, fourth);
+		} else {
+			int RHS = result.root();
+			result.addOperation(type, result.start[RHS] - 1, RHS);
+		}
+	}
+	/**
+	 * Returns the variables assigned in the body of an if/while statement, in the order of their first assignments.
+	 * @param statement the if/while statement
+	 * @return the symbol ids of the variables
 	 */
-	private static char parsePrint(ArrayList<Token> tokens) throws SyntaxErrorException {
-		if ((tokens.size() < 4) || tokens.get(1).type != Token._lpar || tokens.get(tokens.size() - 1).type != Token._rpar)
-			throw new SyntaxErrorException(); // If the print statement is not in the following form: print ( <expr> )
-		ArrayList<Token> content = infixToPostFix(tokens, 2, 1, 0); // Get the postfix notation of the expression, may throw SyntaxErrorException
-		createIR_print_statement(content.iterator()); // Create and store LLVM-IR statements for the print function.
-		return 'p';
+	private static int[] assignedVariables(Statement statement) {
+		BitSet seen = new BitSet();
+		int[] assigned = new int[statement.body.size()];
+		int count = 0;
+		for (Statement bodyStatement : statement.body)
+			if (bodyStatement.kind == 'a' && !seen.get(bodyStatement.target)) {
+				seen.set(bodyStatement.target);
+				assigned[count++] = bodyStatement.target;
+			}
+		return Arrays.copyOf(assigned, count);
 	}
 	/**
 	 * Creates and stores LLVM-IR statements for printing lines.
-	 * @param itr an iterator for the list of tokens of the print statement
-	 * @throws SyntaxErrorException when a syntax error is detected
+	 * @param expression the printed expression
+	 * @throws IOException when the LLVM-IR statements cannot be written
 	 */
-	private static void createIR_print_statement(Iterator<Token> itr) throws SyntaxErrorException {
-		Token result = createIR_Expression(itr);
-		if (result.type == Token._variable) {
-			IRstatements.add("\t%t" +(++tempVarCount) + " = load i32* %" + result.value);
-			result = new Token(Token._tempvar, "t" + (tempVarCount));
+	private void createIR_print_statement(Expression expression) throws IOException {
+		createIR_Expression(expression);
+		loadOperand();
+		operandCount--;
+		if (options.buffered) { // The value is written together with the following prints of the block.
+			if (printCount == IREmitter.OUTPUT_SIZE / IREmitter.LINE_SIZE)
+				createIR_prints();
+			if (printCount == printKinds.length) {
+				printKinds = Arrays.copyOf(printKinds, 2 * printCount);
+				printValues = Arrays.copyOf(printValues, 2 * printCount);
+				printLines = Arrays.copyOf(printLines, 2 * printCount);
+			}
+			printLines[printCount] = currentLine;
+			printKinds[printCount] = operandKinds[operandCount];
+			printValues[printCount++] = operandValues[operandCount];
+			return;
 		}
-		if (result.type == Token._integer)
-			IRstatements.add("\tcall i32 (i8*, ...)* @printf(i8* getelementptr ([4 x i8]* @print.str, i32 0, i32 0), i32 " + result.value + " )");
-		else
-			IRstatements.add("\tcall i32 (i8*, ...)* @printf(i8* getelementptr ([4 x i8]* @print.str, i32 0, i32 0), i32 %" + result.value + " )");
+		IRstatements.append(IRstatements.printf());
+		appendOperand(operandCount);
+		IRstatements.append(" )").line();
+	}
+	/**
+	 * Creates and stores LLVM-IR statements for the prints which are waiting with {@link Options#buffered}: a single check of the room in the
+	 * output buffer for all of their lines, followed by the conversion of each value into the buffer. The values are computed already, and the
+	 * statements between the prints are assignments, which cannot change them.
+	 * @throws IOException when the LLVM-IR statements cannot be written
+	 */
+	private void createIR_prints() throws IOException {
+		if (printCount == 0)
+			return;
+		IRstatements.location(printLines[0]);
+		IRstatements.append("\tcall void @out.reserve(i32 ").append(printCount * IREmitter.LINE_SIZE).append(")").line();
+		for (int i = 0; i < printCount; i++) {
+			IRstatements.location(printLines[i]);
+			IRstatements.append("\tcall void @out.put(i32 ");
+			appendValue(printKinds[i], printValues[i]);
+			IRstatements.append(")").line();
+		}
+		IRstatements.location(currentLine);
+		printCount = 0;
 	}
 	/**
 	 * Creates and stores LLVM-IR statements for if &amp; while blocks' conditions.
-	 * @param itr an iterator for the list of tokens of an expression
+	 * @param expression the condition expression
 	 * @param type {@code 'w'} for {@code while} condition and {@code 'i'} for {@code if} condition
-	 * @throws SyntaxErrorException when a syntax error is detected
+	 * @throws IOException when the LLVM-IR statements cannot be written
 	 */
-	private static void createIR_condition_expression(Iterator<Token> itr, char type) throws SyntaxErrorException {
-		Token result = createIR_Expression(itr); // Create the LLVM-IR statements for evaluating the expression.
-		if (result.type == Token._variable) {
-			IRstatements.add("\t%t" +(++tempVarCount) + " = load i32* %" + result.value);
-			result = new Token(Token._tempvar, "t" + (tempVarCount));
-		}
-		Token cond = new Token(Token._tempvar, "t" + (++tempVarCount));
-		if (result.type == Token._integer)
-			IRstatements.add("\t%" + cond.value +" = icmp ne i32 " + result.value + ", 0");
-		else
-			IRstatements.add("\t%" + cond.value +" = icmp ne i32 %" + result.value + ", 0");
+	private void createIR_condition_expression(Expression expression, char type) throws IOException {
+		int cond = createIR_condition(expression);
 		if (type == 'w')
-			IRstatements.add("\tbr i1 %" + cond.value + ", label %whbody" + whileCount + ", label %whend" + whileCount + "\n");
+			IRstatements.append("\tbr i1 %t").append(cond).append(", label %whbody").append(whileCount).append(", label %whend").append(whileCount).line().line();
 		else if (type == 'i')
-			IRstatements.add("\tbr i1 %" + cond.value + ", label %ifbody" + ifCount + ", label %ifend" + ifCount + "\n");
+			IRstatements.append("\tbr i1 %t").append(cond).append(", label %ifbody").append(ifCount).append(", label %ifend").append(ifCount).line().line();
+	}
+	/**
+	 * Creates and stores LLVM-IR statements which compare the value of a condition expression with 0.
+	 * @param expression the condition expression
+	 * @return the number of the temporary variable holding the result of the comparison ({@code i1})
+	 * @throws IOException when the LLVM-IR statements cannot be written
+	 */
+	private int createIR_condition(Expression expression) throws IOException {
+		createIR_Expression(expression); // Create the LLVM-IR statements for evaluating the expression.
+		loadOperand();
+		operandCount--;
+		int cond = ++tempVarCount;
+		IRstatements.append("\t%t").append(cond).append(" = icmp ne i32 ");
+		appendOperand(operandCount);
+		IRstatements.append(", 0").line();
+		return cond;
 	}
 	/**
-	 * Creates and stores LLVM-IR statements for assignment operation.
-	 * @param LHS left hand side of the assignment statement (variable)
-	 * @param RHS calculated right hand side of the assignment statement (temp-var)
+	 * Creates and stores LLVM-IR statements for assignment operation: the operand on top of the operand stack is popped and stored in the variable.
+	 * In SSA mode, the operand becomes the value of the variable instead.
+	 * @param LHS the symbol id of the left hand side of the assignment statement (variable)
+	 * @throws IOException when the LLVM-IR statements cannot be written
 	 */
-	private static void createIR_Assgn_Expression(Token LHS, Token RHS) {
-		if (RHS.type == Token._integer)
-			IRstatements.add("\tstore i32 " + RHS.value + ", i32* %" + LHS.value);
-		else if (RHS.type == Token._tempvar)
-			IRstatements.add("\tstore i32 %" + RHS.value + ", i32* %" + LHS.value);
-		else if (RHS.type == Token._variable) {
-			IRstatements.add("\t%t" +(++tempVarCount) + " = load i32* %" + RHS.value);
-			RHS = new Token(Token._tempvar, "t" + (tempVarCount));
-			IRstatements.add("\tstore i32 %" + RHS.value + ", i32* %" + LHS.value);
+	private void createIR_Assgn_Expression(int LHS) throws IOException {
+		loadOperand();
+		operandCount--;
+		if (options.ssa) { // SSA: the variable simply takes the value.
+			setVariable(LHS, operandKinds[operandCount], operandValues[operandCount]);
+			return;
 		}
+		IRstatements.append("\tstore i32 ");
+		appendOperand(operandCount);
+		IRstatements.append(", ").append(IRstatements.pointer()).append(" %").append(symbols.irName(LHS)).line();
+		if (options.cse) // The stored value replaces the value known before.
+			values.setVariable(LHS, operandKinds[operandCount], operandValues[operandCount]);
 	}
 	/**
-	 * Creates and stores LLVM-IR statements for an expression.
-	 * @param itr the iterator for an expression
-	 * @return the result of the expression, {@code null} if the expression is an assignment statement
-	 * @throws SyntaxErrorException when a syntax error is detected
+	 * Creates and stores LLVM-IR statements for an expression, and pushes the result of the expression onto the operand stack.
+	 * <p>The nodes are translated in postfix order. Variables are loaded only when they are used by an operation (or stored, printed or tested).
+	 * The arguments of a {@code choose} node precede it in postfix order, so the branches of the {@code choose} function are created at the
+	 * boundaries of its arguments (see {@link #createIR_choose(int, int)}).</p>
+	 * @param expression the expression
+	 * @throws IOException when the LLVM-IR statements cannot be written
 	 */
-	private static Token createIR_Expression(Iterator<Token> itr) throws SyntaxErrorException {
-		Stack<Token> operands = new Stack<Token>();
-		while(itr.hasNext()) {
-			Token current = itr.next();
-			if (current.isOperand()) {	// If the current token is a variable/temporary variable
-				if (current.type == Token._variable && !declaredVariables.contains(current.value)) {
-					declaredVariables.add(current.value);
-					IRvariabledeclaration.add("\t%" + current.value + " = alloca i32");
-					IRvariableinit.add("\tstore i32 0, i32* %" + current.value);
+	private void createIR_Expression(Expression expression) throws IOException {
+		int length = expression.length;
+		if (chooseStarts.length < length) {
+			chooseStarts = new int[length];
+			nextChooseStarts = new int[length];
+			chooseNumbers = new int[length];
+			chooseConditionKinds = new int[length];
+			chooseConditionValues = new int[length];
+			chooseIncomingKinds = new int[3 * length];
+			chooseIncomingValues = new int[3 * length];
+			chooseIncomingBlocks = new String[3 * length];
+		}
+		Arrays.fill(chooseStarts, 0, length, -1);
+		boolean[] noWrap = options.modern ? expression.noSignedWrap() : null;
+		for (int node = 0; node < length; node++)
+			if (expression.type[node] == Token._choose) {
+				if (options.select && isSelectable(expression, node)) {
+					chooseNumbers[node] = -1; // The choose function is lowered to select, without branches.
+					continue;
 				}
-				else if (current.type == Token._choose) // If the current token is "choose"
-					current = createIR_choose((Choose) current, ++chooseCount); // Create LLVM-IR statements for evaluating choose function.
-				operands.push(current);
+				chooseNumbers[node] = 0;
+				nextChooseStarts[node] = chooseStarts[expression.start[node]]; // The outermost choose node which starts at a node is the first one of the list.
+				chooseStarts[expression.start[node]] = node;
 			}
-			else if (current.isOperator()) { // If the current token is an operator.
-				Token RHS = operands.pop();
-				Token LHS = operands.pop();
-
-				if (current.type != Token._assgn && LHS.type == Token._variable) {
-					IRstatements.add("\t%t" +(++tempVarCount) + " = load i32* %" + LHS.value);
-					LHS = new Token(Token._tempvar, "t" + (tempVarCount));
-				}
-				if (RHS.type == Token._variable) {
-					IRstatements.add("\t%t" +(++tempVarCount) + " = load i32* %" + RHS.value);
-					RHS = new Token(Token._tempvar, "t" + (tempVarCount));
+		for (int node = 0; node < length; node++) {
+			for (int choose = chooseStarts[node]; choose != -1; choose = nextChooseStarts[choose])
+				createIR_choose(choose, -1);
+			int type = expression.type[node];
+			if (type == Token._integer || type == Token._tempvar)
+				pushOperand(type, expression.value[node]);
+			else if (type == Token._variable) {	// If the current node is a variable, declare it if it is new.
+				int symbol = expression.value[node];
+				if (options.ssa) // SSA: the current value of the variable is used.
+					pushOperand(variableKind(symbol), variableValue(symbol));
+				else {
+					declare(symbol);
+					pushOperand(Token._variable, symbol);
 				}
+			}
+			else if (type == Token._choose && chooseNumbers[node] == -1)
+				createIR_select();
+			else if (type == Token._choose) // The result of the choose function is its variable (its phi node in SSA mode).
+				pushOperand(options.ssa ? Token._tempvar : Token._variable, chooseNumbers[node]);
+			else // The operation is computed at compile time if possible.
+				createIR_binary(type, noWrap != null && noWrap[node]);
+			int parent = expression.parent[node];
+			if (parent != -1 && expression.type[parent] == Token._choose && chooseNumbers[parent] != -1)
+				createIR_choose(parent, expression.argument[node]);
+		}
+	}
+	/**
+	 * Creates and stores the LLVM-IR statement of a binary operation: the two operands on top of the operand stack are replaced with the result.
+	 * <p>With {@link Options#cse}, an operation which has already been computed in the current basic block is not computed again: the
+	 * temporary variable holding its result is reused. The operands of {@code add} and {@code mul} are ordered first (temporary variables
+	 * before integers), so that {@code a+b} and {@code b+a} are the same operation.</p>
+	 * @param type the type of the operation
+	 * @param noWrap {@code true} if the operation can never overflow, so that it is marked {@code nsw} in modern LLVM-IR
+	 * @throws IOException when the LLVM-IR statements cannot be written
+	 */
+	private void createIR_operation(int type, boolean noWrap) throws IOException {
+		int LHS = operandCount - 2, RHS = operandCount - 1;
+		loadOperand(LHS);
+		loadOperand(RHS);
+		if (options.cse && (type == Token._add || type == Token._mult) && (operandKinds[LHS] < operandKinds[RHS]
+				|| (operandKinds[LHS] == operandKinds[RHS] && operandValues[LHS] > operandValues[RHS]))) {
+			int kind = operandKinds[LHS], value = operandValues[LHS];
+			operandKinds[LHS] = operandKinds[RHS];
+			operandValues[LHS] = operandValues[RHS];
+			operandKinds[RHS] = kind;
+			operandValues[RHS] = value;
+		}
+		int result = options.cse ? values.find(type, operandKinds[LHS], operandValues[LHS], operandKinds[RHS], operandValues[RHS]) : -1;
+		if (result == -1) {
+			if (options.strength && (type == Token._mult || type == Token._div))
+				result = createIR_reduced(type, LHS, RHS);
+			if (result == -1) {
 				String operation = "";
-				switch (current.type) {
+				switch (type) {
 					case Token._add: operation = "add"; break;
 					case Token._sub: operation = "sub"; break;
 					case Token._mult: operation = "mul"; break;
 					case Token._div: operation = "sdiv"; break;
 				}
-				if (current.type == Token._assgn) {	// If the current token is an assignment operator, create LLVM-IR statements for it.
-					createIR_Assgn_Expression(LHS, RHS); return null;}
-				else {
-					Token result = new Token(Token._tempvar, "t" + (++tempVarCount)); // Create LLVM-IR statement that computes a binary expression.
-					if (LHS.type == Token._integer && RHS.type == Token._integer)
-						IRstatements.add("\t%" + result.value + " = " + operation + " i32 " + LHS.value +", " + RHS.value);
-					else if (LHS.type == Token._integer && RHS.type != Token._integer)
-						IRstatements.add("\t%" + result.value + " = " + operation + " i32 " + LHS.value +", %" + RHS.value);
-					else if (LHS.type != Token._integer && RHS.type == Token._integer)
-						IRstatements.add("\t%" + result.value + " = " + operation + " i32 %" + LHS.value +", " + RHS.value);
-					else
-						IRstatements.add("\t%" + result.value + " = " + operation + " i32 %" + LHS.value +", %" + RHS.value);
-					operands.push(result);
-				}
+				result = ++tempVarCount; // Create LLVM-IR statement that computes a binary expression.
+				IRstatements.append("\t%t").append(result).append(" = ").append(operation).append(noWrap && type != Token._div ? " nsw i32 " : " i32 ");
+				appendOperand(LHS);
+				IRstatements.append(", ");
+				appendOperand(RHS);
+				IRstatements.line();
 			}
+			if (options.cse)
+				values.add(type, operandKinds[LHS], operandValues[LHS], operandKinds[RHS], operandValues[RHS], result);
 		}
-		return operands.pop();
+		operandCount -= 2;
+		pushOperand(Token._tempvar, result);
 	}
 	/**
-	 * Creates and stores LLVM-IR statements for the given choose function.
-	 * @param choose the choose token which includes all the arguments
-	 * @param choose_counter counter for specifying the label names of the choose's switch-like mechanic
-	 * @return the result of the choose function (a variable)
-	 * @throws SyntaxErrorException when a syntax error is detected
+	 * Creates and stores the LLVM-IR statements which replace a multiplication by a power of two or a division by a constant (see
+	 * {@link StrengthReduction}), if the operation has such an operand.
+	 * @param type {@code Token._mult} or {@code Token._div}
+	 * @param LHS the index of the left operand on the operand stack
+	 * @param RHS the index of the right operand on the operand stack
+	 * @return the number of the temporary variable holding the result, -1 if the operation has to be created as it is
+	 * @throws IOException when the LLVM-IR statements cannot be written
 	 */
-	private static Token createIR_choose(Choose choose, int choose_counter) throws SyntaxErrorException {
-		Token chooseResult = new Token(Token._variable, "choosevar" + choose_counter);	// For referring the return value 
-		declaredVariables.add(chooseResult.value);
-		IRvariabledeclaration.add("\t%" + chooseResult.value + " = alloca i32");
-		IRvariableinit.add("\tstore i32 0, i32* %" + chooseResult.value);
-		
-		Token chooseCondVar = new Token(Token._variable, "chcond" + choose_counter);	// For referring the condition of the choose (first expression)
-		declaredVariables.add(chooseCondVar.value);
-		IRvariabledeclaration.add("\t%" + chooseCondVar.value + " = alloca i32");
-		IRvariableinit.add("\tstore i32 0, i32* %" + chooseCondVar.value);
-		
-		for (int i = 0; i < 4; i++) {
-			choose.tokens_of_arg.get(i).add(0, new Token(Token._assgn));
-			choose.tokens_of_arg.get(i).add(0, (i > 0 ? chooseResult : chooseCondVar));
-			choose.tokens_of_arg.set(i,infixToPostFix(choose.tokens_of_arg.get(i), 0, 0, 1));
-		}
-		createIR_Expression(choose.tokens_of_arg.get(0).iterator());		// Calculates the condition of the choose function, may throw SyntaxErrorException.
-		Token holder = new Token(Token._tempvar, "t" + (++tempVarCount));
-		IRstatements.add("\t%" + holder.value + " = load i32* %" + chooseCondVar.value); // Load condition variable in a temp
-		
-		Token cond = new Token(Token._tempvar, "t" + (++tempVarCount));		// The condition temporary variable
-		IRstatements.add("\t%" + cond.value +" = icmp eq i32 %" + holder.value + ", 0");
-		IRstatements.add("\tbr i1 %" + cond.value + ", label %cheq" + choose_counter + ", label %chne" + choose_counter + "\n");
-		IRstatements.add("cheq" + choose_counter + ":");					// EQUAL CASE
-		
-		createIR_Expression(choose.tokens_of_arg.get(1).iterator());		// Calculates the second expression of the choose function, may throw SyntaxErrorException.
-		IRstatements.add("\tbr label %chend" + choose_counter + "\n");
-		IRstatements.add("chne" + choose_counter + ":");					// NOT EQUAL CASE
-		
-		holder = new Token(Token._tempvar, "t" + (++tempVarCount));
-		IRstatements.add("\t%" + holder.value + " = load i32* %" + chooseCondVar.value);
-		cond = new Token(Token._tempvar, "t" + (++tempVarCount));			// The condition temporary variable
-		
-		IRstatements.add("\t%" + cond.value +" = icmp sgt i32 %" + holder.value + ", 0");
-		IRstatements.add("\tbr i1 %" + cond.value + ", label %chsgt" + choose_counter + ", label %chslt" + choose_counter + "\n");
-		IRstatements.add("chsgt" + choose_counter + ":");					// POSITIVE CASE
-		
-		createIR_Expression(choose.tokens_of_arg.get(2).iterator());		// Calculates the third expression of the choose function, may throw SyntaxErrorException.
-		IRstatements.add("\tbr label %chend" + choose_counter + "\n");
-		IRstatements.add("chslt" + choose_counter + ":");					// NEGATIVE CASE
-		
-		createIR_Expression(choose.tokens_of_arg.get(3).iterator());		// Calculates the fourth expression of the choose function, may throw SyntaxErrorException.
-		IRstatements.add("\tbr label %chend" + choose_counter + "\n");
-		IRstatements.add("chend" + choose_counter + ":");					// END LABEL
-		return chooseResult;
-	}
-	/**
-	 * Returns the precedence of the token (called only when the token is an operation ({@code =, +, - , /, *}))
-	 * @param token the operation
-	 * @return
-	 * <ul>
-	 * 	<li> 3 - if the token is {@code '*'} (multiplication) or {@code '/'} (division)</li>
-	 * 	<li> 2 - if the token is {@code '+'} (addition) or {@code '-'} (subtraction)</li>
-	 * 	<li> 1 - if the token is {@code '='} (assignment) </li>
-	 * </ul>
-	 */
-	static int Prec(Token token) {
-		switch (token.type) {
-		case Token._assgn: return 1;
-		
-		case Token._add:
-		case Token._sub: return 2;
-
-		case Token._mult:
-		case Token._div: return 3;}
-		return -1;
-	}
-	/**
-	 * Transforms an infix notation to a postfix notation.
-	 * @param tokens the list of tokens (in infix order)
-	 * @param lower the lower boundary for the ArrayList "tokens" that this function can operate
-	 * @param upper the upper boundary for the ArrayList "tokens" that this function can operate
-	 * @param assgnOpCount assignment operator count that is allowed in the tokens (1 or 0)
-	 * @return the ArrayList of tokens in a postfix order.
-	 * @throws SyntaxErrorException when a syntax error is detected
+	private int createIR_reduced(int type, int LHS, int RHS) throws IOException {
+		int operand;
+		if (operandKinds[RHS] == Token._integer && reduction.plan(type, operandValues[RHS]))
+			operand = LHS;
+		else if (type == Token._mult && operandKinds[LHS] == Token._integer && reduction.plan(type, operandValues[LHS]))
+			operand = RHS;
+		else
+			return -1;
+		int kind = operandKinds[operand], value = operandValues[operand], shift = reduction.shift;
+		switch (reduction.kind) {
+		case StrengthReduction.SHIFT:
+			return createIR_instruction("shl i32 ", kind, value, ", " + shift);
+		case StrengthReduction.POWER: // Negative dividends are biased by 2^shift - 1, so that the shift truncates toward 0.
+			int sign = shift == 1 ? value : createIR_instruction("ashr i32 ", kind, value, ", 31");
+			int bias = createIR_instruction("lshr i32 ", shift == 1 ? kind : Token._tempvar, sign, ", " + (32 - shift));
+			int biased = createIR_instruction("add i32 %t" + bias + ", ", kind, value, "");
+			int quotient = createIR_instruction("ashr i32 ", Token._tempvar, biased, ", " + shift);
+			return reduction.negated ? createIR_instruction("sub i32 0, ", Token._tempvar, quotient, "") : quotient;
+		default: // The high half of the product with the magic number, corrected, shifted and rounded toward 0
+			int wide = createIR_instruction("sext i32 ", kind, value, " to i64");
+			int product = createIR_instruction("mul i64 %t" + wide + ", ", Token._integer, reduction.magic, "");
+			int high = createIR_instruction("ashr i64 ", Token._tempvar, product, ", 32");
+			int result = createIR_instruction("trunc i64 ", Token._tempvar, high, " to i32");
+			if (reduction.correction != 0)
+				result = createIR_instruction((reduction.correction > 0 ? "add i32 %t" : "sub i32 %t") + result + ", ", kind, value, "");
+			if (shift > 0)
+				result = createIR_instruction("ashr i32 ", Token._tempvar, result, ", " + shift);
+			int negative = createIR_instruction("lshr i32 ", Token._tempvar, result, ", 31");
+			return createIR_instruction("add i32 %t" + result + ", ", Token._tempvar, negative, "");
+		}
+	}
+	/**
+	 * Creates and stores an LLVM-IR statement which assigns an instruction with one integer or temporary variable operand to a new temporary
+	 * variable.
+	 * @param operation the text of the instruction in front of the operand
+	 * @param kind {@code Token._integer} or {@code Token._tempvar}
+	 * @param value the integer or the number of the temporary variable
+	 * @param rest the text of the instruction after the operand
+	 * @return the number of the temporary variable
+	 * @throws IOException when the LLVM-IR statements cannot be written
 	 */
-	static ArrayList<Token> infixToPostFix(ArrayList<Token> tokens, int lower, int upper, int assgnOpCount) throws SyntaxErrorException {
-		ArrayList<Token> result = new ArrayList<Token>();
-		Stack<Token> stack = new Stack<Token>();
-		int assgnCounter = 0;
-		for (int i = lower, j = i + 1; i < tokens.size() - upper; i++, j++) {
-			Token c = tokens.get(i);
-			if (i == tokens.size() - upper - 1) {
-				if (c.isOperator()) throw new SyntaxErrorException();	// If the infix notation ends with an operator.
-			} else {
-				Token ahead = tokens.get(j);
-				if ((c.isOperator() && ahead.isOperator()) || (c.isOperand() && ahead.isOperand()) || c.type == Token._lpar && ahead.type == Token._rpar) throw new SyntaxErrorException();
-			}
-			if (c.isOperand())					// If the scanned character is an operand, add it to output.
-				result.add(c);
-			
-			else if (c.type == Token._lpar)		// If the scanned character is an '(', push it to the stack.
-				stack.push(c);
-			
-			else if (c.type == Token._rpar) {	// If the scanned character is an ')', pop and output from the stack until an '(' is encountered.
-				if (stack.isEmpty() || !stack.contains(new Token(Token._lpar))) throw new SyntaxErrorException();
-				while (!stack.isEmpty() && stack.peek().type != Token._lpar)
-					result.add(stack.pop());
-				stack.pop();
+	private int createIR_instruction(String operation, int kind, int value, String rest) throws IOException {
+		int result = ++tempVarCount;
+		IRstatements.append("\t%t").append(result).append(" = ").append(operation);
+		appendValue(kind, value);
+		IRstatements.append(rest).line();
+		return result;
+	}
+	/**
+	 * Replaces the two operands on top of the operand stack with the result of a binary operation, which is computed at compile time if possible.
+	 * @param type the type of the operation
+	 * @throws IOException when the LLVM-IR statements cannot be written
+	 */
+	private void createIR_binary(int type) throws IOException {
+		createIR_binary(type, false);
+	}
+	/**
+	 * Replaces the two operands on top of the operand stack with the result of a binary operation, which is computed at compile time if possible.
+	 * @param type the type of the operation
+	 * @param noWrap {@code true} if the operation can never overflow, so that it is marked {@code nsw} in modern LLVM-IR
+	 * @throws IOException when the LLVM-IR statements cannot be written
+	 */
+	private void createIR_binary(int type, boolean noWrap) throws IOException {
+		if (!(options.fold() && fold(type)))
+			createIR_operation(type, noWrap);
+	}
+	/**
+	 * Computes the binary operation on the two operands on top of the operand stack at compile time if possible, replacing them with the result.
+	 * <p>Operations on two integers are folded with the wrap-around and truncating division semantics of LLVM's {@code add}, {@code sub},
+	 * {@code mul} and {@code sdiv} (division by 0 is left to the program). The identities {@code x+0}, {@code 0+x}, {@code x-0}, {@code x*1},
+	 * {@code 1*x}, {@code x/1}, {@code x*0} and {@code 0*x} are simplified, so no instruction and no load is created for them.</p>
+	 * @param type the type of the operation
+	 * @return {@code true} if the operation is computed, {@code false} if an instruction has to be created
+	 */
+	private boolean fold(int type) {
+		int LHS = operandCount - 2, RHS = operandCount - 1;
+		boolean constantLHS = operandKinds[LHS] == Token._integer, constantRHS = operandKinds[RHS] == Token._integer;
+		int left = operandValues[LHS], right = operandValues[RHS];
+		if (constantLHS && constantRHS) {
+			if (type == Token._div && right == 0)
+				return false;
+			operandCount -= 2;
+			pushOperand(Token._integer, Expression.evaluate(type, left, right));
+			return true;
+		}
+		switch (Expression.identity(type, constantLHS, left, constantRHS, right, false)) { // The instructions of the operands are already written.
+		case 1:
+			operandCount--;
+			return true;
+		case 2:
+			operandKinds[LHS] = operandKinds[RHS];
+			operandValues[LHS] = operandValues[RHS];
+			operandCount--;
+			return true;
+		case 3:
+			operandCount -= 2;
+			pushOperand(Token._integer, 0);
+			return true;
+		}
+		return false;
+	}
+	/**
+	 * Creates and stores LLVM-IR statements for the given choose node at the boundaries of its arguments.
+	 * <p>Before the first argument, the variables of the choose function ({@code choosevar} for the result and {@code chcond} for the condition) are
+	 * declared. After the first argument, its value is stored in {@code chcond} and compared with 0; after each of the other arguments, its value is
+	 * stored in {@code choosevar}. The symbol id of {@code choosevar} is recorded in {@link #chooseNumbers}.</p>
+	 * @param choose the choose node
+	 * @param argument -1 before the first argument, or the position of the argument which has just been translated (its value is on top of the operand stack)
+	 * @throws IOException when the LLVM-IR statements cannot be written
+	 */
+	private void createIR_choose(int choose, int argument) throws IOException {
+		if (options.ssa) {
+			createIR_choose_ssa(choose, argument);
+			return;
+		}
+		if (argument == -1) {
+			int choose_counter = ++chooseCount;
+			int chooseResult = symbols.addTemporary("choosevar" + choose_counter);	// For referring the return value
+			declare(chooseResult);
+			declare(symbols.addTemporary("chcond" + choose_counter));			// For referring the condition of the choose (first expression)
+			chooseNumbers[choose] = chooseResult;
+			return;
+		}
+		int chooseResult = chooseNumbers[choose], chooseCondVar = chooseResult + 1;
+		int choose_counter = Integer.parseInt(symbols.irName(chooseResult).substring("choosevar".length()));
+		if (argument == 0) {												// Calculates the condition of the choose function
+			createIR_Assgn_Expression(chooseCondVar);
+			pushOperand(Token._variable, chooseCondVar);					// Load condition variable in a temp
+			loadOperand();
+			int cond = ++tempVarCount;										// The condition temporary variable
+			IRstatements.append("\t%t").append(cond).append(" = icmp eq i32 ");
+			appendOperand(--operandCount);
+			IRstatements.append(", 0").line();
+			IRstatements.append("\tbr i1 %t").append(cond).append(", label %cheq").append(choose_counter).append(", label %chne").append(choose_counter).line().line();
+			label("cheq", choose_counter);					// EQUAL CASE
+			return;
+		}
+		createIR_Assgn_Expression(chooseResult);							// Stores the second, third or fourth expression of the choose function
+		IRstatements.append("\tbr label %chend").append(choose_counter).line().line();
+		if (argument == 1) {
+			label("chne", choose_counter);				// NOT EQUAL CASE
+			pushOperand(Token._variable, chooseCondVar);
+			loadOperand();
+			int cond = ++tempVarCount;										// The condition temporary variable
+			IRstatements.append("\t%t").append(cond).append(" = icmp sgt i32 ");
+			appendOperand(--operandCount);
+			IRstatements.append(", 0").line();
+			IRstatements.append("\tbr i1 %t").append(cond).append(", label %chsgt").append(choose_counter).append(", label %chslt").append(choose_counter).line().line();
+			label("chsgt", choose_counter);				// POSITIVE CASE
+		} else if (argument == 2)
+			label("chslt", choose_counter);				// NEGATIVE CASE
+		else
+			label("chend", choose_counter);				// END LABEL
+	}
+	/**
+	 * Checks if a choose node can be lowered to {@code select}: all of its arguments are evaluated, so the second, third and fourth arguments
+	 * must be cheap (at most {@link #SELECT_COST} operations) and must not divide by anything but a constant other than 0 and -1, which could be
+	 * undefined behavior when the argument is not chosen.
+	 * @param expression the expression
+	 * @param choose the choose node
+	 * @return {@code true} if the choose function can be lowered to {@code select}
+	 */
+	private static boolean isSelectable(Expression expression, int choose) {
+		int operations = 0;
+		for (int node = expression.start[expression.operand(choose, 1)]; node < choose; node++) {
+			int type = expression.type[node];
+			if (type == Token._integer || type == Token._variable)
+				continue;
+			if (++operations > SELECT_COST)
+				return false;
+			if (type == Token._div) {
+				int divisor = node - 1;
+				if (expression.type[divisor] != Token._integer || expression.value[divisor] == 0 || expression.value[divisor] == -1)
+					return false;
 			}
-			else if (c.isOperator()) {			// an operator is encountered
-				if (c.type == Token._assgn) if(++assgnCounter > assgnOpCount) throw new SyntaxErrorException(); // '=' is not allowed more than the specified assignment count.
-				while (!stack.isEmpty() && Prec(c) <= Prec(stack.peek()))
-					result.add(stack.pop());
-				stack.push(c);
+		}
+		return true;
+	}
+	/**
+	 * Creates and stores LLVM-IR statements for a choose function lowered to {@code select}: the four operands on top of the operand stack (the
+	 * arguments, which are all evaluated) are replaced with the result, which is picked with two comparisons and two {@code select} instructions.
+	 * @throws IOException when the LLVM-IR statements cannot be written
+	 */
+	private void createIR_select() throws IOException {
+		for (int i = operandCount - 4; i < operandCount; i++)
+			loadOperand(i);
+		int condition = operandCount - 4;
+		int positive = ++tempVarCount;
+		IRstatements.append("\t%t").append(positive).append(" = icmp sgt i32 ");
+		appendOperand(condition);
+		IRstatements.append(", 0").line();
+		int nonzero = ++tempVarCount;
+		IRstatements.append("\t%t").append(nonzero).append(" = select i1 %t").append(positive).append(", i32 ");
+		appendOperand(condition + 2);
+		IRstatements.append(", i32 ");
+		appendOperand(condition + 3);
+		IRstatements.line();
+		int zero = ++tempVarCount;
+		IRstatements.append("\t%t").append(zero).append(" = icmp eq i32 ");
+		appendOperand(condition);
+		IRstatements.append(", 0").line();
+		int result = ++tempVarCount;
+		IRstatements.append("\t%t").append(result).append(" = select i1 %t").append(zero).append(", i32 ");
+		appendOperand(condition + 1);
+		IRstatements.append(", i32 %t").append(nonzero).line();
+		operandCount -= 4;
+		pushOperand(Token._tempvar, result);
+	}
+	/**
+	 * Creates and stores LLVM-IR statements for the given choose node at the boundaries of its arguments in SSA mode.
+	 * <p>The first argument is compared with 0 directly, without a variable, and the result of the choose function is a {@code phi} node at
+	 * {@code chend}, which merges the values of the other arguments from the blocks they end in. The number of the phi node is recorded in
+	 * {@link #chooseNumbers}.</p>
+	 * @param choose the choose node
+	 * @param argument -1 before the first argument, or the position of the argument which has just been translated (its value is on top of the operand stack)
+	 * @throws IOException when the LLVM-IR statements cannot be written
+	 */
+	private void createIR_choose_ssa(int choose, int argument) throws IOException {
+		if (argument == -1) {
+			chooseNumbers[choose] = ++chooseCount;
+			return;
+		}
+		int choose_counter = chooseNumbers[choose];
+		operandCount--;
+		if (argument == 0) {
+			chooseConditionKinds[choose] = operandKinds[operandCount];
+			chooseConditionValues[choose] = operandValues[operandCount];
+			int cond = ++tempVarCount;
+			IRstatements.append("\t%t").append(cond).append(" = icmp eq i32 ");
+			appendValue(chooseConditionKinds[choose], chooseConditionValues[choose]);
+			IRstatements.append(", 0").line();
+			IRstatements.append("\tbr i1 %t").append(cond).append(", label %cheq").append(choose_counter).append(", label %chne").append(choose_counter).line().line();
+			label("cheq", choose_counter);
+			return;
+		}
+		int incoming = 3 * choose + argument - 1;
+		chooseIncomingKinds[incoming] = operandKinds[operandCount];
+		chooseIncomingValues[incoming] = operandValues[operandCount];
+		chooseIncomingBlocks[incoming] = currentBlock;
+		IRstatements.append("\tbr label %chend").append(choose_counter).line().line();
+		if (argument == 1) {
+			label("chne", choose_counter);
+			int cond = ++tempVarCount;
+			IRstatements.append("\t%t").append(cond).append(" = icmp sgt i32 ");
+			appendValue(chooseConditionKinds[choose], chooseConditionValues[choose]);
+			IRstatements.append(", 0").line();
+			IRstatements.append("\tbr i1 %t").append(cond).append(", label %chsgt").append(choose_counter).append(", label %chslt").append(choose_counter).line().line();
+			label("chsgt", choose_counter);
+		} else if (argument == 2)
+			label("chslt", choose_counter);
+		else {
+			label("chend", choose_counter, false);
+			int result = ++tempVarCount;
+			IRstatements.append("\t%t").append(result).append(" = phi i32 ");
+			for (int i = 3 * choose; i < 3 * choose + 3; i++) {
+				IRstatements.append(i == 3 * choose ? "[ " : ", [ ");
+				appendValue(chooseIncomingKinds[i], chooseIncomingValues[i]);
+				IRstatements.append(", %").append(chooseIncomingBlocks[i]).append(" ]");
 			}
-			else throw new SyntaxErrorException();	// Non operator/operand is encountered. An expression cannot contain tokens other than operations, operands & choose.
+			IRstatements.line();
+			count(currentBlock);
+			chooseNumbers[choose] = result;
+		}
+	}
+	/**
+	 * Writes the label of a basic block and makes it the current block.
+	 * @param name the name of the label
+	 * @param number the number of the if/while statement or choose function of the label, -1 for none
+	 * @throws IOException when the LLVM-IR statements cannot be written
+	 */
+	private void label(String name, int number) throws IOException {
+		label(name, number, true);
+	}
+	/**
+	 * Writes the label of a basic block and makes it the current block.
+	 * @param name the name of the label
+	 * @param number the number of the if/while statement or choose function of the label, -1 for none
+	 * @param counted {@code false} if the block starts with {@code phi} nodes, so that its profile counter is incremented behind them by the caller
+	 * @throws IOException when the LLVM-IR statements cannot be written
+	 */
+	private void label(String name, int number, boolean counted) throws IOException {
+		values.clear(); // Values cannot be reused across basic blocks.
+		currentBlock = number == -1 ? name : name + number;
+		IRstatements.append(currentBlock).append(":").line();
+		if (counted)
+			count(currentBlock);
+	}
+	/**
+	 * Creates and stores LLVM-IR statements which increment a profile counter, if {@link Options#profile} is set.
+	 * @param counter the name of the counter: {@code lineN} for the statement in line N, or the label of a basic block
+	 * @throws IOException when the LLVM-IR statements cannot be written
+	 */
+	private void count(String counter) throws IOException {
+		if (options.profile == null)
+			return;
+		profileCounters.putIfAbsent(counter, currentLine);
+		IRstatements.count(counter, tempVarCount + 1);
+		tempVarCount += 2;
+	}
+	/**
+	 * Returns the kind of the current value of a variable in SSA mode.
+	 * @param symbol the symbol id of the variable
+	 * @return {@code Token._integer} or {@code Token._tempvar}
+	 */
+	private int variableKind(int symbol) {
+		return variableTemporaries.get(symbol) ? Token._tempvar : Token._integer;
+	}
+	/**
+	 * Returns the current value of a variable in SSA mode.
+	 * @param symbol the symbol id of the variable
+	 * @return the integer or the number of the temporary variable
+	 */
+	private int variableValue(int symbol) {
+		return symbol < variableValues.length ? variableValues[symbol] : 0;
+	}
+	/**
+	 * Sets the current value of a variable in SSA mode.
+	 * @param symbol the symbol id of the variable
+	 * @param kind {@code Token._integer} or {@code Token._tempvar}
+	 * @param value the integer or the number of the temporary variable
+	 */
+	private void setVariable(int symbol, int kind, int value) {
+		if (symbol >= variableValues.length)
+			variableValues = Arrays.copyOf(variableValues, Math.max(2 * variableValues.length, symbol + 1));
+		variableValues[symbol] = value;
+		variableTemporaries.set(symbol, kind == Token._tempvar);
+	}
+	/**
+	 * Declares a variable (allocates it and initializes it with 0) unless it is already declared. With {@link Options#dse}, only the variables which
+	 * may be read before they are assigned are initialized; the variables of the translator are always assigned first.
+	 * @param symbol the symbol id of the variable
+	 */
+	private void declare(int symbol) {
+		if (!declaredVariables.get(symbol)) {
+			declaredVariables.set(symbol);
+			IRstatements.declare(symbols.irName(symbol), !options.dse || eliminator.isReadBeforeAssigned(symbol));
 		}
-		while (!stack.isEmpty()){				// pop all the operators from the stack
-			if(stack.peek().type == Token._lpar) throw new SyntaxErrorException();	// If there is '(' left in the stack
-			result.add(stack.pop());
+	}
+	/**
+	 * Pushes an operand onto the operand stack.
+	 * @param kind {@code Token._integer}, {@code Token._variable} or {@code Token._tempvar}
+	 * @param value the integer, the symbol id of the variable or the number of the temporary variable
+	 */
+	private void pushOperand(int kind, int value) {
+		if (operandCount == operandKinds.length) {
+			operandKinds = Arrays.copyOf(operandKinds, 2 * operandCount);
+			operandValues = Arrays.copyOf(operandValues, 2 * operandCount);
 		}
-		return result;
+		operandKinds[operandCount] = kind;
+		operandValues[operandCount++] = value;
+	}
+	/**
+	 * Loads the operand on top of the operand stack into a temporary variable if it is a variable.
+	 * @throws IOException when the LLVM-IR statements cannot be written
+	 */
+	private void loadOperand() throws IOException {
+		loadOperand(operandCount - 1);
+	}
+	/**
+	 * Loads an operand on the operand stack into a temporary variable if it is a variable.
+	 * With {@link Options#cse}, the value of the variable is reused instead if it has been loaded or stored in the current basic block.
+	 * @param index the index of the operand on the stack
+	 * @throws IOException when the LLVM-IR statements cannot be written
+	 */
+	private void loadOperand(int index) throws IOException {
+		if (operandKinds[index] == Token._variable) {
+			int symbol = operandValues[index];
+			if (options.cse && values.hasVariable(symbol)) { // The value of the variable is known in the current basic block.
+				operandKinds[index] = values.variableKind(symbol);
+				operandValues[index] = values.variableValue(symbol);
+				return;
+			}
+			IRstatements.append("\t%t").append(++tempVarCount).append(" = ").append(IRstatements.load()).append(symbols.irName(symbol)).line();
+			operandKinds[index] = Token._tempvar;
+			operandValues[index] = tempVarCount;
+			if (options.cse)
+				values.setVariable(symbol, Token._tempvar, tempVarCount);
+		}
+	}
+	/**
+	 * Appends an integer or a temporary variable operand to the current LLVM-IR statement.
+	 * @param index the index of the operand on the operand stack
+	 * @throws IOException when the LLVM-IR statements cannot be written
+	 */
+	private void appendOperand(int index) throws IOException {
+		appendValue(operandKinds[index], operandValues[index]);
+	}
+	/**
+	 * Appends an integer or a temporary variable to the current LLVM-IR statement.
+	 * @param kind {@code Token._integer} or {@code Token._tempvar}
+	 * @param value the integer or the number of the temporary variable
+	 * @throws IOException when the LLVM-IR statements cannot be written
+	 */
+	private void appendValue(int kind, int value) throws IOException {
+		if (kind == Token._integer)
+			IRstatements.append(value);
+		else
+			IRstatements.append("%t").append(value);
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,110 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+/**
+ * Check that the optimizations of the front end do not change the behavior of a script: the {@link Interpreter} and the {@link JitCompiler}
+ * run each script with {@code -O0} and {@code -O1}, and the printed lines, the syntax error or the division by zero which stops the script have
+ * to be the same.
+ * <p>The scripts are the identities around divisions by 0 ({@code 0/x}, {@code x*0} and {@code 0*x} with a division in {@code x}), which
+ * must not be simplified away, scripts of the {@link CorpusGenerator}, and long scripts whose classes the {@link JitCompiler} splits into
+ * several methods (with blocks which are called as methods of their own).</p>
+ * @author Aral Dortogul
+ */
+public class OptimizationCheck {
+	/**
+	 * the scripts whose divisions by 0 have to stop them at every optimization level
+	 */
+	private static final String[] SCRIPTS = {
+		"y = 0\nprint(0 / y)\n",
+		"y = 0\nprint(7)\nprint(y / y * 0)\n",
+		"y = 0\nprint(0 * (1 / y))\n",
+		"y = 0\nz = 0 * (3 / y) + 4\nprint(z)\n",
+		"y = 0\nprint((y / (y - y)) * 0 + 1)\n",
+		"y = 1\nprint(0 * (5 / y))\nprint(0 / y)\nprint(y * 0)\n",
+		"y = 0\nx = 3\nwhile(x) {\nx = x - 1\n}\nprint(x * 0)\nprint(0 * choose(x, 1 / y, 2, 3))\n",
+	};
+	/**
+	 * Runs the check and exits with status 1 if a script behaves differently with {@code -O0} and {@code -O1}.
+	 * @param args command line arguments (unused)
+	 * @throws IOException never (the output is written to memory)
+	 */
+	public static void main(String[] args) throws IOException {
+		CorpusGenerator generator = new CorpusGenerator();
+		int checks = 0;
+		for (int i = 0; i < SCRIPTS.length + 56; i++) {
+			String script;
+			if (i < SCRIPTS.length)
+				script = SCRIPTS[i];
+			else if (i < SCRIPTS.length + 53) { // 50 short and 3 long scripts of the generator
+				generator.lines = i < SCRIPTS.length + 50 ? 60 : 2000;
+				script = generator.generate(i);
+			} else
+				script = longBlocks(i);
+			String interpreted = interpret(script, "-O0");
+			String[] results = {interpret(script, "-O1"), jit(script, "-O0"), jit(script, "-O1")};
+			for (String result : results)
+				if (!result.equals(interpreted)) {
+					System.out.println("optimization: the script behaves differently with -O0 and -O1\n" + script + "\n-O0:\n" + interpreted + "\nother:\n" + result);
+					System.exit(1);
+				}
+			checks++;
+		}
+		System.out.println("optimization: " + checks + " scripts equal with -O0 and -O1");
+	}
+	/**
+	 * Writes a script whose {@code while} and {@code if} blocks are too long for a method of the {@link JitCompiler}.
+	 * @param seed the seed of the script, which also decides if the script ends with a division by 0
+	 * @return the script
+	 */
+	private static String longBlocks(int seed) {
+		StringBuilder script = new StringBuilder("a = ").append(seed).append("\nb = 1\nc = 2\nn = 3\nwhile(n) {\n");
+		for (int i = 0; i < 1500; i++)
+			script.append(i % 3 == 0 ? "a = a * 3 + b / 2\n" : i % 3 == 1 ? "b = b - choose(a, c, n, 7) / 3\n" : "print(a - b * c + " + i + ")\n");
+		script.append("c = c + n\nn = n - 1\n}\nif(a - b) {\n");
+		for (int i = 0; i < 1500; i++)
+			script.append(i % 2 == 0 ? "c = c * 5 - a / 7\n" : "print(c + b)\n");
+		return script.append("}\nprint(a / (b - b * (").append(seed % 2).append(")))\nprint(c)\n").toString();
+	}
+	/**
+	 * Runs a script with the {@link Interpreter}.
+	 * @param script the script
+	 * @param optimization {@code -O0} or {@code -O1}
+	 * @return the printed lines, followed by the syntax error or the division by zero which stops the script
+	 * @throws IOException never (the output is written to memory)
+	 */
+	private static String interpret(String script, String optimization) throws IOException {
+		Options options = new Options();
+		options.parse(new String[] {optimization});
+		Interpreter interpreter = new Interpreter(options);
+		if (!interpreter.compile(SourceText.of(script)))
+			return "Line " + interpreter.getLineCount() + ": syntax error\n";
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		try {
+			interpreter.run(output);
+		} catch (ArithmeticException e) {
+			return output.toString(StandardCharsets.US_ASCII) + e.getMessage() + "\n";
+		}
+		return output.toString(StandardCharsets.US_ASCII);
+	}
+	/**
+	 * Runs a script with the {@link JitCompiler}.
+	 * @param script the script
+	 * @param optimization {@code -O0} or {@code -O1}
+	 * @return the printed lines, followed by the syntax error or the division by zero which stops the script
+	 * @throws IOException never (the output is written to memory)
+	 */
+	private static String jit(String script, String optimization) throws IOException {
+		Options options = new Options();
+		options.parse(new String[] {optimization});
+		JitCompiler compiler = new JitCompiler(options);
+		if (!compiler.compile(SourceText.of(script)))
+			return "Line " + compiler.getLineCount() + ": syntax error\n";
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		try {
+			compiler.run(output);
+		} catch (ArithmeticException e) {
+			return output.toString(StandardCharsets.US_ASCII) + e.getMessage() + "\n";
+		}
+		return output.toString(StandardCharsets.US_ASCII);
+	}
+}
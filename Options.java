@@ -0,0 +1,174 @@
+/**
+ * Options of the translator, which select the optimizations applied to the LLVM-IR code.
+ * <p>The options are given on the command line before the input files:</p>
+ * <ul>
+ * 	<li>{@code -O0}: translates every statement as it is written.</li>
+ * 	<li>{@code -O1} (default): folds constant expressions and propagates the constant values of the variables through the script.</li>
+ * 	<li>{@code -ssa}: keeps the values of the variables in virtual registers (SSA form with {@code phi} nodes) instead of {@code alloca}
+ * 	variables.</li>
+ * 	<li>{@code -select}: lowers {@code choose} functions with cheap arguments to {@code select} instructions instead of branches.</li>
+ * 	<li>{@code -cse}: reuses loads and results of operations within basic blocks (local value numbering).</li>
+ * 	<li>{@code -licm}: computes the loop-invariant subexpressions of {@code while} loops once, in front of the loops.</li>
+ * 	<li>{@code -rotate}: rotates {@code while} loops into guarded do-while loops, which test the condition at the end of the body.</li>
+ * 	<li>{@code -unroll=N}: rotates {@code while} loops and repeats the bodies which have no {@code choose} function N times.</li>
+ * 	<li>{@code -modern}: writes modern LLVM-IR with opaque pointers ({@code ptr}), the target of the host, {@code nsw} on the operations which
+ * 	can never overflow and attributes which let current LLVM tools optimize the code, instead of legacy typed-pointer LLVM-IR.</li>
+ * 	<li>{@code -dse}: removes the assignments whose values are never read, so that unused variables are not declared, and initializes only the
+ * 	variables which may be read before they are assigned (see {@link DeadStoreEliminator}). The whole script is read before it is translated.</li>
+ * 	<li>{@code -strength}: replaces multiplications by powers of two with shifts and divisions by constants with shifts or multiplications by
+ * 	magic numbers (see {@link StrengthReduction}).</li>
+ * 	<li>{@code -closed-form}: replaces {@code while} loops which only count and accumulate with the direct computation of the final values
+ * 	(see {@link LoopAnalysis}).</li>
+ * 	<li>{@code -buffered}: prints into an output buffer of the module, which is written with {@code write} when it is full and at the end of
+ * 	the program, instead of calling {@code printf} for every line. The prints of a block which are separated only by assignments check the
+ * 	room in the buffer once.</li>
+ * 	<li>{@code -profile} or {@code -profile=FILE}: instruments the program with a 64-bit counter for each source line and each basic block,
+ * 	which is incremented whenever the line or the block is executed. At the end, the program writes the counters to {@code mylang2ir.prof} or
+ * 	the given file, which {@link ProfileReader} maps back to the source lines.</li>
+ * 	<li>{@code -g}: attaches the line of the script to every instruction ({@code !dbg} locations of a {@code DISubprogram} for {@code @main}),
+ * 	so that native profilers and debuggers show the lines of the script. Implies {@code -modern}, since LLVM versions which read the debug
+ * 	metadata do not read legacy LLVM-IR.</li>
+ * 	<li>{@code -asm}: writes x86-64 assembly code for the GNU assembler into a .s file instead of LLVM-IR code, so that the program is built
+ * 	with {@code cc} alone (see {@link AsmEmitter}). Of the other options, only {@code -O0}, {@code -O1} and {@code -dse} apply.</li>
+ * 	<li>{@code -bitcode}: writes the LLVM-IR code as LLVM bitcode into a .bc file, which LLVM tools load without parsing text (see
+ * 	{@link BitcodeWriter}). Only legacy LLVM-IR code is written as bitcode, so {@code -modern}, {@code -g}, {@code -buffered}, {@code -profile}
+ * 	and {@code -asm} cannot be combined with it.</li>
+ * </ul>
+ * @author Aral Dortogul
+ */
+public class Options {
+	/**
+	 * the optimization level: 0 (no optimization) or 1 (constant folding and propagation)
+	 */
+	public int optimization = 1;
+	/**
+	 * {@code true} if the variables are kept in virtual registers with {@code phi} nodes at the join points instead of {@code alloca} variables
+	 */
+	public boolean ssa = false;
+	/**
+	 * {@code true} if {@code choose} functions with cheap arguments are lowered to {@code select} instructions instead of branches
+	 */
+	public boolean select = false;
+	/**
+	 * {@code true} if loads and results of operations are reused within basic blocks (local value numbering)
+	 */
+	public boolean cse = false;
+	/**
+	 * {@code true} if the loop-invariant subexpressions of {@code while} loops are computed in front of the loops
+	 */
+	public boolean licm = false;
+	/**
+	 * {@code true} if {@code while} loops are rotated into guarded do-while loops
+	 */
+	public boolean rotate = false;
+	/**
+	 * the number of copies of the body of a rotated {@code while} loop which has no {@code choose} function
+	 */
+	public int unroll = 1;
+	/**
+	 * {@code true} if modern LLVM-IR (opaque pointers) is written instead of legacy typed-pointer LLVM-IR
+	 */
+	public boolean modern = false;
+	/**
+	 * {@code true} if the assignments whose values are never read are removed and only the variables which may be read before they are assigned are
+	 * initialized
+	 */
+	public boolean dse = false;
+	/**
+	 * {@code true} if multiplications and divisions by constants are replaced with cheaper instruction sequences
+	 */
+	public boolean strength = false;
+	/**
+	 * {@code true} if {@code while} loops which only count and accumulate are replaced with the computation of the final values
+	 */
+	public boolean closedForm = false;
+	/**
+	 * {@code true} if the module prints through a buffered-output runtime and consecutive prints are written together
+	 */
+	public boolean buffered = false;
+	/**
+	 * the path of the file which the generated program writes its execution profile to, {@code null} if the program is not instrumented
+	 */
+	public String profile = null;
+	/**
+	 * {@code true} if the module carries debug information which maps the instructions to the lines of the script
+	 */
+	public boolean debug = false;
+	/**
+	 * {@code true} if x86-64 assembly code is written instead of LLVM-IR code
+	 */
+	public boolean assembly = false;
+	/**
+	 * {@code true} if the LLVM-IR code is written as LLVM bitcode
+	 */
+	public boolean bitcode = false;
+	/**
+	 * Checks if constant expressions are folded at IR generation time.
+	 * @return {@code true} if constant expressions are folded
+	 */
+	public boolean fold() {
+		return optimization >= 1;
+	}
+	/**
+	 * Checks if the constant values of the variables are propagated through the script.
+	 * @return {@code true} if constants are propagated
+	 */
+	public boolean propagate() {
+		return optimization >= 1;
+	}
+	/**
+	 * Returns the extension of the output files.
+	 * @return ".s" for assembly code, ".bc" for bitcode, ".ll" for LLVM-IR code
+	 */
+	public String extension() {
+		return assembly ? ".s" : bitcode ? ".bc" : ".ll";
+	}
+	/**
+	 * Sets the options given at the beginning of the command line arguments.
+	 * @param args command line arguments
+	 * @return the index of the first argument which is not an option
+	 * @throws IllegalArgumentException when an option is unknown, or when {@code -bitcode} is combined with an option which it does not support
+	 */
+	public int parse(String[] args) {
+		int i = 0;
+		for (; i < args.length && args[i].startsWith("-"); i++) {
+			switch (args[i]) {
+			case "-O0": optimization = 0; break;
+			case "-O1": optimization = 1; break;
+			case "-ssa": ssa = true; break;
+			case "-select": select = true; break;
+			case "-cse": cse = true; break;
+			case "-licm": licm = true; break;
+			case "-rotate": rotate = true; break;
+			case "-modern": modern = true; break;
+			case "-dse": dse = true; break;
+			case "-strength": strength = true; break;
+			case "-closed-form": closedForm = true; break;
+			case "-buffered": buffered = true; break;
+			case "-profile": profile = "mylang2ir.prof"; break;
+			case "-g": debug = modern = true; break;
+			case "-asm": assembly = true; break;
+			case "-bitcode": bitcode = true; break;
+			default:
+				if (args[i].startsWith("-profile=")) {
+					profile = args[i].substring("-profile=".length());
+					if (profile.isEmpty())
+						throw new IllegalArgumentException("missing profile file: " + args[i]);
+				} else if (args[i].startsWith("-unroll=")) {
+					try {
+						unroll = Integer.parseInt(args[i].substring("-unroll=".length()));
+					} catch (NumberFormatException e) {
+						unroll = 0;
+					}
+					if (unroll < 1)
+						throw new IllegalArgumentException("invalid unroll factor: " + args[i]);
+					rotate = true;
+				} else
+					throw new IllegalArgumentException("unknown option: " + args[i]);
+			}
+		}
+		if (bitcode && (modern || buffered || profile != null || assembly))
+			throw new IllegalArgumentException("-bitcode cannot be combined with -modern, -g, -buffered, -profile or -asm");
+		return i;
+	}
+}
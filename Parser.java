@@ -0,0 +1,291 @@
+import java.util.Arrays;
+/**
+ * A single-pass parser of {@code myLang} scripts which builds the abstract syntax tree of each statement once.
+ * <p>Each line is tokenized by the {@link Lexer} and parsed straight from its token arrays. Expressions are parsed with explicit operator and
+ * operand stacks instead of the Java call stack, so arbitrarily long expressions and deeply nested {@code choose} calls are parsed in linear time.</p>
+ * <p>The statements are returned one by one by {@link #next()}, so the LLVM-IR code of a statement can be generated while the rest of the script is
+ * still being parsed. An {@code if}/{@code while} statement is returned with its whole body.</p>
+ * @author Aral Dortogul
+ */
+public class Parser {
+	/**
+	 * the marker of a {@code '}'} line which closes an {@code if}/{@code while} block
+	 */
+	private static final Statement CLOSING = new Statement('}', -1, -1, null);
+	/**
+	 * the lines of the script
+	 */
+	private SourceText input_file;
+	/**
+	 * the lexer of the lines
+	 */
+	private final Lexer lexer;
+	/**
+	 * .my file's line counter
+	 */
+	private int lineCount = 0;
+	/**
+	 * boolean which is {@code true} when curly braces are open due to if/while statements, {@code false} otherwise.
+	 */
+	private boolean curlyBracesOpen = false;
+	/**
+	 * the operator stack of the expression parser: operators, {@code '('} and {@code choose(} markers
+	 */
+	private int[] operators = new int[16];
+	/**
+	 * the number of commas seen so far for each {@code choose(} marker on the operator stack
+	 */
+	private int[] commas = new int[16];
+	/**
+	 * the operand stack of the expression parser: the roots of the parsed subexpressions
+	 */
+	private int[] operands = new int[16];
+	/**
+	 * Constructs a parser whose lexer interns the identifiers into the given symbol table.
+	 * @param symbols the symbol table
+	 */
+	public Parser(SymbolTable symbols) {
+		lexer = new Lexer(symbols);
+	}
+	/**
+	 * Starts parsing a new script.
+	 * @param input the lines of the script
+	 */
+	public void reset(SourceText input) {
+		input_file = input;
+		lineCount = 0;
+		curlyBracesOpen = false;
+	}
+	/**
+	 * Returns the line counter.
+	 * @return the number of the line which is being parsed, the number of the line in which a syntax error is detected, or the number of lines after the script is parsed
+	 */
+	public int getLineCount() {
+		return lineCount;
+	}
+	/**
+	 * Parses the next statement of the script, skipping empty lines.
+	 * @return the next statement, {@code null} at the end of the script
+	 * @throws SyntaxErrorException when a syntax error is detected
+	 */
+	public Statement next() throws SyntaxErrorException {
+		for (; lineCount < input_file.lineCount(); lineCount++) {
+			lexer.lex(input_file.line(lineCount)); // Tokenize the line, may throw SyntaxErrorException
+			Statement statement = ParseLine(); // Parse general expression: A line can start with a variable, print, while, if.
+			if (statement != null) {
+				lineCount++;
+				return statement;
+			}
+		}
+		return null;
+	}
+	/**
+	 * Parses the tokenized line.
+	 * <p>A valid <code>myLang</code> line can be an assignment statement, print statement, while statement, if statement, or curly braces closing statement (which is only "}").</p>
+	 * <p>The following cases are regarded as syntax error:</p>
+	 * <ol>
+	 * 	<li>The function starts as if it is an assignment/if/while/print statement but detects a syntax error later.</li>
+	 * 	<li>If a statement other than the four possible statements is encountered.</li>
+	 * 	<li>If the statement starts with '}', but there are no open curly braces, or '}' is not the only token in the statement.</li>
+	 * </ol>
+	 * @return the statement, {@link #CLOSING} for an if/while closing line, {@code null} for an empty line
+	 * @throws SyntaxErrorException when a syntax error is detected
+	 */
+	private Statement ParseLine() throws SyntaxErrorException {
+		if (lexer.count == 0) return null; // Empty line
+		switch (lexer.type[0]) {
+		case Token._variable: return parseAssignment();	// Assignment line
+		case Token._if: return parseBlock('i');			// If line
+		case Token._while: return parseBlock('w');		// While line
+		case Token._print: return parsePrint();			// Print line
+		case Token._rcurl:								// While/If closing line
+			if (!curlyBracesOpen || lexer.count > 1) throw new SyntaxErrorException(); // If there is no open curly braces or the closing curly braces line continues with other tokens.
+			return CLOSING;
+		default: throw new SyntaxErrorException(); // Statements of other forms
+		}
+	}
+	/**
+	 * Parses a <code>myLang</code> assignment statement of the form: <code>&lt;variable&gt; = &lt;expression&gt;</code>
+	 * <p>The following cases are regarded as syntax error:</p>
+	 * <ol>
+	 * 	<li>The second token is not an assignment operator.</li>
+	 * 	<li>The token count of the statement is less than three.</li>
+	 * 	<li>There is a syntax error in the expression itself. (See {@link #parseExpression(int, int)} for more.)</li>
+	 * </ol>
+	 * @return the assignment statement
+	 * @throws SyntaxErrorException when a syntax error is detected
+	 */
+	private Statement parseAssignment() throws SyntaxErrorException {
+		if (lexer.count < 3 || lexer.type[1] != Token._assgn) throw new SyntaxErrorException(); // If a variable name is not followed by '='
+		return new Statement('a', lineCount, lexer.symbolOrValue[0], parseExpression(2, lexer.count));
+	}
+	/**
+	 * Parses an if/while statement of the form: <code>if (&lt;expr&gt;) {</code> or <code>while (&lt;expr&gt;) {</code>, and the statements of its block.
+	 * <p>The following cases are regarded as syntax error:</p>
+	 * <ol>
+	 * 	<li>The token count of the statement is less than 5, which is the minimum amount of tokens required for an {@code if/while} statement.</li>
+	 * 	<li>The second token is not {@code '('}.</li>
+	 * 	<li>The last token is not <code>'{'</code>.</li>
+	 * 	<li>The token before the last token is not {@code ')'}.</li>
+	 * 	<li>The condition expression has a syntax error.</li>
+	 * 	<li>A body statement in the block has a syntax error.</li>
+	 * 	<li>The input file ends without closing the block's braces.</li>
+	 * 	<li>This statement is already in an {@code if/while} statement.<br>
+	 * 		(No nested {@code if/while} statements are allowed.)</li>
+	 * </ol>
+	 * @param kind {@code 'i'} for {@code if}, {@code 'w'} for {@code while}
+	 * @return the if/while statement
+	 * @throws SyntaxErrorException when a syntax error is detected
+	 */
+	private Statement parseBlock(char kind) throws SyntaxErrorException {
+		int count = lexer.count;
+		if (count < 5 || lexer.type[1] != Token._lpar || lexer.type[count - 2] != Token._rpar || lexer.type[count - 1] != Token._lcurl || curlyBracesOpen)
+			throw new SyntaxErrorException(); // If the statement is not in the form of: "if ( <expr> ) {" OR if it is going to be nested
+		Statement block = new Statement(kind, lineCount, -1, parseExpression(2, count - 2));
+		curlyBracesOpen = true;
+		while (lineCount + 1 < input_file.lineCount()) { // Read lines until "}" line is encountered.
+			lexer.lex(input_file.line(++lineCount)); // Tokenize the current line, may throw SyntaxErrorException
+			Statement statement = ParseLine();
+			if (statement == CLOSING) {
+				curlyBracesOpen = false;
+				block.endLine = lineCount;
+				break;
+			}
+			if (statement != null) block.body.add(statement);
+		}
+		if (curlyBracesOpen) throw new SyntaxErrorException(); // The .my file ended with an open "if/while"
+		return block;
+	}
+	/**
+	 * Parses a print statement of form: <code>print (&lt;expr&gt;)</code>
+	 * <p>The following cases are regarded as syntax error:</p>
+	 * <ol>
+	 * 	<li>The token count of the statement is less than 4, which is the minimum amount of tokens required for a {@code print} statement.</li>
+	 * 	<li>The second token is not {@code '('}.</li>
+	 * 	<li>The last token is not {@code ')'}.</li>
+	 * 	<li>{@code print} expression has a syntax error.</li>
+	 * </ol>
+	 * @return the print statement
+	 * @throws SyntaxErrorException when a syntax error is detected
+	 */
+	private Statement parsePrint() throws SyntaxErrorException {
+		if (lexer.count < 4 || lexer.type[1] != Token._lpar || lexer.type[lexer.count - 1] != Token._rpar)
+			throw new SyntaxErrorException(); // If the print statement is not in the following form: print ( <expr> )
+		return new Statement('p', lineCount, -1, parseExpression(2, lexer.count - 1));
+	}
+	/**
+	 * Returns the precedence of a binary operator.
+	 * @param operator the operator token type
+	 * @return 3 for {@code '*'} and {@code '/'}, 2 for {@code '+'} and {@code '-'}, -1 for everything else (parentheses and {@code choose} markers)
+	 */
+	static int Prec(int operator) {
+		switch (operator) {
+		case Token._add:
+		case Token._sub: return 2;
+
+		case Token._mult:
+		case Token._div: return 3;}
+		return -1;
+	}
+	/**
+	 * Parses the expression in the given range of the tokens of the current line.
+	 * <p>The grammar is the usual one: an operand is an integer, a variable, a parenthesized expression or
+	 * {@code choose(expr1, expr2, expr3, expr4)}, and operands are separated by the binary operators {@code +, -, *, /} with the usual
+	 * precedence and left associativity. The following cases are regarded as syntax error:</p>
+	 * <ol>
+	 * 	<li>An operand is expected (at the beginning, or after an operator, {@code '('} or {@code ','}) but another token is found.</li>
+	 * 	<li>An operator, {@code ')'} or {@code ','} is expected (after an operand) but another token is found.</li>
+	 * 	<li>{@code choose} is not followed by {@code '('}, or it does not have exactly four arguments.</li>
+	 * 	<li>The parentheses are not balanced, or a {@code ','} is outside of a {@code choose} call.</li>
+	 * </ol>
+	 * @param lower the index of the first token of the expression
+	 * @param upper the index after the last token of the expression
+	 * @return the abstract syntax tree of the expression
+	 * @throws SyntaxErrorException when a syntax error is detected
+	 */
+	private Expression parseExpression(int lower, int upper) throws SyntaxErrorException {
+		Expression result = new Expression(upper - lower);
+		int operatorCount = 0, operandCount = 0;
+		boolean operandExpected = true;
+		for (int i = lower; i < upper; i++) {
+			int type = lexer.type[i];
+			if (operandExpected) {
+				if (type == Token._integer || type == Token._variable) {
+					operandCount = push(operandCount, result.addLeaf(type, lexer.symbolOrValue[i]));
+					operandExpected = false;
+				} else if (type == Token._lpar || type == Token._choose) {
+					if (type == Token._choose && (++i == upper || lexer.type[i] != Token._lpar)) throw new SyntaxErrorException(); // "choose" is not followed by '('
+					operatorCount = pushOperator(operatorCount, type);
+				} else throw new SyntaxErrorException();
+			} else if (Prec(type) > 0) {
+				while (operatorCount > 0 && Prec(operators[operatorCount - 1]) >= Prec(type))
+					operandCount = reduce(result, operators[--operatorCount], operandCount);
+				operatorCount = pushOperator(operatorCount, type);
+				operandExpected = true;
+			} else if (type == Token._rpar || type == Token._comma) {
+				while (operatorCount > 0 && Prec(operators[operatorCount - 1]) > 0)
+					operandCount = reduce(result, operators[--operatorCount], operandCount);
+				if (operatorCount == 0) throw new SyntaxErrorException(); // Unbalanced ')' or ',' outside of choose
+				int marker = operators[operatorCount - 1];
+				if (type == Token._comma) {
+					if (marker != Token._choose || commas[operatorCount - 1]++ == 3) throw new SyntaxErrorException(); // ',' in parentheses or more than 3 commas inside choose
+					operandExpected = true;
+				} else {
+					operatorCount--;
+					if (marker == Token._choose) {
+						if (commas[operatorCount] != 3) throw new SyntaxErrorException(); // choose has less than 4 arguments
+						operandCount = reduce(result, Token._choose, operandCount);
+					}
+				}
+			} else throw new SyntaxErrorException();
+		}
+		if (operandExpected) throw new SyntaxErrorException(); // Empty expression, or it ends with an operator
+		while (operatorCount > 0) {
+			if (Prec(operators[--operatorCount]) < 0) throw new SyntaxErrorException(); // If there is '(' left in the stack
+			operandCount = reduce(result, operators[operatorCount], operandCount);
+		}
+		return result;
+	}
+	/**
+	 * Pushes an operator or a marker onto the operator stack.
+	 * @param operatorCount the size of the stack
+	 * @param operator the operator token type, {@code Token._lpar} or {@code Token._choose}
+	 * @return the new size of the stack
+	 */
+	private int pushOperator(int operatorCount, int operator) {
+		if (operatorCount == operators.length) {
+			operators = Arrays.copyOf(operators, 2 * operatorCount);
+			commas = Arrays.copyOf(commas, 2 * operatorCount);
+		}
+		operators[operatorCount] = operator;
+		commas[operatorCount] = 0;
+		return operatorCount + 1;
+	}
+	/**
+	 * Pushes the root of a subexpression onto the operand stack.
+	 * @param operandCount the size of the stack
+	 * @param root the root of the subexpression
+	 * @return the new size of the stack
+	 */
+	private int push(int operandCount, int root) {
+		if (operandCount == operands.length)
+			operands = Arrays.copyOf(operands, 2 * operandCount);
+		operands[operandCount] = root;
+		return operandCount + 1;
+	}
+	/**
+	 * Pops the operands of an operation from the operand stack, appends the operation node and pushes it.
+	 * @param result the expression
+	 * @param operation the operation (a binary operator or {@code Token._choose})
+	 * @param operandCount the size of the operand stack
+	 * @return the new size of the operand stack
+	 */
+	private int reduce(Expression result, int operation, int operandCount) {
+		if (operation == Token._choose) {
+			operandCount -= 4;
+			return push(operandCount, result.addOperation(operation, operands[operandCount], operands[operandCount + 1], operands[operandCount + 2], operands[operandCount + 3]));
+		}
+		operandCount -= 2;
+		return push(operandCount, result.addOperation(operation, operands[operandCount], operands[operandCount + 1]));
+	}
+}
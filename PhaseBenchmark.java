@@ -0,0 +1,239 @@
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+/**
+ * Benchmark of the phases of the translator on generated or given {@code myLang} scripts, which reports the throughput and the allocation
+ * rate of each phase.
+ * <p>The front-end phases are cumulative, so the cost of a phase is the difference to the phase before it, and the code generation is also
+ * measured alone:</p>
+ * <ul>
+ * 	<li>{@code lex}: tokenizes each line with a {@link Lexer}.</li>
+ * 	<li>{@code parse}: parses the statements and their expressions with a {@link Parser} (which tokenizes the lines itself).</li>
+ * 	<li>{@code propagate}: parses and propagates the constants with a {@link ConstantPropagator}.</li>
+ * 	<li>{@code codegen}: translates the statements, parsed in advance by {@link Main#parse(CharSequence)}, into LLVM-IR code in memory with
+ * 	{@link Main#translate(List)}.</li>
+ * 	<li>{@code translate}: translates the scripts end to end into LLVM-IR code in memory with {@link Main#compile(CharSequence)}.</li>
+ * </ul>
+ * <p>{@code codegen} and {@code translate} use the given options of the translator. Each phase runs {@code -warmup=N} times (default 5) before
+ * it is measured {@code -iterations=N} times (default 10), and the fastest iteration is reported in nanoseconds per line, lines and megabytes of
+ * script per second, and bytes allocated per line and per second (by the thread, if the JVM measures it).</p>
+ * <p>Usage: {@code java PhaseBenchmark [-warmup=N] [-iterations=N] [generator options] [translator options] [.my files]}. Without files, the
+ * scripts are generated by {@link CorpusGenerator} with its options.</p>
+ * @author Aral Dortogul
+ */
+public class PhaseBenchmark {
+	/**
+	 * the number of unmeasured iterations of each phase
+	 */
+	private int warmup = 5;
+	/**
+	 * the number of measured iterations of each phase
+	 */
+	private int iterations = 10;
+	/**
+	 * the scripts
+	 */
+	private ArrayList<String> scripts = new ArrayList<String>();
+	/**
+	 * the number of lines of the scripts
+	 */
+	private long lineCount;
+	/**
+	 * the number of characters of the scripts
+	 */
+	private long characterCount;
+	/**
+	 * the options of the translator
+	 */
+	private Options options = new Options();
+	/**
+	 * the counter of the bytes allocated by the thread, {@code null} if the JVM does not measure it
+	 */
+	private com.sun.management.ThreadMXBean allocations;
+	/**
+	 * a value computed from the results of each phase, so that the phases cannot be removed as dead code
+	 */
+	private long sink;
+	/**
+	 * A phase of the translator, run over all of the scripts.
+	 */
+	private interface Phase {
+		/**
+		 * Runs the phase over all of the scripts.
+		 * @return a value computed from the results
+		 * @throws SyntaxErrorException when a script has a syntax error
+		 */
+		long run() throws SyntaxErrorException;
+	}
+	/**
+	 * Runs the benchmark.
+	 * @param args the options of the benchmark, of {@link CorpusGenerator} and of the translator (see {@link Options}), followed by the .my
+	 * files, if any
+	 * @throws IOException when a file cannot be read
+	 */
+	public static void main(String[] args) throws IOException {
+		PhaseBenchmark benchmark = new PhaseBenchmark();
+		CorpusGenerator generator = new CorpusGenerator();
+		int first;
+		try {
+			first = benchmark.parse(args);
+			first += generator.parse(Arrays.copyOfRange(args, first, args.length));
+			first += benchmark.options.parse(Arrays.copyOfRange(args, first, args.length));
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			return;
+		}
+		for (int i = first; i < args.length; i++)
+			benchmark.add(new String(Files.readAllBytes(Paths.get(args[i])), StandardCharsets.UTF_8));
+		for (int i = 0; first == args.length && i < generator.count; i++)
+			benchmark.add(generator.generate(generator.seed + i));
+		try {
+			benchmark.run();
+		} catch (SyntaxErrorException e) {
+			System.err.println("syntax error in a benchmarked script");
+		}
+	}
+	/**
+	 * Constructs a benchmark without scripts.
+	 */
+	public PhaseBenchmark() {
+		if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean) {
+			allocations = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+			if (!allocations.isThreadAllocatedMemorySupported())
+				allocations = null;
+			else
+				allocations.setThreadAllocatedMemoryEnabled(true);
+		}
+	}
+	/**
+	 * Sets the options of the benchmark given at the beginning of the command line arguments.
+	 * @param args command line arguments
+	 * @return the index of the first argument which is not an option of the benchmark
+	 * @throws IllegalArgumentException when the value of an option is invalid
+	 */
+	public int parse(String[] args) {
+		int i = 0;
+		for (; i < args.length; i++) {
+			try {
+				if (args[i].startsWith("-warmup="))
+					warmup = Integer.parseInt(args[i].substring("-warmup=".length()));
+				else if (args[i].startsWith("-iterations="))
+					iterations = Integer.parseInt(args[i].substring("-iterations=".length()));
+				else
+					break;
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException("invalid value: " + args[i]);
+			}
+		}
+		if (warmup < 0 || iterations < 1)
+			throw new IllegalArgumentException("invalid benchmark options");
+		return i;
+	}
+	/**
+	 * Adds a script to the benchmarked scripts.
+	 * @param script the {@code myLang} script
+	 */
+	public void add(String script) {
+		scripts.add(script);
+		lineCount += SourceText.of(script).lineCount();
+		characterCount += script.length();
+	}
+	/**
+	 * Runs and reports all of the phases.
+	 * @throws SyntaxErrorException when a script has a syntax error
+	 */
+	public void run() throws SyntaxErrorException {
+		System.out.println(scripts.size() + " scripts, " + lineCount + " lines, " + characterCount + " characters");
+		SymbolTable symbols = new SymbolTable();
+		Lexer lexer = new Lexer(symbols);
+		Parser parser = new Parser(symbols);
+		ConstantPropagator propagator = new ConstantPropagator();
+		ArrayList<Statement> statements = new ArrayList<Statement>();
+		Main translator = new Main(options);
+		Main[] generators = new Main[scripts.size()]; // A translator for each script, which keeps the symbols of its parsed statements
+		ArrayList<List<Statement>> parsed = new ArrayList<List<Statement>>();
+		for (int i = 0; i < generators.length; i++) {
+			generators[i] = new Main(options);
+			parsed.add(generators[i].parse(scripts.get(i)));
+		}
+		measure("lex", () -> {
+			long tokens = 0;
+			for (String script : scripts) {
+				symbols.clear();
+				SourceText text = SourceText.of(script);
+				for (int line = 0; line < text.lineCount(); line++) {
+					lexer.lex(text.line(line));
+					tokens += lexer.count;
+				}
+			}
+			return tokens;
+		});
+		measure("parse", () -> {
+			long statementCount = 0;
+			for (String script : scripts) {
+				symbols.clear();
+				parser.reset(SourceText.of(script));
+				while (parser.next() != null)
+					statementCount++;
+			}
+			return statementCount;
+		});
+		measure("propagate", () -> {
+			long statementCount = 0;
+			for (String script : scripts) {
+				symbols.clear();
+				parser.reset(SourceText.of(script));
+				propagator.reset();
+				for (Statement statement; (statement = parser.next()) != null; ) {
+					statements.clear();
+					propagator.propagate(statement, statements);
+					statementCount += statements.size();
+				}
+			}
+			return statementCount;
+		});
+		measure("codegen", () -> {
+			long irLength = 0;
+			for (int i = 0; i < generators.length; i++)
+				irLength += generators[i].translate(parsed.get(i)).length();
+			return irLength;
+		});
+		measure("translate", () -> {
+			long irLength = 0;
+			for (String script : scripts)
+				irLength += translator.compile(script).length();
+			return irLength;
+		});
+		if (sink == 42) // Uses the results, so that the phases cannot be removed as dead code.
+			System.out.println();
+	}
+	/**
+	 * Runs a phase and prints its fastest iteration.
+	 * @param name the name of the phase
+	 * @param phase the phase
+	 * @throws SyntaxErrorException when a script has a syntax error
+	 */
+	private void measure(String name, Phase phase) throws SyntaxErrorException {
+		for (int i = 0; i < warmup; i++)
+			sink += phase.run();
+		long best = Long.MAX_VALUE, allocated = Long.MAX_VALUE;
+		long thread = Thread.currentThread().getId();
+		for (int i = 0; i < iterations; i++) {
+			long bytes = allocations == null ? 0 : allocations.getThreadAllocatedBytes(thread);
+			long start = System.nanoTime();
+			sink += phase.run();
+			best = Math.min(best, System.nanoTime() - start);
+			if (allocations != null)
+				allocated = Math.min(allocated, allocations.getThreadAllocatedBytes(thread) - bytes);
+		}
+		double seconds = best / 1e9;
+		System.out.printf("%-10s %10.1f ns/line %10.2f Mlines/s %10.2f MB/s %12s B/line %12s B/s%n", name, (double) best / lineCount,
+				lineCount / seconds / 1e6, characterCount / seconds / 1e6, allocations == null ? "n/a" : String.format("%.1f", (double) allocated / lineCount),
+				allocations == null ? "n/a" : String.format("%.3g", allocated / seconds));
+	}
+}
@@ -0,0 +1,106 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+/**
+ * Reader of the execution profiles written by the programs translated with {@code -profile} (see {@link Options#profile}), which maps the
+ * counts back to the lines of the {@code myLang} script.
+ * <p>A profile has a line for each counter: the name of the counter ({@code lineN} for the statement in line N, or the label of a basic block),
+ * the number of the source line which it belongs to and the count, separated by spaces. The reader prints the script with the count of each
+ * statement in front of it, followed by the basic blocks from the hottest to the coldest.</p>
+ * @author Aral Dortogul
+ */
+public class ProfileReader {
+	/**
+	 * the number of executions of each line of the script, -1 for the lines without a statement
+	 */
+	public long[] lineCounts;
+	/**
+	 * the labels of the basic blocks, in the order of the profile
+	 */
+	public ArrayList<String> blocks = new ArrayList<String>();
+	/**
+	 * the number of the source line of each basic block
+	 */
+	public ArrayList<Integer> blockLines = new ArrayList<Integer>();
+	/**
+	 * the number of executions of each basic block
+	 */
+	public ArrayList<Long> blockCounts = new ArrayList<Long>();
+	/**
+	 * Prints a profile next to its script.
+	 * @param args the .my file, optionally followed by the profile file ({@code mylang2ir.prof} by default)
+	 * @throws IOException when the script or the profile cannot be read
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1 || args.length > 2) {
+			System.err.println("usage: java ProfileReader script.my [profile]");
+			return;
+		}
+		SourceText script = SourceText.map(Paths.get(args[0]));
+		ProfileReader profile = new ProfileReader();
+		try {
+			profile.read(Files.readAllLines(Paths.get(args.length > 1 ? args[1] : "mylang2ir.prof"), StandardCharsets.UTF_8), script.lineCount());
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			return;
+		}
+		StringBuilder report = new StringBuilder();
+		for (int line = 0; line < script.lineCount(); line++) {
+			String count = profile.lineCounts[line] == -1 ? "" : Long.toUnsignedString(profile.lineCounts[line]);
+			report.append(String.format("%20s %5d  ", count, line)).append(script.line(line)).append('\n');
+		}
+		report.append("\nbasic blocks by count:\n");
+		for (int block : profile.hottestBlocks())
+			report.append(String.format("%20s %5d  ", Long.toUnsignedString(profile.blockCounts.get(block)), profile.blockLines.get(block))).append(profile.blocks.get(block)).append('\n');
+		System.out.print(report);
+	}
+	/**
+	 * Reads the lines of a profile.
+	 * @param profile the lines of the profile
+	 * @param lineCount the number of lines of the script
+	 * @throws IllegalArgumentException when a line of the profile is malformed or refers to a line which is not in the script
+	 */
+	public void read(List<String> profile, int lineCount) {
+		lineCounts = new long[lineCount];
+		Arrays.fill(lineCounts, -1);
+		for (String entry : profile) {
+			if (entry.isEmpty() || entry.startsWith("#"))
+				continue;
+			String[] fields = entry.split(" ");
+			int line;
+			long count;
+			try {
+				if (fields.length != 3)
+					throw new NumberFormatException();
+				line = Integer.parseInt(fields[1]);
+				count = Long.parseUnsignedLong(fields[2]);
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException("malformed profile line: " + entry);
+			}
+			if (line < -1 || line >= lineCount)
+				throw new IllegalArgumentException("profile line for another script: " + entry);
+			if (fields[0].equals("line" + line))
+				lineCounts[line] = count;
+			else {
+				blocks.add(fields[0]);
+				blockLines.add(line);
+				blockCounts.add(count);
+			}
+		}
+	}
+	/**
+	 * Returns the basic blocks sorted by their counts, from the highest to the lowest (blocks with equal counts stay in the order of the profile).
+	 * @return the indices of the blocks
+	 */
+	public Integer[] hottestBlocks() {
+		Integer[] order = new Integer[blocks.size()];
+		for (int i = 0; i < order.length; i++)
+			order[i] = i;
+		Arrays.sort(order, (a, b) -> Long.compareUnsigned(blockCounts.get(b), blockCounts.get(a)));
+		return order;
+	}
+}
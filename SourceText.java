@@ -0,0 +1,165 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+/**
+ * The text of a {@code myLang} script with an index of the offsets of its lines.
+ * <p>A .my file is memory-mapped and indexed in a single pass, and {@link #line(int)} returns zero-copy views of the lines, so the lexer reads the
+ * characters straight from the mapped file. Files which are not pure ASCII are decoded with the default charset first, so that the lines and the
+ * characters are exactly the ones {@link java.util.Scanner#nextLine()} would return.</p>
+ * <p>Lines are terminated by LF, CR LF, CR, NEL, LS or PS; the last line does not need a terminator, and an empty file has no lines.</p>
+ * @author Aral Dortogul
+ */
+public class SourceText {
+	/**
+	 * the bytes of the script if it is pure ASCII, {@code null} otherwise
+	 */
+	private final ByteBuffer bytes;
+	/**
+	 * the characters of the script if it is not pure ASCII, {@code null} otherwise
+	 */
+	private final CharSequence chars;
+	/**
+	 * the offset of the first character of each line
+	 */
+	private int[] lineStarts = new int[64];
+	/**
+	 * the offset of the end of each line, excluding the line terminator
+	 */
+	private int[] lineEnds = new int[64];
+	/**
+	 * the number of lines, -1 if the bytes turned out not to be pure ASCII
+	 */
+	private int lines = 0;
+	/**
+	 * Memory-maps and indexes a .my file.
+	 * @param file the path of the .my file
+	 * @return the text of the file
+	 * @throws IOException when the file cannot be read, or it is larger than 2 GB
+	 */
+	public static SourceText map(Path file) throws IOException {
+		ByteBuffer mapped;
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			if (channel.size() > Integer.MAX_VALUE) throw new IOException(file + " is larger than 2 GB");
+			mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+		SourceText text = new SourceText(mapped, null);
+		if (text.lines < 0) // Not ASCII: decode it the way Scanner does.
+			return new SourceText(null, Charset.defaultCharset().decode(mapped));
+		return text;
+	}
+	/**
+	 * Indexes a script held in memory.
+	 * @param script the script
+	 * @return the text of the script
+	 */
+	public static SourceText of(CharSequence script) {
+		return new SourceText(null, script);
+	}
+	/**
+	 * Constructs the text from either the bytes or the characters of a script, and builds its line index in a single pass.
+	 * @param bytes the ASCII bytes of the script, {@code null} if the characters are given
+	 * @param chars the characters of the script, {@code null} if the bytes are given
+	 */
+	private SourceText(ByteBuffer bytes, CharSequence chars) {
+		this.bytes = bytes;
+		this.chars = chars;
+		int length = bytes != null ? bytes.limit() : chars.length(), start = 0;
+		for (int i = 0; i < length; i++) {
+			char c = charAt(i);
+			if (c > 0x7F && bytes != null) {
+				lines = -1;
+				return;
+			}
+			if (c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029') {
+				addLine(start, i);
+				if (c == '\r' && i + 1 < length && charAt(i + 1) == '\n') i++;
+				start = i + 1;
+			}
+		}
+		if (start < length) addLine(start, length); // The last line has no terminator.
+	}
+	/**
+	 * Appends a line to the index.
+	 * @param start the offset of the first character of the line
+	 * @param end the offset of the end of the line
+	 */
+	private void addLine(int start, int end) {
+		if (lines == lineStarts.length) {
+			lineStarts = Arrays.copyOf(lineStarts, 2 * lines);
+			lineEnds = Arrays.copyOf(lineEnds, 2 * lines);
+		}
+		lineStarts[lines] = start;
+		lineEnds[lines++] = end;
+	}
+	/**
+	 * Returns the character at the given offset of the script.
+	 * @param offset the offset
+	 * @return the character
+	 */
+	private char charAt(int offset) {
+		return bytes != null ? (char) (bytes.get(offset) & 0xFF) : chars.charAt(offset);
+	}
+	/**
+	 * Returns the number of lines of the script.
+	 * @return the number of lines
+	 */
+	public int lineCount() {
+		return lines;
+	}
+	/**
+	 * Returns a view of a line of the script, without its terminator.
+	 * @param index the number of the line (starting with 0)
+	 * @return the characters of the line, which are not copied
+	 */
+	public CharSequence line(int index) {
+		if (bytes == null)
+			return CharBuffer.wrap(chars, lineStarts[index], lineEnds[index]);
+		return new Line(lineStarts[index], lineEnds[index]);
+	}
+	/**
+	 * A view of a range of the ASCII bytes of the script.
+	 */
+	private class Line implements CharSequence {
+		/**
+		 * the offset of the first character of the view
+		 */
+		private final int start;
+		/**
+		 * the offset of the end of the view
+		 */
+		private final int end;
+		/**
+		 * Constructs a view of the given range of the script.
+		 * @param start the offset of the first character
+		 * @param end the offset of the end
+		 */
+		Line(int start, int end) {
+			this.start = start;
+			this.end = end;
+		}
+		@Override
+		public int length() {
+			return end - start;
+		}
+		@Override
+		public char charAt(int index) {
+			return (char) bytes.get(start + index);
+		}
+		@Override
+		public CharSequence subSequence(int from, int to) {
+			return new Line(start + from, start + to);
+		}
+		@Override
+		public String toString() {
+			char[] characters = new char[end - start];
+			for (int i = 0; i < characters.length; i++)
+				characters[i] = charAt(i);
+			return new String(characters);
+		}
+	}
+}
@@ -0,0 +1,46 @@
+import java.util.ArrayList;
+/**
+ * A statement of a {@code myLang} script: an assignment, a print statement, or an {@code if}/{@code while} statement with its body.
+ * @author Aral Dortogul
+ */
+public class Statement {
+	/**
+	 * the kind of the statement: 'a' (assignment), 'p' (print), 'i' (if) or 'w' (while), as returned by {@link Parser}
+	 */
+	public final char kind;
+	/**
+	 * the number of the line of the statement (starting with 0)
+	 */
+	public final int line;
+	/**
+	 * the symbol id of the assigned variable ({@code -1} if the statement is not an assignment)
+	 */
+	public final int target;
+	/**
+	 * the assigned, printed or tested expression
+	 */
+	public Expression expression;
+	/**
+	 * the statements of the {@code if}/{@code while} block ({@code null} for other statements)
+	 */
+	public final ArrayList<Statement> body;
+	/**
+	 * the number of the line which closes the {@code if}/{@code while} block (the line of the statement for other statements)
+	 */
+	public int endLine;
+	/**
+	 * Constructs a statement.
+	 * @param kind 'a' (assignment), 'p' (print), 'i' (if) or 'w' (while)
+	 * @param line the number of the line of the statement
+	 * @param target the symbol id of the assigned variable, {@code -1} if the statement is not an assignment
+	 * @param expression the assigned, printed or tested expression
+	 */
+	public Statement(char kind, int line, int target, Expression expression) {
+		this.kind = kind;
+		this.line = line;
+		this.target = target;
+		this.expression = expression;
+		this.body = (kind == 'i' || kind == 'w') ? new ArrayList<Statement>() : null;
+		this.endLine = line;
+	}
+}
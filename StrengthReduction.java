@@ -0,0 +1,98 @@
+/**
+ * Plans of the cheaper instruction sequences which replace multiplications and divisions by constants (strength reduction).
+ * <ul>
+ * 	<li>A multiplication by a power of two {@code 2^k} becomes {@code shl} by {@code k}.</li>
+ * 	<li>A division by {@code 2^k} or {@code -2^k} becomes an arithmetic shift of the dividend plus a bias of {@code 2^k - 1} for negative
+ * 	dividends (so that the quotient is truncated toward 0 like {@code sdiv}), negated for a negative divisor.</li>
+ * 	<li>A division by any other constant except 0, 1 and -1 becomes the high half of the product with a "magic number", corrected by the
+ * 	dividend, shifted and rounded toward 0 (H. S. Warren, <i>Hacker's Delight</i>, chapter 10).</li>
+ * </ul>
+ * <p>{@link Main} writes the planned sequences, and {@link StrengthReductionCheck} evaluates the written LLVM-IR instructions against
+ * multiplication and truncating division.</p>
+ * @author Aral Dortogul
+ */
+public class StrengthReduction {
+	/**
+	 * the kind of a multiplication by a power of two, which is shifted left
+	 */
+	public static final int SHIFT = 1;
+	/**
+	 * the kind of a division by a power of two or its negation, which is shifted right with a bias
+	 */
+	public static final int POWER = 2;
+	/**
+	 * the kind of a division by another constant, which is multiplied by a magic number
+	 */
+	public static final int MAGIC = 3;
+	/**
+	 * the kind of the planned sequence: {@link #SHIFT}, {@link #POWER} or {@link #MAGIC}
+	 */
+	public int kind;
+	/**
+	 * the shift amount of the sequence
+	 */
+	public int shift;
+	/**
+	 * the magic number of a {@link #MAGIC} sequence
+	 */
+	public int magic;
+	/**
+	 * 1 if the dividend is added to the high half of the product, -1 if it is subtracted and 0 if there is no correction
+	 */
+	public int correction;
+	/**
+	 * {@code true} if the quotient of a {@link #POWER} sequence is negated (the divisor is negative)
+	 */
+	public boolean negated;
+	/**
+	 * Plans the sequence of an operation with a constant operand.
+	 * @param operation {@code Token._mult} or {@code Token._div}
+	 * @param constant the constant factor or divisor
+	 * @return {@code true} if the operation can be replaced, {@code false} if it has to stay a {@code mul} or an {@code sdiv}
+	 */
+	public boolean plan(int operation, int constant) {
+		if (operation == Token._mult) {
+			if (Integer.bitCount(constant) != 1 || constant == 1)
+				return false;
+			kind = SHIFT;
+			shift = Integer.numberOfTrailingZeros(constant);
+			return true;
+		}
+		if (operation != Token._div || constant == 0 || constant == 1 || constant == -1)
+			return false;
+		if (Integer.bitCount(Math.abs(constant)) == 1) { // Math.abs(Integer.MIN_VALUE) is Integer.MIN_VALUE, which is -2^31.
+			kind = POWER;
+			shift = Integer.numberOfTrailingZeros(constant);
+			negated = constant < 0;
+			return true;
+		}
+		kind = MAGIC;
+		long two31 = 1L << 31, divisor = Math.abs((long) constant);
+		long t = two31 + (constant < 0 ? 1 : 0);
+		long anc = t - 1 - t % divisor; // the absolute value of the largest dividend whose remainder is divisor-1
+		long q1 = two31 / anc, r1 = two31 - q1 * anc, q2 = two31 / divisor, r2 = two31 - q2 * divisor, delta;
+		int p = 31;
+		do {
+			p++;
+			q1 = (2 * q1) & 0xFFFFFFFFL;
+			r1 = 2 * r1;
+			if (r1 >= anc) {
+				q1++;
+				r1 -= anc;
+			}
+			q2 = (2 * q2) & 0xFFFFFFFFL;
+			r2 = 2 * r2;
+			if (r2 >= divisor) {
+				q2++;
+				r2 -= divisor;
+			}
+			delta = divisor - r2;
+		} while (q1 < delta || (q1 == delta && r1 == 0));
+		magic = (int) (q2 + 1);
+		if (constant < 0)
+			magic = -magic;
+		shift = p - 32;
+		correction = constant > 0 && magic < 0 ? 1 : constant < 0 && magic > 0 ? -1 : 0;
+		return true;
+	}
+}
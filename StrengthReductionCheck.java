@@ -0,0 +1,233 @@
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Random;
+/**
+ * Check of the strength reduction of the translator (see {@link StrengthReduction}), which evaluates the LLVM-IR code that {@link Main} writes.
+ * <p>The check translates {@code print(x / d)}, {@code print(x * 2^k)} and {@code print(2^k * x)} with {@code -strength} behind a loop which
+ * counts {@code x} down (so that the value of {@code x} is unknown to the {@link ConstantPropagator}, and negative constants are folded), reads
+ * the instructions between the load of {@code x} and the call of {@code printf} and evaluates them with the semantics of LLVM-IR for many values of
+ * {@code x}, against the multiplication and the division of Java, which truncates like {@code sdiv}: the divisors from -4096 to 4096, every
+ * power of two and its negation and random divisors with edge and random dividends, or every dividend with {@code -exhaustive}.</p>
+ * @author Aral Dortogul
+ */
+public class StrengthReductionCheck {
+	/**
+	 * the instructions which the evaluator knows, indexed by their opcodes
+	 */
+	private static final String[] OPERATIONS = {"add", "sub", "mul", "sdiv", "shl", "ashr", "lshr", "sext", "trunc"};
+	/**
+	 * the translator, with {@code -strength}
+	 */
+	private final Main translator;
+	/**
+	 * the LLVM-IR code of the last translated operation
+	 */
+	private String ir;
+	/**
+	 * the opcode of each instruction of the translated sequence (an index of {@link #OPERATIONS}), starting with 1 (0 is the load of {@code x})
+	 */
+	private int[] opcodes = new int[32];
+	/**
+	 * {@code true} for the instructions whose operands have type {@code i64}
+	 */
+	private boolean[] wide = new boolean[32];
+	/**
+	 * the operands of each instruction, indexed by {@code 2*instruction+operand}: the constant, or the instruction whose result is the operand
+	 */
+	private long[] operands = new long[64];
+	/**
+	 * {@code true} for the operands which are the results of instructions, indexed like {@link #operands}
+	 */
+	private boolean[] results = new boolean[64];
+	/**
+	 * the number of instructions of the translated sequence, with the load of {@code x}
+	 */
+	private int length;
+	/**
+	 * the instruction whose result is printed
+	 */
+	private int printed;
+	/**
+	 * the results of the instructions during an evaluation
+	 */
+	private long[] values = new long[32];
+	/**
+	 * Runs the check and exits with status 1 if an evaluated sequence is wrong.
+	 * @param args {@code -exhaustive} followed by divisors to check every dividend of the divisors, or nothing to check the built-in divisors
+	 * with edge and random dividends
+	 */
+	public static void main(String[] args) {
+		StrengthReductionCheck check = new StrengthReductionCheck();
+		StrengthReduction reduction = new StrengthReduction();
+		Random random = new Random(230);
+		long checks = 0;
+		if (args.length > 0 && args[0].equals("-exhaustive")) {
+			for (int i = 1; i < args.length; i++) {
+				int divisor = Integer.parseInt(args[i]);
+				if (!reduction.plan(Token._div, divisor)) {
+					System.out.println(divisor + ": stays sdiv");
+					continue;
+				}
+				check.translate("x / " + literal(divisor));
+				for (long x = Integer.MIN_VALUE; x <= Integer.MAX_VALUE; x++)
+					check.check(Token._div, (int) x, divisor);
+				checks += 1L << 32;
+			}
+			System.out.println("strength reduction: " + checks + " divisions equal to sdiv");
+			return;
+		}
+		int[] dividends = new int[64 + 2000];
+		int[] edges = {0, 1, -1, 2, -2, 3, -3, Integer.MAX_VALUE, Integer.MIN_VALUE, Integer.MAX_VALUE - 1, Integer.MIN_VALUE + 1};
+		System.arraycopy(edges, 0, dividends, 0, edges.length);
+		for (int i = edges.length; i < dividends.length; i++)
+			dividends[i] = i < 64 ? 1 << (i - edges.length) % 32 : random.nextInt();
+		int[] divisors = new int[8193 + 64 + 10000];
+		for (int i = 0; i < 8193; i++)
+			divisors[i] = i - 4096;
+		for (int i = 0; i < 32; i++) {
+			divisors[8193 + 2 * i] = 1 << i;
+			divisors[8194 + 2 * i] = -(1 << i);
+		}
+		for (int i = 8193 + 64; i < divisors.length; i++)
+			divisors[i] = random.nextInt() >> random.nextInt(32);
+		for (int divisor : divisors) {
+			if (!reduction.plan(Token._div, divisor))
+				continue;
+			check.translate("x / " + literal(divisor));
+			for (int x : dividends) {
+				check.check(Token._div, x, divisor);
+				for (int near = -1; near <= 1; near++) // The dividends around the multiples of the divisor
+					check.check(Token._div, (int) ((long) (x / divisor) * divisor + near), divisor);
+			}
+			checks += 4 * dividends.length;
+		}
+		for (int k = 1; k < 32; k++) {
+			for (String expression : new String[] {"x * " + literal(1 << k), literal(1 << k) + " * x"}) {
+				check.translate(expression);
+				for (int x : dividends)
+					check.check(Token._mult, x, 1 << k);
+				checks += dividends.length;
+			}
+		}
+		System.out.println("strength reduction: " + checks + " operations equal to mul and sdiv");
+	}
+	/**
+	 * Constructs a check with a translator which reduces the operations.
+	 */
+	public StrengthReductionCheck() {
+		Options options = new Options();
+		options.parse(new String[] {"-strength"});
+		translator = new Main(options);
+	}
+	/**
+	 * Translates an operation with {@code x} and reads the instructions which compute it, and exits with status 1 if they are not reduced.
+	 * @param expression the operation
+	 */
+	private void translate(String expression) {
+		ir = translator.compile("x = 1\nwhile(x) {\nx = x - 1\n}\nprint(" + expression + ")\n");
+		String[] lines = ir.split("\n");
+		HashMap<String, Integer> instructions = new HashMap<String, Integer>();
+		int line = Arrays.asList(lines).indexOf("whend1:");
+		while (!lines[line].contains("= load i32* %v_x"))
+			line++;
+		instructions.put(lines[line].trim().split(" ")[0], 0);
+		length = 1;
+		for (line++; !lines[line].contains("@printf("); line++) {
+			String[] tokens = lines[line].trim().replace(",", "").split(" "); // %tN = operation [nsw] type operand [operand | to type]
+			int opcode = Arrays.asList(OPERATIONS).indexOf(tokens[2]), first = tokens[3].equals("nsw") ? 5 : 4;
+			if (opcode < 0)
+				fail(expression, "has the instruction " + tokens[2]);
+			if ((opcode == 2 && !tokens[first - 1].equals("i64")) || opcode == 3) // Only the product with a magic number is a mul, in i64.
+				fail(expression, "is not reduced");
+			if (length == opcodes.length) {
+				opcodes = Arrays.copyOf(opcodes, 2 * length);
+				wide = Arrays.copyOf(wide, 2 * length);
+				operands = Arrays.copyOf(operands, 4 * length);
+				results = Arrays.copyOf(results, 4 * length);
+				values = Arrays.copyOf(values, 2 * length);
+			}
+			opcodes[length] = opcode;
+			wide[length] = tokens[first - 1].equals("i64");
+			for (int operand = 0; operand < 2; operand++) {
+				String token = operand == 0 || opcode < 7 ? tokens[first + operand] : "0";
+				results[2 * length + operand] = token.startsWith("%");
+				operands[2 * length + operand] = token.startsWith("%") ? instructions.get(token) : Long.parseLong(token);
+			}
+			instructions.put(tokens[0], length++);
+		}
+		String call = lines[line].trim();
+		printed = instructions.get(call.substring(call.lastIndexOf("i32 ") + 4, call.lastIndexOf(' ')));
+	}
+	/**
+	 * Writes a constant in {@code myLang}, which has no negative literals.
+	 * @param constant the constant
+	 * @return the literal, or the subtraction of its absolute value from 0
+	 */
+	private static String literal(int constant) {
+		return constant < 0 ? "(0-" + -(long) constant + ")" : Integer.toString(constant);
+	}
+	/**
+	 * Evaluates the translated sequence for an operand and exits with status 1 if its result is wrong.
+	 * @param operation {@code Token._mult} or {@code Token._div}
+	 * @param x the other operand
+	 * @param constant the constant factor or divisor
+	 */
+	private void check(int operation, int x, int constant) {
+		if (x == Integer.MIN_VALUE && constant == -1)
+			return;
+		int expected = operation == Token._mult ? x * constant : x / constant, result = (int) evaluate(x);
+		if (result != expected)
+			fail(x + (operation == Token._mult ? " * " : " / ") + constant, "= " + expected + ", reduced to " + result);
+	}
+	/**
+	 * Evaluates the translated sequence with the semantics of its LLVM-IR instructions.
+	 * @param x the value of {@code x}
+	 * @return the printed value
+	 */
+	private long evaluate(int x) {
+		values[0] = x;
+		for (int i = 1; i < length; i++) {
+			long a = results[2 * i] ? values[(int) operands[2 * i]] : operands[2 * i];
+			long b = results[2 * i + 1] ? values[(int) operands[2 * i + 1]] : operands[2 * i + 1];
+			boolean w = wide[i];
+			switch (opcodes[i]) {
+			case 0: // add
+				values[i] = w ? a + b : (int) a + (int) b;
+				break;
+			case 1: // sub
+				values[i] = w ? a - b : (int) a - (int) b;
+				break;
+			case 2: // mul
+				values[i] = w ? a * b : (int) a * (int) b;
+				break;
+			case 3: // sdiv
+				values[i] = w ? a / b : (int) a / (int) b;
+				break;
+			case 4: // shl
+				values[i] = w ? a << b : (int) a << b;
+				break;
+			case 5: // ashr
+				values[i] = w ? a >> b : (int) a >> b;
+				break;
+			case 6: // lshr
+				values[i] = w ? a >>> b : (int) a >>> b;
+				break;
+			case 7: // sext i32 to i64: the values are held sign-extended
+				values[i] = a;
+				break;
+			default: // trunc i64 to i32
+				values[i] = (int) a;
+			}
+		}
+		return values[printed];
+	}
+	/**
+	 * Prints a failed check with the translated LLVM-IR code and exits with status 1.
+	 * @param operation the checked operation
+	 * @param message the failure
+	 */
+	private void fail(String operation, String message) {
+		System.out.println("strength reduction: " + operation + " " + message + "\n" + ir);
+		System.exit(1);
+	}
+}
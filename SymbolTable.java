@@ -0,0 +1,165 @@
+import java.util.Arrays;
+/**
+ * Interning table of the variable names of a {@code myLang} script.
+ * <p>Each distinct identifier gets a dense integer id, starting with 0, in the order of its first occurrence. Identifiers are looked up straight
+ * from a range of the input line, so a name is copied only the first time it is seen. The table also keeps the LLVM-IR name ({@code v_} prefix)
+ * of each id.</p>
+ * <p>Temporary variables of the translator (such as the variables of {@code choose}) are also given ids by {@link #addTemporary(String)}, but they
+ * can never be found by {@link #intern(CharSequence, int, int)}.</p>
+ * @author Aral Dortogul
+ */
+public class SymbolTable {
+	/**
+	 * the open-addressing hash table of ids plus one (0 denotes an empty slot), its length is a power of two
+	 */
+	private int[] slots = new int[64];
+	/**
+	 * the hash of each symbol
+	 */
+	private int[] hashes = new int[32];
+	/**
+	 * the identifier of each symbol as it is written in the script
+	 */
+	private String[] names = new String[32];
+	/**
+	 * the LLVM-IR name of each symbol
+	 */
+	private String[] irNames = new String[32];
+	/**
+	 * the number of symbols
+	 */
+	private int size = 0;
+	/**
+	 * Removes all of the symbols.
+	 */
+	public void clear() {
+		Arrays.fill(slots, 0);
+		Arrays.fill(names, 0, size, null);
+		Arrays.fill(irNames, 0, size, null);
+		size = 0;
+	}
+	/**
+	 * Removes the symbols added after the given number of symbols, which have to be temporary variables (see {@link #addTemporary(String)}).
+	 * @param newSize the number of kept symbols
+	 */
+	public void truncate(int newSize) {
+		Arrays.fill(names, newSize, size, null);
+		Arrays.fill(irNames, newSize, size, null);
+		size = newSize;
+	}
+	/**
+	 * Returns the id of the identifier in the given range of the input, adding it to the table if it is new.
+	 * @param input the input
+	 * @param start the index of the first character of the identifier
+	 * @param end the index after the last character of the identifier
+	 * @return the id of the identifier
+	 */
+	public int intern(CharSequence input, int start, int end) {
+		int hash = 0;
+		for (int i = start; i < end; i++)
+			hash = 31 * hash + input.charAt(i);
+		int mask = slots.length - 1;
+		for (int slot = mix(hash) & mask; ; slot = (slot + 1) & mask) {
+			int id = slots[slot] - 1;
+			if (id < 0) {
+				String name = input.subSequence(start, end).toString();
+				slots[slot] = add(hash, name, "v_" + name) + 1;
+				if (2 * size > slots.length) rehash();
+				return size - 1;
+			}
+			if (hashes[id] == hash && equals(names[id], input, start, end))
+				return id;
+		}
+	}
+	/**
+	 * Returns the number of symbols.
+	 * @return the number of symbols
+	 */
+	public int size() {
+		return size;
+	}
+	/**
+	 * Returns the identifier of a symbol as it is written in the script.
+	 * @param id the id of the symbol
+	 * @return the identifier
+	 */
+	public String name(int id) {
+		return names[id];
+	}
+	/**
+	 * Returns the LLVM-IR name of a symbol.
+	 * @param id the id of the symbol
+	 * @return the LLVM-IR name, without {@code '%'}
+	 */
+	public String irName(int id) {
+		return irNames[id];
+	}
+	/**
+	 * Adds a temporary variable of the translator, which is not an identifier of the script.
+	 * @param irName the LLVM-IR name of the variable
+	 * @return the id of the new symbol
+	 */
+	public int addTemporary(String irName) {
+		return add(0, irName, irName);
+	}
+	/**
+	 * Adds a new symbol.
+	 * @param hash the hash of the identifier
+	 * @param name the identifier
+	 * @param irName the LLVM-IR name
+	 * @return the id of the new symbol
+	 */
+	private int add(int hash, String name, String irName) {
+		if (size == names.length) {
+			hashes = Arrays.copyOf(hashes, 2 * size);
+			names = Arrays.copyOf(names, 2 * size);
+			irNames = Arrays.copyOf(irNames, 2 * size);
+		}
+		hashes[size] = hash;
+		names[size] = name;
+		irNames[size] = irName;
+		return size++;
+	}
+	/**
+	 * Grows the hash table until it is at most half full and reinserts the identifiers. The temporary variables (whose LLVM-IR names are their
+	 * names) are not inserted, and they can outnumber the slots of the old table, since they are added without growing it.
+	 */
+	private void rehash() {
+		int length = 2 * slots.length;
+		while (2 * size > length)
+			length *= 2;
+		slots = new int[length];
+		int mask = slots.length - 1;
+		for (int id = 0; id < size; id++) {
+			if (names[id] == irNames[id])
+				continue;
+			int slot = mix(hashes[id]) & mask;
+			while (slots[slot] != 0)
+				slot = (slot + 1) & mask;
+			slots[slot] = id + 1;
+		}
+	}
+	/**
+	 * Spreads the bits of a hash so that the low bits can index the table.
+	 * @param hash the hash
+	 * @return the mixed hash
+	 */
+	private static int mix(int hash) {
+		hash *= 0x9E3779B9;
+		return hash ^ (hash >>> 16);
+	}
+	/**
+	 * Compares an identifier with a range of the input.
+	 * @param name the identifier
+	 * @param input the input
+	 * @param start the index of the first character of the range
+	 * @param end the index after the last character of the range
+	 * @return {@code true} if the range holds the identifier
+	 */
+	private static boolean equals(String name, CharSequence input, int start, int end) {
+		if (name.length() != end - start) return false;
+		for (int i = 0; i < name.length(); i++)
+			if (name.charAt(i) != input.charAt(start + i)) return false;
+		return true;
+	}
+}
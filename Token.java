@@ -178,7 +178,7 @@ public class Token {
 	 * @return An ArrayList of Tokens
 	 * @throws SyntaxErrorException when a syntax error is detected
 	 */
-	public static ArrayList<Token> lex(String input) throws SyntaxErrorException {
+	public static ArrayList<Token> lex(CharSequence input) throws SyntaxErrorException {
 		ArrayList<Token> result = new ArrayList<Token>();
 		int i = 0;
 		while(i < input.length()) {
@@ -0,0 +1,180 @@
+import java.util.Arrays;
+/**
+ * Table of the values available in the current basic block, for local value numbering.
+ * <p>The table maps binary operations on integers and temporary variables to the temporary variables which already hold their results, and
+ * variables to the values which they are known to hold (the temporary variable of their last load, or the value of their last store). A value
+ * can only be reused in the basic block which computes it, so the whole table is cleared at every label; clearing only starts a new
+ * generation, so it does not depend on the size of the table.</p>
+ * @author Aral Dortogul
+ */
+public class ValueTable {
+	/**
+	 * the number of ints of a key: the operation, and the kind and the value of each operand
+	 */
+	private static final int KEY_SIZE = 5;
+	/**
+	 * the keys of the open-addressing hash table of operations, {@link #KEY_SIZE} ints per slot
+	 */
+	private int[] keys = new int[KEY_SIZE * 64];
+	/**
+	 * the temporary variable holding the result of the operation of each slot
+	 */
+	private int[] results = new int[64];
+	/**
+	 * the generation of the table in which each slot was filled
+	 */
+	private int[] stamps = new int[64];
+	/**
+	 * the number of slots filled in the current generation
+	 */
+	private int size = 0;
+	/**
+	 * the kind ({@code Token._integer} or {@code Token._tempvar}) of the known value of each variable, indexed by symbol id
+	 */
+	private int[] variableKinds = new int[64];
+	/**
+	 * the known value of each variable, indexed by symbol id
+	 */
+	private int[] variableValues = new int[64];
+	/**
+	 * the generation of the table in which the value of each variable was recorded
+	 */
+	private int[] variableStamps = new int[64];
+	/**
+	 * the current generation, slots and variables recorded in earlier generations are empty
+	 */
+	private int generation = 1;
+	/**
+	 * Forgets all of the values, at the beginning of a basic block.
+	 */
+	public void clear() {
+		generation++;
+		size = 0;
+	}
+	/**
+	 * Returns the temporary variable which holds the result of an operation.
+	 * @param operation the type of the operation
+	 * @param leftKind the kind of the left operand ({@code Token._integer} or {@code Token._tempvar})
+	 * @param left the value of the left operand
+	 * @param rightKind the kind of the right operand
+	 * @param right the value of the right operand
+	 * @return the number of the temporary variable, -1 if the operation has not been computed in the current basic block
+	 */
+	public int find(int operation, int leftKind, int left, int rightKind, int right) {
+		int mask = results.length - 1;
+		for (int slot = hash(operation, leftKind, left, rightKind, right) & mask; stamps[slot] == generation; slot = (slot + 1) & mask)
+			if (matches(slot, operation, leftKind, left, rightKind, right))
+				return results[slot];
+		return -1;
+	}
+	/**
+	 * Records the temporary variable which holds the result of an operation.
+	 * @param operation the type of the operation
+	 * @param leftKind the kind of the left operand ({@code Token._integer} or {@code Token._tempvar})
+	 * @param left the value of the left operand
+	 * @param rightKind the kind of the right operand
+	 * @param right the value of the right operand
+	 * @param result the number of the temporary variable
+	 */
+	public void add(int operation, int leftKind, int left, int rightKind, int right, int result) {
+		if (2 * (size + 1) > results.length)
+			grow();
+		int mask = results.length - 1;
+		int slot = hash(operation, leftKind, left, rightKind, right) & mask;
+		while (stamps[slot] == generation)
+			slot = (slot + 1) & mask;
+		int key = KEY_SIZE * slot;
+		keys[key] = operation;
+		keys[key + 1] = leftKind;
+		keys[key + 2] = left;
+		keys[key + 3] = rightKind;
+		keys[key + 4] = right;
+		results[slot] = result;
+		stamps[slot] = generation;
+		size++;
+	}
+	/**
+	 * Checks if the value of a variable is known in the current basic block.
+	 * @param symbol the symbol id of the variable
+	 * @return {@code true} if the value is known
+	 */
+	public boolean hasVariable(int symbol) {
+		return symbol < variableStamps.length && variableStamps[symbol] == generation;
+	}
+	/**
+	 * Returns the kind of the known value of a variable.
+	 * @param symbol the symbol id of the variable, whose value has to be known
+	 * @return {@code Token._integer} or {@code Token._tempvar}
+	 */
+	public int variableKind(int symbol) {
+		return variableKinds[symbol];
+	}
+	/**
+	 * Returns the known value of a variable.
+	 * @param symbol the symbol id of the variable, whose value has to be known
+	 * @return the integer or the number of the temporary variable
+	 */
+	public int variableValue(int symbol) {
+		return variableValues[symbol];
+	}
+	/**
+	 * Records the value of a variable after it is loaded or stored, replacing the value known before.
+	 * @param symbol the symbol id of the variable
+	 * @param kind {@code Token._integer} or {@code Token._tempvar}
+	 * @param value the integer or the number of the temporary variable
+	 */
+	public void setVariable(int symbol, int kind, int value) {
+		if (symbol >= variableStamps.length) {
+			int length = Math.max(2 * variableStamps.length, symbol + 1);
+			variableKinds = Arrays.copyOf(variableKinds, length);
+			variableValues = Arrays.copyOf(variableValues, length);
+			variableStamps = Arrays.copyOf(variableStamps, length);
+		}
+		variableKinds[symbol] = kind;
+		variableValues[symbol] = value;
+		variableStamps[symbol] = generation;
+	}
+	/**
+	 * Doubles the hash table and reinserts the operations of the current generation.
+	 */
+	private void grow() {
+		int[] oldKeys = keys, oldResults = results, oldStamps = stamps;
+		keys = new int[2 * oldKeys.length];
+		results = new int[2 * oldResults.length];
+		stamps = new int[2 * oldStamps.length];
+		int oldGeneration = generation;
+		size = 0;
+		for (int slot = 0; slot < oldResults.length; slot++)
+			if (oldStamps[slot] == oldGeneration) {
+				int key = KEY_SIZE * slot;
+				add(oldKeys[key], oldKeys[key + 1], oldKeys[key + 2], oldKeys[key + 3], oldKeys[key + 4], oldResults[slot]);
+			}
+	}
+	/**
+	 * Checks if the given slot holds the given operation.
+	 * @param slot the slot
+	 * @param operation the type of the operation
+	 * @param leftKind the kind of the left operand
+	 * @param left the value of the left operand
+	 * @param rightKind the kind of the right operand
+	 * @param right the value of the right operand
+	 * @return {@code true} if the slot holds the operation
+	 */
+	private boolean matches(int slot, int operation, int leftKind, int left, int rightKind, int right) {
+		int key = KEY_SIZE * slot;
+		return keys[key] == operation && keys[key + 1] == leftKind && keys[key + 2] == left && keys[key + 3] == rightKind && keys[key + 4] == right;
+	}
+	/**
+	 * Computes the hash of an operation.
+	 * @param operation the type of the operation
+	 * @param leftKind the kind of the left operand
+	 * @param left the value of the left operand
+	 * @param rightKind the kind of the right operand
+	 * @param right the value of the right operand
+	 * @return the hash
+	 */
+	private static int hash(int operation, int leftKind, int left, int rightKind, int right) {
+		int hash = ((((operation * 31 + leftKind) * 31 + left) * 31 + rightKind) * 31 + right) * 0x9E3779B9;
+		return hash ^ (hash >>> 16);
+	}
+}